@@ -0,0 +1,259 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * AddressIndex class answers address fragment queries for ContactService.findByAddress.
+ *
+ * Each indexed address gets a document number and every distinct trigram (three
+ * consecutive characters, lower-cased with Locale.ROOT) maps to a sorted int[] posting
+ * list of the documents containing it. A query intersects the postings of its own
+ * trigrams, smallest first, and then checks each candidate's address, since sharing
+ * every trigram does not guarantee containing the fragment.
+ *
+ * Document numbers only grow, so postings stay sorted by simple appends. Deleting or
+ * re-addressing a contact retires its old number instead of editing every posting;
+ * once retired numbers outnumber live ones the postings are rebuilt.
+ */
+final class AddressIndex implements ContactListener {
+    static final int GRAM_LENGTH = 3;
+    private static final int MIN_COMPACT_DEAD = 1024;
+
+    /**
+     * Postings class is a growable sorted list of document numbers
+     */
+    private static final class Postings {
+        int[] docs = new int[4];
+        int size;
+
+        void append(int doc) {
+            if (size > 0 && docs[size - 1] == doc) {
+                return;  // Trigram repeated within one address
+            }
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+            }
+            docs[size++] = doc;
+        }
+    }
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Postings> postings = new HashMap<>();
+    private final Map<String, Integer> docOf = new HashMap<>();  // By contact ID, as stores may hand out copies
+    private Contact[] docs = new Contact[1024];  // Null where the document is retired
+    private int nextDoc;
+    private int retired;
+
+    /**
+     * Returns contacts whose address contains a fragment, ignoring case
+     * @param fragment Address fragment, empty to match every contact
+     * @param limit Maximum number of contacts to return
+     * @return Up to limit matching contacts, oldest indexed first
+     */
+    List<Contact> find(String fragment, int limit) {
+        String folded = fold(fragment);
+        List<Contact> matches = new ArrayList<>(Math.min(limit, 64));
+        lock.readLock().lock();
+        try {
+            if (folded.length() < GRAM_LENGTH) {
+                for (int doc = 0; doc < nextDoc && matches.size() < limit; doc++) {
+                    addIfContains(docs[doc], folded, matches);
+                }
+                return matches;
+            }
+            collectCandidates(folded, limit, matches);
+            return matches;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Estimates how many documents find checks for a fragment without checking any: the
+     * length of its rarest trigram's posting list, or every live document for a fragment
+     * shorter than a trigram
+     * @param fragment Address fragment
+     * @return Estimated candidates, 0 if some trigram of the fragment occurs nowhere
+     */
+    int estimate(String fragment) {
+        String folded = fold(fragment);
+        lock.readLock().lock();
+        try {
+            if (folded.length() < GRAM_LENGTH) {
+                return docOf.size();
+            }
+            int smallest = Integer.MAX_VALUE;
+            for (int i = 0; i + GRAM_LENGTH <= folded.length(); i++) {
+                Postings list = postings.get(gram(folded, i));
+                if (list == null) {
+                    return 0;
+                }
+                smallest = Math.min(smallest, list.size);
+            }
+            return smallest;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param contact Contact to check
+     * @param fragment Address fragment
+     * @return true if the contact's address contains the fragment, ignoring case
+     */
+    static boolean contains(Contact contact, String fragment) {
+        return fold(contact.getAddress()).contains(fold(fragment));
+    }
+
+    @Override
+    public void contactAdded(Contact contact) {
+        lock.writeLock().lock();
+        try {
+            index(contact);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void contactDeleted(Contact contact) {
+        lock.writeLock().lock();
+        try {
+            retire(contact);
+            compactIfSparse();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void contactUpdated(Contact contact, ContactField field, String oldValue) {
+        if (field == ContactField.ADDRESS && !fold(oldValue).equals(fold(contact.getAddress()))) {
+            lock.writeLock().lock();
+            try {
+                retire(contact);
+                index(contact);
+                compactIfSparse();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    private static void addIfContains(Contact contact, String folded, List<Contact> matches) {
+        // The stored address is checked again because sharing trigrams is not containment
+        if (contact != null && fold(contact.getAddress()).contains(folded)) {
+            matches.add(contact);
+        }
+    }
+
+    /**
+     * Walks the smallest posting list of the fragment's trigrams, keeping a cursor into
+     * every other list, and checks each document present in all of them. Stops as soon
+     * as limit contacts match, so common fragments cost no more than rare ones.
+     */
+    private void collectCandidates(String folded, int limit, List<Contact> matches) {
+        List<Postings> lists = new ArrayList<>();
+        for (int i = 0; i + GRAM_LENGTH <= folded.length(); i++) {
+            Postings list = postings.get(gram(folded, i));
+            if (list == null) {
+                return;
+            }
+            if (!lists.contains(list)) {
+                lists.add(list);
+            }
+        }
+        lists.sort((a, b) -> Integer.compare(a.size, b.size));
+        Postings smallest = lists.get(0);
+        int[] cursors = new int[lists.size()];
+        candidates:
+        for (int i = 0; i < smallest.size && matches.size() < limit; i++) {
+            int doc = smallest.docs[i];
+            for (int l = 1; l < cursors.length; l++) {
+                Postings list = lists.get(l);
+                cursors[l] = lowerBound(list.docs, cursors[l], list.size, doc);
+                if (cursors[l] == list.size) {
+                    return;
+                }
+                if (list.docs[cursors[l]] != doc) {
+                    continue candidates;
+                }
+            }
+            addIfContains(docs[doc], folded, matches);
+        }
+    }
+
+    /**
+     * Finds the first position at or after from holding a value not less than value,
+     * galloping forward before a binary search so skipping far ahead stays cheap
+     * @return Position found, or size if every remaining value is smaller
+     */
+    static int lowerBound(int[] sorted, int from, int size, int value) {
+        int step = 1;
+        int hi = from;
+        while (hi < size && sorted[hi] < value) {
+            from = hi + 1;
+            hi += step;
+            step <<= 1;
+        }
+        int at = Arrays.binarySearch(sorted, from, Math.min(hi + 1, size), value);
+        return at >= 0 ? at : -at - 1;
+    }
+
+    private void index(Contact contact) {
+        int doc = nextDoc++;
+        if (doc == docs.length) {
+            docs = Arrays.copyOf(docs, docs.length * 2);
+        }
+        docs[doc] = contact;
+        docOf.put(contact.getContactId(), doc);
+        String folded = fold(contact.getAddress());
+        for (int i = 0; i + GRAM_LENGTH <= folded.length(); i++) {
+            postings.computeIfAbsent(gram(folded, i), g -> new Postings()).append(doc);
+        }
+    }
+
+    private void retire(Contact contact) {
+        Integer doc = docOf.remove(contact.getContactId());
+        if (doc != null) {
+            docs[doc] = null;
+            retired++;
+        }
+    }
+
+    /**
+     * Renumbers live documents and rebuilds every posting once most documents are retired
+     */
+    private void compactIfSparse() {
+        if (retired < MIN_COMPACT_DEAD || retired <= docOf.size()) {
+            return;
+        }
+        Contact[] live = new Contact[docOf.size()];
+        int count = 0;
+        for (int doc = 0; doc < nextDoc; doc++) {
+            if (docs[doc] != null) {
+                live[count++] = docs[doc];
+            }
+        }
+        postings.clear();
+        docOf.clear();
+        docs = new Contact[Math.max(1024, Integer.highestOneBit(count) * 2)];
+        nextDoc = 0;
+        retired = 0;
+        for (Contact contact : live) {
+            index(contact);
+        }
+    }
+
+    private static long gram(String folded, int at) {
+        return ((long) folded.charAt(at) << 32) | ((long) folded.charAt(at + 1) << 16) | folded.charAt(at + 2);
+    }
+
+    private static String fold(String text) {
+        return text.toLowerCase(Locale.ROOT);
+    }
+}
\ No newline at end of file
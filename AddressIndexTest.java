@@ -0,0 +1,38 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+
+import java.util.Random;
+
+/**
+ * Unit tests for AddressIndex class
+ * Tests the posting list search used to intersect trigram postings
+ */
+public class AddressIndexTest {
+    @Test
+    @DisplayName("Galloping lower bound should match a linear search from any starting point")
+    public void testLowerBound() {
+        Random random = new Random(7);
+        for (int round = 0; round < 200; round++) {
+            int[] sorted = random.ints(random.nextInt(4000), 0, 5000).distinct().sorted().toArray();
+            int from = sorted.length == 0 ? 0 : random.nextInt(sorted.length);
+            int value = random.nextInt(5100);
+            int expected = from;
+            while (expected < sorted.length && sorted[expected] < value) {
+                expected++;
+            }
+
+            assertEquals(expected, AddressIndex.lowerBound(sorted, from, sorted.length, value));
+        }
+    }
+
+    @Test
+    @DisplayName("Lower bound should only read the used part of a posting array")
+    public void testLowerBoundIgnoresSpareCapacity() {
+        int[] postings = {1, 3, 5, 7, 9, 0, 0, 0};
+
+        assertEquals(1, AddressIndex.lowerBound(postings, 0, 5, 2));
+        assertEquals(4, AddressIndex.lowerBound(postings, 2, 5, 9));
+        assertEquals(5, AddressIndex.lowerBound(postings, 0, 5, 10));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,294 @@
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * AsyncContactService class is a CompletableFuture facade over a ContactService, for
+ * callers that must not block while a call waits on locks or on journal fsyncs.
+ *
+ * Each call runs on its own virtual thread when the JVM offers them (Java 21 and later,
+ * found by reflection so the class still compiles and runs on Java 17); otherwise calls
+ * run on a cached pool of daemon platform threads. A failed call completes its future
+ * exceptionally with the exception ContactService threw, usually IllegalArgumentException.
+ *
+ * At most maxInFlight calls run at once. A call made while the limit is reached returns
+ * a future already failed with RejectedExecutionException, so a producer that outruns
+ * the service learns to back off without queueing without bound or parking its thread.
+ *
+ * With coalesceGets, a getContact for an ID that already has a getContact in flight
+ * shares that call's result instead of starting another. Each caller gets its own copy
+ * of the shared future, so cancelling or completing it affects no other caller. A caller
+ * can receive the contact as it was when the shared call started, which may precede a
+ * change the caller has already seen complete.
+ */
+public final class AsyncContactService implements AutoCloseable {
+    private static final int DEFAULT_MAX_IN_FLIGHT = 1024;
+
+    private final ContactService service;
+    private final ExecutorService executor;
+    private final boolean virtualThreads;
+    private final Semaphore permits;
+    private final int maxInFlight;
+    private final ConcurrentHashMap<String, CompletableFuture<Contact>> pendingGets;  // Null unless coalescing
+
+    /**
+     * Constructor wraps a service with the default in-flight limit and no get coalescing
+     * @param service Service to call
+     * @throws IllegalArgumentException if service is null
+     */
+    public AsyncContactService(ContactService service) {
+        this(service, DEFAULT_MAX_IN_FLIGHT, false);
+    }
+
+    /**
+     * Constructor wraps a service
+     * @param service Service to call
+     * @param maxInFlight Most calls allowed to run at once
+     * @param coalesceGets Whether concurrent getContact calls for one ID share a single call
+     * @throws IllegalArgumentException if service is null or maxInFlight is less than 1
+     */
+    public AsyncContactService(ContactService service, int maxInFlight, boolean coalesceGets) {
+        if (service == null) {
+            throw new IllegalArgumentException("Service cannot be null");
+        }
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("Max in-flight calls must be at least 1");
+        }
+        this.service = service;
+        this.maxInFlight = maxInFlight;
+        this.permits = new Semaphore(maxInFlight);
+        this.pendingGets = coalesceGets ? new ConcurrentHashMap<>() : null;
+        ExecutorService virtual = newVirtualThreadExecutor();
+        this.virtualThreads = virtual != null;
+        this.executor = virtual != null ? virtual : Executors.newCachedThreadPool(new DaemonThreadFactory());
+    }
+
+    /**
+     * Adds a new contact with unique ID
+     * @param contact Contact object to add
+     * @return Future completed when the contact is added, or with the IllegalArgumentException
+     */
+    public CompletableFuture<Void> addContact(Contact contact) {
+        return run(() -> service.addContact(contact));
+    }
+
+    /**
+     * Deletes a contact by contact ID
+     * @param contactId ID of the contact to delete
+     * @return Future completed when the contact is deleted, or with the IllegalArgumentException
+     */
+    public CompletableFuture<Void> deleteContact(String contactId) {
+        return run(() -> service.deleteContact(contactId));
+    }
+
+    /**
+     * Updates the first name of a contact
+     * @param contactId ID of the contact to update
+     * @param firstName New first name
+     * @return Future completed when the name is changed, or with the IllegalArgumentException
+     */
+    public CompletableFuture<Void> updateFirstName(String contactId, String firstName) {
+        return run(() -> service.updateFirstName(contactId, firstName));
+    }
+
+    /**
+     * Updates the last name of a contact
+     * @param contactId ID of the contact to update
+     * @param lastName New last name
+     * @return Future completed when the name is changed, or with the IllegalArgumentException
+     */
+    public CompletableFuture<Void> updateLastName(String contactId, String lastName) {
+        return run(() -> service.updateLastName(contactId, lastName));
+    }
+
+    /**
+     * Updates the phone number of a contact
+     * @param contactId ID of the contact to update
+     * @param phone New phone number
+     * @return Future completed when the phone is changed, or with the IllegalArgumentException
+     */
+    public CompletableFuture<Void> updatePhone(String contactId, String phone) {
+        return run(() -> service.updatePhone(contactId, phone));
+    }
+
+    /**
+     * Updates the address of a contact
+     * @param contactId ID of the contact to update
+     * @param address New address
+     * @return Future completed when the address is changed, or with the IllegalArgumentException
+     */
+    public CompletableFuture<Void> updateAddress(String contactId, String address) {
+        return run(() -> service.updateAddress(contactId, address));
+    }
+
+    /**
+     * Changes every field a patch sets in one step
+     * @param contactId ID of the contact to patch
+     * @param patch New values, validated when the patch was built
+     * @return Future completed with the new version, or with the IllegalArgumentException
+     */
+    public CompletableFuture<Integer> patchContact(String contactId, ContactPatch patch) {
+        return call(() -> service.patchContact(contactId, patch));
+    }
+
+    /**
+     * Changes every field a patch sets in one step, only if the contact still has the
+     * version the caller read
+     * @param contactId ID of the contact to patch
+     * @param patch New values, validated when the patch was built
+     * @param expectedVersion Version the caller last read through Contact.getVersion
+     * @return Future completed with the new version, or with the IllegalArgumentException
+     *         or ContactVersionConflictException
+     */
+    public CompletableFuture<Integer> patchContact(String contactId, ContactPatch patch, int expectedVersion) {
+        return call(() -> service.patchContact(contactId, patch, expectedVersion));
+    }
+
+    /**
+     * Retrieves a contact by ID, sharing an in-flight call for the same ID when coalescing
+     * @param contactId ID of the contact to retrieve
+     * @return Future completed with the contact, or with the IllegalArgumentException
+     */
+    public CompletableFuture<Contact> getContact(String contactId) {
+        if (pendingGets == null || contactId == null) {
+            return call(() -> service.getContact(contactId));
+        }
+        CompletableFuture<Contact> pending = pendingGets.get(contactId);
+        if (pending != null) {
+            return pending.copy();
+        }
+        CompletableFuture<Contact> mine = new CompletableFuture<>();
+        pending = pendingGets.putIfAbsent(contactId, mine);
+        if (pending != null) {
+            return pending.copy();
+        }
+        // Forget the call before completing it, so nobody joins a finished call
+        boolean submitted = submit(mine, () -> {
+            try {
+                return service.getContact(contactId);
+            } finally {
+                pendingGets.remove(contactId, mine);
+            }
+        });
+        if (!submitted) {
+            pendingGets.remove(contactId, mine);  // Never ran, so its finally never will
+        }
+        return mine.copy();  // The shared future never leaves this class
+    }
+
+    /**
+     * @return true if calls run on virtual threads, false if on platform threads
+     */
+    public boolean usesVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * @return Number of calls running or waiting for the service right now
+     */
+    public int getInFlightCount() {
+        return maxInFlight - permits.availablePermits();
+    }
+
+    /**
+     * Stops accepting calls and waits for those in flight to finish
+     * The wrapped service stays open.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+                // Calls may be waiting on a slow journal; keep waiting
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private CompletableFuture<Void> run(Runnable operation) {
+        return call(() -> {
+            operation.run();
+            return null;
+        });
+    }
+
+    private <T> CompletableFuture<T> call(Supplier<T> operation) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        submit(future, operation);
+        return future;
+    }
+
+    /**
+     * Takes an in-flight slot without waiting, then runs the operation on the executor
+     * into future
+     * @return false if the operation will never run, future having already failed
+     */
+    private <T> boolean submit(CompletableFuture<T> future, Supplier<T> operation) {
+        if (!permits.tryAcquire()) {
+            future.completeExceptionally(new RejectedExecutionException(maxInFlight + " calls already in flight"));
+            return false;
+        }
+        try {
+            executor.execute(() -> {
+                T result = null;
+                Throwable failure = null;
+                try {
+                    result = operation.get();
+                } catch (Throwable t) {
+                    failure = t;
+                } finally {
+                    // Free the slot first: completing runs dependent stages on this thread,
+                    // and one that makes another call must not wait on the slot it holds
+                    permits.release();
+                }
+                if (failure == null) {
+                    future.complete(result);
+                } else {
+                    future.completeExceptionally(failure);
+                }
+            });
+        } catch (RuntimeException e) {
+            // Rejected after close
+            permits.release();
+            future.completeExceptionally(e);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return Executors.newVirtualThreadPerTaskExecutor() if this JVM has it, else null
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;  // Before Java 21, or virtual threads still in preview
+        }
+    }
+
+    /**
+     * DaemonThreadFactory class names the fallback platform threads and keeps them from
+     * holding the JVM open
+     */
+    private static final class DaemonThreadFactory implements ThreadFactory {
+        private static final AtomicInteger COUNT = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable task) {
+            Thread thread = new Thread(task, "contact-async-" + COUNT.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,274 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Unit tests for AsyncContactService class
+ * Tests that every call completes its future with the service's result or exception,
+ * that in-flight calls are bounded, and that concurrent gets for one ID are coalesced
+ */
+public class AsyncContactServiceTest {
+    /**
+     * GatedStore class counts get calls and, once armed, holds each one until released
+     */
+    private static final class GatedStore implements ContactStore {
+        final HeapContactStore contacts = new HeapContactStore();
+        final AtomicInteger gets = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch(1);
+        volatile boolean armed;
+
+        @Override
+        public Contact get(String contactId) {
+            gets.incrementAndGet();
+            if (armed) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return contacts.get(contactId);
+        }
+
+        @Override
+        public boolean contains(String contactId) {
+            return contacts.contains(contactId);
+        }
+
+        @Override
+        public int size() {
+            return contacts.size();
+        }
+
+        @Override
+        public boolean insert(Contact contact) {
+            return contacts.insert(contact);
+        }
+
+        @Override
+        public void insertAll(Contact[] batch) {
+            contacts.insertAll(batch);
+        }
+
+        @Override
+        public Contact remove(String contactId) {
+            return contacts.remove(contactId);
+        }
+
+        @Override
+        public Contact update(Contact contact, ContactField field, String value) {
+            return contacts.update(contact, field, value);
+        }
+
+        @Override
+        public boolean returnsCopies() {
+            return false;
+        }
+
+        @Override
+        public Iterator<Contact> iterator() {
+            return contacts.iterator();
+        }
+    }
+
+    // Call tests
+
+    @Test
+    @DisplayName("Every call should complete with the service's result")
+    public void testCalls() throws Exception {
+        ContactService service = new ContactService();
+        try (AsyncContactService async = new AsyncContactService(service)) {
+            async.addContact(new Contact("1", "John", "Doe", "5551234567", "1 Main St")).get();
+            CompletableFuture.allOf(
+                    async.updateFirstName("1", "Jane"),
+                    async.updateLastName("1", "Roe"),
+                    async.updatePhone("1", "5559876543"),
+                    async.updateAddress("1", "2 Oak Ave")).get();
+
+            Contact contact = async.getContact("1").get();
+            assertEquals("Jane", contact.getFirstName());
+            assertEquals("Roe", contact.getLastName());
+            assertEquals("5559876543", contact.getPhone());
+            assertEquals("2 Oak Ave", contact.getAddress());
+
+            async.deleteContact("1").get();
+            assertFalse(service.contactExists("1"));
+            assertEquals(0, async.getInFlightCount());
+        }
+    }
+
+    @Test
+    @DisplayName("Patches should complete with the new version, or with the version conflict")
+    public void testPatches() throws Exception {
+        ContactService service = new ContactService();
+        service.addContact("1", "John", "Doe", "5551234567", "1 Main St");
+        try (AsyncContactService async = new AsyncContactService(service)) {
+            int version = async.patchContact("1", new ContactPatch("Jane", null, null, "2 Oak Ave")).get();
+            assertEquals(service.getContact("1").getVersion(), version);
+            assertEquals("Jane", service.getContact("1").getFirstName());
+            assertEquals("2 Oak Ave", service.getContact("1").getAddress());
+
+            assertEquals(version + 1, async.patchContact("1", new ContactPatch(null, "Roe", null, null), version).get());
+            ExecutionException conflict = assertThrows(ExecutionException.class,
+                    () -> async.patchContact("1", new ContactPatch("Jim", null, null, null), version).get());
+            assertInstanceOf(ContactVersionConflictException.class, conflict.getCause());
+            ExecutionException missing = assertThrows(ExecutionException.class,
+                    () -> async.patchContact("404", new ContactPatch("Jim", null, null, null)).get());
+            assertInstanceOf(IllegalArgumentException.class, missing.getCause());
+            assertEquals("Jane", service.getContact("1").getFirstName());
+        }
+    }
+
+    @Test
+    @DisplayName("Failed calls should complete exceptionally with the service's exception")
+    public void testFailures() {
+        try (AsyncContactService async = new AsyncContactService(new ContactService(), 4, true)) {
+            ExecutionException missing = assertThrows(ExecutionException.class, () -> async.getContact("404").get());
+            assertInstanceOf(IllegalArgumentException.class, missing.getCause());
+            ExecutionException nullId = assertThrows(ExecutionException.class, () -> async.getContact(null).get());
+            assertInstanceOf(IllegalArgumentException.class, nullId.getCause());
+            ExecutionException invalid = assertThrows(ExecutionException.class,
+                    () -> async.addContact(new Contact("1", "A", "B", "5551234567", "C")).thenCompose(
+                            done -> async.updatePhone("1", "123")).get());
+            assertInstanceOf(IllegalArgumentException.class, invalid.getCause());
+        }
+    }
+
+    @Test
+    @DisplayName("Constructor should reject a null service or an in-flight limit below 1")
+    public void testInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new AsyncContactService(null));
+        assertThrows(IllegalArgumentException.class, () -> new AsyncContactService(new ContactService(), 0, false));
+    }
+
+    @Test
+    @DisplayName("Calls should use virtual threads exactly when the JVM has them, and fail after close")
+    public void testExecutorAndClose() {
+        AsyncContactService async = new AsyncContactService(new ContactService());
+        boolean available = true;
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            available = false;
+        }
+        assertEquals(available, async.usesVirtualThreads());
+
+        async.close();
+        ExecutionException rejected = assertThrows(ExecutionException.class, () -> async.getContact("1").get());
+        assertInstanceOf(RejectedExecutionException.class, rejected.getCause());
+    }
+
+    // Backpressure and coalescing tests
+
+    @Test
+    @DisplayName("Calls beyond the in-flight limit should fail at once without blocking their caller")
+    public void testInFlightLimit() throws Exception {
+        GatedStore store = new GatedStore();
+        ContactService service = new ContactService(store);
+        for (int i = 0; i < 3; i++) {
+            service.addContact("c" + i, "First", "Last", "5551234567", "1 Main St");
+        }
+        store.armed = true;
+        try (AsyncContactService async = new AsyncContactService(service, 2, false)) {
+            CompletableFuture<Contact> first = async.getContact("c0");
+            CompletableFuture<Contact> second = async.getContact("c1");
+            CompletableFuture<Contact> third = async.getContact("c2");
+
+            assertTrue(third.isDone(), "the caller should not wait for a slot");
+            ExecutionException rejected = assertThrows(ExecutionException.class, third::get);
+            assertInstanceOf(RejectedExecutionException.class, rejected.getCause());
+            assertEquals(2, async.getInFlightCount());
+            store.release.countDown();
+            assertEquals("c0", first.get().getContactId());
+            assertEquals("c1", second.get().getContactId());
+            assertEquals("c2", async.getContact("c2").get().getContactId());
+        }
+    }
+
+    @Test
+    @DisplayName("Calls chained onto completed calls should not wait on the slot of the call before")
+    public void testChainedCallsAtLimit() throws Exception {
+        ContactService service = new ContactService();
+        service.addContact("1", "John", "Doe", "5551234567", "1 Main St");
+        try (AsyncContactService async = new AsyncContactService(service, 1, false)) {
+            CompletableFuture<?> chain = async.getContact("1");
+            for (int i = 0; i < 100; i++) {
+                String address = i + " Elm St";
+                chain = chain.thenCompose(done -> async.updateAddress("1", address));
+            }
+            chain.get(10, TimeUnit.SECONDS);
+            assertEquals("99 Elm St", service.getContact("1").getAddress());
+        }
+    }
+
+    @Test
+    @DisplayName("Concurrent gets for one ID should share a single service call but not a future")
+    public void testCoalescedGets() throws Exception {
+        GatedStore store = new GatedStore();
+        ContactService service = new ContactService(store);
+        service.addContact("1", "John", "Doe", "5551234567", "1 Main St");
+        store.armed = true;
+        try (AsyncContactService async = new AsyncContactService(service, 64, true)) {
+            List<CompletableFuture<Contact>> futures = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                futures.add(async.getContact("1"));
+            }
+            futures.add(async.getContact("2"));  // Other IDs get their own call
+
+            // One caller's future is its own: cancelling or completing it changes no other
+            assertTrue(futures.get(0).cancel(false));
+            futures.get(1).complete(null);
+            futures.get(2).obtrudeValue(null);
+
+            store.release.countDown();
+            assertTrue(futures.get(0).isCancelled());
+            assertNull(futures.get(1).get());
+            for (int i = 3; i < 50; i++) {
+                assertEquals("John", futures.get(i).get().getFirstName());
+            }
+            assertThrows(ExecutionException.class, () -> futures.get(50).get());
+            assertEquals(2, store.gets.get());
+
+            // A get after the shared call finished starts a new one
+            async.getContact("1").get();
+            assertEquals(3, store.gets.get());
+        }
+    }
+
+    @Test
+    @DisplayName("A coalesced get that never ran, over the limit or after close, should not be shared with later gets")
+    public void testFailedCoalescedGetNotShared() throws Exception {
+        GatedStore store = new GatedStore();
+        ContactService service = new ContactService(store);
+        service.addContact("1", "John", "Doe", "5551234567", "1 Main St");
+        service.addContact("2", "Jane", "Roe", "5559876543", "2 Oak Ave");
+        store.armed = true;
+        AsyncContactService async = new AsyncContactService(service, 1, true);
+        CompletableFuture<Contact> holding = async.getContact("2");  // Takes the only slot
+        CompletableFuture<Contact> overLimit = async.getContact("1");
+        ExecutionException failure = assertThrows(ExecutionException.class, overLimit::get);
+        assertInstanceOf(RejectedExecutionException.class, failure.getCause());
+
+        store.release.countDown();
+        assertEquals("Jane", holding.get().getFirstName());
+        CompletableFuture<Contact> next = async.getContact("1");
+        assertNotSame(overLimit, next);
+        assertEquals("John", next.get().getFirstName());
+
+        async.close();
+        CompletableFuture<Contact> rejected = async.getContact("1");
+        assertTrue(rejected.isCompletedExceptionally());
+        assertNotSame(rejected, async.getContact("1"));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,109 @@
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * BatchResult class reports the outcome of a bulk add on ContactService.
+ * A batch is committed as a whole or not at all; when it is rejected, every
+ * record that caused the rejection is listed.
+ */
+public final class BatchResult {
+    private final int submitted;
+    private final int added;
+    private final List<Rejection> rejections;
+
+    private BatchResult(int submitted, int added, List<Rejection> rejections) {
+        this.submitted = submitted;
+        this.added = added;
+        this.rejections = Collections.unmodifiableList(rejections);
+    }
+
+    static BatchResult committed(int submitted) {
+        return new BatchResult(submitted, submitted, Collections.emptyList());
+    }
+
+    static BatchResult rejected(int submitted, List<Rejection> rejections) {
+        return new BatchResult(submitted, 0, rejections);
+    }
+
+    /**
+     * @return true if every record in the batch was added
+     */
+    public boolean isCommitted() {
+        return rejections.isEmpty();
+    }
+
+    /**
+     * @return Number of records in the submitted batch
+     */
+    public int getSubmittedCount() {
+        return submitted;
+    }
+
+    /**
+     * @return Number of contacts added, either the whole batch or zero
+     */
+    public int getAddedCount() {
+        return added;
+    }
+
+    /**
+     * @return Rejected records in batch order, empty if the batch was committed
+     */
+    public List<Rejection> getRejections() {
+        return rejections;
+    }
+
+    @Override
+    public String toString() {
+        return "BatchResult{" +
+                "submitted=" + submitted +
+                ", added=" + added +
+                ", rejections=" + rejections.size() +
+                '}';
+    }
+
+    /**
+     * Rejection class describes one record that prevented a batch from committing
+     */
+    public static final class Rejection {
+        private final int index;
+        private final String contactId;
+        private final String reason;
+
+        Rejection(int index, String contactId, String reason) {
+            this.index = index;
+            this.contactId = contactId;
+            this.reason = reason;
+        }
+
+        /**
+         * @return Position of the record in the submitted batch
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        /**
+         * @return Contact ID of the record, or null if it had none
+         */
+        public String getContactId() {
+            return contactId;
+        }
+
+        /**
+         * @return Why the record was rejected
+         */
+        public String getReason() {
+            return reason;
+        }
+
+        @Override
+        public String toString() {
+            return "Rejection{" +
+                    "index=" + index +
+                    ", contactId='" + contactId + '\'' +
+                    ", reason='" + reason + '\'' +
+                    '}';
+        }
+    }
+}
\ No newline at end of file
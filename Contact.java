@@ -1,13 +1,33 @@
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
 /**
  * Contact class represents a contact object with validation requirements
  * for a mobile application contact service.
  */
 public class Contact {
+    private static final AtomicReferenceFieldUpdater<Contact, byte[]> DATA =
+            AtomicReferenceFieldUpdater.newUpdater(Contact.class, byte[].class, "data");
+    // Layout of data: phone as a 40-bit number, coder, first and last name lengths, version,
+    // then the first name, last name and address characters, one byte each in LATIN1 or two in UTF16
+    private static final int PHONE_BYTES = 5;
+    private static final int CODER = 5;
+    private static final int FIRST_NAME_LENGTH = 6;
+    private static final int LAST_NAME_LENGTH = 7;
+    private static final int VERSION = 8;
+    private static final int HEADER = 12;
+    private static final byte LATIN1 = 0;
+    private static final byte UTF16 = 1;
+    // Text fields in packing order, for withText
+    private static final int FIRST_NAME = 0;
+    private static final int LAST_NAME = 1;
+    private static final int ADDRESS = 2;
+
     private final String contactId;  // Final to ensure immutability
-    private String firstName;
-    private String lastName;
-    private String phone;
-    private String address;
+    // All other fields packed into one immutable array instead of four Strings, cutting a
+    // contact's heap footprint by more than half. Setters swap in a new array atomically, so
+    // a single volatile read always sees one consistent version of every field.
+    private volatile byte[] data;
 
     /**
      * Constructor for Contact object
@@ -18,71 +38,415 @@ public class Contact {
      * @param address Address, cannot be null, max 30 characters
      */
     public Contact(String contactId, String firstName, String lastName, String phone, String address) {
-        // Validate and set contactId (immutable)
-        if (contactId == null || contactId.length() > 10) {
-            throw new IllegalArgumentException("Contact ID cannot be null and must be 10 characters or less");
-        }
+        // Validate every field in declaration order, reporting the first that fails
+        require(ContactValidator.isValidContactId(contactId), ContactValidator.INVALID_CONTACT_ID,
+                ContactValidator.CONTACT_ID_MESSAGE);
+        require(ContactValidator.isValidFirstName(firstName), ContactValidator.INVALID_FIRST_NAME,
+                ContactValidator.FIRST_NAME_MESSAGE);
+        require(ContactValidator.isValidLastName(lastName), ContactValidator.INVALID_LAST_NAME,
+                ContactValidator.LAST_NAME_MESSAGE);
+        require(ContactValidator.isValidPhone(phone), ContactValidator.INVALID_PHONE, ContactValidator.PHONE_MESSAGE);
+        require(ContactValidator.isValidAddress(address), ContactValidator.INVALID_ADDRESS,
+                ContactValidator.ADDRESS_MESSAGE);
         this.contactId = contactId;
+        this.data = pack(firstName, lastName, ContactRecordFormat.packPhone(phone), address);
+    }
 
-        // Set other fields using setters for validation
-        setFirstName(firstName);
-        setLastName(lastName);
-        setPhone(phone);
-        setAddress(address);
+    /**
+     * Copy constructor, used to take a stable copy of a contact other threads may update
+     * @param other Contact to copy
+     */
+    Contact(Contact other) {
+        this.contactId = other.contactId;
+        this.data = other.data;  // Immutable, so sharing it is a full copy
     }
 
-    // Getter methods
+    /**
+     * Constructor for fields already checked with ContactValidator, packed straight from
+     * the caller's character buffers so bulk imports build no String per field
+     * @param contactId Valid contact ID
+     * @param firstName Valid first name
+     * @param lastName Valid last name
+     * @param phone Valid phone number, packed by ContactRecordFormat.packPhone
+     * @param address Valid address
+     */
+    Contact(String contactId, CharSequence firstName, CharSequence lastName, long phone, CharSequence address) {
+        this.contactId = contactId;
+        this.data = pack(firstName, lastName, phone, address);
+    }
+
+    /**
+     * Constructor rebuilding a contact from a version captured with packedFields
+     * @param contactId ID of the contact
+     * @param data Packed fields, never modified afterwards
+     */
+    Contact(String contactId, byte[] data) {
+        this.contactId = contactId;
+        this.data = data;
+    }
+
+    /**
+     * @return Current version of the packed fields, which is never modified and can be kept
+     */
+    byte[] packedFields() {
+        return data;
+    }
+
+    // Getter methods; each decodes a fresh String from the packed fields
     public String getContactId() {
         return contactId;
     }
 
     public String getFirstName() {
-        return firstName;
+        return firstNameOf(data);
     }
 
     public String getLastName() {
-        return lastName;
+        return lastNameOf(data);
     }
 
     public String getPhone() {
-        return phone;
+        return ContactRecordFormat.unpackPhone(phoneOf(data));
     }
 
     public String getAddress() {
-        return address;
+        return addressOf(data);
+    }
+
+    /**
+     * Returns the version of the fields, which starts at 0 and goes up by one with every
+     * successful setter call or patch, wrapping to 0 after Integer.MAX_VALUE. Versions live
+     * only in memory; a contact restored from a snapshot file starts again at 0.
+     * @return Version of the fields read by the getters at the same instant
+     */
+    public int getVersion() {
+        return versionOf(data);
+    }
+
+    /**
+     * @return Phone number as packed by ContactRecordFormat.packPhone, without building a String
+     */
+    long getPackedPhone() {
+        return phoneOf(data);
     }
 
     // Setter methods with validation (contactId is not included as it's immutable)
+    // Each validates through the matching ContactValidator check, counting failures in any
+    // enabled ContactMetrics, then swaps in a copy of the packed fields with one compare-and-set
     public void setFirstName(String firstName) {
-        if (firstName == null || firstName.length() > 10) {
-            throw new IllegalArgumentException("First name cannot be null and must be 10 characters or less");
-        }
-        this.firstName = firstName;
+        require(ContactValidator.isValidFirstName(firstName), ContactValidator.INVALID_FIRST_NAME,
+                ContactValidator.FIRST_NAME_MESSAGE);
+        byte[] current;
+        do {
+            current = data;
+        } while (!DATA.compareAndSet(this, current, withText(current, FIRST_NAME, firstName)));
     }
 
     public void setLastName(String lastName) {
-        if (lastName == null || lastName.length() > 10) {
-            throw new IllegalArgumentException("Last name cannot be null and must be 10 characters or less");
-        }
-        this.lastName = lastName;
+        require(ContactValidator.isValidLastName(lastName), ContactValidator.INVALID_LAST_NAME,
+                ContactValidator.LAST_NAME_MESSAGE);
+        byte[] current;
+        do {
+            current = data;
+        } while (!DATA.compareAndSet(this, current, withText(current, LAST_NAME, lastName)));
     }
 
     public void setPhone(String phone) {
-        if (phone == null || phone.length() != 10 || !phone.matches("\\d{10}")) {
-            throw new IllegalArgumentException("Phone number cannot be null and must be exactly 10 digits");
-        }
-        this.phone = phone;
+        require(ContactValidator.isValidPhone(phone), ContactValidator.INVALID_PHONE, ContactValidator.PHONE_MESSAGE);
+        long packed = ContactRecordFormat.packPhone(phone);
+        byte[] current;
+        do {
+            current = data;
+        } while (!DATA.compareAndSet(this, current, withPhone(current, packed)));
     }
 
     public void setAddress(String address) {
-        if (address == null || address.length() > 30) {
-            throw new IllegalArgumentException("Address cannot be null and must be 30 characters or less");
+        require(ContactValidator.isValidAddress(address), ContactValidator.INVALID_ADDRESS,
+                ContactValidator.ADDRESS_MESSAGE);
+        byte[] current;
+        do {
+            current = data;
+        } while (!DATA.compareAndSet(this, current, withText(current, ADDRESS, address)));
+    }
+
+    /**
+     * Replaces every field a patch changes with one compare-and-set, so readers see all of
+     * the patch or none of it, and the version goes up by one however many fields change
+     * @param patch Validated new values
+     * @param expectedVersion Version the contact must have, or a negative number to skip the check
+     * @throws ContactVersionConflictException if the contact has another version
+     */
+    void applyPatch(ContactPatch patch, int expectedVersion) {
+        byte[] current;
+        byte[] patched;
+        do {
+            current = data;
+            int version = versionOf(current);
+            if (expectedVersion >= 0 && version != expectedVersion) {
+                throw new ContactVersionConflictException(contactId, expectedVersion, version);
+            }
+            String firstName = patch.get(ContactField.FIRST_NAME);
+            String lastName = patch.get(ContactField.LAST_NAME);
+            String phone = patch.get(ContactField.PHONE);
+            String address = patch.get(ContactField.ADDRESS);
+            patched = withVersion(pack(firstName != null ? firstName : firstNameOf(current),
+                    lastName != null ? lastName : lastNameOf(current),
+                    phone != null ? ContactRecordFormat.packPhone(phone) : phoneOf(current),
+                    address != null ? address : addressOf(current)), current);
+        } while (!DATA.compareAndSet(this, current, patched));
+    }
+
+    /**
+     * Sets the version of a contact no other thread has seen yet, such as one a store has
+     * just decoded from a record that does not hold the version
+     * @param version Version the contact had when it was stored
+     */
+    void restoreVersion(int version) {
+        putVersion(data, version);
+    }
+
+    /**
+     * Checks one field value, throwing as the matching setter would
+     * @param field Field the value is for
+     * @param value Value to check
+     * @throws IllegalArgumentException if the value is invalid for the field
+     */
+    static void requireValid(ContactField field, String value) {
+        switch (field) {
+            case FIRST_NAME:
+                require(ContactValidator.isValidFirstName(value), ContactValidator.INVALID_FIRST_NAME,
+                        ContactValidator.FIRST_NAME_MESSAGE);
+                break;
+            case LAST_NAME:
+                require(ContactValidator.isValidLastName(value), ContactValidator.INVALID_LAST_NAME,
+                        ContactValidator.LAST_NAME_MESSAGE);
+                break;
+            case PHONE:
+                require(ContactValidator.isValidPhone(value), ContactValidator.INVALID_PHONE,
+                        ContactValidator.PHONE_MESSAGE);
+                break;
+            default:
+                require(ContactValidator.isValidAddress(value), ContactValidator.INVALID_ADDRESS,
+                        ContactValidator.ADDRESS_MESSAGE);
+        }
+    }
+
+    private static void require(boolean valid, int rule, String message) {
+        if (!valid) {
+            ContactMetrics.recordRejection(rule);
+            throw new IllegalArgumentException(message);
+        }
+    }
+
+    /**
+     * Copies the first name, last name and address of a packed version into a buffer, one
+     * after another, for writers that encode characters themselves instead of decoding a
+     * String per field; firstNameLength and lastNameLength split the copied text
+     * @param d Packed fields from packedFields
+     * @param into Buffer with room for every text field at its longest from offset
+     * @param offset Position in into of the first character
+     * @return Number of characters copied
+     */
+    static int copyText(byte[] d, char[] into, int offset) {
+        if (d[CODER] == LATIN1) {
+            int chars = d.length - HEADER;
+            for (int i = 0; i < chars; i++) {
+                into[offset + i] = (char) (d[HEADER + i] & 0xFF);
+            }
+            return chars;
+        }
+        int chars = (d.length - HEADER) / 2;
+        for (int i = 0, at = HEADER; i < chars; i++, at += 2) {
+            into[offset + i] = (char) (((d[at] & 0xFF) << 8) | (d[at + 1] & 0xFF));
+        }
+        return chars;
+    }
+
+    static int firstNameLength(byte[] d) {
+        return d[FIRST_NAME_LENGTH];
+    }
+
+    static int lastNameLength(byte[] d) {
+        return d[LAST_NAME_LENGTH];
+    }
+
+    static int addressLength(byte[] d) {
+        return (d.length - HEADER) / width(d) - d[FIRST_NAME_LENGTH] - d[LAST_NAME_LENGTH];
+    }
+
+    /**
+     * Locates a name in packed fields as a byte range, for callers that hash and compare
+     * names without decoding a String per contact. Equal names have equal bytes only when
+     * both versions have the same width.
+     * @param d Packed fields from packedFields
+     * @param lastName Whether to locate the last name rather than the first
+     * @return Offset of the name's first byte; the name spans its length times width(d) bytes
+     */
+    static int nameOffset(byte[] d, boolean lastName) {
+        return HEADER + (lastName ? d[FIRST_NAME_LENGTH] : 0) * width(d);
+    }
+
+    static String nameOf(byte[] d, boolean lastName) {
+        return lastName ? lastNameOf(d) : firstNameOf(d);
+    }
+
+    private static String firstNameOf(byte[] d) {
+        return decode(d, 0, d[FIRST_NAME_LENGTH]);
+    }
+
+    private static String lastNameOf(byte[] d) {
+        return decode(d, d[FIRST_NAME_LENGTH], d[LAST_NAME_LENGTH]);
+    }
+
+    private static String addressOf(byte[] d) {
+        int names = d[FIRST_NAME_LENGTH] + d[LAST_NAME_LENGTH];
+        return decode(d, names, (d.length - HEADER) / width(d) - names);
+    }
+
+    private static int versionOf(byte[] d) {
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            value = (value << 8) | (d[VERSION + i] & 0xFF);
+        }
+        return value;
+    }
+
+    /**
+     * Stamps a new copy of packed fields with the version after that of the copy it replaces
+     * @return The new copy
+     */
+    private static byte[] withVersion(byte[] updated, byte[] previous) {
+        putVersion(updated, (versionOf(previous) + 1) & Integer.MAX_VALUE);
+        return updated;
+    }
+
+    private static void putVersion(byte[] d, int version) {
+        for (int i = 3; i >= 0; i--) {
+            d[VERSION + i] = (byte) version;
+            version >>>= 8;
+        }
+    }
+
+    static long phoneOf(byte[] d) {
+        long value = 0;
+        for (int i = 0; i < PHONE_BYTES; i++) {
+            value = (value << 8) | (d[i] & 0xFF);
+        }
+        return value;
+    }
+
+    /**
+     * Copies packed fields with one text field replaced, splicing bytes rather than
+     * decoding the others unless the value needs wider characters than the array has
+     */
+    private static byte[] withText(byte[] d, int field, String value) {
+        int width = width(d);
+        if (width == 1 && !isLatin1(value)) {
+            String first = field == FIRST_NAME ? value : firstNameOf(d);
+            String last = field == LAST_NAME ? value : lastNameOf(d);
+            String address = field == ADDRESS ? value : addressOf(d);
+            return withVersion(pack(first, last, phoneOf(d), address), d);
+        }
+        // Character offsets of the replaced field within the text area
+        int from = field == FIRST_NAME ? 0 : field == LAST_NAME ? d[FIRST_NAME_LENGTH]
+                : d[FIRST_NAME_LENGTH] + d[LAST_NAME_LENGTH];
+        int to = field == FIRST_NAME ? d[FIRST_NAME_LENGTH] : field == LAST_NAME
+                ? d[FIRST_NAME_LENGTH] + d[LAST_NAME_LENGTH] : (d.length - HEADER) / width;
+        byte[] updated = new byte[d.length + (value.length() - (to - from)) * width];
+        System.arraycopy(d, 0, updated, 0, HEADER + from * width);
+        if (field == FIRST_NAME) {
+            updated[FIRST_NAME_LENGTH] = (byte) value.length();
+        } else if (field == LAST_NAME) {
+            updated[LAST_NAME_LENGTH] = (byte) value.length();
+        }
+        int at = put(updated, HEADER + from * width, value, width == 1);
+        System.arraycopy(d, HEADER + to * width, updated, at, d.length - HEADER - to * width);
+        return withVersion(updated, d);
+    }
+
+    private static byte[] withPhone(byte[] d, long phone) {
+        byte[] updated = d.clone();
+        for (int i = PHONE_BYTES - 1; i >= 0; i--) {
+            updated[i] = (byte) phone;
+            phone >>>= 8;
+        }
+        return withVersion(updated, d);
+    }
+
+    /**
+     * @return Bytes per character of the text fields: 1 for Latin-1, 2 for UTF-16
+     */
+    static int width(byte[] d) {
+        return d[CODER] == LATIN1 ? 1 : 2;
+    }
+
+    /**
+     * Decodes chars characters starting at character position from of the text area
+     */
+    private static String decode(byte[] d, int from, int chars) {
+        if (d[CODER] == LATIN1) {
+            return new String(d, HEADER + from, chars, StandardCharsets.ISO_8859_1);
+        }
+        char[] text = new char[chars];
+        for (int i = 0, at = HEADER + from * 2; i < chars; i++, at += 2) {
+            text[i] = (char) (((d[at] & 0xFF) << 8) | (d[at + 1] & 0xFF));
+        }
+        return new String(text);
+    }
+
+    /**
+     * Packs validated fields, one byte per character unless some character needs two
+     */
+    private static byte[] pack(CharSequence firstName, CharSequence lastName, long phone, CharSequence address) {
+        boolean latin1 = isLatin1(firstName) && isLatin1(lastName) && isLatin1(address);
+        int width = latin1 ? 1 : 2;
+        byte[] d = new byte[HEADER + width * (firstName.length() + lastName.length() + address.length())];
+        for (int i = PHONE_BYTES - 1; i >= 0; i--) {
+            d[i] = (byte) phone;
+            phone >>>= 8;
+        }
+        d[CODER] = latin1 ? LATIN1 : UTF16;
+        d[FIRST_NAME_LENGTH] = (byte) firstName.length();
+        d[LAST_NAME_LENGTH] = (byte) lastName.length();
+        int at = put(d, HEADER, firstName, latin1);
+        at = put(d, at, lastName, latin1);
+        put(d, at, address, latin1);
+        return d;
+    }
+
+    /**
+     * Writes text at a byte offset, one or two bytes per character
+     * @return Offset just past the text
+     */
+    private static int put(byte[] d, int at, CharSequence text, boolean latin1) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (latin1) {
+                d[at++] = (byte) c;
+            } else {
+                d[at++] = (byte) (c >>> 8);
+                d[at++] = (byte) c;
+            }
+        }
+        return at;
+    }
+
+    private static boolean isLatin1(CharSequence text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) > 0xFF) {
+                return false;
+            }
         }
-        this.address = address;
+        return true;
     }
 
     @Override
     public String toString() {
+        byte[] d = data;
+        String firstName = firstNameOf(d);
+        String lastName = lastNameOf(d);
+        String phone = ContactRecordFormat.unpackPhone(phoneOf(d));
+        String address = addressOf(d);
         return "Contact{" +
                 "contactId='" + contactId + '\'' +
                 ", firstName='" + firstName + '\'' +
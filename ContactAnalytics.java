@@ -0,0 +1,284 @@
+import java.util.Arrays;
+
+/**
+ * ContactAnalytics class computes aggregate reports over every contact of a ContactService:
+ * contacts per area code, address length histograms and name frequency tables.
+ *
+ * Each report is one parallel reduction on the common fork-join pool. Every leaf task
+ * counts its share of the contacts into its own primitive array, or for names an
+ * open-addressing table of int counts, and the results are summed pairwise as the tasks
+ * join, so no counter is shared or boxed. Phones, address lengths and names are read from
+ * the packed fields; a name is decoded to a String once per distinct name, not per contact.
+ *
+ * A report reads each contact once, as it is at that moment; changes made during the
+ * pass may or may not be counted. For reports that are cheap to read at any time, see
+ * ContactService.enableStatistics.
+ */
+public final class ContactAnalytics {
+    /**
+     * Number of area codes, 000 to 999; the area code is the first 3 digits of the phone
+     */
+    public static final int AREA_CODES = 1000;
+
+    private static final long AREA_CODE_DIVISOR = 10_000_000L;  // 10^(phone digits - 3)
+
+    private ContactAnalytics() {
+    }
+
+    /**
+     * Counts contacts per area code
+     * @param service Service whose contacts to count
+     * @return Count of contacts indexed by area code, AREA_CODES long
+     * @throws IllegalArgumentException if service is null
+     */
+    public static int[] countByAreaCode(ContactService service) {
+        return require(service).parallelContacts().collect(() -> new int[AREA_CODES],
+                (counts, contact) -> counts[areaCodeOf(contact.getPackedPhone())]++, ContactAnalytics::addInto);
+    }
+
+    /**
+     * Counts contacts per address length
+     * @param service Service whose contacts to count
+     * @return Count of contacts indexed by address length in chars, MAX_ADDRESS_LENGTH + 1 long
+     * @throws IllegalArgumentException if service is null
+     */
+    public static int[] countByAddressLength(ContactService service) {
+        return require(service).parallelContacts().collect(() -> new int[ContactValidator.MAX_ADDRESS_LENGTH + 1],
+                (counts, contact) -> counts[Contact.addressLength(contact.packedFields())]++, ContactAnalytics::addInto);
+    }
+
+    /**
+     * Counts how many contacts have each first name, matching case exactly
+     * @param service Service whose contacts to count
+     * @return First names ranked by frequency
+     * @throws IllegalArgumentException if service is null
+     */
+    public static FrequencyTable firstNameFrequencies(ContactService service) {
+        return frequencies(service, false);
+    }
+
+    /**
+     * Counts how many contacts have each last name, matching case exactly
+     * @param service Service whose contacts to count
+     * @return Last names ranked by frequency
+     * @throws IllegalArgumentException if service is null
+     */
+    public static FrequencyTable lastNameFrequencies(ContactService service) {
+        return frequencies(service, true);
+    }
+
+    /**
+     * @param packedPhone Phone as packed by ContactRecordFormat.packPhone
+     * @return Its first 3 digits as a number
+     */
+    static int areaCodeOf(long packedPhone) {
+        return (int) (packedPhone / AREA_CODE_DIVISOR);
+    }
+
+    private static FrequencyTable frequencies(ContactService service, boolean lastName) {
+        return require(service).parallelContacts()
+                .collect(() -> new NameCounts(lastName), (counts, contact) -> counts.add(contact.packedFields(), 1),
+                        NameCounts::addAll)
+                .toTable();
+    }
+
+    private static void addInto(int[] into, int[] counts) {
+        for (int i = 0; i < into.length; i++) {
+            into[i] += counts[i];
+        }
+    }
+
+    private static ContactService require(ContactService service) {
+        if (service == null) {
+            throw new IllegalArgumentException("Service cannot be null");
+        }
+        return service;
+    }
+
+    /**
+     * NameCounts class counts first or last names by their bytes in packed fields, in an
+     * open-addressing table with linear probing that keeps the packed fields of the first
+     * contact seen with each name as its key. Not thread-safe: each leaf task of a
+     * reduction fills its own.
+     */
+    private static final class NameCounts {
+        private static final int INITIAL_CAPACITY = 64;
+
+        private final boolean lastName;
+        private byte[][] keys = new byte[INITIAL_CAPACITY][];
+        private int[] hashes = new int[INITIAL_CAPACITY];
+        private int[] counts = new int[INITIAL_CAPACITY];
+        private int size;
+
+        NameCounts(boolean lastName) {
+            this.lastName = lastName;
+        }
+
+        /**
+         * @param d Packed fields of a contact with the name
+         * @param count Times the name was seen
+         */
+        void add(byte[] d, int count) {
+            if ((size + 1) * 4L > keys.length * 3L) {
+                resize(keys.length * 2);
+            }
+            int hash = hash(d);
+            int mask = keys.length - 1;
+            int slot = mix(hash) & mask;
+            while (keys[slot] != null && (hashes[slot] != hash || !sameName(keys[slot], d))) {
+                slot = (slot + 1) & mask;
+            }
+            if (keys[slot] == null) {
+                keys[slot] = d;
+                hashes[slot] = hash;
+                size++;
+            }
+            counts[slot] += count;
+        }
+
+        /**
+         * @param other Counts to add to these
+         */
+        void addAll(NameCounts other) {
+            for (int slot = 0; slot < other.keys.length; slot++) {
+                if (other.keys[slot] != null) {
+                    add(other.keys[slot], other.counts[slot]);
+                }
+            }
+        }
+
+        /**
+         * Decodes each distinct name once, merging any name seen at both widths
+         * @return Table of every name counted
+         */
+        FrequencyTable toTable() {
+            ValueCounts names = new ValueCounts();
+            for (int slot = 0; slot < keys.length; slot++) {
+                if (keys[slot] != null) {
+                    names.add(Contact.nameOf(keys[slot], lastName), counts[slot]);
+                }
+            }
+            return names.toTable();
+        }
+
+        private void resize(int capacity) {
+            byte[][] oldKeys = keys;
+            int[] oldHashes = hashes;
+            int[] oldCounts = counts;
+            keys = new byte[capacity][];
+            hashes = new int[capacity];
+            counts = new int[capacity];
+            int mask = capacity - 1;
+            for (int old = 0; old < oldKeys.length; old++) {
+                if (oldKeys[old] != null) {
+                    int slot = mix(oldHashes[old]) & mask;
+                    while (keys[slot] != null) {
+                        slot = (slot + 1) & mask;
+                    }
+                    keys[slot] = oldKeys[old];
+                    hashes[slot] = oldHashes[old];
+                    counts[slot] = oldCounts[old];
+                }
+            }
+        }
+
+        private int length(byte[] d) {
+            return (lastName ? Contact.lastNameLength(d) : Contact.firstNameLength(d)) * Contact.width(d);
+        }
+
+        private int hash(byte[] d) {
+            int from = Contact.nameOffset(d, lastName);
+            int h = Contact.width(d);
+            for (int i = from, end = from + length(d); i < end; i++) {
+                h = 31 * h + d[i];
+            }
+            return h;
+        }
+
+        private boolean sameName(byte[] a, byte[] b) {
+            int from = Contact.nameOffset(a, lastName);
+            int other = Contact.nameOffset(b, lastName);
+            int length = length(a);
+            return Contact.width(a) == Contact.width(b) && length == length(b)
+                    && Arrays.equals(a, from, from + length, b, other, other + length);
+        }
+    }
+
+    /**
+     * ValueCounts class counts occurrences of String values in an open-addressing table
+     * with linear probing, keys and counts in parallel arrays
+     */
+    private static final class ValueCounts {
+        private static final int INITIAL_CAPACITY = 64;
+
+        private String[] keys = new String[INITIAL_CAPACITY];
+        private int[] counts = new int[INITIAL_CAPACITY];
+        private int size;
+
+        /**
+         * @param value Value seen
+         * @param count Times it was seen
+         */
+        void add(String value, int count) {
+            if ((size + 1) * 4L > keys.length * 3L) {
+                resize(keys.length * 2);
+            }
+            int mask = keys.length - 1;
+            int slot = slotFor(value, mask);
+            while (keys[slot] != null && !keys[slot].equals(value)) {
+                slot = (slot + 1) & mask;
+            }
+            if (keys[slot] == null) {
+                keys[slot] = value;
+                size++;
+            }
+            counts[slot] += count;
+        }
+
+        /**
+         * @return Table of every value counted
+         */
+        FrequencyTable toTable() {
+            String[] values = new String[size];
+            int n = 0;
+            for (String key : keys) {
+                if (key != null) {
+                    values[n++] = key;
+                }
+            }
+            Arrays.sort(values);
+            int[] sorted = new int[size];
+            int mask = keys.length - 1;
+            for (int i = 0; i < size; i++) {
+                int slot = slotFor(values[i], mask);
+                while (!keys[slot].equals(values[i])) {
+                    slot = (slot + 1) & mask;
+                }
+                sorted[i] = counts[slot];
+            }
+            return new FrequencyTable(values, sorted);
+        }
+
+        private void resize(int capacity) {
+            String[] oldKeys = keys;
+            int[] oldCounts = counts;
+            keys = new String[capacity];
+            counts = new int[capacity];
+            size = 0;
+            for (int slot = 0; slot < oldKeys.length; slot++) {
+                if (oldKeys[slot] != null) {
+                    add(oldKeys[slot], oldCounts[slot]);
+                }
+            }
+        }
+
+        private static int slotFor(String value, int mask) {
+            return mix(value.hashCode()) & mask;
+        }
+    }
+
+    private static int mix(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,136 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Unit tests for ContactAnalytics, FrequencyTable and ContactStatistics classes
+ * Tests the parallel reports against a plain count, and that incrementally kept
+ * statistics agree with a fresh report after every kind of mutation
+ */
+public class ContactAnalyticsTest {
+    // Report tests
+
+    @Test
+    @DisplayName("Parallel reports should match counting every contact one by one")
+    public void testReports() {
+        for (ContactService service : new ContactService[] {new ContactService(), new ContactService(OffHeapContactStore.allocate())}) {
+            List<Contact> contacts = generate(20_000, new Random(3));
+            service.addContacts(contacts);
+            int[] areaCodes = new int[ContactAnalytics.AREA_CODES];
+            int[] lengths = new int[ContactValidator.MAX_ADDRESS_LENGTH + 1];
+            int smiths = 0;
+            for (Contact contact : contacts) {
+                areaCodes[Integer.parseInt(contact.getPhone().substring(0, 3))]++;
+                lengths[contact.getAddress().length()]++;
+                smiths += contact.getLastName().equals("Smith") ? 1 : 0;
+            }
+
+            assertArrayEquals(areaCodes, ContactAnalytics.countByAreaCode(service));
+            assertArrayEquals(lengths, ContactAnalytics.countByAddressLength(service));
+            FrequencyTable lastNames = ContactAnalytics.lastNameFrequencies(service);
+            assertEquals(contacts.size(), lastNames.getTotal());
+            assertEquals(smiths, lastNames.countOf("Smith"));
+            assertEquals(0, lastNames.countOf("smith"));
+            for (int rank = 1; rank < lastNames.size(); rank++) {
+                assertTrue(lastNames.getCount(rank - 1) > lastNames.getCount(rank)
+                        || (lastNames.getCount(rank - 1) == lastNames.getCount(rank)
+                                && lastNames.getValue(rank - 1).compareTo(lastNames.getValue(rank)) < 0));
+            }
+            assertEquals(lastNames.getCount(0), lastNames.countOf(lastNames.getValue(0)));
+        }
+    }
+
+    @Test
+    @DisplayName("Frequency tables should rank values by count, then name")
+    public void testFrequencyTable() {
+        ContactService service = new ContactService();
+        String[] names = {"Bo", "Al", "Cy", "Al", "Bo", "Al", "Zed"};
+        for (int i = 0; i < names.length; i++) {
+            service.addContact("c" + i, names[i], "Doe", "5551234567", "");
+        }
+
+        FrequencyTable table = ContactAnalytics.firstNameFrequencies(service);
+        assertEquals(4, table.size());
+        assertEquals("Al", table.getValue(0));
+        assertEquals(3, table.getCount(0));
+        assertEquals("Bo", table.getValue(1));
+        assertEquals("Cy", table.getValue(2));
+        assertEquals("Zed", table.getValue(3));
+        assertEquals("FrequencyTable{4 values, Al=3, Bo=2, Cy=1, Zed=1}", table.toString());
+        assertThrows(IllegalArgumentException.class, () -> table.getValue(4));
+        assertThrows(IllegalArgumentException.class, () -> table.countOf(null));
+        assertEquals(0, ContactAnalytics.firstNameFrequencies(new ContactService()).size());
+        assertThrows(IllegalArgumentException.class, () -> ContactAnalytics.countByAreaCode(null));
+    }
+
+    // Statistics tests
+
+    @Test
+    @DisplayName("Statistics should agree with fresh reports after adds, deletes, updates and patches")
+    public void testStatisticsFollowMutations() {
+        Random random = new Random(11);
+        ContactService service = new ContactService();
+        service.addContacts(generate(2_000, random));
+        assertNull(service.getStatistics());
+        ContactStatistics statistics = service.enableStatistics();
+        assertSame(statistics, service.enableStatistics());
+
+        for (int i = 0; i < 3_000; i++) {
+            String id = "c" + random.nextInt(2_500);
+            if (!service.contactExists(id)) {
+                service.addContact(new Contact(id, "New", "Smith", "6035550000", "1 Elm St"));
+                continue;
+            }
+            switch (random.nextInt(6)) {
+                case 0:
+                    service.deleteContact(id);
+                    break;
+                case 1:
+                    service.updateFirstName(id, random.nextBoolean() ? "Ann" : "Bob");
+                    break;
+                case 2:
+                    service.updateLastName(id, random.nextBoolean() ? "Smith" : "Jones");
+                    break;
+                case 3:
+                    service.updatePhone(id, String.format("%03d5550000", random.nextInt(1000)));
+                    break;
+                case 4:
+                    service.updateAddress(id, "x".repeat(random.nextInt(31)));
+                    break;
+                default:
+                    service.patchContact(id, new ContactPatch("Cy", "Smith", "2125550000", "9 Oak Ave"));
+            }
+        }
+
+        assertEquals(service.getContactCount(), statistics.getContactCount());
+        assertArrayEquals(ContactAnalytics.countByAreaCode(service), statistics.getAreaCodeCounts());
+        assertArrayEquals(ContactAnalytics.countByAddressLength(service), statistics.getAddressLengthCounts());
+        FrequencyTable firstNames = ContactAnalytics.firstNameFrequencies(service);
+        FrequencyTable lastNames = ContactAnalytics.lastNameFrequencies(service);
+        for (String name : new String[] {"Ann", "Bob", "Cy", "New", "First7"}) {
+            assertEquals(firstNames.countOf(name), statistics.getFirstNameCount(name), name);
+        }
+        for (String name : new String[] {"Smith", "Jones", "Last3"}) {
+            assertEquals(lastNames.countOf(name), statistics.getLastNameCount(name), name);
+        }
+        assertEquals(ContactAnalytics.countByAreaCode(service)[212], statistics.getAreaCodeCount(212));
+        assertThrows(IllegalArgumentException.class, () -> statistics.getAreaCodeCount(1000));
+        assertThrows(IllegalArgumentException.class, () -> statistics.getLastNameCount(null));
+    }
+
+    /**
+     * Generates contacts with IDs c0 on, a few hundred distinct names and random area codes
+     */
+    private static List<Contact> generate(int count, Random random) {
+        List<Contact> contacts = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            contacts.add(new Contact("c" + i, "First" + random.nextInt(300), random.nextInt(10) == 0 ? "Smith" : "Last" + random.nextInt(100),
+                    String.format("%03d%07d", random.nextInt(1000), random.nextInt(10_000_000)), random.nextInt(10_000) + " Main St"));
+        }
+        return contacts;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,100 @@
+/**
+ * ContactChange class is one event in a ContactChangeFeed: a contact added, deleted or
+ * with one field updated.
+ *
+ * Events are preallocated slots of the feed's ring buffer and are reused once every
+ * subscription has moved past them, so an event is only valid during the handler call
+ * that receives it. Handlers that keep anything must copy it out, for example with
+ * getContact.
+ */
+public final class ContactChange {
+    /**
+     * Type enum tells what happened to the contact
+     */
+    public enum Type {
+        ADDED,
+        DELETED,
+        UPDATED
+    }
+
+    long sequence;
+    Type type;
+    String contactId;
+    ContactField field;  // Null unless UPDATED
+    String oldValue;  // Null unless UPDATED
+    byte[] data;  // Packed fields after the change, or last fields for DELETED
+
+    ContactChange() {
+    }
+
+    /**
+     * Fills the slot; only the publishing thread touches it until the sequence is published
+     */
+    void set(long sequence, Type type, Contact contact, ContactField field, String oldValue) {
+        this.sequence = sequence;
+        this.type = type;
+        this.contactId = contact.getContactId();
+        this.field = field;
+        this.oldValue = oldValue;
+        this.data = contact.packedFields();
+    }
+
+    /**
+     * @return Position of the event in the feed, one higher than the event before it
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * @return What happened to the contact
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return ID of the contact
+     */
+    public String getContactId() {
+        return contactId;
+    }
+
+    /**
+     * @return Field that changed, or null unless the type is UPDATED
+     */
+    public ContactField getField() {
+        return field;
+    }
+
+    /**
+     * @return Value of the field before the update, or null unless the type is UPDATED
+     */
+    public String getOldValue() {
+        return oldValue;
+    }
+
+    /**
+     * @return Value of the field after the update, or null unless the type is UPDATED
+     */
+    public String getNewValue() {
+        return field == null ? null : field.get(new Contact(contactId, data));
+    }
+
+    /**
+     * @return New detached contact holding every field after the change, or the last fields of a deleted contact
+     */
+    public Contact getContact() {
+        return new Contact(contactId, data);
+    }
+
+    @Override
+    public String toString() {
+        return "ContactChange{" +
+                "sequence=" + sequence +
+                ", type=" + type +
+                ", contactId='" + contactId + '\'' +
+                (field == null ? "" : ", field=" + field + ", oldValue='" + oldValue + '\'') +
+                '}';
+    }
+}
\ No newline at end of file
@@ -0,0 +1,307 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * ContactChangeFeed class publishes an event for every add, delete and field update made
+ * through a ContactService, for caches and search systems that follow the service instead
+ * of polling it.
+ *
+ * Events live in a preallocated ring buffer of ContactChange slots, in the style of the
+ * LMAX Disruptor. A mutation claims the next sequence number from the cursor, fills the
+ * slot that number maps to and then publishes it by recording the slot's round in an
+ * availability array; nothing is allocated per event. Mutations run under their contact's
+ * stripe lock, so the events of one contact are in the order they were applied.
+ *
+ * Each Subscription has its own sequence, the last event it consumed, and drains events
+ * in batches with poll. Publishing an event that would overwrite one a subscription has
+ * not consumed yet follows the feed's SlowConsumerPolicy: wait for it, or disconnect it.
+ * The cursor and every subscription sequence are padded onto separate cache lines.
+ */
+public final class ContactChangeFeed implements AutoCloseable {
+    private final ContactService service;
+    private final SlowConsumerPolicy policy;
+    private final ContactChange[] ring;
+    private final int mask;
+    private final int indexShift;
+    private final AtomicIntegerArray available;  // Round of the sequence last published in each slot
+    private final Sequence cursor = new Sequence(-1);  // Highest claimed sequence
+    private final Sequence gatingCache = new Sequence(-1);  // Slowest subscription when last checked
+    private final ContactListener listener = new ContactListener() {
+        @Override
+        public void contactAdded(Contact contact) {
+            publish(ContactChange.Type.ADDED, contact, null, null);
+        }
+
+        @Override
+        public void contactDeleted(Contact contact) {
+            publish(ContactChange.Type.DELETED, contact, null, null);
+        }
+
+        @Override
+        public void contactUpdated(Contact contact, ContactField field, String oldValue) {
+            publish(ContactChange.Type.UPDATED, contact, field, oldValue);
+        }
+    };
+    private volatile Subscription[] subscriptions = new Subscription[0];  // Replaced under this
+    private volatile boolean closed;
+
+    /**
+     * Constructor starts publishing every later mutation of a service
+     * @param service Service to follow
+     * @param capacity Number of event slots, a power of two; bounds how far a subscription can lag
+     * @param policy What to do when the slowest subscription lags by the whole capacity
+     * @throws IllegalArgumentException if service or policy is null or capacity is not a power of two
+     */
+    public ContactChangeFeed(ContactService service, int capacity, SlowConsumerPolicy policy) {
+        if (service == null) {
+            throw new IllegalArgumentException("Service cannot be null");
+        }
+        if (policy == null) {
+            throw new IllegalArgumentException("Slow consumer policy cannot be null");
+        }
+        if (capacity < 1 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two");
+        }
+        this.service = service;
+        this.policy = policy;
+        this.ring = new ContactChange[capacity];
+        for (int i = 0; i < capacity; i++) {
+            ring[i] = new ContactChange();
+        }
+        this.mask = capacity - 1;
+        this.indexShift = Integer.numberOfTrailingZeros(capacity);
+        this.available = new AtomicIntegerArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            available.set(i, -1);
+        }
+        service.addListener(listener, false);
+    }
+
+    /**
+     * Subscribes to every event published from now on
+     * @return New subscription positioned after the latest event
+     * @throws IllegalStateException if the feed is closed
+     */
+    public synchronized Subscription subscribe() {
+        if (closed) {
+            throw new IllegalStateException("Change feed is closed");
+        }
+        Subscription subscription = new Subscription(cursor.get());
+        Subscription[] current = subscriptions;
+        Subscription[] grown = Arrays.copyOf(current, current.length + 1);
+        grown[current.length] = subscription;
+        subscriptions = grown;
+        // Move past anything claimed before publishers could see the new subscription
+        subscription.sequence.set(cursor.get());
+        return subscription;
+    }
+
+    /**
+     * @return Sequence of the latest claimed event, -1 before the first
+     */
+    public long getCursor() {
+        return cursor.get();
+    }
+
+    /**
+     * @return Number of event slots
+     */
+    public int getCapacity() {
+        return ring.length;
+    }
+
+    /**
+     * Stops publishing events; subscriptions can still drain those already published
+     * A mutation waiting for a slow subscription under BLOCK stops waiting, and its event
+     * is dropped rather than overwriting one not yet consumed.
+     */
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;  // Before removeListener, which needs the stripes waiting writers hold
+            service.removeListener(listener);
+        }
+    }
+
+    private void publish(ContactChange.Type type, Contact contact, ContactField field, String oldValue) {
+        long sequence = cursor.incrementAndGet();
+        long wrapPoint = sequence - ring.length;
+        if (wrapPoint > gatingCache.get() && !awaitCapacity(wrapPoint)) {
+            return;  // Closed while waiting
+        }
+        int index = (int) sequence & mask;
+        ring[index].set(sequence, type, contact, field, oldValue);
+        available.set(index, (int) (sequence >>> indexShift));  // Volatile write publishes the slot
+    }
+
+    /**
+     * Waits until every subscription has consumed the event at wrapPoint, or disconnects
+     * those that have not, depending on the policy
+     * @return false if the feed was closed before the slot was free
+     */
+    private boolean awaitCapacity(long wrapPoint) {
+        while (true) {
+            long slowest = Long.MAX_VALUE;
+            for (Subscription subscription : subscriptions) {
+                long consumed = subscription.sequence.get();
+                if (consumed < wrapPoint && policy == SlowConsumerPolicy.DISCONNECT) {
+                    subscription.disconnect();
+                } else {
+                    slowest = Math.min(slowest, consumed);
+                }
+            }
+            if (slowest >= wrapPoint) {
+                gatingCache.set(slowest == Long.MAX_VALUE ? wrapPoint : slowest);
+                return true;
+            }
+            if (closed) {
+                return false;
+            }
+            LockSupport.parkNanos(1_000);
+        }
+    }
+
+    private synchronized void remove(Subscription subscription) {
+        Subscription[] current = subscriptions;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == subscription) {
+                Subscription[] shrunk = new Subscription[current.length - 1];
+                System.arraycopy(current, 0, shrunk, 0, i);
+                System.arraycopy(current, i + 1, shrunk, i, current.length - i - 1);
+                subscriptions = shrunk;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Handler interface receives events drained by Subscription.poll
+     */
+    @FunctionalInterface
+    public interface Handler {
+        /**
+         * @param change Event, valid only until this call returns
+         */
+        void onChange(ContactChange change);
+    }
+
+    /**
+     * Subscription class is one consumer's cursor into the feed
+     */
+    public final class Subscription implements AutoCloseable {
+        private final Sequence sequence;  // Last consumed event
+        private volatile boolean disconnected;
+        private volatile boolean closed;
+
+        private Subscription(long start) {
+            this.sequence = new Sequence(start);
+        }
+
+        /**
+         * Passes every published event not yet consumed, up to maxEvents, to the handler
+         * in sequence order. If the handler throws, the events before the failing one
+         * count as consumed.
+         * @param handler Receives each event
+         * @param maxEvents Most events to drain in this call
+         * @return Number of events consumed, 0 if none were waiting
+         * @throws IllegalArgumentException if handler is null or maxEvents is less than 1
+         * @throws IllegalStateException if the subscription is closed or was disconnected
+         *         for lagging; events handled in that call may have been overwritten
+         */
+        public int poll(Handler handler, int maxEvents) {
+            if (handler == null) {
+                throw new IllegalArgumentException("Handler cannot be null");
+            }
+            if (maxEvents < 1) {
+                throw new IllegalArgumentException("Max events must be at least 1");
+            }
+            checkConnected();
+            long next = sequence.get() + 1;
+            long limit = Math.min(cursor.get(), next + maxEvents - 1);
+            long last = next - 1;
+            while (last < limit && available.get((int) (last + 1) & mask) == (int) ((last + 1) >>> indexShift)) {
+                last++;
+            }
+            long consumed = next - 1;
+            try {
+                for (long s = next; s <= last; s++) {
+                    handler.onChange(ring[(int) s & mask]);
+                    consumed = s;
+                }
+            } finally {
+                checkConnected();
+                sequence.set(consumed);  // Frees the slots for publishers
+            }
+            return (int) (consumed - next + 1);
+        }
+
+        /**
+         * @return Number of events claimed but not yet consumed by this subscription
+         */
+        public long getLag() {
+            return cursor.get() - sequence.get();
+        }
+
+        /**
+         * @return true if the feed disconnected this subscription for lagging by its whole capacity
+         */
+        public boolean isDisconnected() {
+            return disconnected;
+        }
+
+        /**
+         * Stops this subscription holding back publishers
+         */
+        @Override
+        public void close() {
+            closed = true;
+            remove(this);
+        }
+
+        private void disconnect() {
+            disconnected = true;
+            remove(this);
+        }
+
+        private void checkConnected() {
+            if (closed) {
+                throw new IllegalStateException("Subscription is closed");
+            }
+            if (disconnected) {
+                throw new IllegalStateException("Subscription fell " + ring.length + " events behind and was disconnected");
+            }
+        }
+    }
+
+    /**
+     * Sequence class is a counter padded with unused longs on both sides, so counters
+     * written by different threads never share a cache line
+     */
+    @SuppressWarnings("unused")
+    private static final class Sequence {
+        private static final AtomicLongFieldUpdater<Sequence> VALUE =
+                AtomicLongFieldUpdater.newUpdater(Sequence.class, "value");
+
+        private long p1, p2, p3, p4, p5, p6, p7;
+        private volatile long value;
+        private long q1, q2, q3, q4, q5, q6, q7;
+
+        Sequence(long initial) {
+            value = initial;
+        }
+
+        long get() {
+            return value;
+        }
+
+        void set(long newValue) {
+            VALUE.lazySet(this, newValue);  // Release store; readers only need ordering, not a fence
+        }
+
+        long incrementAndGet() {
+            return VALUE.incrementAndGet(this);
+        }
+    }
+}
\ No newline at end of file
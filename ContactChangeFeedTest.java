@@ -0,0 +1,220 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit tests for ContactChangeFeed and ContactChange classes
+ * Tests the events published for each mutation, independent subscriptions with batch
+ * draining, and both slow consumer policies
+ */
+public class ContactChangeFeedTest {
+    private ContactService service;
+
+    @BeforeEach
+    public void setUp() {
+        service = new ContactService();
+        service.addContact("old", "First", "Last", "5551234567", "1 Main St");
+    }
+
+    // Event tests
+
+    @Test
+    @DisplayName("Feed should publish every mutation from now on, in order, with its values")
+    public void testEvents() {
+        try (ContactChangeFeed feed = new ContactChangeFeed(service, 16, SlowConsumerPolicy.BLOCK)) {
+            ContactChangeFeed.Subscription subscription = feed.subscribe();
+            service.addContact("1", "John", "Doe", "5551234567", "1 Main St");
+            service.updateFirstName("1", "Jane");
+            assertThrows(IllegalArgumentException.class, () -> service.updatePhone("1", "123"));
+            service.deleteContact("1");
+            service.addContacts(List.of(new Contact("b1", "A", "B", "5559876543", "C")));
+
+            List<String> seen = new ArrayList<>();
+            int drained = subscription.poll(change -> {
+                seen.add(change.getSequence() + " " + change.getType() + " " + change.getContactId());
+                if (change.getType() == ContactChange.Type.UPDATED) {
+                    assertEquals(ContactField.FIRST_NAME, change.getField());
+                    assertEquals("John", change.getOldValue());
+                    assertEquals("Jane", change.getNewValue());
+                    assertEquals("Doe", change.getContact().getLastName());
+                } else {
+                    assertNull(change.getField());
+                    assertNull(change.getNewValue());
+                }
+                if (change.getType() == ContactChange.Type.DELETED) {
+                    assertEquals("Jane", change.getContact().getFirstName());
+                }
+            }, 100);
+
+            assertEquals(4, drained);
+            assertEquals(List.of("0 ADDED 1", "1 UPDATED 1", "2 DELETED 1", "3 ADDED b1"), seen);
+            assertEquals(0, subscription.getLag());
+            assertEquals(0, subscription.poll(change -> fail("No event expected"), 100));
+        }
+    }
+
+    @Test
+    @DisplayName("Events should hold the contact as it was, however it changes later")
+    public void testEventSnapshotsContact() {
+        try (ContactChangeFeed feed = new ContactChangeFeed(service, 16, SlowConsumerPolicy.BLOCK)) {
+            ContactChangeFeed.Subscription subscription = feed.subscribe();
+            service.updateAddress("old", "2 Oak Ave");
+            service.updateAddress("old", "3 Elm St");
+
+            List<String> addresses = new ArrayList<>();
+            subscription.poll(change -> addresses.add(change.getContact().getAddress()), 10);
+            assertEquals(List.of("2 Oak Ave", "3 Elm St"), addresses);
+        }
+    }
+
+    @Test
+    @DisplayName("Subscriptions should drain independently and in batches of at most maxEvents")
+    public void testIndependentSubscriptions() {
+        try (ContactChangeFeed feed = new ContactChangeFeed(service, 64, SlowConsumerPolicy.BLOCK)) {
+            ContactChangeFeed.Subscription fast = feed.subscribe();
+            ContactChangeFeed.Subscription slow = feed.subscribe();
+            for (int i = 0; i < 10; i++) {
+                service.addContact("c" + i, "First", "Last", "5551234567", "1 Main St");
+            }
+
+            assertEquals(10, fast.poll(change -> { }, 100));
+            assertEquals(3, slow.poll(change -> { }, 3));
+            assertEquals(7, slow.getLag());
+            List<Long> sequences = new ArrayList<>();
+            assertEquals(7, slow.poll(change -> sequences.add(change.getSequence()), 100));
+            assertEquals(3L, sequences.get(0));
+
+            ContactChangeFeed.Subscription late = feed.subscribe();
+            service.deleteContact("c0");
+            assertEquals(1, late.poll(change -> assertEquals(10, change.getSequence()), 100));
+            assertThrows(IllegalArgumentException.class, () -> late.poll(null, 1));
+            assertThrows(IllegalArgumentException.class, () -> late.poll(change -> { }, 0));
+            late.close();
+            assertThrows(IllegalStateException.class, () -> late.poll(change -> { }, 1));
+        }
+    }
+
+    @Test
+    @DisplayName("Handler failure should count the events before it as consumed")
+    public void testHandlerFailure() {
+        try (ContactChangeFeed feed = new ContactChangeFeed(service, 16, SlowConsumerPolicy.BLOCK)) {
+            ContactChangeFeed.Subscription subscription = feed.subscribe();
+            for (int i = 0; i < 3; i++) {
+                service.addContact("c" + i, "First", "Last", "5551234567", "1 Main St");
+            }
+            assertThrows(IllegalStateException.class, () -> subscription.poll(change -> {
+                if (change.getContactId().equals("c1")) {
+                    throw new IllegalStateException("Downstream unavailable");
+                }
+            }, 10));
+
+            List<String> retried = new ArrayList<>();
+            subscription.poll(change -> retried.add(change.getContactId()), 10);
+            assertEquals(List.of("c1", "c2"), retried);
+        }
+    }
+
+    // Slow consumer tests
+
+    @Test
+    @DisplayName("BLOCK should hold writers until the slowest subscription frees a slot")
+    public void testBlockPolicy() throws Exception {
+        try (ContactChangeFeed feed = new ContactChangeFeed(service, 4, SlowConsumerPolicy.BLOCK)) {
+            ContactChangeFeed.Subscription subscription = feed.subscribe();
+            CountDownLatch done = new CountDownLatch(1);
+            Thread writer = new Thread(() -> {
+                for (int i = 0; i < 10; i++) {
+                    service.addContact("c" + i, "First", "Last", "5551234567", "1 Main St");
+                }
+                done.countDown();
+            });
+            writer.start();
+
+            assertFalse(done.await(200, TimeUnit.MILLISECONDS));
+            assertEquals(4, feed.getCursor());  // Fifth event claimed, waiting for its slot
+            List<String> ids = new ArrayList<>();
+            while (ids.size() < 10) {
+                subscription.poll(change -> ids.add(change.getContactId()), 2);
+            }
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            assertEquals("c9", ids.get(9));
+        }
+    }
+
+    @Test
+    @DisplayName("DISCONNECT should cut off a lagging subscription and never hold writers")
+    public void testDisconnectPolicy() {
+        try (ContactChangeFeed feed = new ContactChangeFeed(service, 4, SlowConsumerPolicy.DISCONNECT)) {
+            ContactChangeFeed.Subscription lagging = feed.subscribe();
+            ContactChangeFeed.Subscription keeping = feed.subscribe();
+            List<String> ids = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                service.addContact("c" + i, "First", "Last", "5551234567", "1 Main St");
+                keeping.poll(change -> ids.add(change.getContactId()), 10);
+            }
+
+            assertEquals(10, ids.size());
+            assertTrue(lagging.isDisconnected());
+            assertFalse(keeping.isDisconnected());
+            assertThrows(IllegalStateException.class, () -> lagging.poll(change -> { }, 10));
+        }
+    }
+
+    // Lifecycle tests
+
+    @Test
+    @DisplayName("Closed feed should stop publishing and refuse new subscriptions")
+    public void testClose() {
+        ContactChangeFeed feed = new ContactChangeFeed(service, 8, SlowConsumerPolicy.BLOCK);
+        ContactChangeFeed.Subscription subscription = feed.subscribe();
+        service.addContact("1", "John", "Doe", "5551234567", "1 Main St");
+        feed.close();
+        service.addContact("2", "Jack", "Doe", "5551234567", "1 Main St");
+
+        assertEquals(1, subscription.poll(change -> assertEquals("1", change.getContactId()), 10));
+        assertEquals(0, subscription.poll(change -> { }, 10));
+        assertThrows(IllegalStateException.class, feed::subscribe);
+    }
+
+    @Test
+    @DisplayName("Closing the feed should release a writer BLOCK holds for a stalled subscription")
+    public void testCloseReleasesBlockedWriter() throws Exception {
+        ContactChangeFeed feed = new ContactChangeFeed(service, 4, SlowConsumerPolicy.BLOCK);
+        ContactChangeFeed.Subscription stalled = feed.subscribe();
+        CountDownLatch done = new CountDownLatch(1);
+        Thread writer = new Thread(() -> {
+            service.addContacts(List.of(  // Holds every stripe while it waits
+                    new Contact("b1", "A", "B", "5559876543", "C"),
+                    new Contact("b2", "A", "B", "5559876543", "C"),
+                    new Contact("b3", "A", "B", "5559876543", "C"),
+                    new Contact("b4", "A", "B", "5559876543", "C"),
+                    new Contact("b5", "A", "B", "5559876543", "C")));
+            done.countDown();
+        });
+        writer.start();
+        assertFalse(done.await(200, TimeUnit.MILLISECONDS));
+
+        feed.close();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(6, service.getContactCount());
+        service.addContact("1", "John", "Doe", "5551234567", "1 Main St");
+        List<String> ids = new ArrayList<>();
+        stalled.poll(change -> ids.add(change.getContactId()), 10);
+        assertEquals(List.of("b1", "b2", "b3", "b4"), ids, "the event that found no slot is dropped");
+    }
+
+    @Test
+    @DisplayName("Constructor should reject a null service or policy and a capacity that is not a power of two")
+    public void testInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new ContactChangeFeed(null, 8, SlowConsumerPolicy.BLOCK));
+        assertThrows(IllegalArgumentException.class, () -> new ContactChangeFeed(service, 8, null));
+        assertThrows(IllegalArgumentException.class, () -> new ContactChangeFeed(service, 6, SlowConsumerPolicy.BLOCK));
+        assertThrows(IllegalArgumentException.class, () -> new ContactChangeFeed(service, 0, SlowConsumerPolicy.BLOCK));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,427 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.Consumer;
+
+/**
+ * ContactDeduplicator class finds contacts stored under different IDs that are probably
+ * the same person, without comparing every pair.
+ *
+ * Contacts are read in chunks and reduced to a few primitive features each: the packed
+ * phone and 128-bit bigram sketches of the normalized name and address. Each contact
+ * then gets three blocking keys, its phone, its last name plus first initial, and its
+ * house number plus street name, packed with its index into one long array that is
+ * sorted in parallel, so contacts sharing a key end up next to each other. Only
+ * contacts in the same block are scored, each against at most window followers, so the
+ * work is O(n * window) rather than O(n^2). Scoring runs on the common fork-join pool
+ * and links duplicates in a lock-free union-find; the resulting clusters are passed to
+ * the caller one at a time.
+ *
+ * Memory is a fixed set of primitive arrays per contact, about 100 bytes plus the ID
+ * reference; candidate pairs are never materialized. A block bigger than the window,
+ * such as a switchboard number shared by thousands, is only compared within the
+ * sliding window, so pairs far apart in such a block can be missed.
+ *
+ * A pair scores 0.5 x name similarity + 0.3 if the phones match + 0.2 x address
+ * similarity, where similarities are Jaccard estimates from the sketches and addresses
+ * with different house numbers count as not alike at all. It is a duplicate when the
+ * score reaches the threshold and the names are at least MIN_NAME_SIMILARITY alike, so
+ * relatives sharing a phone and address are kept apart.
+ */
+public final class ContactDeduplicator {
+    public static final double DEFAULT_THRESHOLD = 0.7;
+    public static final int DEFAULT_WINDOW = 32;
+    public static final double MIN_NAME_SIMILARITY = 0.6;
+
+    private static final double NAME_WEIGHT = 0.5;
+    private static final double PHONE_WEIGHT = 0.3;
+    private static final double ADDRESS_WEIGHT = 0.2;
+    private static final int CHUNK_SIZE = 1 << 16;  // Contacts held at once while extracting features
+    private static final int NO_KEY = 0;  // Block hash of a contact with nothing to block on
+    // Blocking key kinds, salted into the hash so equal text in different fields never shares a block
+    private static final int PHONE_KEY = 0;
+    private static final int NAME_KEY = 1;
+    private static final int ADDRESS_KEY = 2;
+    private static final int KEYS = 3;
+    // Spelled-out street words mapped to their usual abbreviation before sketching
+    private static final Map<String, String> ABBREVIATIONS = Map.of(
+            "street", "st", "avenue", "ave", "road", "rd", "drive", "dr", "lane", "ln",
+            "boulevard", "blvd", "apartment", "apt", "court", "ct", "place", "pl");
+
+    private final double threshold;
+    private final int window;
+
+    /**
+     * Constructor uses the default threshold and window
+     */
+    public ContactDeduplicator() {
+        this(DEFAULT_THRESHOLD, DEFAULT_WINDOW);
+    }
+
+    /**
+     * Constructor for ContactDeduplicator object
+     * @param threshold Lowest pair score counted as a duplicate, between 0 and 1
+     * @param window Most contacts after each one in a block to score it against
+     * @throws IllegalArgumentException if threshold is outside [0, 1] or window is less than 1
+     */
+    public ContactDeduplicator(double threshold, int window) {
+        if (!(threshold >= 0 && threshold <= 1)) {
+            throw new IllegalArgumentException("Threshold must be between 0 and 1");
+        }
+        if (window < 1) {
+            throw new IllegalArgumentException("Window must be at least 1");
+        }
+        this.threshold = threshold;
+        this.window = window;
+    }
+
+    /**
+     * Finds groups of duplicate contacts in a service. Contacts are read through stable
+     * copies; changes made during the run may or may not be seen.
+     * @param service Service to search
+     * @param action Receives each group of two or more duplicates, on the calling thread
+     * @return Number of groups found
+     * @throws IllegalArgumentException if service or action is null
+     */
+    public int findDuplicates(ContactService service, Consumer<DuplicateCluster> action) {
+        if (service == null) {
+            throw new IllegalArgumentException("Service cannot be null");
+        }
+        return run(service.getContactCount(), service::forEachContactCopy, action);
+    }
+
+    /**
+     * Finds groups of duplicate contacts, for example in a ContactView snapshot
+     * @param contacts Contacts to search, each ID at most once
+     * @param action Receives each group of two or more duplicates, on the calling thread
+     * @return Number of groups found
+     * @throws IllegalArgumentException if contacts or action is null
+     */
+    public int findDuplicates(Iterable<? extends Contact> contacts, Consumer<DuplicateCluster> action) {
+        if (contacts == null) {
+            throw new IllegalArgumentException("Contacts cannot be null");
+        }
+        return run(1024, contacts::forEach, action);
+    }
+
+    /**
+     * Scores one pair of contacts as findDuplicates would
+     * @param a First contact
+     * @param b Second contact
+     * @return Pair score between 0 and 1, or 0 if the names are less than MIN_NAME_SIMILARITY alike
+     * @throws IllegalArgumentException if either contact is null
+     */
+    public static double score(Contact a, Contact b) {
+        if (a == null || b == null) {
+            throw new IllegalArgumentException("Contacts cannot be null");
+        }
+        Features features = new Features(2);
+        features.add(a);
+        features.add(b);
+        features.extract(0, 2);
+        return features.score(0, 1);
+    }
+
+    private int run(int expected, Consumer<Consumer<Contact>> source, Consumer<DuplicateCluster> action) {
+        if (action == null) {
+            throw new IllegalArgumentException("Action cannot be null");
+        }
+        Features features = new Features(expected);
+        source.accept(contact -> {
+            features.add(contact);
+            if (features.pending() == CHUNK_SIZE) {
+                features.extractPending();
+            }
+        });
+        features.extractPending();
+        int n = features.size;
+        if (n < 2) {
+            return 0;
+        }
+
+        // Block: sort every (key, index) pair so each block's members are adjacent
+        long[] keys = Arrays.copyOf(features.keys, n * KEYS);
+        features.keys = null;
+        Arrays.parallelSort(keys);
+
+        // Score: each position against up to window followers in its block, in parallel
+        AtomicIntegerArray parent = new AtomicIntegerArray(n);
+        for (int i = 0; i < n; i++) {
+            parent.set(i, i);
+        }
+        ContactService.parallelFor(keys.length, i -> {
+            int block = (int) (keys[i] >>> 32);
+            if (block == NO_KEY) {
+                return;
+            }
+            int a = (int) keys[i];
+            int end = (int) Math.min(keys.length, (long) i + 1 + window);
+            for (int j = i + 1; j < end && (int) (keys[j] >>> 32) == block; j++) {
+                int b = (int) keys[j];
+                if (a != b && find(parent, a) != find(parent, b) && features.score(a, b) >= threshold) {
+                    union(parent, a, b);
+                }
+            }
+        });
+
+        // Cluster: group indexes by root, lowest member first, and pass on groups of two or more
+        int[] root = new int[n];
+        ContactService.parallelFor(n, i -> root[i] = find(parent, i));
+        int[] start = new int[n + 1];  // Counts per root, then where each root's members begin
+        for (int i = 0; i < n; i++) {
+            start[root[i] + 1]++;
+        }
+        for (int i = 0; i < n; i++) {
+            start[i + 1] += start[i];
+        }
+        int[] members = new int[n];
+        int[] fill = Arrays.copyOf(start, n);
+        for (int i = 0; i < n; i++) {
+            members[fill[root[i]]++] = i;
+        }
+        int clusters = 0;
+        for (int r = 0; r < n; r++) {
+            int size = start[r + 1] - start[r];
+            if (size > 1) {
+                List<String> ids = new ArrayList<>(size);
+                for (int k = start[r]; k < start[r + 1]; k++) {
+                    ids.add(features.ids[members[k]]);
+                }
+                action.accept(new DuplicateCluster(ids));
+                clusters++;
+            }
+        }
+        return clusters;
+    }
+
+    /**
+     * Finds the root of x, halving the path on the way; a lost race only skips a shortcut
+     */
+    private static int find(AtomicIntegerArray parent, int x) {
+        while (true) {
+            int p = parent.get(x);
+            if (p == x) {
+                return x;
+            }
+            int grandparent = parent.get(p);
+            if (grandparent != p) {
+                parent.compareAndSet(x, p, grandparent);
+            }
+            x = grandparent;
+        }
+    }
+
+    /**
+     * Joins the sets of a and b. The higher root is always hung under the lower, so links
+     * only point to lower indexes and concurrent unions can never form a cycle.
+     */
+    private static void union(AtomicIntegerArray parent, int a, int b) {
+        while (true) {
+            int ra = find(parent, a);
+            int rb = find(parent, b);
+            if (ra == rb) {
+                return;
+            }
+            if (ra < rb) {
+                int swap = ra;
+                ra = rb;
+                rb = swap;
+            }
+            if (parent.compareAndSet(ra, ra, rb)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Features class holds the per-contact arrays, filled a chunk at a time
+     */
+    private static final class Features {
+        String[] ids;
+        long[] phones;
+        int[] houseNumbers;  // Hash of the address's first number, 0 if it has none
+        long[] sketches;  // Name sketch in slots 4i and 4i+1, address sketch in 4i+2 and 4i+3
+        long[] keys;  // Blocking hash << 32 | index, KEYS per contact
+        Contact[] chunk = new Contact[0];
+        int size;  // Contacts whose features are extracted
+        int chunkSize;  // Contacts waiting in chunk
+
+        Features(int expected) {
+            int capacity = Math.max(expected, 16);
+            ids = new String[capacity];
+            phones = new long[capacity];
+            houseNumbers = new int[capacity];
+            sketches = new long[capacity * 4];
+            keys = new long[capacity * KEYS];
+        }
+
+        void add(Contact contact) {
+            if (chunkSize == chunk.length) {
+                chunk = Arrays.copyOf(chunk, Math.min(Math.max(chunk.length * 2, 16), CHUNK_SIZE));
+            }
+            chunk[chunkSize++] = contact;
+        }
+
+        int pending() {
+            return chunkSize;
+        }
+
+        void extractPending() {
+            extract(size, chunkSize);
+            Arrays.fill(chunk, 0, chunkSize, null);
+            size += chunkSize;
+            chunkSize = 0;
+        }
+
+        /**
+         * Extracts the features of the count waiting contacts into positions from onwards, in parallel
+         */
+        void extract(int from, int count) {
+            if (from + count > ids.length) {
+                int capacity = Math.max(from + count, ids.length * 2);
+                ids = Arrays.copyOf(ids, capacity);
+                phones = Arrays.copyOf(phones, capacity);
+                houseNumbers = Arrays.copyOf(houseNumbers, capacity);
+                sketches = Arrays.copyOf(sketches, capacity * 4);
+                keys = Arrays.copyOf(keys, capacity * KEYS);
+            }
+            ContactService.parallelFor(count, k -> {
+                Contact contact = chunk[k];
+                int i = from + k;
+                String first = normalize(contact.getFirstName());
+                String last = normalize(contact.getLastName());
+                String address = normalizeAddress(contact.getAddress());
+                ids[i] = contact.getContactId();
+                phones[i] = contact.getPackedPhone();
+                sketch(first + " " + last, sketches, 4 * i);
+                sketch(address, sketches, 4 * i + 2);
+                keys[KEYS * i + PHONE_KEY] = entry(PHONE_KEY, Long.hashCode(phones[i]), i);
+                keys[KEYS * i + NAME_KEY] = last.isEmpty() ? entry(i)
+                        : entry(NAME_KEY, (last + " " + (first.isEmpty() ? "" : first.substring(0, 1))).hashCode(), i);
+                String number = houseNumber(address);
+                houseNumbers[i] = number == null ? 0 : number.hashCode() | 1;
+                String street = streetKey(address, number);
+                keys[KEYS * i + ADDRESS_KEY] = street == null ? entry(i) : entry(ADDRESS_KEY, street.hashCode(), i);
+            });
+        }
+
+        double score(int a, int b) {
+            double name = similarity(sketches, 4 * a, 4 * b);
+            if (name < MIN_NAME_SIMILARITY) {
+                return 0;
+            }
+            boolean otherHouse = houseNumbers[a] != 0 && houseNumbers[b] != 0 && houseNumbers[a] != houseNumbers[b];
+            return NAME_WEIGHT * name + (phones[a] == phones[b] ? PHONE_WEIGHT : 0)
+                    + (otherHouse ? 0 : ADDRESS_WEIGHT * similarity(sketches, 4 * a + 2, 4 * b + 2));
+        }
+    }
+
+    /**
+     * @return Entry placing contact i in the block of a key, whose hash is mixed and never NO_KEY
+     */
+    private static long entry(int kind, int hash, int i) {
+        int h = (hash + kind) * 0x9E3779B9;
+        h ^= h >>> 16;
+        return (long) (h == NO_KEY ? 1 : h) << 32 | i;
+    }
+
+    /**
+     * @return Entry for a contact with nothing to block on, skipped when scoring
+     */
+    private static long entry(int i) {
+        return (long) NO_KEY << 32 | i;
+    }
+
+    /**
+     * Sets one bit of a 128-bit sketch per character bigram of the text, including
+     * bigrams with the spaces around it, so shared words make sketches overlap
+     */
+    private static void sketch(String text, long[] into, int at) {
+        long low = 0;
+        long high = 0;
+        char previous = ' ';
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (c != ' ' || previous != ' ') {
+                int bit = ((previous * 31 + c) * 0x9E3779B9) >>> 25;  // Top 7 bits pick one of 128
+                if (bit < 64) {
+                    low |= 1L << bit;
+                } else {
+                    high |= 1L << (bit - 64);
+                }
+            }
+            previous = c;
+        }
+        into[at] = low;
+        into[at + 1] = high;
+    }
+
+    /**
+     * @return Jaccard similarity of two sketches, 0 if both are empty
+     */
+    private static double similarity(long[] sketches, int a, int b) {
+        int union = Long.bitCount(sketches[a] | sketches[b]) + Long.bitCount(sketches[a + 1] | sketches[b + 1]);
+        int shared = Long.bitCount(sketches[a] & sketches[b]) + Long.bitCount(sketches[a + 1] & sketches[b + 1]);
+        return union == 0 ? 0 : (double) shared / union;
+    }
+
+    /**
+     * Lower-cases a name and keeps only its letters and single spaces between words
+     */
+    private static String normalize(String text) {
+        StringBuilder sb = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                sb.append(Character.toLowerCase(c));
+            } else if (sb.length() > 0 && sb.charAt(sb.length() - 1) != ' ') {
+                sb.append(' ');
+            }
+        }
+        int end = sb.length();
+        return end > 0 && sb.charAt(end - 1) == ' ' ? sb.substring(0, end - 1) : sb.toString();
+    }
+
+    /**
+     * Normalizes an address like a name and abbreviates spelled-out street words
+     */
+    private static String normalizeAddress(String address) {
+        String normalized = normalize(address);
+        if (normalized.isEmpty()) {
+            return normalized;
+        }
+        String[] words = normalized.split(" ");
+        for (int i = 0; i < words.length; i++) {
+            words[i] = ABBREVIATIONS.getOrDefault(words[i], words[i]);
+        }
+        return String.join(" ", words);
+    }
+
+    /**
+     * @return First word of a normalized address starting with a digit, or null if there is none
+     */
+    private static String houseNumber(String address) {
+        for (String word : address.split(" ")) {
+            if (!word.isEmpty() && Character.isDigit(word.charAt(0))) {
+                return word;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return House number and first street word of a normalized address, or null unless it has both
+     */
+    private static String streetKey(String address, String number) {
+        if (number != null) {
+            for (String word : address.split(" ")) {
+                if (!word.isEmpty() && Character.isLetter(word.charAt(0))) {
+                    return number + " " + word;
+                }
+            }
+        }
+        return null;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,111 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Unit tests for ContactDeduplicator and DuplicateCluster classes
+ * Tests which contacts are grouped, pair scoring, and argument checks
+ */
+public class ContactDeduplicatorTest {
+    private ContactService service;
+
+    @BeforeEach
+    public void setUp() {
+        service = new ContactService(new VersionedContactStore());
+        service.addContact("1", "John", "Smith", "5551234567", "12 Main Street");
+        service.addContact("2", "Jon", "Smith", "5551234567", "12 Main St");
+        service.addContact("3", "JOHN", "SMITH", "5559999999", "12 main st.");
+        service.addContact("4", "Mary", "Smith", "5551234567", "12 Main St");
+        service.addContact("5", "Alice", "Jones", "5550000001", "7 Oak Ave");
+        service.addContact("6", "Bob", "Brown", "5550000002", "9 Elm Rd");
+    }
+
+    // Grouping tests
+
+    @Test
+    @DisplayName("Deduplicator should group variants of a person and keep relatives apart")
+    public void testGroupsDuplicates() {
+        List<DuplicateCluster> clusters = new ArrayList<>();
+        assertEquals(1, new ContactDeduplicator().findDuplicates(service, clusters::add));
+        assertEquals(List.of("1", "2", "3"), sorted(clusters.get(0).getContactIds()));
+        assertEquals(3, clusters.get(0).size());
+        assertThrows(UnsupportedOperationException.class, () -> clusters.get(0).getContactIds().add("4"));
+
+        // A snapshot gives the same groups as the live service
+        List<DuplicateCluster> fromSnapshot = new ArrayList<>();
+        new ContactDeduplicator().findDuplicates(service.snapshot(), fromSnapshot::add);
+        assertEquals(1, fromSnapshot.size());
+        assertEquals(List.of("1", "2", "3"), sorted(fromSnapshot.get(0).getContactIds()));
+    }
+
+    @Test
+    @DisplayName("Deduplicator should find planted duplicates among many distinct contacts")
+    public void testPlantedDuplicates() {
+        ContactService many = new ContactService();
+        Map<String, String> twinOf = new HashMap<>();
+        for (int i = 0; i < 20000; i++) {
+            many.addContact("c" + i, "F" + Integer.toString(i, 36), "L" + Integer.toString(i * 7, 36),
+                    String.format("%010d", i), i + " Main St");
+            if (i % 10 == 0) {
+                // Same person with a lower-cased name, punctuation and a different phone
+                many.addContact("d" + i, "f" + Integer.toString(i, 36), "L" + Integer.toString(i * 7, 36) + ".",
+                        String.format("9%09d", i), i + " Main Street");
+                twinOf.put("c" + i, "d" + i);
+            }
+        }
+        List<DuplicateCluster> clusters = new ArrayList<>();
+        int found = new ContactDeduplicator().findDuplicates(many, clusters::add);
+        assertEquals(twinOf.size(), found);
+        for (DuplicateCluster cluster : clusters) {
+            assertEquals(2, cluster.size());
+            List<String> ids = sorted(cluster.getContactIds());
+            assertEquals(twinOf.get(ids.get(0)), ids.get(1));
+        }
+
+        // With a window of 1 a contact is only compared with its neighbour in each block
+        assertEquals(found, new ContactDeduplicator(0.7, 1).findDuplicates(many, cluster -> { }));
+    }
+
+    // Scoring tests
+
+    @Test
+    @DisplayName("Score should weigh names, phones and addresses")
+    public void testScore() {
+        Contact john = service.getContact("1");
+        assertEquals(1.0, ContactDeduplicator.score(john, john), 1e-9);
+        assertTrue(ContactDeduplicator.score(john, service.getContact("2")) >= ContactDeduplicator.DEFAULT_THRESHOLD);
+        assertEquals(0.0, ContactDeduplicator.score(john, service.getContact("4")));
+        assertEquals(0.0, ContactDeduplicator.score(john, service.getContact("5")));
+
+        // An empty name never matches anything
+        Contact empty = new Contact("e", "", "", "5551234567", "12 Main St");
+        assertEquals(0.0, ContactDeduplicator.score(empty, empty));
+    }
+
+    @Test
+    @DisplayName("Deduplicator should reject bad settings and null arguments")
+    public void testInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new ContactDeduplicator(1.5, 10));
+        assertThrows(IllegalArgumentException.class, () -> new ContactDeduplicator(Double.NaN, 10));
+        assertThrows(IllegalArgumentException.class, () -> new ContactDeduplicator(0.5, 0));
+        ContactDeduplicator deduplicator = new ContactDeduplicator();
+        assertThrows(IllegalArgumentException.class, () -> deduplicator.findDuplicates((ContactService) null, c -> { }));
+        assertThrows(IllegalArgumentException.class, () -> deduplicator.findDuplicates(service, null));
+        assertThrows(IllegalArgumentException.class, () -> deduplicator.findDuplicates((Iterable<Contact>) null, c -> { }));
+        assertThrows(IllegalArgumentException.class, () -> ContactDeduplicator.score(null, service.getContact("1")));
+        assertEquals(0, deduplicator.findDuplicates(new ContactService(), c -> { }));
+    }
+
+    private static List<String> sorted(List<String> ids) {
+        List<String> copy = new ArrayList<>(ids);
+        Collections.sort(copy);
+        return copy;
+    }
+}
\ No newline at end of file
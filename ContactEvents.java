@@ -0,0 +1,67 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * ContactEvents class holds the JDK Flight Recorder events emitted while ContactMetrics is enabled.
+ * Enable them in a recording as contacts.Operation and contacts.ValidationRejected.
+ */
+final class ContactEvents {
+    private ContactEvents() {
+    }
+
+    /**
+     * OperationEvent class records one ContactService operation
+     */
+    @Name("contacts.Operation")
+    @Label("Contact Operation")
+    @Category("Contact Service")
+    @Description("A ContactService operation with its latency and outcome")
+    @StackTrace(false)
+    static final class OperationEvent extends Event {
+        @Label("Operation")
+        String operation;
+
+        @Label("Succeeded")
+        boolean success;
+
+        @Label("Latency")
+        @Timespan(Timespan.NANOSECONDS)
+        long latency;
+    }
+
+    /**
+     * ValidationRejectedEvent class records a contact value that failed validation
+     */
+    @Name("contacts.ValidationRejected")
+    @Label("Contact Validation Rejected")
+    @Category("Contact Service")
+    @Description("A contact value failed one or more ContactValidator rules")
+    static final class ValidationRejectedEvent extends Event {
+        @Label("Rules")
+        @Description("Failed rules as described by ContactValidator")
+        String rules;
+    }
+
+    static void operation(ContactOperation operation, boolean success, long latency) {
+        OperationEvent event = new OperationEvent();
+        if (event.isEnabled()) {
+            event.operation = operation.name();
+            event.success = success;
+            event.latency = latency;
+            event.commit();
+        }
+    }
+
+    static void validationRejected(int rules) {
+        ValidationRejectedEvent event = new ValidationRejectedEvent();
+        if (event.isEnabled()) {
+            event.rules = ContactValidator.describe(rules);
+            event.commit();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,906 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * ContactExchange class streams contacts between a ContactService and CSV or NDJSON
+ * files (see ContactFileFormat) for exchange with other systems.
+ *
+ * Import reads the file through one fixed FileChannel buffer and decodes each record's
+ * UTF-8 bytes straight into reusable character buffers, which are checked with
+ * ContactValidator and packed into a Contact without building a String for any field
+ * but the ID. Valid contacts are added in batches of BATCH_SIZE, so memory use does not
+ * depend on the file size. Unlike addContacts, import is not all-or-nothing: each
+ * malformed, invalid or duplicate record is written to a rejects file as
+ * "line TAB reason TAB record" and the rest are added. A duplicate keeps the first
+ * record with its ID.
+ *
+ * Export writes every contact through one fixed buffer to a temporary file that is
+ * moved into place, like ContactSnapshot.save.
+ */
+public final class ContactExchange {
+    static final int BUFFER_SIZE = 1 << 20;  // Longest record import accepts, and the export write size
+    static final int BATCH_SIZE = 4096;
+    private static final int REJECTS_BUFFER_SIZE = 1 << 16;
+    private static final int MAX_RECORD_BYTES = 1024;  // Most bytes one exported contact can take
+    // Characters kept per field; more than any field limit, so a longer value still fails validation
+    private static final int MAX_FIELD_CHARS = 64;
+    private static final String[] FIELD_NAMES = {"contactId", "firstName", "lastName", "phone", "address"};
+
+    private ContactExchange() {
+        // Static utility class
+    }
+
+    /**
+     * Writes every contact in the service to a file, replacing any existing file
+     * Writers may keep running; each contact is captured in a consistent state.
+     * @param service Service to export
+     * @param file Destination file
+     * @param format File format
+     * @return Number of contacts written
+     * @throws IOException if the file cannot be written
+     * @throws IllegalArgumentException if any argument is null
+     */
+    public static long export(ContactService service, Path file, ContactFileFormat format) throws IOException {
+        if (service == null || file == null || format == null) {
+            throw new IllegalArgumentException("Service, file and format cannot be null");
+        }
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            long count;
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                Output out = new Output(channel, BUFFER_SIZE);
+                if (format == ContactFileFormat.CSV) {
+                    out.ascii(String.join(",", FIELD_NAMES)).ascii("\n");
+                }
+                try {
+                    service.forEachContactCopy(contact -> out.record(contact, format));
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+                out.flush();
+                channel.force(true);
+                count = out.records;
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return count;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Adds every valid record in a file to the service and writes the rest to a rejects file
+     * @param service Service to add to
+     * @param file File to read
+     * @param format File format
+     * @param rejectsFile File that receives rejected records, replacing any existing file,
+     *                    or null to only count them
+     * @return Numbers of contacts added and records rejected
+     * @throws IOException if either file cannot be read or written
+     * @throws IllegalArgumentException if service, file or format is null
+     */
+    public static ImportResult importInto(ContactService service, Path file, ContactFileFormat format,
+                                          Path rejectsFile) throws IOException {
+        if (service == null || file == null || format == null) {
+            throw new IllegalArgumentException("Service, file and format cannot be null");
+        }
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ);
+             FileChannel rejects = rejectsFile == null ? null : FileChannel.open(rejectsFile,
+                     StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            Importer importer = new Importer(service, format, in,
+                    rejects == null ? null : new Output(rejects, REJECTS_BUFFER_SIZE));
+            try {
+                return importer.run();
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    /**
+     * Importer class holds the read buffer, field buffers and pending batch of one import
+     */
+    private static final class Importer {
+        private final ContactService service;
+        private final ContactFileFormat format;
+        private final FileChannel in;
+        private final Output rejects;
+        private final byte[] bytes = new byte[BUFFER_SIZE];
+        private final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        private final Field[] fields = new Field[FIELD_NAMES.length];
+        private final Field key = new Field();
+        private final Contact[] batch = new Contact[BATCH_SIZE];
+        private final long[] batchLines = new long[BATCH_SIZE];
+        private int batchSize;
+        private int position;  // Start of the next record in bytes
+        private int limit;  // End of the data read into bytes
+        private boolean endOfFile;
+        private int lineBreaks;  // Quoted line breaks inside the record csvRecordEnd last found
+        private long imported;
+        private long rejected;
+
+        Importer(ContactService service, ContactFileFormat format, FileChannel in, Output rejects) {
+            this.service = service;
+            this.format = format;
+            this.in = in;
+            this.rejects = rejects;
+            for (int i = 0; i < fields.length; i++) {
+                fields[i] = new Field();
+            }
+        }
+
+        ImportResult run() throws IOException {
+            long line = 1;
+            boolean first = true;
+            while (true) {
+                int end = format == ContactFileFormat.CSV ? csvRecordEnd() : indexOf('\n', position, limit);
+                if (end < 0) {
+                    if (!endOfFile) {
+                        if (position == 0 && limit == bytes.length) {
+                            reject(line, "Record is longer than " + BUFFER_SIZE + " bytes", 0, 0);
+                            skipLine();
+                            line++;
+                            first = false;
+                        } else {
+                            fill();
+                        }
+                        continue;
+                    }
+                    if (position == limit) {
+                        break;
+                    }
+                    end = limit;  // Last record without a line break
+                }
+                int start = position;
+                if (first && end - start >= 3 && bytes[start] == (byte) 0xEF && bytes[start + 1] == (byte) 0xBB
+                        && bytes[start + 2] == (byte) 0xBF) {
+                    start += 3;  // Byte order mark
+                }
+                int contentEnd = end > start && bytes[end - 1] == '\r' ? end - 1 : end;
+                accept(start, contentEnd, line, first);
+                line += 1 + (format == ContactFileFormat.CSV ? lineBreaks : 0);
+                first = false;
+                position = Math.min(end + 1, limit);
+            }
+            commit();
+            if (rejects != null) {
+                rejects.flush();
+            }
+            return new ImportResult(imported, rejected);
+        }
+
+        /**
+         * Parses, validates and queues the record in bytes[start, end)
+         */
+        private void accept(int start, int end, long line, boolean first) {
+            if (isBlank(start, end)) {
+                return;
+            }
+            try {
+                if (format == ContactFileFormat.CSV) {
+                    parseCsv(start, end);
+                    if (first && isHeader()) {
+                        return;
+                    }
+                } else {
+                    parseJson(start, end);
+                }
+            } catch (RecordFormatException e) {
+                reject(line, e.getMessage(), start, end);
+                return;
+            }
+            int result = ContactValidator.validate(fields[0], fields[1], fields[2], fields[3], fields[4]);
+            if (result != ContactValidator.VALID) {
+                ContactMetrics.recordRejection(result);
+                reject(line, ContactValidator.describe(result), start, end);
+                return;
+            }
+            batch[batchSize] = new Contact(fields[0].toString(), fields[1], fields[2],
+                    ContactRecordFormat.packPhone(fields[3]), fields[4]);
+            batchLines[batchSize++] = line;
+            if (batchSize == BATCH_SIZE) {
+                commit();
+            }
+        }
+
+        /**
+         * Adds the queued contacts, moving any the service rejects to the rejects file and
+         * retrying the rest until they are added
+         */
+        private void commit() {
+            int size = batchSize;
+            while (size > 0) {
+                BatchResult result = service.addContacts(Arrays.asList(batch).subList(0, size));
+                if (result.isCommitted()) {
+                    imported += size;
+                    break;
+                }
+                List<BatchResult.Rejection> rejections = result.getRejections();
+                for (BatchResult.Rejection rejection : rejections) {
+                    int index = rejection.getIndex();
+                    reject(batchLines[index], rejection.getReason(), batch[index]);
+                    batch[index] = null;
+                }
+                int kept = 0;
+                for (int i = 0; i < size; i++) {
+                    if (batch[i] != null) {
+                        batch[kept] = batch[i];
+                        batchLines[kept++] = batchLines[i];
+                    }
+                }
+                size = kept;
+            }
+            Arrays.fill(batch, 0, batchSize, null);
+            batchSize = 0;
+        }
+
+        private void reject(long line, String reason, int start, int end) {
+            rejected++;
+            if (rejects != null) {
+                rejects.rejectPrefix(line, reason).bytes(bytes, start, end - start).ascii("\n");
+            }
+        }
+
+        private void reject(long line, String reason, Contact contact) {
+            rejected++;
+            if (rejects != null) {
+                rejects.rejectPrefix(line, reason).record(contact, format);
+            }
+        }
+
+        /**
+         * Moves the unread data to the front of the buffer and reads more after it
+         */
+        private void fill() throws IOException {
+            System.arraycopy(bytes, position, bytes, 0, limit - position);
+            limit -= position;
+            position = 0;
+            buffer.clear().position(limit);
+            int read = in.read(buffer);
+            if (read < 0) {
+                endOfFile = true;
+            } else {
+                limit += read;
+            }
+        }
+
+        /**
+         * Discards input up to and including the next line break, quoted or not
+         */
+        private void skipLine() throws IOException {
+            while (true) {
+                int end = indexOf('\n', position, limit);
+                if (end >= 0) {
+                    position = end + 1;
+                    return;
+                }
+                position = limit;
+                fill();
+                if (endOfFile) {
+                    return;
+                }
+            }
+        }
+
+        private int indexOf(char c, int from, int to) {
+            for (int i = from; i < to; i++) {
+                if (bytes[i] == c) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Finds the line break ending the CSV record at position, skipping quoted ones
+         * @return Index of the line break, or -1 if the record is not complete in the buffer
+         */
+        private int csvRecordEnd() {
+            boolean quoted = false;
+            lineBreaks = 0;
+            for (int i = position; i < limit; i++) {
+                byte c = bytes[i];
+                if (c == '"') {
+                    quoted = !quoted;  // A doubled quote toggles twice
+                } else if (c == '\n') {
+                    if (!quoted) {
+                        return i;
+                    }
+                    lineBreaks++;
+                }
+            }
+            return -1;
+        }
+
+        private boolean isBlank(int start, int end) {
+            for (int i = start; i < end; i++) {
+                byte c = bytes[i];
+                if (c != ' ' && c != '\t') {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean isHeader() {
+            for (int i = 0; i < fields.length; i++) {
+                if (!fields[i].equalsIgnoreCase(FIELD_NAMES[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void parseCsv(int start, int end) throws RecordFormatException {
+            int count = 0;
+            int i = start;
+            while (true) {
+                if (count == fields.length) {
+                    throw new RecordFormatException("Record has more than " + fields.length + " fields");
+                }
+                Field field = fields[count++];
+                field.clear();
+                if (i < end && bytes[i] == '"') {
+                    i++;
+                    while (true) {
+                        if (i >= end) {
+                            throw new RecordFormatException("Quoted field is not closed");
+                        }
+                        if (bytes[i] == '"') {
+                            if (i + 1 < end && bytes[i + 1] == '"') {
+                                field.append('"');
+                                i += 2;
+                                continue;
+                            }
+                            i++;
+                            break;
+                        }
+                        i = decode(i, end, field);
+                    }
+                    if (i < end && bytes[i] != ',') {
+                        throw new RecordFormatException("Unexpected text after a quoted field");
+                    }
+                } else {
+                    i = appendAscii(i, end, field);
+                    while (i < end && bytes[i] != ',') {
+                        if (bytes[i] == '"') {
+                            throw new RecordFormatException("Quote inside an unquoted field");
+                        }
+                        i = decode(i, end, field);
+                    }
+                }
+                if (i >= end) {
+                    break;
+                }
+                i++;  // Comma
+            }
+            if (count < fields.length) {
+                throw new RecordFormatException("Record has " + count + " fields, expected " + fields.length);
+            }
+        }
+
+        private void parseJson(int start, int end) throws RecordFormatException {
+            int i = skipSpaces(start, end);
+            if (i >= end || bytes[i] != '{') {
+                throw new RecordFormatException("Record is not a JSON object");
+            }
+            i = skipSpaces(i + 1, end);
+            int seen = 0;
+            if (i < end && bytes[i] == '}') {
+                i++;
+            } else {
+                while (true) {
+                    if (i >= end || bytes[i] != '"') {
+                        throw new RecordFormatException("Expected a member name");
+                    }
+                    int index = matchFieldName(i + 1, end);
+                    if (index >= 0) {
+                        i = skipSpaces(i + 2 + FIELD_NAMES[index].length(), end);
+                    } else {
+                        key.clear();
+                        i = skipSpaces(parseJsonString(i + 1, end, key), end);
+                        index = fieldIndex(key);
+                    }
+                    if (i >= end || bytes[i] != ':') {
+                        throw new RecordFormatException("Expected ':' after a member name");
+                    }
+                    i = skipSpaces(i + 1, end);
+                    if (index >= 0) {
+                        if ((seen & 1 << index) != 0) {
+                            throw new RecordFormatException("Member " + FIELD_NAMES[index] + " appears twice");
+                        }
+                        if (i >= end || bytes[i] != '"') {
+                            throw new RecordFormatException("Member " + FIELD_NAMES[index] + " must be a string");
+                        }
+                        seen |= 1 << index;
+                        fields[index].clear();
+                        i = parseJsonString(i + 1, end, fields[index]);
+                    } else {
+                        i = skipJsonScalar(i, end);
+                    }
+                    i = skipSpaces(i, end);
+                    if (i < end && bytes[i] == ',') {
+                        i = skipSpaces(i + 1, end);
+                    } else if (i < end && bytes[i] == '}') {
+                        i++;
+                        break;
+                    } else {
+                        throw new RecordFormatException("Expected ',' or '}' after a member");
+                    }
+                }
+            }
+            if (skipSpaces(i, end) != end) {
+                throw new RecordFormatException("Unexpected text after the object");
+            }
+            for (int index = 0; index < fields.length; index++) {
+                if ((seen & 1 << index) == 0) {
+                    throw new RecordFormatException("Member " + FIELD_NAMES[index] + " is missing");
+                }
+            }
+        }
+
+        /**
+         * Decodes a JSON string whose opening quote is just before i
+         * @return Index just past the closing quote
+         */
+        private int parseJsonString(int i, int end, Field into) throws RecordFormatException {
+            while (true) {
+                if (i >= end) {
+                    throw new RecordFormatException("String is not closed");
+                }
+                int c = bytes[i] & 0xFF;
+                if (c == '"') {
+                    return i + 1;
+                }
+                if (c < 0x20) {
+                    throw new RecordFormatException("Control character in a string");
+                }
+                if (c != '\\') {
+                    int next = c < 0x80 ? appendAscii(i, end, into) : i;
+                    i = next > i ? next : decode(i, end, into);
+                    continue;
+                }
+                if (i + 1 >= end) {
+                    throw new RecordFormatException("String is not closed");
+                }
+                switch (bytes[i + 1]) {
+                    case '"': into.append('"'); break;
+                    case '\\': into.append('\\'); break;
+                    case '/': into.append('/'); break;
+                    case 'b': into.append('\b'); break;
+                    case 'f': into.append('\f'); break;
+                    case 'n': into.append('\n'); break;
+                    case 'r': into.append('\r'); break;
+                    case 't': into.append('\t'); break;
+                    case 'u':
+                        if (i + 6 > end) {
+                            throw new RecordFormatException("Bad \\u escape");
+                        }
+                        int value = 0;
+                        for (int k = i + 2; k < i + 6; k++) {
+                            int digit = Character.digit(bytes[k], 16);
+                            if (digit < 0) {
+                                throw new RecordFormatException("Bad \\u escape");
+                            }
+                            value = value << 4 | digit;
+                        }
+                        into.append((char) value);
+                        i += 4;
+                        break;
+                    default:
+                        throw new RecordFormatException("Bad escape in a string");
+                }
+                i += 2;
+            }
+        }
+
+        /**
+         * Skips the value of an ignored member, which must be a string, number, true, false or null
+         */
+        private int skipJsonScalar(int i, int end) throws RecordFormatException {
+            if (i < end && bytes[i] == '"') {
+                key.clear();
+                return parseJsonString(i + 1, end, key);
+            }
+            int from = i;
+            while (i < end && bytes[i] != ',' && bytes[i] != '}' && bytes[i] != ' ' && bytes[i] != '\t') {
+                if (bytes[i] == '{' || bytes[i] == '[') {
+                    throw new RecordFormatException("Nested values are not supported");
+                }
+                i++;
+            }
+            if (i == from) {
+                throw new RecordFormatException("Expected a value");
+            }
+            return i;
+        }
+
+        private int skipSpaces(int i, int end) {
+            while (i < end && (bytes[i] == ' ' || bytes[i] == '\t')) {
+                i++;
+            }
+            return i;
+        }
+
+        /**
+         * Matches a member name written without escapes against the field names, which all
+         * start with different letters, straight from the bytes
+         * @return Index of the field whose name and closing quote start at i, or -1 if none does
+         */
+        private int matchFieldName(int i, int end) {
+            if (i >= end) {
+                return -1;
+            }
+            for (int index = 0; index < FIELD_NAMES.length; index++) {
+                String name = FIELD_NAMES[index];
+                if (bytes[i] == name.charAt(0)) {
+                    int length = name.length();
+                    if (i + length >= end || bytes[i + length] != '"') {
+                        return -1;
+                    }
+                    for (int k = 1; k < length; k++) {
+                        if (bytes[i + k] != name.charAt(k)) {
+                            return -1;
+                        }
+                    }
+                    return index;
+                }
+            }
+            return -1;
+        }
+
+        private static int fieldIndex(Field name) {
+            for (int i = 0; i < FIELD_NAMES.length; i++) {
+                if (name.contentEquals(FIELD_NAMES[i])) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Copies the run of plain ASCII bytes starting at i into a field in one pass, stopping
+         * at a delimiter, quote, backslash, control character or multi-byte character
+         * @return Index of the first byte not copied
+         */
+        private int appendAscii(int i, int end, Field into) {
+            int from = i;
+            while (i < end) {
+                byte c = bytes[i];
+                if (c < 0x20 || c == ',' || c == '"' || c == '\\') {
+                    break;  // Also stops at bytes 0x80 and above, which are negative
+                }
+                i++;
+            }
+            into.append(bytes, from, i);
+            return i;
+        }
+
+        /**
+         * Decodes one UTF-8 character starting at i into a field
+         * @return Index of the next character
+         */
+        private int decode(int i, int end, Field into) throws RecordFormatException {
+            int c = bytes[i] & 0xFF;
+            if (c < 0x80) {
+                into.append((char) c);
+                return i + 1;
+            }
+            int extra;
+            int value;
+            if ((c & 0xE0) == 0xC0) {
+                extra = 1;
+                value = c & 0x1F;
+            } else if ((c & 0xF0) == 0xE0) {
+                extra = 2;
+                value = c & 0x0F;
+            } else if ((c & 0xF8) == 0xF0) {
+                extra = 3;
+                value = c & 0x07;
+            } else {
+                throw new RecordFormatException("Malformed UTF-8");
+            }
+            if (i + extra >= end) {
+                throw new RecordFormatException("Malformed UTF-8");
+            }
+            for (int k = 1; k <= extra; k++) {
+                int next = bytes[i + k] & 0xFF;
+                if ((next & 0xC0) != 0x80) {
+                    throw new RecordFormatException("Malformed UTF-8");
+                }
+                value = value << 6 | (next & 0x3F);
+            }
+            boolean overlong = extra == 1 ? value < 0x80 : extra == 2 ? value < 0x800 : value < 0x10000;
+            if (overlong || value > Character.MAX_CODE_POINT
+                    || (value >= Character.MIN_SURROGATE && value <= Character.MAX_SURROGATE)) {
+                throw new RecordFormatException("Malformed UTF-8");
+            }
+            if (value >= Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+                into.append(Character.highSurrogate(value));
+                into.append(Character.lowSurrogate(value));
+            } else {
+                into.append((char) value);
+            }
+            return i + extra + 1;
+        }
+    }
+
+    /**
+     * Field class is a reusable character buffer holding one decoded field. Only the first
+     * MAX_FIELD_CHARS characters are kept, but length counts them all, so an overlong
+     * value still fails its length rule before any character past the buffer is read.
+     */
+    private static final class Field implements CharSequence {
+        private final char[] chars = new char[MAX_FIELD_CHARS];
+        private int length;
+
+        void clear() {
+            length = 0;
+        }
+
+        void append(char c) {
+            if (length < chars.length) {
+                chars[length] = c;
+            }
+            length++;
+        }
+
+        /**
+         * Appends ASCII bytes[from, to) as characters
+         */
+        void append(byte[] bytes, int from, int to) {
+            int stored = Math.min(to - from, chars.length - Math.min(length, chars.length));
+            for (int k = 0; k < stored; k++) {
+                chars[length + k] = (char) bytes[from + k];
+            }
+            length += to - from;
+        }
+
+        boolean contentEquals(String text) {
+            if (length != text.length()) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (chars[i] != text.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        boolean equalsIgnoreCase(String text) {
+            return length == text.length() && text.regionMatches(true, 0, toString(), 0, length);
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return chars[index];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new String(chars, start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            return new String(chars, 0, Math.min(length, chars.length));
+        }
+    }
+
+    /**
+     * Output class encodes records into a fixed buffer and writes it to a channel whenever it fills
+     */
+    private static final class Output {
+        private final FileChannel channel;
+        private final byte[] bytes;
+        private final ByteBuffer buffer;
+        // ID, names and address of the contact being encoded, with field i at text[bounds[i], bounds[i + 1])
+        private final char[] text = new char[ContactValidator.MAX_CONTACT_ID_LENGTH
+                + 2 * ContactValidator.MAX_NAME_LENGTH + ContactValidator.MAX_ADDRESS_LENGTH];
+        private final int[] bounds = new int[FIELD_NAMES.length + 1];
+        private int size;
+        private long records;
+
+        Output(FileChannel channel, int capacity) {
+            this.channel = channel;
+            this.bytes = new byte[capacity];
+            this.buffer = ByteBuffer.wrap(bytes);
+        }
+
+        /**
+         * Encodes one contact as a line of the given format, from one captured version of
+         * its packed fields and without decoding them into Strings
+         */
+        void record(Contact contact, ContactFileFormat format) {
+            reserve(MAX_RECORD_BYTES);
+            byte[] d = contact.packedFields();
+            String id = contact.getContactId();
+            id.getChars(0, id.length(), text, 0);
+            bounds[1] = id.length();
+            bounds[2] = bounds[1] + Contact.firstNameLength(d);
+            bounds[3] = bounds[2] + Contact.lastNameLength(d);
+            bounds[5] = bounds[1] + Contact.copyText(d, text, bounds[1]);
+            bounds[4] = bounds[3];  // Phone is not in text; the address follows the last name
+            long phone = Contact.phoneOf(d);
+            for (int i = 0; i < FIELD_NAMES.length; i++) {
+                if (format == ContactFileFormat.CSV) {
+                    if (i > 0) {
+                        bytes[size++] = ',';
+                    }
+                } else {
+                    bytes[size++] = (byte) (i == 0 ? '{' : ',');
+                    bytes[size++] = '"';
+                    ascii(FIELD_NAMES[i]);
+                    bytes[size++] = '"';
+                    bytes[size++] = ':';
+                }
+                if (i == 3) {
+                    phone(phone, format == ContactFileFormat.NDJSON);
+                } else if (format == ContactFileFormat.CSV) {
+                    csv(bounds[i], bounds[i + 1]);
+                } else {
+                    json(bounds[i], bounds[i + 1]);
+                }
+            }
+            if (format == ContactFileFormat.NDJSON) {
+                bytes[size++] = '}';
+            }
+            bytes[size++] = '\n';
+            records++;
+        }
+
+        Output rejectPrefix(long line, String reason) {
+            ascii(Long.toString(line)).ascii("\t");
+            byte[] encoded = reason.getBytes(StandardCharsets.UTF_8);
+            return bytes(encoded, 0, encoded.length).ascii("\t");
+        }
+
+        Output ascii(String text) {
+            reserve(text.length());
+            for (int i = 0; i < text.length(); i++) {
+                bytes[size++] = (byte) text.charAt(i);
+            }
+            return this;
+        }
+
+        Output bytes(byte[] source, int offset, int length) {
+            while (length > 0) {
+                reserve(1);
+                int chunk = Math.min(length, bytes.length - size);
+                System.arraycopy(source, offset, bytes, size, chunk);
+                size += chunk;
+                offset += chunk;
+                length -= chunk;
+            }
+            return this;
+        }
+
+        private void phone(long phone, boolean quoted) {
+            if (quoted) {
+                bytes[size++] = '"';
+            }
+            for (int i = ContactValidator.PHONE_LENGTH - 1; i >= 0; i--) {
+                bytes[size + i] = (byte) ('0' + phone % 10);
+                phone /= 10;
+            }
+            size += ContactValidator.PHONE_LENGTH;
+            if (quoted) {
+                bytes[size++] = '"';
+            }
+        }
+
+        private void csv(int from, int to) {
+            boolean quote = false;
+            for (int i = from; i < to && !quote; i++) {
+                char c = text[i];
+                quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+            }
+            if (!quote) {
+                for (int i = from; i < to; i++) {
+                    i = utf8(i, to);
+                }
+                return;
+            }
+            bytes[size++] = '"';
+            for (int i = from; i < to; i++) {
+                if (text[i] == '"') {
+                    bytes[size++] = '"';
+                }
+                i = utf8(i, to);
+            }
+            bytes[size++] = '"';
+        }
+
+        private void json(int from, int to) {
+            bytes[size++] = '"';
+            for (int i = from; i < to; i++) {
+                char c = text[i];
+                if (c == '"' || c == '\\') {
+                    bytes[size++] = '\\';
+                    bytes[size++] = (byte) c;
+                } else if (c < 0x20) {
+                    String escaped = String.format("\\u%04x", (int) c);
+                    for (int k = 0; k < escaped.length(); k++) {
+                        bytes[size++] = (byte) escaped.charAt(k);
+                    }
+                } else {
+                    i = utf8(i, to);
+                }
+            }
+            bytes[size++] = '"';
+        }
+
+        /**
+         * Encodes the character of text at i, and its low surrogate if it starts a pair before to
+         * @return Index of the last character consumed
+         */
+        private int utf8(int i, int to) {
+            char c = text[i];
+            if (c < 0x80) {
+                bytes[size++] = (byte) c;
+            } else if (c < 0x800) {
+                bytes[size++] = (byte) (0xC0 | c >> 6);
+                bytes[size++] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isHighSurrogate(c) && i + 1 < to && Character.isLowSurrogate(text[i + 1])) {
+                int code = Character.toCodePoint(c, text[++i]);
+                bytes[size++] = (byte) (0xF0 | code >> 18);
+                bytes[size++] = (byte) (0x80 | code >> 12 & 0x3F);
+                bytes[size++] = (byte) (0x80 | code >> 6 & 0x3F);
+                bytes[size++] = (byte) (0x80 | code & 0x3F);
+            } else if (Character.isSurrogate(c)) {
+                bytes[size++] = '?';  // Unpaired surrogate, which UTF-8 cannot encode
+            } else {
+                bytes[size++] = (byte) (0xE0 | c >> 12);
+                bytes[size++] = (byte) (0x80 | c >> 6 & 0x3F);
+                bytes[size++] = (byte) (0x80 | c & 0x3F);
+            }
+            return i;
+        }
+
+        private void reserve(int length) {
+            if (size + length > bytes.length) {
+                try {
+                    flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.clear().limit(size);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            size = 0;
+        }
+    }
+
+    /**
+     * RecordFormatException class reports a record that cannot be parsed; it carries no
+     * stack trace, since it only ever becomes a line in the rejects file
+     */
+    private static final class RecordFormatException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        RecordFormatException(String message) {
+            super(message, null, false, false);
+        }
+    }
+}
\ No newline at end of file
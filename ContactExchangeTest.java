@@ -0,0 +1,182 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Unit tests for ContactExchange and ImportResult classes
+ * Tests CSV and NDJSON round trips, rejected records, and files larger than one buffer
+ */
+public class ContactExchangeTest {
+    @TempDir
+    Path tempDir;
+
+    // Round trip tests
+
+    @Test
+    @DisplayName("Export and import should round trip every field in both formats")
+    public void testRoundTrip() throws IOException {
+        ContactService original = new ContactService();
+        original.addContact("1234567890", "1234567890", "1234567890", "0012345678", "123456789012345678901234567890");
+        original.addContact("q", "O\"Neil", "Smith, Jr", "5551234567", "1 Main St\nApt 2");
+        original.addContact("uni", "Zo\u00eb", "\u00d1\u00fa\u00f1ez", "5551234567", "\ud83c\udfe0 \\ \u0001");
+        original.addContact("empty", "", "", "0000000000", "");
+
+        for (ContactFileFormat format : ContactFileFormat.values()) {
+            Path file = tempDir.resolve("contacts." + format);
+            assertEquals(4, ContactExchange.export(original, file, format));
+            ContactService loaded = new ContactService();
+            ImportResult result = ContactExchange.importInto(loaded, file, format, tempDir.resolve("rejects"));
+            assertEquals(4, result.getImportedCount());
+            assertEquals(0, result.getRejectedCount());
+            for (String id : new String[] {"1234567890", "q", "uni", "empty"}) {
+                assertEquals(original.getContact(id).toString(), loaded.getContact(id).toString());
+            }
+            assertEquals(0, Files.size(tempDir.resolve("rejects")));
+        }
+        List<String> csv = Files.readAllLines(tempDir.resolve("contacts.CSV"));
+        assertEquals("contactId,firstName,lastName,phone,address", csv.get(0));
+        assertTrue(csv.contains("q,\"O\"\"Neil\",\"Smith, Jr\",5551234567,\"1 Main St"));
+        assertTrue(Files.readString(tempDir.resolve("contacts.NDJSON"))
+                .contains("{\"contactId\":\"q\",\"firstName\":\"O\\\"Neil\""));
+    }
+
+    // Rejection tests
+
+    @Test
+    @DisplayName("CSV import should add valid rows and reject each bad row with its line and reason")
+    public void testCsvRejects() throws IOException {
+        ContactService service = new ContactService();
+        service.addContact("taken", "A", "B", "5551234567", "C");
+        Path file = write("in.csv", "\ufeffcontactId,firstName,lastName,phone,address\r\n"
+                + "1,John,Doe,5551234567,1 Main St\r\n"
+                + "2,Jane,Doe,123,1 Main St\r\n"
+                + "\r\n"
+                + "3,\"Multi\nLine\",Doe,5551234567,x\n"
+                + "4,Too,Many,5551234567,x,y\n"
+                + "5,Few\n"
+                + "6,\"Bad\"quote,Doe,5551234567,x\n"
+                + "1,Dup,Doe,5551234567,x\n"
+                + "taken,Dup,Doe,5551234567,x\n"
+                + "7,Last,Row,5559876543,no newline");
+        Path rejects = tempDir.resolve("rejects.tsv");
+
+        ImportResult result = ContactExchange.importInto(service, file, ContactFileFormat.CSV, rejects);
+        assertEquals(3, result.getImportedCount());
+        assertEquals(6, result.getRejectedCount());
+        assertEquals("Multi\nLine", service.getContact("3").getFirstName());
+        assertEquals("no newline", service.getContact("7").getAddress());
+
+        // Rows failing to parse or validate come first; the service rejects the others when their batch is added
+        List<String> lines = Files.readAllLines(rejects);
+        assertEquals("3\t" + ContactValidator.PHONE_MESSAGE + "\t2,Jane,Doe,123,1 Main St", lines.get(0));
+        assertEquals("7\tRecord has more than 5 fields\t4,Too,Many,5551234567,x,y", lines.get(1));
+        assertEquals("8\tRecord has 2 fields, expected 5\t5,Few", lines.get(2));
+        assertTrue(lines.get(3).startsWith("9\tUnexpected text after a quoted field\t6,"));
+        assertEquals("10\tDuplicate contact ID 1 in batch\t1,Dup,Doe,5551234567,x", lines.get(4));
+        assertEquals("11\tContact with ID taken already exists\ttaken,Dup,Doe,5551234567,x", lines.get(5));
+    }
+
+    @Test
+    @DisplayName("NDJSON import should decode escapes, ignore unknown members and reject bad objects")
+    public void testJsonRejects() throws IOException {
+        ContactService service = new ContactService();
+        Path file = write("in.ndjson",
+                "{\"contactId\":\"1\",\"firstName\":\"Jos\\u00e9\",\"lastName\":\"D\\\"oe\",\"phone\":\"5551234567\","
+                        + "\"address\":\"a\\/b\",\"age\":42,\"vip\":true,\"note\":\"x\"}\n"
+                        + "  \n"
+                        + "{ \"address\" : \"1 Main St\" , \"phone\" : \"5551234567\" , \"lastName\" : \"Doe\" ,"
+                        + " \"firstName\" : \"Jane\" , \"contactId\" : \"2\" }\n"
+                        + "{\"contactId\":\"3\",\"firstName\":\"A\",\"lastName\":\"B\",\"phone\":\"5551234567\"}\n"
+                        + "{\"contactId\":3,\"firstName\":\"A\",\"lastName\":\"B\",\"phone\":\"5551234567\",\"address\":\"\"}\n"
+                        + "{\"contactId\":\"4\",\"firstName\":\"A\",\"lastName\":\"B\",\"phone\":\"5551234567\",\"address\":\"\"\n"
+                        + "[1, 2]\n"
+                        + "{\"contactId\":\"5\",\"firstName\":\"\u00e9\u00e9\u00e9\u00e9\u00e9\u00e9\u00e9\u00e9\u00e9\u00e9\u00e9\","
+                        + "\"lastName\":\"B\",\"phone\":\"5551234567\",\"address\":\"\",\"x\":{}}\n"
+                        + "{\"contactId\":\"6\",\"firstName\":\"" + "a".repeat(70) + "\","
+                        + "\"lastName\":\"B\",\"phone\":\"5551234567\",\"address\":\"\"}\n");
+        Path rejects = tempDir.resolve("rejects.tsv");
+
+        ImportResult result = ContactExchange.importInto(service, file, ContactFileFormat.NDJSON, rejects);
+        assertEquals(2, result.getImportedCount());
+        assertEquals(6, result.getRejectedCount());
+        Contact jose = service.getContact("1");
+        assertEquals("Jos\u00e9", jose.getFirstName());
+        assertEquals("D\"oe", jose.getLastName());
+        assertEquals("a/b", jose.getAddress());
+        assertEquals("Jane", service.getContact("2").getFirstName());
+
+        List<String> lines = Files.readAllLines(rejects);
+        assertTrue(lines.get(0).startsWith("4\tMember address is missing\t"));
+        assertTrue(lines.get(1).startsWith("5\tMember contactId must be a string\t"));
+        assertTrue(lines.get(2).startsWith("6\tExpected ',' or '}' after a member\t"));
+        assertTrue(lines.get(3).startsWith("7\tRecord is not a JSON object\t"));
+        assertTrue(lines.get(4).startsWith("8\tNested values are not supported\t"));
+        assertTrue(lines.get(5).startsWith("9\t" + ContactValidator.FIRST_NAME_MESSAGE + "\t"));
+    }
+
+    // Streaming tests
+
+    @Test
+    @DisplayName("Import should stream files larger than its buffer and skip an overlong record")
+    public void testLargeFile() throws IOException {
+        Path file = tempDir.resolve("large.csv");
+        int rows = 3 * ContactExchange.BATCH_SIZE * 10;
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < rows; i++) {
+                out.write("c" + i + ",First,Last," + String.format("%010d", i) + "," + i + " Main St\n");
+                if (i == rows / 2) {
+                    out.write("long,");
+                    for (int k = 0; k < ContactExchange.BUFFER_SIZE; k++) {
+                        out.write('x');
+                    }
+                    out.write('\n');
+                }
+            }
+        }
+        assertTrue(Files.size(file) > 3L * ContactExchange.BUFFER_SIZE);
+        ContactService service = new ContactService();
+        Path rejects = tempDir.resolve("rejects.tsv");
+
+        ImportResult result = ContactExchange.importInto(service, file, ContactFileFormat.CSV, rejects);
+        assertEquals(rows, result.getImportedCount());
+        assertEquals(1, result.getRejectedCount());
+        assertEquals(rows, service.getContactCount());
+        assertEquals((rows - 1) + " Main St", service.getContact("c" + (rows - 1)).getAddress());
+        assertEquals((rows / 2 + 2) + "\tRecord is longer than " + ContactExchange.BUFFER_SIZE + " bytes\t",
+                Files.readAllLines(rejects).get(0));
+
+        // Exported again, the file holds the same contacts
+        Path exported = tempDir.resolve("export.ndjson");
+        assertEquals(rows, ContactExchange.export(service, exported, ContactFileFormat.NDJSON));
+        ContactService reloaded = new ContactService();
+        assertEquals(rows, ContactExchange.importInto(reloaded, exported, ContactFileFormat.NDJSON, null)
+                .getImportedCount());
+        assertEquals("1 Main St", reloaded.getContact("c1").getAddress());
+    }
+
+    @Test
+    @DisplayName("Import and export should reject null arguments")
+    public void testInvalidArguments() {
+        ContactService service = new ContactService();
+        Path file = tempDir.resolve("x.csv");
+        assertThrows(IllegalArgumentException.class, () -> ContactExchange.export(null, file, ContactFileFormat.CSV));
+        assertThrows(IllegalArgumentException.class, () -> ContactExchange.export(service, null, ContactFileFormat.CSV));
+        assertThrows(IllegalArgumentException.class, () -> ContactExchange.export(service, file, null));
+        assertThrows(IllegalArgumentException.class, () -> ContactExchange.importInto(service, file, null, null));
+        assertThrows(IOException.class, () -> ContactExchange.importInto(service, file, ContactFileFormat.CSV, null));
+    }
+
+    private Path write(String name, String content) throws IOException {
+        Path file = tempDir.resolve(name);
+        Files.writeString(file, content, StandardCharsets.UTF_8);
+        return file;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,108 @@
+/**
+ * ContactField enum names the updatable fields of a Contact
+ * Each constant knows how to read and validate-and-set its field, so code that
+ * works on "some field" does not need a switch per call site.
+ */
+public enum ContactField {
+    FIRST_NAME {
+        @Override
+        public String get(Contact contact) {
+            return contact.getFirstName();
+        }
+
+        @Override
+        public void set(Contact contact, String value) {
+            contact.setFirstName(value);
+        }
+
+        @Override
+        public boolean isValid(CharSequence value) {
+            return ContactValidator.isValidFirstName(value);
+        }
+    },
+    LAST_NAME {
+        @Override
+        public String get(Contact contact) {
+            return contact.getLastName();
+        }
+
+        @Override
+        public void set(Contact contact, String value) {
+            contact.setLastName(value);
+        }
+
+        @Override
+        public boolean isValid(CharSequence value) {
+            return ContactValidator.isValidLastName(value);
+        }
+    },
+    PHONE {
+        @Override
+        public String get(Contact contact) {
+            return contact.getPhone();
+        }
+
+        @Override
+        public void set(Contact contact, String value) {
+            contact.setPhone(value);
+        }
+
+        @Override
+        public boolean isValid(CharSequence value) {
+            return ContactValidator.isValidPhone(value);
+        }
+    },
+    ADDRESS {
+        @Override
+        public String get(Contact contact) {
+            return contact.getAddress();
+        }
+
+        @Override
+        public void set(Contact contact, String value) {
+            contact.setAddress(value);
+        }
+
+        @Override
+        public boolean isValid(CharSequence value) {
+            return ContactValidator.isValidAddress(value);
+        }
+    };
+
+    private static final ContactField[] VALUES = values();
+
+    /**
+     * Returns the current value of this field
+     * @param contact Contact to read
+     * @return Field value
+     */
+    public abstract String get(Contact contact);
+
+    /**
+     * Sets this field through the matching validating setter
+     * @param contact Contact to update
+     * @param value New value
+     * @throws IllegalArgumentException if value is invalid for this field
+     */
+    public abstract void set(Contact contact, String value);
+
+    /**
+     * Checks a value against this field's rule without throwing
+     * @param value Value to check
+     * @return true if the value is valid for this field
+     */
+    public abstract boolean isValid(CharSequence value);
+
+    /**
+     * Looks up a field by ordinal without allocating a values() copy
+     * @param ordinal Ordinal of the field
+     * @return Field with that ordinal
+     * @throws IllegalArgumentException if the ordinal is out of range
+     */
+    public static ContactField fromOrdinal(int ordinal) {
+        if (ordinal < 0 || ordinal >= VALUES.length) {
+            throw new IllegalArgumentException("No contact field with ordinal " + ordinal);
+        }
+        return VALUES[ordinal];
+    }
+}
\ No newline at end of file
@@ -0,0 +1,19 @@
+/**
+ * ContactFileFormat enum selects the text format ContactExchange reads and writes.
+ * Both are UTF-8 with one contact per record and the phone number as a string of digits.
+ */
+public enum ContactFileFormat {
+    /**
+     * RFC 4180 comma-separated values with the header line
+     * contactId,firstName,lastName,phone,address. Fields holding a comma, quote or line
+     * break are quoted, with quotes doubled. On import the header line is optional.
+     */
+    CSV,
+
+    /**
+     * Line-delimited JSON: one object per line with the string members contactId,
+     * firstName, lastName, phone and address. On import other members are ignored and
+     * blank lines are skipped.
+     */
+    NDJSON
+}
\ No newline at end of file
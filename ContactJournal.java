@@ -0,0 +1,557 @@
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+/**
+ * ContactJournal class is an append-only write-ahead log of ContactService mutations.
+ *
+ * The service encodes each mutation into a frame before it changes the store, so a
+ * frame that is too large or cannot be allocated rejects the mutation without taking
+ * effect. Once the store has changed, the frame is appended to an in-memory buffer while
+ * the service still holds the contact's stripe lock, so the journal order matches the
+ * order each contact was changed in; appending an encoded frame cannot fail. The caller
+ * then waits for durability according to the FsyncPolicy; with group commit one writer
+ * flushes and fsyncs everything appended so far while the others queue.
+ *
+ * Each frame is [int body length][body][int CRC32C of body]. A torn or corrupt frame
+ * at the tail (from a crash mid-write) ends replay and is truncated on open.
+ *
+ * Once a write fails the journal refuses every later mutation. The service calls
+ * ensureWritable under the stripe lock before it changes anything, so a mutation the
+ * journal can no longer record is rejected without taking effect.
+ */
+public final class ContactJournal implements Closeable {
+    public static final long DEFAULT_INTERVAL_MILLIS = 10;
+
+    // Frame types
+    private static final byte ADD = 1;
+    private static final byte DELETE = 2;
+    private static final byte UPDATE = 3;
+    private static final byte BATCH_ADD = 4;
+    private static final byte PATCH = 5;
+
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_RETAINED_BUFFER_SIZE = 4 * 1024 * 1024;
+    private static final int MAX_FRAME_SIZE = Integer.MAX_VALUE - 16;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final FsyncPolicy policy;
+    private final ScheduledExecutorService flusher;  // Only for FsyncPolicy.INTERVAL
+
+    private final Object appendLock = new Object();
+    private ByteBuffer pending = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);  // Guarded by appendLock
+    private final List<ByteBuffer> sealed = new ArrayList<>();  // Guarded by appendLock; written before pending
+    private ByteBuffer spare;  // Guarded by appendLock
+    private long appendedLsn;  // Guarded by appendLock; file offset just past the last appended frame
+    private volatile int maxFrameSize = MAX_FRAME_SIZE;
+
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private volatile long durableLsn;
+    private volatile IOException failure;
+    private volatile boolean closed;
+
+    private ContactJournal(Path file, FileChannel channel, FsyncPolicy policy, long validLength, long intervalMillis) {
+        this.file = file;
+        this.channel = channel;
+        this.policy = policy;
+        this.appendedLsn = validLength;
+        this.durableLsn = validLength;
+        if (policy == FsyncPolicy.INTERVAL) {
+            flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "contact-journal-flusher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            flusher.scheduleWithFixedDelay(this::flushQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            flusher = null;
+        }
+    }
+
+    /**
+     * Opens a journal file for appending, creating it if needed
+     * Any torn frame at the tail is truncated, so replay the file before opening it.
+     * @param file Journal file
+     * @param policy When appended mutations are forced to disk
+     * @return Open journal
+     * @throws IOException if the file cannot be opened
+     */
+    public static ContactJournal open(Path file, FsyncPolicy policy) throws IOException {
+        return open(file, policy, DEFAULT_INTERVAL_MILLIS);
+    }
+
+    /**
+     * Opens a journal file for appending, creating it if needed
+     * @param file Journal file
+     * @param policy When appended mutations are forced to disk
+     * @param intervalMillis Flush interval for FsyncPolicy.INTERVAL, ignored otherwise
+     * @return Open journal
+     * @throws IOException if the file cannot be opened
+     */
+    public static ContactJournal open(Path file, FsyncPolicy policy, long intervalMillis) throws IOException {
+        if (file == null || policy == null) {
+            throw new IllegalArgumentException("File and policy cannot be null");
+        }
+        if (intervalMillis < 1) {
+            throw new IllegalArgumentException("Flush interval must be at least 1 millisecond");
+        }
+        long validLength = scan(file, null);
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            if (channel.size() > validLength) {
+                channel.truncate(validLength);
+                channel.force(true);
+            }
+            channel.position(validLength);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return new ContactJournal(file, channel, policy, validLength, intervalMillis);
+    }
+
+    /**
+     * Applies every intact frame of a journal file to a service
+     * Replay is idempotent: adds of existing IDs overwrite them, and deletes or updates of
+     * missing IDs are skipped, so a journal can be replayed over a newer snapshot.
+     * @param file Journal file; a missing file replays nothing
+     * @param service Service to apply mutations to, which must not have a journal attached
+     * @return Number of frames applied
+     * @throws IOException if the file cannot be read
+     */
+    public static long replay(Path file, ContactService service) throws IOException {
+        if (service == null) {
+            throw new IllegalArgumentException("Service cannot be null");
+        }
+        long[] frames = new long[1];
+        scan(file, body -> {
+            apply(body, service);
+            frames[0]++;
+        });
+        return frames[0];
+    }
+
+    // Encoding, called by ContactService before it changes anything
+
+    /**
+     * Checks the journal can still record mutations, before the caller applies one
+     * @throws UncheckedIOException if an earlier write failed
+     */
+    void ensureWritable() {
+        checkFailure();
+    }
+
+    ByteBuffer encodeAdd(Contact contact) {
+        ByteBuffer frame = beginFrame(1 + ContactRecordFormat.RECORD_SIZE);
+        frame.put(ADD);
+        putContact(frame, contact);
+        return endFrame(frame);
+    }
+
+    ByteBuffer encodeBatch(Contact[] contacts) {
+        ByteBuffer frame = beginFrame(5 + (long) contacts.length * ContactRecordFormat.RECORD_SIZE);
+        frame.put(BATCH_ADD);
+        frame.putInt(contacts.length);
+        for (Contact contact : contacts) {
+            putContact(frame, contact);
+        }
+        return endFrame(frame);
+    }
+
+    ByteBuffer encodeDelete(String contactId) {
+        ByteBuffer frame = beginFrame(1 + 1 + 2 * contactId.length());
+        frame.put(DELETE);
+        putString(frame, contactId);
+        return endFrame(frame);
+    }
+
+    ByteBuffer encodeUpdate(String contactId, ContactField field, String value) {
+        ByteBuffer frame = beginFrame(1 + 1 + 2 + 2 * (contactId.length() + value.length()));
+        frame.put(UPDATE);
+        putString(frame, contactId);
+        frame.put((byte) field.ordinal());
+        putString(frame, value);
+        return endFrame(frame);
+    }
+
+    ByteBuffer encodePatch(String contactId, ContactPatch patch) {
+        int length = 1 + 1 + 2 * contactId.length() + 1;
+        for (ContactField field : ContactField.values()) {
+            String value = patch.get(field);
+            length += value == null ? 0 : 1 + 2 * value.length();
+        }
+        ByteBuffer frame = beginFrame(length);
+        frame.put(PATCH);
+        putString(frame, contactId);
+        int changed = 0;  // One bit per field the patch sets, by ordinal
+        for (ContactField field : ContactField.values()) {
+            changed |= patch.get(field) == null ? 0 : 1 << field.ordinal();
+        }
+        frame.put((byte) changed);
+        for (ContactField field : ContactField.values()) {
+            String value = patch.get(field);
+            if (value != null) {
+                putString(frame, value);
+            }
+        }
+        return endFrame(frame);
+    }
+
+    // Appending, called by ContactService while it holds the contact's stripe lock
+
+    /**
+     * Appends a frame from an encode method, after the mutation it records took effect
+     * It never refuses the frame: if the journal failed meanwhile, awaitDurable reports it.
+     * @param frame Encoded frame, which the journal takes over
+     * @return File offset just past the frame, for awaitDurable
+     */
+    long append(ByteBuffer frame) {
+        synchronized (appendLock) {
+            int length = frame.position();
+            if (pending.remaining() < length) {
+                if (pending.position() > 0) {
+                    sealed.add(pending);
+                }
+                if (length > MAX_RETAINED_BUFFER_SIZE) {
+                    sealed.add(frame);  // Written as it is rather than copied
+                    pending = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+                    appendedLsn += length;
+                    return appendedLsn;
+                }
+                int capacity = Math.max(length, Math.min(pending.capacity() * 2, MAX_RETAINED_BUFFER_SIZE));
+                pending = ByteBuffer.allocate(capacity);
+            }
+            frame.flip();
+            pending.put(frame);
+            appendedLsn += length;
+            return appendedLsn;
+        }
+    }
+
+    /**
+     * Waits until the frame ending at lsn is durable, as far as the policy requires
+     * @param lsn Value returned by an append method
+     * @throws UncheckedIOException if the journal could not be written
+     */
+    void awaitDurable(long lsn) {
+        checkFailure();
+        if (policy == FsyncPolicy.INTERVAL) {
+            return;
+        }
+        if (durableLsn >= lsn && (policy == FsyncPolicy.GROUP_COMMIT || closed)) {
+            return;
+        }
+        flushLock.lock();
+        try {
+            // A leader that held the lock before us may already have covered this frame
+            if (durableLsn >= lsn && (policy == FsyncPolicy.GROUP_COMMIT || closed)) {
+                return;
+            }
+            flushPending();
+        } catch (IOException e) {
+            failure = e;
+            throw new UncheckedIOException("Journal " + file + " could not be written", e);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Writes and fsyncs everything appended so far
+     * @throws IOException if the journal could not be written
+     */
+    public void flush() throws IOException {
+        flushLock.lock();
+        try {
+            if (!closed) {
+                flushPending();
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * @return Journal file
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * @return Policy deciding when appends are forced to disk
+     */
+    public FsyncPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * @return Bytes appended so far, including frames not yet written to disk
+     */
+    public long size() {
+        synchronized (appendLock) {
+            return appendedLsn;
+        }
+    }
+
+    /**
+     * Flushes everything appended so far and closes the file
+     * @throws IOException if the final flush fails
+     */
+    @Override
+    public void close() throws IOException {
+        if (flusher != null) {
+            flusher.shutdown();
+        }
+        flushLock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            try {
+                if (failure == null) {
+                    flushPending();
+                }
+            } finally {
+                closed = true;
+                channel.close();
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (IOException e) {
+            failure = e;
+        }
+    }
+
+    private void checkFailure() {
+        IOException e = failure;
+        if (e != null) {
+            throw new UncheckedIOException("Journal " + file + " failed and no longer accepts mutations", e);
+        }
+    }
+
+    /**
+     * Swaps out the sealed and pending buffers, writes them in order and fsyncs; caller
+     * holds flushLock
+     */
+    private void flushPending() throws IOException {
+        ByteBuffer[] out;
+        long end;
+        synchronized (appendLock) {
+            sealed.add(pending);
+            out = sealed.toArray(new ByteBuffer[0]);
+            sealed.clear();
+            pending = spare != null ? spare : ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+            spare = null;
+            end = appendedLsn;
+        }
+        for (ByteBuffer buffer : out) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+        channel.force(false);
+        durableLsn = end;
+        ByteBuffer last = out[out.length - 1];
+        last.clear();
+        if (last.capacity() <= MAX_RETAINED_BUFFER_SIZE) {
+            synchronized (appendLock) {
+                spare = last;
+            }
+        }
+    }
+
+    /**
+     * Lowers the largest frame body the journal accepts, so tests can reach the limit
+     */
+    void limitFrameSize(int bytes) {
+        maxFrameSize = bytes;
+    }
+
+    // Frame encoding
+
+    private ByteBuffer beginFrame(long maxBodySize) {
+        if (maxBodySize > maxFrameSize) {
+            throw new IllegalArgumentException("Journal frame of " + maxBodySize + " bytes is too large");
+        }
+        ByteBuffer frame = ByteBuffer.allocate(4 + (int) maxBodySize + 4);
+        frame.putInt(0);  // Body length, patched in endFrame
+        return frame;
+    }
+
+    private static ByteBuffer endFrame(ByteBuffer frame) {
+        int bodyLength = frame.position() - 4;
+        frame.putInt(0, bodyLength);
+        CRC32C crc = new CRC32C();
+        ByteBuffer body = frame.duplicate();
+        body.position(4).limit(4 + bodyLength);
+        crc.update(body);
+        frame.putInt((int) crc.getValue());
+        return frame;
+    }
+
+    private static void putContact(ByteBuffer frame, Contact contact) {
+        putString(frame, contact.getContactId());
+        putString(frame, contact.getFirstName());
+        putString(frame, contact.getLastName());
+        frame.putLong(contact.getPackedPhone());
+        putString(frame, contact.getAddress());
+    }
+
+    private static void putString(ByteBuffer frame, String value) {
+        frame.put((byte) value.length());
+        for (int i = 0; i < value.length(); i++) {
+            frame.putChar(value.charAt(i));
+        }
+    }
+
+    // Reading
+
+    private interface FrameVisitor {
+        void visit(ByteBuffer body);
+    }
+
+    /**
+     * Reads frames from the start of a file until the end or the first torn frame
+     * @param file Journal file; a missing file has length zero
+     * @param visitor Receives each intact frame body, or null to only measure
+     * @return Length of the intact prefix of the file
+     */
+    private static long scan(Path file, FrameVisitor visitor) throws IOException {
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        long valid = 0;
+        CRC32C check = new CRC32C();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), 1 << 20))) {
+            long size = channel.size();
+            byte[] body = new byte[256];
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                    if (length < 1 || length > size - valid - 8) {
+                        break;
+                    }
+                    if (body.length < length) {
+                        body = new byte[Math.max(length, body.length * 2)];
+                    }
+                    in.readFully(body, 0, length);
+                    int stored = in.readInt();
+                    check.reset();
+                    check.update(body, 0, length);
+                    if ((int) check.getValue() != stored) {
+                        break;
+                    }
+                } catch (EOFException e) {
+                    break;
+                }
+                if (visitor != null) {
+                    visitor.visit(ByteBuffer.wrap(body, 0, length));
+                }
+                valid += 4 + length + 4;
+            }
+        }
+        return valid;
+    }
+
+    private static void apply(ByteBuffer body, ContactService service) {
+        byte type = body.get();
+        switch (type) {
+            case ADD:
+                upsert(service, getContact(body));
+                break;
+            case BATCH_ADD:
+                for (int i = body.getInt(); i > 0; i--) {
+                    upsert(service, getContact(body));
+                }
+                break;
+            case DELETE: {
+                String contactId = getString(body);
+                if (service.contactExists(contactId)) {
+                    service.deleteContact(contactId);
+                }
+                break;
+            }
+            case UPDATE: {
+                String contactId = getString(body);
+                ContactField field = ContactField.fromOrdinal(body.get());
+                String value = getString(body);
+                if (service.contactExists(contactId)) {
+                    service.updateField(contactId, field, value);
+                }
+                break;
+            }
+            case PATCH: {
+                String contactId = getString(body);
+                int changed = body.get();
+                String[] values = new String[4];
+                for (ContactField field : ContactField.values()) {
+                    if ((changed & 1 << field.ordinal()) != 0) {
+                        values[field.ordinal()] = getString(body);
+                    }
+                }
+                if (service.contactExists(contactId)) {
+                    service.patchContact(contactId, new ContactPatch(values[0], values[1], values[2], values[3]));
+                }
+                break;
+            }
+            default:
+                throw new IllegalStateException("Unknown journal frame type " + type);
+        }
+    }
+
+    private static void upsert(ContactService service, Contact contact) {
+        if (service.contactExists(contact.getContactId())) {
+            for (ContactField field : ContactField.values()) {
+                service.updateField(contact.getContactId(), field, field.get(contact));
+            }
+        } else {
+            service.addContact(contact);
+        }
+    }
+
+    private static Contact getContact(ByteBuffer body) {
+        String contactId = getString(body);
+        String firstName = getString(body);
+        String lastName = getString(body);
+        String phone = ContactRecordFormat.unpackPhone(body.getLong());
+        String address = getString(body);
+        return new Contact(contactId, firstName, lastName, phone, address);
+    }
+
+    private static String getString(ByteBuffer body) {
+        int length = body.get();
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = body.getChar();
+        }
+        return new String(chars);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,267 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Unit tests for ContactJournal and ContactPersistence classes
+ * Tests replay under every fsync policy, torn tails and snapshot plus journal recovery
+ */
+public class ContactJournalTest {
+    @TempDir
+    Path tempDir;
+
+    private static void applySampleMutations(ContactService service) {
+        service.addContact("123", "John", "Doe", "5551234567", "123 Main St");
+        service.addContact("456", "Jane", "Smith", "9876543210", "456 Oak Ave");
+        service.addContact("789", "Bob", "Johnson", "5559876543", "789 Pine Rd");
+        service.updateFirstName("456", "Janet");
+        service.updateLastName("456", "Smythe");
+        service.updatePhone("123", "0001112222");
+        service.updateAddress("123", "1 New Rd");
+        service.deleteContact("789");
+        service.patchContact("456", new ContactPatch(null, null, "4444444444", "4 Patch Ln"), 2);
+        service.addContacts(Arrays.asList(
+                new Contact("b1", "Batch", "One", "1111111111", "1 Batch St"),
+                new Contact("b2", "Batch", "Two", "2222222222", "2 Batch St")));
+    }
+
+    private static void assertSampleState(ContactService service) {
+        assertEquals(4, service.getContactCount());
+        assertEquals("0001112222", service.getContact("123").getPhone());
+        assertEquals("1 New Rd", service.getContact("123").getAddress());
+        assertEquals("Janet", service.getContact("456").getFirstName());
+        assertEquals("Smythe", service.getContact("456").getLastName());
+        assertEquals("4444444444", service.getContact("456").getPhone());
+        assertEquals("4 Patch Ln", service.getContact("456").getAddress());
+        assertFalse(service.contactExists("789"));
+        assertEquals("Two", service.getContact("b2").getLastName());
+    }
+
+    @ParameterizedTest
+    @EnumSource(FsyncPolicy.class)
+    @DisplayName("Journaled mutations should be recovered under every fsync policy")
+    public void testRecoverUnderEachPolicy(FsyncPolicy policy) throws IOException {
+        try (ContactPersistence persistence = ContactPersistence.open(tempDir, policy)) {
+            applySampleMutations(persistence.getService());
+        }
+
+        try (ContactPersistence recovered = ContactPersistence.open(tempDir, policy)) {
+            assertSampleState(recovered.getService());
+        }
+    }
+
+    @Test
+    @DisplayName("Rejected mutations should not be journaled")
+    public void testRejectedMutationsNotJournaled() throws IOException {
+        try (ContactPersistence persistence = ContactPersistence.open(tempDir, FsyncPolicy.GROUP_COMMIT)) {
+            ContactService service = persistence.getService();
+            service.addContact("123", "John", "Doe", "5551234567", "123 Main St");
+            long size = persistence.getJournal().size();
+
+            assertThrows(IllegalArgumentException.class, () -> service.addContact("123", "Jim", "Doe", "5551234567", "1 St"));
+            assertThrows(IllegalArgumentException.class, () -> service.updatePhone("123", "bad"));
+            assertThrows(IllegalArgumentException.class, () -> service.deleteContact("999"));
+            assertEquals(size, persistence.getJournal().size());
+        }
+    }
+
+    @Test
+    @DisplayName("After a failed write, mutations should be refused without changing the store")
+    public void testFailedJournalRefusesMutations() throws IOException {
+        ContactService service = new ContactService();
+        service.enablePhoneIndex();
+        ContactJournal journal = ContactJournal.open(tempDir.resolve("failing.journal"), FsyncPolicy.PER_OPERATION);
+        service.attachJournal(journal);
+        service.addContact("123", "John", "Doe", "5551234567", "123 Main St");
+        journal.close();  // The next flush writes to a closed channel and fails
+
+        assertThrows(UncheckedIOException.class, () -> service.addContact("456", "Jane", "Smith", "9876543210", "456 Oak Ave"));
+        int count = service.getContactCount();
+
+        assertThrows(UncheckedIOException.class, () -> service.addContact("789", "Bob", "Johnson", "5559876543", "789 Pine Rd"));
+        assertFalse(service.contactExists("789"));
+        assertTrue(service.findByPhone("5559876543").isEmpty());
+        assertThrows(UncheckedIOException.class, () -> service.updatePhone("123", "0001112222"));
+        assertEquals("5551234567", service.getContact("123").getPhone());
+        assertEquals(1, service.findByPhone("5551234567").size());
+        assertThrows(UncheckedIOException.class, () -> service.deleteContact("123"));
+        assertTrue(service.contactExists("123"));
+        int version = service.getContact("123").getVersion();
+        assertThrows(UncheckedIOException.class, () -> service.patchContact("123", new ContactPatch("Jim", null, null, "1 New Rd")));
+        assertEquals("John", service.getContact("123").getFirstName());
+        assertEquals(version, service.getContact("123").getVersion());
+        assertThrows(UncheckedIOException.class, () -> service.addContacts(Arrays.asList(
+                new Contact("b1", "Batch", "One", "1111111111", "1 Batch St"))));
+        assertFalse(service.contactExists("b1"));
+        assertEquals(count, service.getContactCount());
+    }
+
+    @Test
+    @DisplayName("A mutation whose frame the journal refuses should not change the store")
+    public void testOversizedFrameRefusesMutation() throws IOException {
+        Path file = tempDir.resolve("limited.journal");
+        ContactService service = new ContactService();
+        service.enablePhoneIndex();
+        try (ContactJournal journal = ContactJournal.open(file, FsyncPolicy.PER_OPERATION)) {
+            service.attachJournal(journal);
+            service.addContact("123", "John", "Doe", "5551234567", "123 Main St");
+            int version = service.getContact("123").getVersion();
+            journal.limitFrameSize(40);  // Below an add, a long update or a long patch
+
+            assertThrows(IllegalArgumentException.class, () -> service.addContact("456", "Jane", "Smith", "9876543210", "456 Oak Ave"));
+            assertFalse(service.contactExists("456"));
+            assertTrue(service.findByPhone("9876543210").isEmpty());
+            assertThrows(IllegalArgumentException.class, () -> service.updateAddress("123", "24 Much Longer Avenue"));
+            assertThrows(IllegalArgumentException.class, () -> service.patchContact("123",
+                    new ContactPatch("Jim", null, "0001112222", "24 Much Longer Avenue")));
+            assertEquals("123 Main St", service.getContact("123").getAddress());
+            assertEquals("John", service.getContact("123").getFirstName());
+            assertEquals(1, service.findByPhone("5551234567").size());
+            assertEquals(version, service.getContact("123").getVersion());
+
+            service.updateFirstName("123", "Jim");  // Small frames are still accepted
+        }
+
+        ContactService restored = new ContactService();
+        assertEquals(2, ContactJournal.replay(file, restored));
+        assertEquals(1, restored.getContactCount());
+        assertEquals("Jim", restored.getContact("123").getFirstName());
+        assertEquals("123 Main St", restored.getContact("123").getAddress());
+    }
+
+    @Test
+    @DisplayName("A batch too large for one journal frame should add nothing, and large batches should be recovered")
+    public void testBatchFrameLimits() throws IOException {
+        Path file = tempDir.resolve("batch.journal");
+        ContactService service = new ContactService();
+        service.enablePhoneIndex();
+        List<Contact> large = new ArrayList<>();
+        for (int i = 0; i < 80_000; i++) {
+            large.add(new Contact("c" + i, "First", "Last", "5551234567", i + " Main St"));
+        }
+        try (ContactJournal journal = ContactJournal.open(file, FsyncPolicy.GROUP_COMMIT)) {
+            service.attachJournal(journal);
+            journal.limitFrameSize(1000);
+            List<Contact> batch = Arrays.asList(
+                    new Contact("b1", "Batch", "One", "1111111111", "1 Batch St"),
+                    new Contact("b2", "Batch", "Two", "2222222222", "2 Batch St"),
+                    new Contact("b3", "Batch", "Six", "3333333333", "3 Batch St"),
+                    new Contact("b4", "Batch", "Ten", "4444444444", "4 Batch St"),
+                    new Contact("b5", "Batch", "Six", "5555555555", "5 Batch St"),
+                    new Contact("b6", "Batch", "Two", "6666666666", "6 Batch St"),
+                    new Contact("b7", "Batch", "One", "7777777777", "7 Batch St"),
+                    new Contact("b8", "Batch", "Ten", "8888888888", "8 Batch St"));
+            assertThrows(IllegalArgumentException.class, () -> service.addContacts(batch));
+            assertEquals(0, service.getContactCount());
+            assertTrue(service.findByPhone("1111111111").isEmpty());
+            assertEquals(0, journal.size());
+
+            journal.limitFrameSize(Integer.MAX_VALUE - 16);
+            assertTrue(service.addContacts(batch).isCommitted());
+            assertTrue(service.addContacts(large).isCommitted());  // Larger than the retained buffer
+        }
+
+        ContactService restored = new ContactService();
+        assertEquals(2, ContactJournal.replay(file, restored));
+        assertEquals(80_008, restored.getContactCount());
+        assertEquals("79999 Main St", restored.getContact("c79999").getAddress());
+        assertEquals("Ten", restored.getContact("b8").getLastName());
+    }
+
+    @Test
+    @DisplayName("A torn frame at the tail should be ignored and truncated")
+    public void testTornTail() throws IOException {
+        Path journal;
+        try (ContactPersistence persistence = ContactPersistence.open(tempDir, FsyncPolicy.GROUP_COMMIT)) {
+            applySampleMutations(persistence.getService());
+            journal = persistence.getJournal().getFile();
+        }
+        long intactSize = Files.size(journal);
+        try (FileChannel channel = FileChannel.open(journal, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(new byte[] {0, 0, 0, 40, 3, 0, 1}));
+        }
+
+        try (ContactPersistence recovered = ContactPersistence.open(tempDir, FsyncPolicy.GROUP_COMMIT)) {
+            assertSampleState(recovered.getService());
+            assertEquals(intactSize, Files.size(journal));
+            recovered.getService().deleteContact("b1");
+        }
+        try (ContactPersistence recovered = ContactPersistence.open(tempDir, FsyncPolicy.GROUP_COMMIT)) {
+            assertEquals(3, recovered.getService().getContactCount());
+        }
+    }
+
+    @Test
+    @DisplayName("Replaying a journal over a snapshot that already holds its contacts should overwrite them")
+    public void testReplayOverNewerSnapshot() throws IOException {
+        Path journal = tempDir.resolve("replay.journal");
+        ContactService original = new ContactService();
+        try (ContactJournal log = ContactJournal.open(journal, FsyncPolicy.GROUP_COMMIT)) {
+            original.attachJournal(log);
+            original.addContact("123", "John", "Doe", "5551234567", "123 Main St");
+            original.updateFirstName("123", "Johnny");
+            original.addContact("456", "Jane", "Smith", "9876543210", "456 Oak Ave");
+            original.attachJournal(null);
+        }
+        ContactService restored = new ContactService();
+        restored.addContact("123", "Johnny", "Doe", "5551234567", "123 Main St");
+
+        assertEquals(3, ContactJournal.replay(journal, restored));
+        assertEquals(2, restored.getContactCount());
+        assertEquals("Johnny", restored.getContact("123").getFirstName());
+    }
+
+    @Test
+    @DisplayName("Concurrent writers sharing group commits should all be recovered")
+    public void testConcurrentGroupCommit() throws Exception {
+        int threads = 8;
+        int perThread = 200;
+        try (ContactPersistence persistence = ContactPersistence.open(tempDir, FsyncPolicy.GROUP_COMMIT)) {
+            ContactService service = persistence.getService();
+            List<Thread> workers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                final int thread = t;
+                workers.add(new Thread(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        String id = "t" + thread + "-" + i;
+                        service.addContact(id, "First", "Last", "5551234567", "1 Main St");
+                        service.updateAddress(id, i + " Elm St");
+                    }
+                }));
+            }
+            workers.forEach(Thread::start);
+            for (Thread worker : workers) {
+                worker.join();
+            }
+        }
+
+        try (ContactPersistence recovered = ContactPersistence.open(tempDir, FsyncPolicy.GROUP_COMMIT)) {
+            ContactService service = recovered.getService();
+            assertEquals(threads * perThread, service.getContactCount());
+            assertEquals((perThread - 1) + " Elm St", service.getContact("t7-" + (perThread - 1)).getAddress());
+        }
+    }
+
+    @Test
+    @DisplayName("Replaying a missing journal should apply nothing")
+    public void testReplayMissingJournal() throws IOException {
+        ContactService service = new ContactService();
+
+        assertEquals(0, ContactJournal.replay(tempDir.resolve("missing.journal"), service));
+        assertEquals(0, service.getContactCount());
+    }
+}
\ No newline at end of file
@@ -0,0 +1,26 @@
+/**
+ * ContactListener interface receives every committed ContactService mutation.
+ *
+ * Callbacks run while the service holds the affected contact's stripe lock (every
+ * stripe for batch adds), so a listener sees the mutations of each contact in the
+ * order they were applied. Listeners must be fast, must not block, and must never
+ * call back into the service.
+ */
+interface ContactListener {
+    /**
+     * @param contact Contact that was added
+     */
+    void contactAdded(Contact contact);
+
+    /**
+     * @param contact Contact that was deleted, with its last field values
+     */
+    void contactDeleted(Contact contact);
+
+    /**
+     * @param contact Contact that was updated, already holding the new value
+     * @param field Field that changed
+     * @param oldValue Value of the field before the update
+     */
+    void contactUpdated(Contact contact, ContactField field, String oldValue);
+}
\ No newline at end of file
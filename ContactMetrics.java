@@ -0,0 +1,298 @@
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * ContactMetrics class counts and times ContactService operations.
+ *
+ * For every ContactOperation it keeps lock-free success and failure counters and a
+ * LatencyHistogram. A failure is an operation that threw; for GET and EXISTS it is a
+ * miss, and for ADD_BATCH a rejected batch. It also counts ContactValidator rule
+ * failures, both from Contact constructors and setters and from bulk record imports.
+ * Contacts are validated outside any service, so those counts are process-wide: each
+ * enabled ContactMetrics sees every rejection.
+ *
+ * A ContactService only records metrics after enableMetrics; until then each operation
+ * pays a single volatile read. While enabled, every operation is counted, but only one
+ * in sampleEvery is timed, because reading the clock around a cache-missing lookup
+ * costs more than the lookup itself. Each timed operation is also emitted as a
+ * contacts.Operation JFR event whenever a flight recording has that event enabled.
+ * A reporting thread can call snapshotAndReset to collect one interval at a time.
+ */
+public final class ContactMetrics {
+    private static final int RULE_COUNT = Integer.bitCount(ContactValidator.ALL_RULES);
+    private static final long NOT_TIMED = Long.MIN_VALUE;  // start() result for an unsampled operation
+    private static volatile ContactMetrics[] active = new ContactMetrics[0];
+
+    private final LongAdder[] successes = new LongAdder[ContactOperation.values().length];
+    private final LongAdder[] failures = new LongAdder[ContactOperation.values().length];
+    private final LatencyHistogram[] latencies = new LatencyHistogram[ContactOperation.values().length];
+    private final LongAdder[] rejections = new LongAdder[RULE_COUNT];
+    private final int sampleEvery;
+    private volatile long intervalStart = System.nanoTime();
+
+    /**
+     * Constructor creates metrics that time one in sampleEvery operations
+     * @param sampleEvery Average number of operations per timed operation
+     * @throws IllegalArgumentException if sampleEvery is less than 1
+     */
+    ContactMetrics(int sampleEvery) {
+        if (sampleEvery < 1) {
+            throw new IllegalArgumentException("Sample rate must be at least 1");
+        }
+        this.sampleEvery = sampleEvery;
+        for (int i = 0; i < successes.length; i++) {
+            successes[i] = new LongAdder();
+            failures[i] = new LongAdder();
+            latencies[i] = new LatencyHistogram();
+        }
+        for (int i = 0; i < RULE_COUNT; i++) {
+            rejections[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * @return Average number of operations per timed operation
+     */
+    public int getSampleEvery() {
+        return sampleEvery;
+    }
+
+    /**
+     * Starts an operation, deciding whether to time it
+     * @return Token to pass to record
+     */
+    long start() {
+        if (sampleEvery == 1 || ThreadLocalRandom.current().nextInt(sampleEvery) == 0) {
+            return System.nanoTime();
+        }
+        return NOT_TIMED;
+    }
+
+    /**
+     * Records one finished operation
+     * @param operation Operation that ran
+     * @param start Value returned by start when it began
+     * @param success Whether it succeeded (or hit, for lookups)
+     */
+    void record(ContactOperation operation, long start, boolean success) {
+        (success ? successes : failures)[operation.ordinal()].increment();
+        if (start != NOT_TIMED) {
+            long latency = System.nanoTime() - start;
+            latencies[operation.ordinal()].record(latency);
+            ContactEvents.operation(operation, success, latency);
+        }
+    }
+
+    /**
+     * Runs and records an operation that fails by throwing
+     * @param operation Operation being run
+     * @param body Operation body
+     * @return Result of body
+     */
+    <T> T time(ContactOperation operation, Supplier<T> body) {
+        long start = start();
+        boolean success = false;
+        try {
+            T result = body.get();
+            success = true;
+            return result;
+        } finally {
+            record(operation, start, success);
+        }
+    }
+
+    /**
+     * Runs and records an operation without a result that fails by throwing
+     * @param operation Operation being run
+     * @param body Operation body
+     */
+    void run(ContactOperation operation, Runnable body) {
+        long start = start();
+        boolean success = false;
+        try {
+            body.run();
+            success = true;
+        } finally {
+            record(operation, start, success);
+        }
+    }
+
+    /**
+     * Counts a validation failure in every enabled ContactMetrics
+     * @param rules ContactValidator result with one bit per failed rule
+     */
+    static void recordRejection(int rules) {
+        ContactMetrics[] current = active;
+        if (current.length == 0 || rules == ContactValidator.VALID) {
+            return;
+        }
+        for (ContactMetrics metrics : current) {
+            for (int i = 0; i < RULE_COUNT; i++) {
+                if ((rules & (1 << i)) != 0) {
+                    metrics.rejections[i].increment();
+                }
+            }
+        }
+        ContactEvents.validationRejected(rules);
+    }
+
+    /**
+     * Starts counting validation failures into this instance
+     */
+    void activate() {
+        synchronized (ContactMetrics.class) {
+            ContactMetrics[] current = active;
+            ContactMetrics[] grown = Arrays.copyOf(current, current.length + 1);
+            grown[current.length] = this;
+            active = grown;
+        }
+    }
+
+    /**
+     * Stops counting validation failures into this instance
+     */
+    void deactivate() {
+        synchronized (ContactMetrics.class) {
+            ContactMetrics[] current = active;
+            active = Arrays.stream(current).filter(m -> m != this).toArray(ContactMetrics[]::new);
+        }
+    }
+
+    /**
+     * @return Copy of every counter and histogram, leaving them running
+     */
+    public Snapshot snapshot() {
+        return capture(false);
+    }
+
+    /**
+     * Copies every counter and histogram and resets them, so the next snapshot covers
+     * only what happens after this call. Values recorded concurrently are never lost,
+     * but may be split across two consecutive snapshots.
+     * @return Everything recorded since the last reset
+     */
+    public Snapshot snapshotAndReset() {
+        return capture(true);
+    }
+
+    private Snapshot capture(boolean reset) {
+        long now = System.nanoTime();
+        long start = intervalStart;
+        if (reset) {
+            intervalStart = now;
+        }
+        Map<ContactOperation, OperationStats> operations = new EnumMap<>(ContactOperation.class);
+        for (ContactOperation operation : ContactOperation.values()) {
+            int i = operation.ordinal();
+            operations.put(operation, new OperationStats(
+                    reset ? successes[i].sumThenReset() : successes[i].sum(),
+                    reset ? failures[i].sumThenReset() : failures[i].sum(),
+                    reset ? latencies[i].snapshotAndReset() : latencies[i].snapshot()));
+        }
+        long[] rejected = new long[RULE_COUNT];
+        for (int i = 0; i < RULE_COUNT; i++) {
+            rejected[i] = reset ? rejections[i].sumThenReset() : rejections[i].sum();
+        }
+        return new Snapshot(now - start, operations, rejected);
+    }
+
+    /**
+     * OperationStats class holds the counters and latencies of one operation
+     */
+    public static final class OperationStats {
+        private final long successes;
+        private final long failures;
+        private final LatencyHistogram.Snapshot latency;
+
+        OperationStats(long successes, long failures, LatencyHistogram.Snapshot latency) {
+            this.successes = successes;
+            this.failures = failures;
+            this.latency = latency;
+        }
+
+        /**
+         * @return Calls that succeeded, or hit for GET and EXISTS
+         */
+        public long getSuccessCount() {
+            return successes;
+        }
+
+        /**
+         * @return Calls that threw, missed, or for ADD_BATCH were rejected
+         */
+        public long getFailureCount() {
+            return failures;
+        }
+
+        /**
+         * @return Latency distribution of the timed calls
+         */
+        public LatencyHistogram.Snapshot getLatency() {
+            return latency;
+        }
+    }
+
+    /**
+     * Snapshot class is an immutable copy of a ContactMetrics interval
+     */
+    public static final class Snapshot {
+        private final long intervalNanos;
+        private final Map<ContactOperation, OperationStats> operations;
+        private final long[] rejections;
+
+        Snapshot(long intervalNanos, Map<ContactOperation, OperationStats> operations, long[] rejections) {
+            this.intervalNanos = intervalNanos;
+            this.operations = operations;
+            this.rejections = rejections;
+        }
+
+        /**
+         * @return Nanoseconds covered, since enabling or the previous reset
+         */
+        public long getIntervalNanos() {
+            return intervalNanos;
+        }
+
+        /**
+         * @param operation Operation to look up
+         * @return Counters and latencies of that operation
+         */
+        public OperationStats get(ContactOperation operation) {
+            return operations.get(operation);
+        }
+
+        /**
+         * @param rule A single ContactValidator rule bit, such as INVALID_PHONE
+         * @return Number of values that failed that rule
+         * @throws IllegalArgumentException if rule is not exactly one ContactValidator rule
+         */
+        public long getRejectionCount(int rule) {
+            if (Integer.bitCount(rule) != 1 || (rule & ContactValidator.ALL_RULES) == 0) {
+                throw new IllegalArgumentException("Rule must be a single ContactValidator rule");
+            }
+            return rejections[Integer.numberOfTrailingZeros(rule)];
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder report = new StringBuilder(String.format("interval=%dms%n", intervalNanos / 1_000_000));
+            for (Map.Entry<ContactOperation, OperationStats> entry : operations.entrySet()) {
+                OperationStats stats = entry.getValue();
+                if (stats.latency.getCount() > 0) {
+                    report.append(String.format("%-20s ok=%d failed=%d %s%n", entry.getKey(),
+                            stats.successes, stats.failures, stats.latency));
+                }
+            }
+            for (int i = 0; i < RULE_COUNT; i++) {
+                if (rejections[i] > 0) {
+                    report.append(String.format("rejected: %s x%d%n", ContactValidator.messageFor(1 << i), rejections[i]));
+                }
+            }
+            return report.toString();
+        }
+    }
+}
\ No newline at end of file
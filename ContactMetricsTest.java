@@ -0,0 +1,211 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * Unit tests for ContactMetrics and LatencyHistogram classes
+ * Tests operation counters, validation rejection counts, percentile accuracy,
+ * snapshot-and-reset and JFR events
+ */
+public class ContactMetricsTest {
+    private ContactService contactService;
+
+    @BeforeEach
+    public void setUp() {
+        contactService = new ContactService();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        contactService.disableMetrics();
+    }
+
+    // Operation counter tests
+    @Test
+    @DisplayName("Metrics should be off by default and record nothing while disabled")
+    public void testDisabledByDefault() {
+        assertNull(contactService.getMetrics());
+        contactService.addContact("123", "John", "Doe", "5551234567", "123 Main St");
+
+        ContactMetrics metrics = contactService.enableMetrics();
+
+        assertSame(metrics, contactService.enableMetrics());
+        assertEquals(0, metrics.snapshot().get(ContactOperation.ADD).getSuccessCount());
+    }
+
+    @Test
+    @DisplayName("Lookups should be counted as hits and misses")
+    public void testHitAndMissCounts() {
+        ContactMetrics metrics = contactService.enableMetrics();
+        contactService.addContact("123", "John", "Doe", "5551234567", "123 Main St");
+
+        contactService.getContact("123");
+        contactService.getContact("123");
+        assertThrows(IllegalArgumentException.class, () -> contactService.getContact("999"));
+        assertTrue(contactService.contactExists("123"));
+        assertFalse(contactService.contactExists("999"));
+
+        ContactMetrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals(2, snapshot.get(ContactOperation.GET).getSuccessCount());
+        assertEquals(1, snapshot.get(ContactOperation.GET).getFailureCount());
+        assertEquals(3, snapshot.get(ContactOperation.GET).getLatency().getCount());
+        assertEquals(1, snapshot.get(ContactOperation.EXISTS).getSuccessCount());
+        assertEquals(1, snapshot.get(ContactOperation.EXISTS).getFailureCount());
+        assertEquals(1, snapshot.get(ContactOperation.ADD).getSuccessCount());
+    }
+
+    @Test
+    @DisplayName("Each mutation should be counted once under its own operation")
+    public void testMutationCounts() {
+        ContactMetrics metrics = contactService.enableMetrics();
+        contactService.addContact("123", "John", "Doe", "5551234567", "123 Main St");
+        contactService.updateFirstName("123", "Johnny");
+        contactService.updatePhone("123", "9876543210");
+        assertThrows(IllegalArgumentException.class, () -> contactService.updatePhone("123", "bad"));
+        contactService.addContacts(Arrays.asList(new Contact("456", "Jane", "Doe", "5551234567", "1 Main St")));
+        contactService.addContacts(Arrays.asList(new Contact("456", "Jane", "Doe", "5551234567", "1 Main St")));
+        contactService.deleteContact("123");
+
+        ContactMetrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals(1, snapshot.get(ContactOperation.UPDATE_FIRST_NAME).getSuccessCount());
+        assertEquals(1, snapshot.get(ContactOperation.UPDATE_PHONE).getSuccessCount());
+        assertEquals(1, snapshot.get(ContactOperation.UPDATE_PHONE).getFailureCount());
+        assertEquals(1, snapshot.get(ContactOperation.ADD_BATCH).getSuccessCount());
+        assertEquals(1, snapshot.get(ContactOperation.ADD_BATCH).getFailureCount());
+        assertEquals(1, snapshot.get(ContactOperation.DELETE).getSuccessCount());
+        assertEquals(0, snapshot.get(ContactOperation.GET).getLatency().getCount());
+    }
+
+    @Test
+    @DisplayName("Validation failures should be counted per rule")
+    public void testValidationRejections() {
+        ContactMetrics metrics = contactService.enableMetrics();
+
+        assertThrows(IllegalArgumentException.class, () -> new Contact("123", "John", "Doe", "555", "123 Main St"));
+        assertThrows(IllegalArgumentException.class, () -> contactService.addContact("12345678901", "J", "D", "5551234567", "1 St"));
+        contactService.addContactRecords(List.<CharSequence[]>of(
+                new CharSequence[] {"1", "Christopher", "Doe", "555", "1 Main St"}));
+
+        ContactMetrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals(2, snapshot.getRejectionCount(ContactValidator.INVALID_PHONE));
+        assertEquals(1, snapshot.getRejectionCount(ContactValidator.INVALID_CONTACT_ID));
+        assertEquals(1, snapshot.getRejectionCount(ContactValidator.INVALID_FIRST_NAME));
+        assertEquals(0, snapshot.getRejectionCount(ContactValidator.INVALID_ADDRESS));
+        assertEquals(1, snapshot.get(ContactOperation.ADD).getFailureCount());
+        assertThrows(IllegalArgumentException.class, () -> snapshot.getRejectionCount(ContactValidator.ALL_RULES));
+
+        contactService.disableMetrics();
+        assertThrows(IllegalArgumentException.class, () -> new Contact("123", "John", "Doe", "555", "123 Main St"));
+        assertEquals(2, metrics.snapshot().getRejectionCount(ContactValidator.INVALID_PHONE));
+    }
+
+    @Test
+    @DisplayName("Snapshot and reset should start a fresh interval")
+    public void testSnapshotAndReset() {
+        ContactMetrics metrics = contactService.enableMetrics();
+        contactService.addContact("123", "John", "Doe", "5551234567", "123 Main St");
+        contactService.getContactCount();
+
+        ContactMetrics.Snapshot first = metrics.snapshotAndReset();
+        contactService.getContactCount();
+        ContactMetrics.Snapshot second = metrics.snapshotAndReset();
+
+        assertEquals(1, first.get(ContactOperation.ADD).getSuccessCount());
+        assertEquals(1, first.get(ContactOperation.COUNT).getSuccessCount());
+        assertEquals(0, second.get(ContactOperation.ADD).getSuccessCount());
+        assertEquals(1, second.get(ContactOperation.COUNT).getSuccessCount());
+        assertTrue(first.toString().contains("COUNT"));
+    }
+
+    @Test
+    @DisplayName("Sampled metrics should count every call but time only some")
+    public void testSampledTiming() {
+        ContactMetrics metrics = contactService.enableMetrics(10);
+        for (int i = 0; i < 10_000; i++) {
+            contactService.contactExists("123");
+        }
+
+        ContactMetrics.OperationStats exists = metrics.snapshot().get(ContactOperation.EXISTS);
+        assertEquals(10, metrics.getSampleEvery());
+        assertEquals(10_000, exists.getFailureCount());
+        assertTrue(exists.getLatency().getCount() > 500 && exists.getLatency().getCount() < 2000);
+        assertThrows(IllegalArgumentException.class, () -> new ContactService().enableMetrics(0));
+    }
+
+    // Histogram tests
+    @Test
+    @DisplayName("Histogram percentiles should be within 3% of exact percentiles")
+    public void testHistogramAccuracy() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Random random = new Random(11);
+        long[] values = new long[100_000];
+        for (int i = 0; i < values.length; i++) {
+            // Log-uniform from 1ns to about 1s
+            values[i] = (long) Math.pow(10, random.nextDouble() * 9);
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(values.length, snapshot.getCount());
+        assertEquals(values[values.length - 1], snapshot.getMax());
+        for (double percentile : new double[] {50, 90, 99, 99.9}) {
+            long exact = values[(int) Math.ceil(percentile / 100 * values.length) - 1];
+            long reported = snapshot.getValueAtPercentile(percentile);
+            assertTrue(reported >= exact && reported <= exact + exact / 32 + 1, percentile + ": " + reported + " vs " + exact);
+        }
+    }
+
+    @Test
+    @DisplayName("Histogram buckets should cover the full range of long")
+    public void testHistogramBuckets() {
+        assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucketFor(Long.MAX_VALUE));
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.highestValueIn(LatencyHistogram.BUCKETS - 1));
+        for (long value : new long[] {0, 31, 32, 33, 63, 64, 1000, 1L << 40, (1L << 40) + 12345}) {
+            int bucket = LatencyHistogram.bucketFor(value);
+            assertTrue(value <= LatencyHistogram.highestValueIn(bucket));
+            assertTrue(bucket == 0 || value > LatencyHistogram.highestValueIn(bucket - 1));
+        }
+        assertEquals(0, new LatencyHistogram().snapshot().getValueAtPercentile(99));
+        assertThrows(IllegalArgumentException.class, () -> new LatencyHistogram().snapshot().getValueAtPercentile(101));
+    }
+
+    // Flight recorder tests
+    @Test
+    @DisplayName("Operations should be emitted as JFR events while metrics are enabled")
+    public void testFlightRecorderEvents(@TempDir Path tempDir) throws Exception {
+        Path file = tempDir.resolve("contacts.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("contacts.Operation");
+            recording.enable("contacts.ValidationRejected");
+            recording.start();
+            contactService.getContactCount();
+            contactService.enableMetrics();
+            contactService.addContact("123", "John", "Doe", "5551234567", "123 Main St");
+            assertThrows(IllegalArgumentException.class, () -> contactService.updatePhone("123", "555"));
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        List<String> operations = events.stream()
+                .filter(e -> e.getEventType().getName().equals("contacts.Operation"))
+                .map(e -> e.getString("operation") + ":" + e.getBoolean("success"))
+                .collect(Collectors.toList());
+        assertEquals(Arrays.asList("ADD:true", "UPDATE_PHONE:false"), operations);
+        assertEquals(1, events.stream().filter(e -> e.getEventType().getName().equals("contacts.ValidationRejected")).count());
+    }
+}
\ No newline at end of file
@@ -0,0 +1,38 @@
+/**
+ * ContactOperation enum names each public ContactService operation that ContactMetrics measures
+ */
+public enum ContactOperation {
+    ADD,
+    ADD_BATCH,
+    DELETE,
+    UPDATE_FIRST_NAME,
+    UPDATE_LAST_NAME,
+    UPDATE_PHONE,
+    UPDATE_ADDRESS,
+    PATCH,
+    GET,
+    EXISTS,
+    COUNT,
+    FIND_BY_PHONE,
+    FIND_BY_NAME_PREFIX,
+    FIND_BY_ADDRESS,
+    LIST,
+    QUERY;
+
+    /**
+     * @param field Field being updated
+     * @return Update operation for that field
+     */
+    static ContactOperation forUpdate(ContactField field) {
+        switch (field) {
+            case FIRST_NAME:
+                return UPDATE_FIRST_NAME;
+            case LAST_NAME:
+                return UPDATE_LAST_NAME;
+            case PHONE:
+                return UPDATE_PHONE;
+            default:
+                return UPDATE_ADDRESS;
+        }
+    }
+}
\ No newline at end of file
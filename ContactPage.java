@@ -0,0 +1,42 @@
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * ContactPage class is one page of contacts from ContactService.listContacts, with the
+ * cursor that fetches the page after it.
+ *
+ * A cursor marks a position in the sort order rather than an offset, so fetching the next
+ * page costs the same however deep it is, and contacts added or deleted before the
+ * position do not shift later pages. A contact renamed across the position while a
+ * caller pages through may be returned twice or not at all.
+ */
+public final class ContactPage {
+    private final List<Contact> contacts;
+    private final String nextCursor;
+
+    ContactPage(List<Contact> contacts, String nextCursor) {
+        this.contacts = Collections.unmodifiableList(contacts);
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * @return Contacts of this page in sort order, at most the requested page size
+     */
+    public List<Contact> getContacts() {
+        return contacts;
+    }
+
+    /**
+     * @return Cursor to pass to listContacts for the next page, or null if this is the last page
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    /**
+     * @return true if contacts may follow this page
+     */
+    public boolean hasMore() {
+        return nextCursor != null;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,58 @@
+/**
+ * ContactPatch class holds new values for any of the updatable fields of a contact, for
+ * ContactService.patchContact to apply in one step.
+ *
+ * Every value is validated when the patch is built, so a patch that exists can be applied
+ * without failing part way. A null value leaves that field unchanged, but a patch must
+ * change at least one field. Patches are immutable and can be shared between threads
+ * and reused for many contacts.
+ */
+public final class ContactPatch {
+    private final String[] values = new String[4];  // By ContactField ordinal, null if unchanged
+
+    /**
+     * Constructor for ContactPatch object
+     * @param firstName New first name, or null to leave it unchanged; max 10 characters
+     * @param lastName New last name, or null to leave it unchanged; max 10 characters
+     * @param phone New phone number, or null to leave it unchanged; exactly 10 digits
+     * @param address New address, or null to leave it unchanged; max 30 characters
+     * @throws IllegalArgumentException if any non-null value is invalid for its field, or every value is null
+     */
+    public ContactPatch(String firstName, String lastName, String phone, String address) {
+        // Validate every field in declaration order, reporting the first that fails
+        put(ContactField.FIRST_NAME, firstName);
+        put(ContactField.LAST_NAME, lastName);
+        put(ContactField.PHONE, phone);
+        put(ContactField.ADDRESS, address);
+        if (firstName == null && lastName == null && phone == null && address == null) {
+            throw new IllegalArgumentException("Patch must change at least one field");
+        }
+    }
+
+    /**
+     * @param field Field to read
+     * @return New value of the field, or null if the patch leaves it unchanged
+     */
+    public String get(ContactField field) {
+        return values[field.ordinal()];
+    }
+
+    private void put(ContactField field, String value) {
+        if (value != null) {
+            Contact.requireValid(field, value);
+            values[field.ordinal()] = value;
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (ContactField field : ContactField.values()) {
+            String value = values[field.ordinal()];
+            if (value != null) {
+                sb.append(sb.length() == 0 ? "" : ", ").append(field).append("='").append(value).append('\'');
+            }
+        }
+        return "ContactPatch{" + sb + '}';
+    }
+}
\ No newline at end of file
@@ -0,0 +1,272 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * ContactPersistence class gives a ContactService durable storage in a directory.
+ *
+ * The directory holds numbered journal segments (contacts.journal.N) and at most one
+ * live snapshot (contacts.snapshot.N). A snapshot numbered N contains everything
+ * journaled before segment N, so recovery loads the newest snapshot and replays
+ * segments N and later. Every later mutation is journaled according to the chosen
+ * FsyncPolicy.
+ *
+ * A checkpoint folds the journal into a new snapshot without stopping readers or
+ * writers: it switches the service to a fresh segment, writes a snapshot while
+ * mutations continue into that segment, and then deletes the segments and snapshot it
+ * replaced. Replay is idempotent, so the snapshot may already include some of the
+ * mutations in the fresh segment. Recovery time is therefore bounded by the live data
+ * plus whatever was journaled since the last checkpoint, not by history length.
+ */
+public final class ContactPersistence implements Closeable {
+    static final String SNAPSHOT_PREFIX = "contacts.snapshot.";
+    static final String JOURNAL_PREFIX = "contacts.journal.";
+    private static final long AUTO_CHECKPOINT_POLL_MILLIS = 1000;
+
+    private final Path directory;
+    private final ContactService service;
+    private final FsyncPolicy policy;
+    private final long intervalMillis;
+    private final Object checkpointLock = new Object();
+    private volatile ContactJournal journal;
+    private volatile long segment;  // Number of the segment currently being appended to
+    private ScheduledExecutorService checkpointer;  // Guarded by checkpointLock
+    private volatile Exception lastCheckpointFailure;
+    private boolean closed;  // Guarded by checkpointLock
+
+    private ContactPersistence(Path directory, ContactService service, FsyncPolicy policy, long intervalMillis,
+                               ContactJournal journal, long segment) {
+        this.directory = directory;
+        this.service = service;
+        this.policy = policy;
+        this.intervalMillis = intervalMillis;
+        this.journal = journal;
+        this.segment = segment;
+    }
+
+    /**
+     * Recovers the service stored in a directory and enables journaling
+     * @param directory Directory holding the snapshot and journal, created if missing
+     * @param policy When journaled mutations are forced to disk
+     * @return Open persistence with its recovered service
+     * @throws IOException if the directory cannot be read or a snapshot record is corrupt
+     */
+    public static ContactPersistence open(Path directory, FsyncPolicy policy) throws IOException {
+        return open(directory, policy, ContactJournal.DEFAULT_INTERVAL_MILLIS);
+    }
+
+    /**
+     * Recovers the service stored in a directory and enables journaling
+     * @param directory Directory holding the snapshot and journal, created if missing
+     * @param policy When journaled mutations are forced to disk
+     * @param intervalMillis Flush interval for FsyncPolicy.INTERVAL, ignored otherwise
+     * @return Open persistence with its recovered service
+     * @throws IOException if the directory cannot be read or a snapshot record is corrupt
+     */
+    public static ContactPersistence open(Path directory, FsyncPolicy policy, long intervalMillis) throws IOException {
+        if (directory == null || policy == null) {
+            throw new IllegalArgumentException("Directory and policy cannot be null");
+        }
+        Files.createDirectories(directory);
+        ContactService service = new ContactService();
+
+        List<Long> snapshots = numberedFiles(directory, SNAPSHOT_PREFIX);
+        long firstSegment = 1;
+        if (!snapshots.isEmpty()) {
+            firstSegment = snapshots.get(snapshots.size() - 1);
+            ContactSnapshot.loadInto(service, snapshotFile(directory, firstSegment));
+        }
+        long lastSegment = firstSegment;
+        for (long number : numberedFiles(directory, JOURNAL_PREFIX)) {
+            if (number >= firstSegment) {
+                ContactJournal.replay(journalFile(directory, number), service);
+                lastSegment = number;
+            }
+        }
+
+        ContactJournal journal = ContactJournal.open(journalFile(directory, lastSegment), policy, intervalMillis);
+        service.attachJournal(journal);
+        ContactPersistence persistence = new ContactPersistence(directory, service, policy, intervalMillis,
+                journal, lastSegment);
+        // Finish any cleanup a crash interrupted after its snapshot was written
+        persistence.deleteObsoleteFiles(firstSegment);
+        return persistence;
+    }
+
+    /**
+     * Folds everything journaled so far into a new snapshot and deletes the replaced files
+     * Readers and writers keep running; writers only pause while the service switches segments.
+     * @return Number of contacts in the new snapshot
+     * @throws IOException if the new segment or snapshot cannot be written
+     * @throws IllegalStateException if this persistence is closed
+     */
+    public long checkpoint() throws IOException {
+        synchronized (checkpointLock) {
+            if (closed) {
+                throw new IllegalStateException("Contact persistence is closed");
+            }
+            long next = segment + 1;
+            ContactJournal fresh = ContactJournal.open(journalFile(directory, next), policy, intervalMillis);
+            ContactJournal previous = service.attachJournal(fresh);
+            journal = fresh;
+            segment = next;
+            previous.close();
+
+            long count = ContactSnapshot.save(service, snapshotFile(directory, next));
+            deleteObsoleteFiles(next);
+            return count;
+        }
+    }
+
+    /**
+     * Starts a background thread that checkpoints whenever the current journal segment
+     * grows past a size, replacing any previous automatic checkpoint setting
+     * @param journalBytes Segment size that triggers a checkpoint
+     * @throws IllegalArgumentException if journalBytes is less than 1
+     */
+    public void enableAutoCheckpoint(long journalBytes) {
+        if (journalBytes < 1) {
+            throw new IllegalArgumentException("Checkpoint threshold must be at least 1 byte");
+        }
+        synchronized (checkpointLock) {
+            if (closed) {
+                throw new IllegalStateException("Contact persistence is closed");
+            }
+            disableAutoCheckpoint();
+            checkpointer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "contact-checkpointer");
+                thread.setDaemon(true);
+                return thread;
+            });
+            checkpointer.scheduleWithFixedDelay(() -> {
+                if (journal.size() >= journalBytes) {
+                    try {
+                        checkpoint();
+                        lastCheckpointFailure = null;
+                    } catch (IOException | RuntimeException e) {
+                        lastCheckpointFailure = e;
+                    }
+                }
+            }, AUTO_CHECKPOINT_POLL_MILLIS, AUTO_CHECKPOINT_POLL_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stops automatic checkpoints, if enabled
+     */
+    public void disableAutoCheckpoint() {
+        synchronized (checkpointLock) {
+            if (checkpointer != null) {
+                checkpointer.shutdown();
+                checkpointer = null;
+            }
+        }
+    }
+
+    /**
+     * @return Service whose mutations are journaled
+     */
+    public ContactService getService() {
+        return service;
+    }
+
+    /**
+     * @return Directory holding the snapshot and journal
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @return Journal segment currently receiving the service's mutations
+     */
+    public ContactJournal getJournal() {
+        return journal;
+    }
+
+    /**
+     * @return Failure of the most recent automatic checkpoint, or null if it succeeded
+     */
+    public Exception getLastCheckpointFailure() {
+        return lastCheckpointFailure;
+    }
+
+    /**
+     * Stops automatic checkpoints, then detaches and closes the journal, flushing every
+     * journaled mutation. The service stays usable but is no longer durable.
+     * @throws IOException if the final flush fails
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (checkpointLock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            disableAutoCheckpoint();
+            service.attachJournal(null);
+            journal.close();
+        }
+    }
+
+    /**
+     * Deletes snapshots and journal segments made redundant by the snapshot numbered keepFrom
+     */
+    private void deleteObsoleteFiles(long keepFrom) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.toArray(Path[]::new)) {
+                String name = file.getFileName().toString();
+                if (name.startsWith(SNAPSHOT_PREFIX) && name.endsWith(".tmp")) {
+                    Files.deleteIfExists(file);  // Left behind by a save that crashed
+                }
+            }
+        }
+        for (long number : numberedFiles(directory, SNAPSHOT_PREFIX)) {
+            if (number < keepFrom) {
+                Files.deleteIfExists(snapshotFile(directory, number));
+            }
+        }
+        if (!Files.exists(snapshotFile(directory, keepFrom))) {
+            return;  // Without that snapshot the older segments are still needed
+        }
+        for (long number : numberedFiles(directory, JOURNAL_PREFIX)) {
+            if (number < keepFrom) {
+                Files.deleteIfExists(journalFile(directory, number));
+            }
+        }
+    }
+
+    static Path snapshotFile(Path directory, long number) {
+        return directory.resolve(SNAPSHOT_PREFIX + String.format("%010d", number));
+    }
+
+    static Path journalFile(Path directory, long number) {
+        return directory.resolve(JOURNAL_PREFIX + String.format("%010d", number));
+    }
+
+    /**
+     * Lists the numbers of files named prefix followed by digits, in ascending order
+     */
+    private static List<Long> numberedFiles(Path directory, String prefix) throws IOException {
+        List<Long> numbers = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.toArray(Path[]::new)) {
+                String name = file.getFileName().toString();
+                if (name.startsWith(prefix) && name.length() > prefix.length()
+                        && name.substring(prefix.length()).chars().allMatch(Character::isDigit)) {
+                    numbers.add(Long.parseLong(name.substring(prefix.length())));
+                }
+            }
+        }
+        Collections.sort(numbers);
+        return numbers;
+    }
+}
\ No newline at end of file
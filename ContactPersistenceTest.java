@@ -0,0 +1,151 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Unit tests for ContactPersistence checkpointing
+ * Tests that checkpoints fold the journal into a snapshot, remove replaced files and
+ * stay correct while writers keep running
+ */
+public class ContactPersistenceTest {
+    @TempDir
+    Path tempDir;
+
+    private List<String> fileNames() throws IOException {
+        try (Stream<Path> files = Files.list(tempDir)) {
+            return files.map(file -> file.getFileName().toString()).sorted().collect(Collectors.toList());
+        }
+    }
+
+    @Test
+    @DisplayName("Checkpoint should replace the journal with a snapshot")
+    public void testCheckpointReplacesJournal() throws IOException {
+        try (ContactPersistence persistence = ContactPersistence.open(tempDir, FsyncPolicy.GROUP_COMMIT)) {
+            ContactService service = persistence.getService();
+            for (int i = 0; i < 100; i++) {
+                service.addContact("id" + i, "First", "Last", "5551234567", "1 Main St");
+                service.updateAddress("id" + i, i + " Elm St");
+            }
+
+            assertEquals(100, persistence.checkpoint());
+            assertEquals(0, persistence.getJournal().size());
+            service.deleteContact("id0");
+        }
+
+        assertEquals(List.of("contacts.journal.0000000002", "contacts.snapshot.0000000002"), fileNames());
+        try (ContactPersistence recovered = ContactPersistence.open(tempDir, FsyncPolicy.GROUP_COMMIT)) {
+            ContactService service = recovered.getService();
+            assertEquals(99, service.getContactCount());
+            assertEquals("99 Elm St", service.getContact("id99").getAddress());
+        }
+    }
+
+    @Test
+    @DisplayName("Repeated checkpoints should keep only the newest snapshot and segment")
+    public void testRepeatedCheckpoints() throws IOException {
+        try (ContactPersistence persistence = ContactPersistence.open(tempDir, FsyncPolicy.GROUP_COMMIT)) {
+            ContactService service = persistence.getService();
+            service.addContact("123", "John", "Doe", "5551234567", "123 Main St");
+            for (int round = 0; round < 5; round++) {
+                service.updatePhone("123", String.format("%010d", round));
+                persistence.checkpoint();
+            }
+        }
+
+        assertEquals(List.of("contacts.journal.0000000006", "contacts.snapshot.0000000006"), fileNames());
+        try (ContactPersistence recovered = ContactPersistence.open(tempDir, FsyncPolicy.GROUP_COMMIT)) {
+            assertEquals("0000000004", recovered.getService().getContact("123").getPhone());
+        }
+    }
+
+    @Test
+    @DisplayName("Checkpoint while writers run should lose no mutation")
+    public void testCheckpointDuringWrites() throws Exception {
+        int writers = 4;
+        AtomicBoolean stop = new AtomicBoolean();
+        AtomicInteger[] lastWritten = new AtomicInteger[writers];
+
+        try (ContactPersistence persistence = ContactPersistence.open(tempDir, FsyncPolicy.INTERVAL, 1)) {
+            ContactService service = persistence.getService();
+            Thread[] threads = new Thread[writers];
+            for (int t = 0; t < writers; t++) {
+                final int thread = t;
+                lastWritten[t] = new AtomicInteger(-1);
+                service.addContact("w" + t, "First", "Last", "5551234567", "0 Main St");
+                threads[t] = new Thread(() -> {
+                    for (int i = 0; !stop.get(); i++) {
+                        String id = "w" + thread + "-" + (i % 20);
+                        if (service.contactExists(id)) {
+                            service.deleteContact(id);
+                        } else {
+                            service.addContact(id, "First", "Last", "5551234567", "1 Main St");
+                        }
+                        service.updateAddress("w" + thread, i + " Main St");
+                        lastWritten[thread].set(i);
+                    }
+                });
+                threads[t].start();
+            }
+            for (int round = 0; round < 5; round++) {
+                Thread.sleep(20);
+                persistence.checkpoint();
+            }
+            stop.set(true);
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        }
+
+        try (ContactPersistence recovered = ContactPersistence.open(tempDir, FsyncPolicy.GROUP_COMMIT)) {
+            ContactService service = recovered.getService();
+            for (int t = 0; t < writers; t++) {
+                assertEquals(lastWritten[t].get() + " Main St", service.getContact("w" + t).getAddress());
+                int last = lastWritten[t].get();
+                for (int slot = 0; slot < 20; slot++) {
+                    // Each slot toggles on every visit, so its parity says whether it should exist
+                    int visits = last < slot ? 0 : (last - slot) / 20 + 1;
+                    assertEquals(visits % 2 == 1, service.contactExists("w" + t + "-" + slot));
+                }
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Automatic checkpoint should run once the journal passes its threshold")
+    public void testAutoCheckpoint() throws Exception {
+        try (ContactPersistence persistence = ContactPersistence.open(tempDir, FsyncPolicy.GROUP_COMMIT)) {
+            ContactService service = persistence.getService();
+            persistence.enableAutoCheckpoint(1024);
+            for (int i = 0; i < 50; i++) {
+                service.addContact("id" + i, "First", "Last", "5551234567", "1 Main St");
+            }
+
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (!Files.exists(ContactPersistence.snapshotFile(tempDir, 2)) && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+
+            assertTrue(Files.exists(ContactPersistence.snapshotFile(tempDir, 2)));
+            assertNull(persistence.getLastCheckpointFailure());
+        }
+    }
+
+    @Test
+    @DisplayName("Checkpoint after close should throw exception")
+    public void testCheckpointAfterClose() throws IOException {
+        ContactPersistence persistence = ContactPersistence.open(tempDir, FsyncPolicy.GROUP_COMMIT);
+        persistence.close();
+
+        assertThrows(IllegalStateException.class, persistence::checkpoint);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,232 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * ContactQuery class is an immutable predicate over Contact fields, built from field
+ * conditions combined with and, or and negate, for ContactService.query.
+ *
+ * Every condition compares a field's current value; equalTo and startsWith match case
+ * exactly, the IgnoreCase variants compare in lower case (Locale.ROOT). A contact is
+ * tested against one consistent version of its fields, even while it is being updated.
+ */
+public final class ContactQuery {
+    /**
+     * Kind enum is the type of one node of the predicate tree
+     */
+    enum Kind {
+        CONTACT_ID_EQUALS, EQUALS, STARTS_WITH, STARTS_WITH_IGNORE_CASE, CONTAINS_IGNORE_CASE, AND, OR, NOT
+    }
+
+    private final Kind kind;
+    private final ContactField field;  // Null for CONTACT_ID_EQUALS and combinations
+    private final String value;  // Null for combinations
+    private final String folded;  // Lower-case value for the IgnoreCase conditions
+    private final List<ContactQuery> operands;  // Empty for conditions
+
+    private ContactQuery(Kind kind, ContactField field, String value, List<ContactQuery> operands) {
+        this.kind = kind;
+        this.field = field;
+        this.value = value;
+        this.folded = kind == Kind.STARTS_WITH_IGNORE_CASE || kind == Kind.CONTAINS_IGNORE_CASE ? fold(value) : null;
+        this.operands = operands;
+    }
+
+    /**
+     * @param contactId Contact ID to match
+     * @return Query matching the contact with this ID
+     * @throws IllegalArgumentException if contactId is null
+     */
+    public static ContactQuery contactIdEquals(String contactId) {
+        return condition(Kind.CONTACT_ID_EQUALS, null, contactId);
+    }
+
+    /**
+     * @param field Field to compare
+     * @param value Value the field must equal exactly
+     * @return Query matching contacts whose field equals value
+     * @throws IllegalArgumentException if field or value is null
+     */
+    public static ContactQuery equalTo(ContactField field, String value) {
+        return condition(Kind.EQUALS, field, value);
+    }
+
+    /**
+     * @param field Field to compare
+     * @param prefix Prefix the field must start with, matching case
+     * @return Query matching contacts whose field starts with prefix
+     * @throws IllegalArgumentException if field or prefix is null
+     */
+    public static ContactQuery startsWith(ContactField field, String prefix) {
+        return condition(Kind.STARTS_WITH, field, prefix);
+    }
+
+    /**
+     * @param field Field to compare
+     * @param prefix Prefix the field must start with, ignoring case
+     * @return Query matching contacts whose field starts with prefix in any case
+     * @throws IllegalArgumentException if field or prefix is null
+     */
+    public static ContactQuery startsWithIgnoreCase(ContactField field, String prefix) {
+        return condition(Kind.STARTS_WITH_IGNORE_CASE, field, prefix);
+    }
+
+    /**
+     * @param field Field to compare
+     * @param fragment Text the field must contain, ignoring case
+     * @return Query matching contacts whose field contains fragment in any case
+     * @throws IllegalArgumentException if field or fragment is null
+     */
+    public static ContactQuery containsIgnoreCase(ContactField field, String fragment) {
+        return condition(Kind.CONTAINS_IGNORE_CASE, field, fragment);
+    }
+
+    /**
+     * @param other Query that must also match
+     * @return Query matching contacts both queries match
+     * @throws IllegalArgumentException if other is null
+     */
+    public ContactQuery and(ContactQuery other) {
+        return combine(Kind.AND, other);
+    }
+
+    /**
+     * @param other Query that may match instead
+     * @return Query matching contacts either query matches
+     * @throws IllegalArgumentException if other is null
+     */
+    public ContactQuery or(ContactQuery other) {
+        return combine(Kind.OR, other);
+    }
+
+    /**
+     * @return Query matching exactly the contacts this query does not
+     */
+    public ContactQuery negate() {
+        return new ContactQuery(Kind.NOT, null, null, List.of(this));
+    }
+
+    /**
+     * Checks a contact against this query
+     * @param contact Contact to check
+     * @return true if the contact matches
+     * @throws IllegalArgumentException if contact is null
+     */
+    public boolean test(Contact contact) {
+        if (contact == null) {
+            throw new IllegalArgumentException("Contact cannot be null");
+        }
+        // One captured version, so a concurrent update cannot match half old and half new
+        return matches(new Contact(contact));
+    }
+
+    private boolean matches(Contact contact) {
+        switch (kind) {
+            case CONTACT_ID_EQUALS:
+                return contact.getContactId().equals(value);
+            case EQUALS:
+                return field.get(contact).equals(value);
+            case STARTS_WITH:
+                return field.get(contact).startsWith(value);
+            case STARTS_WITH_IGNORE_CASE:
+                return fold(field.get(contact)).startsWith(folded);
+            case CONTAINS_IGNORE_CASE:
+                return fold(field.get(contact)).contains(folded);
+            case AND:
+                for (ContactQuery operand : operands) {
+                    if (!operand.matches(contact)) {
+                        return false;
+                    }
+                }
+                return true;
+            case OR:
+                for (ContactQuery operand : operands) {
+                    if (operand.matches(contact)) {
+                        return true;
+                    }
+                }
+                return false;
+            default:
+                return !operands.get(0).matches(contact);
+        }
+    }
+
+    Kind getKind() {
+        return kind;
+    }
+
+    ContactField getField() {
+        return field;
+    }
+
+    String getValue() {
+        return value;
+    }
+
+    /**
+     * @return Queries that must all match for this one to match: the operands of an AND,
+     *         flattened, or just this query otherwise
+     */
+    List<ContactQuery> conjuncts() {
+        if (kind != Kind.AND) {
+            return List.of(this);
+        }
+        List<ContactQuery> all = new ArrayList<>();
+        for (ContactQuery operand : operands) {
+            all.addAll(operand.conjuncts());
+        }
+        return all;
+    }
+
+    @Override
+    public String toString() {
+        switch (kind) {
+            case CONTACT_ID_EQUALS:
+                return "contactId = \"" + value + '"';
+            case EQUALS:
+                return field + " = \"" + value + '"';
+            case STARTS_WITH:
+                return field + " startsWith \"" + value + '"';
+            case STARTS_WITH_IGNORE_CASE:
+                return field + " startsWithIgnoreCase \"" + value + '"';
+            case CONTAINS_IGNORE_CASE:
+                return field + " containsIgnoreCase \"" + value + '"';
+            case NOT:
+                return "NOT " + operands.get(0);
+            default:
+                List<String> parts = new ArrayList<>();
+                for (ContactQuery operand : operands) {
+                    parts.add(operand.toString());
+                }
+                return "(" + String.join(" " + kind + " ", parts) + ")";
+        }
+    }
+
+    static String fold(String text) {
+        return text.toLowerCase(Locale.ROOT);
+    }
+
+    private static ContactQuery condition(Kind kind, ContactField field, String value) {
+        if ((field == null && kind != Kind.CONTACT_ID_EQUALS) || value == null) {
+            throw new IllegalArgumentException("Field and value cannot be null");
+        }
+        return new ContactQuery(kind, field, value, Collections.emptyList());
+    }
+
+    private ContactQuery combine(Kind combined, ContactQuery other) {
+        if (other == null) {
+            throw new IllegalArgumentException("Query cannot be null");
+        }
+        List<ContactQuery> all = new ArrayList<>();
+        for (ContactQuery query : new ContactQuery[] {this, other}) {
+            // Keep chains flat, so a.and(b).and(c) is one AND of three
+            if (query.kind == combined) {
+                all.addAll(query.operands);
+            } else {
+                all.add(query);
+            }
+        }
+        return new ContactQuery(combined, null, null, Collections.unmodifiableList(all));
+    }
+}
\ No newline at end of file
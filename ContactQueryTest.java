@@ -0,0 +1,146 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Unit tests for ContactQuery and QueryPlan classes
+ * Tests predicate composition, the access path ContactService.plan chooses, and that
+ * every plan returns exactly the contacts a scan would
+ */
+public class ContactQueryTest {
+    // Predicate tests
+
+    @Test
+    @DisplayName("Composed predicates should match fields by case rule and combine with and, or and negate")
+    public void testPredicates() {
+        Contact contact = new Contact("1", "John", "Smith", "6035551234", "12 Main Street");
+        ContactQuery smith = ContactQuery.equalTo(ContactField.LAST_NAME, "Smith");
+        ContactQuery nh = ContactQuery.startsWith(ContactField.PHONE, "603");
+        ContactQuery main = ContactQuery.containsIgnoreCase(ContactField.ADDRESS, "MAIN st");
+
+        assertTrue(smith.and(nh).and(main).test(contact));
+        assertFalse(ContactQuery.equalTo(ContactField.LAST_NAME, "smith").test(contact));
+        assertTrue(ContactQuery.startsWithIgnoreCase(ContactField.FIRST_NAME, "jO").test(contact));
+        assertFalse(ContactQuery.startsWith(ContactField.FIRST_NAME, "jO").test(contact));
+        assertTrue(ContactQuery.contactIdEquals("2").or(nh).test(contact));
+        assertFalse(nh.negate().test(contact));
+        assertTrue(smith.and(nh.negate().or(main)).test(contact));
+        assertEquals(3, smith.and(nh).and(main).conjuncts().size());
+        assertEquals("(LAST_NAME = \"Smith\" AND NOT PHONE startsWith \"603\")", smith.and(nh.negate()).toString());
+
+        assertThrows(IllegalArgumentException.class, () -> ContactQuery.equalTo(null, "x"));
+        assertThrows(IllegalArgumentException.class, () -> ContactQuery.startsWith(ContactField.PHONE, null));
+        assertThrows(IllegalArgumentException.class, () -> ContactQuery.contactIdEquals(null));
+        assertThrows(IllegalArgumentException.class, () -> smith.and(null));
+        assertThrows(IllegalArgumentException.class, () -> smith.test(null));
+        assertThrows(IllegalArgumentException.class, () -> new ContactService().query(null));
+    }
+
+    // Planning tests
+
+    @Test
+    @DisplayName("Plan should read candidates from the most selective enabled index")
+    public void testPlanChoosesMostSelectiveIndex() {
+        ContactService service = populated(new ContactService());
+        ContactQuery smith = ContactQuery.equalTo(ContactField.LAST_NAME, "Smith");
+        ContactQuery nh = ContactQuery.startsWith(ContactField.PHONE, "603");
+        ContactQuery phone = ContactQuery.equalTo(ContactField.PHONE, "6035550007");
+        ContactQuery elm = ContactQuery.containsIgnoreCase(ContactField.ADDRESS, "elm");
+        ContactQuery jo = ContactQuery.startsWith(ContactField.LAST_NAME, "Jo");
+
+        assertEquals(QueryAccessPath.SCAN, service.plan(smith.and(nh)).getAccessPath());
+        assertEquals(QueryAccessPath.CONTACT_ID, service.plan(nh.and(ContactQuery.contactIdEquals("c5"))).getAccessPath());
+
+        service.enableNameIndex(false);
+        QueryPlan byName = service.plan(smith.and(nh));
+        assertEquals(QueryAccessPath.NAME_INDEX, byName.getAccessPath());
+        assertSame(smith, byName.getIndexedCondition());
+        assertEquals(100, byName.getEstimatedCandidates());
+        assertTrue(byName.toString().startsWith("QueryPlan[NAME_INDEX on LAST_NAME = \"Smith\" (~100 candidates)"));
+
+        assertEquals(QueryAccessPath.NAME_INDEX, service.plan(jo).getAccessPath());
+
+        // The name index also counts the first names starting with Jo; the sort index holds last names only
+        service.enableSortIndex(ContactSortOrder.NAME);
+        assertEquals(QueryAccessPath.NAME_SORT_INDEX, service.plan(jo).getAccessPath());
+        assertEquals(0, service.plan(jo).getEstimatedCandidates());
+        assertEquals(QueryAccessPath.NAME_INDEX, service.plan(smith.and(nh)).getAccessPath());
+        service.enablePhoneIndex();
+        assertEquals(QueryAccessPath.PHONE_INDEX, service.plan(smith.and(phone)).getAccessPath());
+        service.enableAddressIndex();
+        assertEquals(QueryAccessPath.ADDRESS_INDEX, service.plan(smith.and(
+                ContactQuery.containsIgnoreCase(ContactField.ADDRESS, "7 elm"))).getAccessPath());
+        assertEquals(QueryAccessPath.NAME_INDEX, service.plan(smith.and(elm)).getAccessPath());
+
+        // Only conditions every match must meet can narrow the candidates
+        assertEquals(QueryAccessPath.SCAN, service.plan(smith.or(phone)).getAccessPath());
+        assertEquals(QueryAccessPath.SCAN, service.plan(phone.negate()).getAccessPath());
+        assertEquals(QueryAccessPath.SCAN, service.plan(nh).getAccessPath());
+    }
+
+    @Test
+    @DisplayName("Every plan should return exactly the contacts a scan returns, on heap and off-heap stores")
+    public void testPlansMatchScan() {
+        List<ContactQuery> queries = List.of(
+                ContactQuery.equalTo(ContactField.LAST_NAME, "Smith").and(ContactQuery.startsWith(ContactField.PHONE, "603")),
+                ContactQuery.startsWith(ContactField.FIRST_NAME, "Jo").and(ContactQuery.containsIgnoreCase(ContactField.ADDRESS, "ELM")),
+                ContactQuery.startsWithIgnoreCase(ContactField.LAST_NAME, "sm").and(ContactQuery.equalTo(ContactField.PHONE, "6035550007")),
+                ContactQuery.containsIgnoreCase(ContactField.ADDRESS, "7 Main").and(ContactQuery.equalTo(ContactField.LAST_NAME, "Smith").negate()),
+                ContactQuery.contactIdEquals("c42").and(ContactQuery.equalTo(ContactField.FIRST_NAME, "Jon")),
+                ContactQuery.equalTo(ContactField.LAST_NAME, "Nobody"));
+        for (ContactService indexed : new ContactService[] {
+                populated(new ContactService()), populated(new ContactService(OffHeapContactStore.allocate()))}) {
+            ContactService plain = populated(new ContactService());
+            indexed.enablePhoneIndex();
+            indexed.enableNameIndex(false);
+            indexed.enableNameIndex(true);
+            indexed.enableAddressIndex();
+            indexed.enableSortIndex(ContactSortOrder.NAME);
+            indexed.updateLastName("c1", "Jones");
+            plain.updateLastName("c1", "Jones");
+
+            for (ContactQuery query : queries) {
+                assertEquals(ids(plain.query(query).collect(Collectors.toList())),
+                        ids(indexed.query(query).collect(Collectors.toList())), query.toString());
+            }
+        }
+    }
+
+    // Streaming tests
+
+    @Test
+    @DisplayName("Query streams should stop at a limit and run again on each call")
+    public void testLimit() {
+        ContactService service = populated(new ContactService());
+        QueryPlan scan = service.plan(ContactQuery.startsWith(ContactField.PHONE, "603"));
+        assertEquals(3, scan.stream().limit(3).count());
+        service.enableNameIndex(false);
+        QueryPlan byName = service.plan(ContactQuery.startsWith(ContactField.LAST_NAME, "S"));
+        assertEquals(5, byName.stream().limit(5).count());
+        assertEquals(100, byName.stream().count());
+
+        service.addContact("new", "Ann", "Smith", "6035559999", "1 Elm St");
+        assertEquals(101, byName.stream().count());
+        assertTrue(service.query(ContactQuery.equalTo(ContactField.FIRST_NAME, "Ann")).anyMatch(c -> c.getContactId().equals("new")));
+    }
+
+    /**
+     * Adds 200 contacts: every other one a Smith, phones from 6035550000, and every third
+     * address on Main Street, the rest on Elm St
+     */
+    private static ContactService populated(ContactService service) {
+        String[] firsts = {"John", "Jon", "Joan", "Ann"};
+        for (int i = 0; i < 200; i++) {
+            service.addContact("c" + i, firsts[i % firsts.length], i % 2 == 0 ? "Smith" : "Brown",
+                    String.format("603555%04d", i), i + (i % 3 == 0 ? " Main Street" : " Elm St"));
+        }
+        return service;
+    }
+
+    private static List<String> ids(List<Contact> contacts) {
+        return contacts.stream().map(Contact::getContactId).sorted().collect(Collectors.toList());
+    }
+}
\ No newline at end of file
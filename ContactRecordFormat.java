@@ -0,0 +1,226 @@
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32C;
+
+/**
+ * ContactRecordFormat class defines the fixed-width binary layout of one contact.
+ * Every Contact field has a hard maximum length, so each record takes exactly
+ * RECORD_SIZE bytes and can be addressed by index without any framing.
+ *
+ * Layout (big-endian):
+ *   0  id length, first name length, last name length, address length (1 byte each)
+ *   4  phone as a long (10 digits, leading zeros restored on decode)
+ *  12  contact ID, 10 UTF-16 chars
+ *  32  first name, 10 UTF-16 chars
+ *  52  last name, 10 UTF-16 chars
+ *  72  address, 30 UTF-16 chars
+ * 132  CRC32C of bytes 0-131
+ */
+public final class ContactRecordFormat {
+    public static final int RECORD_SIZE = 136;
+
+    private static final int LENGTHS_OFFSET = 0;
+    private static final int PHONE_OFFSET = 4;
+    private static final int ID_OFFSET = 12;
+    private static final int FIRST_NAME_OFFSET = 32;
+    private static final int LAST_NAME_OFFSET = 52;
+    private static final int ADDRESS_OFFSET = 72;
+    private static final int CHECKSUM_OFFSET = 132;
+
+    private ContactRecordFormat() {
+        // Static utility class
+    }
+
+    /**
+     * Writes a contact as one record at an absolute position, without moving the buffer position
+     * @param buffer Destination buffer
+     * @param offset Position of the first byte of the record
+     * @param contact Contact to encode
+     */
+    public static void encode(ByteBuffer buffer, int offset, Contact contact) {
+        encode(buffer, offset, contact.getContactId(), contact.getFirstName(), contact.getLastName(),
+                contact.getPhone(), contact.getAddress());
+    }
+
+    /**
+     * Writes validated field values as one record at an absolute position
+     * @param buffer Destination buffer
+     * @param offset Position of the first byte of the record
+     */
+    public static void encode(ByteBuffer buffer, int offset, String contactId, String firstName,
+                              String lastName, String phone, String address) {
+        buffer.put(offset + LENGTHS_OFFSET, (byte) contactId.length());
+        buffer.put(offset + LENGTHS_OFFSET + 1, (byte) firstName.length());
+        buffer.put(offset + LENGTHS_OFFSET + 2, (byte) lastName.length());
+        buffer.put(offset + LENGTHS_OFFSET + 3, (byte) address.length());
+        buffer.putLong(offset + PHONE_OFFSET, packPhone(phone));
+        putChars(buffer, offset + ID_OFFSET, contactId, ContactValidator.MAX_CONTACT_ID_LENGTH);
+        putChars(buffer, offset + FIRST_NAME_OFFSET, firstName, ContactValidator.MAX_NAME_LENGTH);
+        putChars(buffer, offset + LAST_NAME_OFFSET, lastName, ContactValidator.MAX_NAME_LENGTH);
+        putChars(buffer, offset + ADDRESS_OFFSET, address, ContactValidator.MAX_ADDRESS_LENGTH);
+        buffer.putInt(offset + CHECKSUM_OFFSET, checksum(buffer, offset));
+    }
+
+    /**
+     * Checks the stored checksum of the record at an absolute position
+     * @param buffer Source buffer
+     * @param offset Position of the first byte of the record
+     * @return true if the record is intact
+     */
+    public static boolean verify(ByteBuffer buffer, int offset) {
+        return buffer.getInt(offset + CHECKSUM_OFFSET) == checksum(buffer, offset);
+    }
+
+    /**
+     * Reads the record at an absolute position as a new Contact, without checking the checksum
+     * @param buffer Source buffer
+     * @param offset Position of the first byte of the record
+     * @return Decoded contact
+     * @throws IllegalArgumentException if the decoded fields break a Contact rule
+     */
+    public static Contact decode(ByteBuffer buffer, int offset) {
+        return new Contact(decodeContactId(buffer, offset),
+                getChars(buffer, offset + FIRST_NAME_OFFSET, buffer.get(offset + LENGTHS_OFFSET + 1)),
+                getChars(buffer, offset + LAST_NAME_OFFSET, buffer.get(offset + LENGTHS_OFFSET + 2)),
+                unpackPhone(buffer.getLong(offset + PHONE_OFFSET)),
+                getChars(buffer, offset + ADDRESS_OFFSET, buffer.get(offset + LENGTHS_OFFSET + 3)));
+    }
+
+    /**
+     * Reads only the contact ID of the record at an absolute position
+     */
+    public static String decodeContactId(ByteBuffer buffer, int offset) {
+        return getChars(buffer, offset + ID_OFFSET, buffer.get(offset + LENGTHS_OFFSET));
+    }
+
+    /**
+     * Checks whether the record at an absolute position has a given contact ID, without decoding it
+     */
+    public static boolean hasContactId(ByteBuffer buffer, int offset, String contactId) {
+        int length = contactId.length();
+        if (buffer.get(offset + LENGTHS_OFFSET) != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (buffer.getChar(offset + ID_OFFSET + i * 2) != contactId.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Packs a validated 10-digit phone number into a long
+     */
+    public static long packPhone(CharSequence phone) {
+        long value = 0;
+        for (int i = 0; i < ContactValidator.PHONE_LENGTH; i++) {
+            value = value * 10 + (phone.charAt(i) - '0');
+        }
+        return value;
+    }
+
+    /**
+     * Restores a packed phone number to its 10-digit form, including leading zeros
+     */
+    public static String unpackPhone(long value) {
+        char[] digits = new char[ContactValidator.PHONE_LENGTH];
+        for (int i = digits.length - 1; i >= 0; i--) {
+            digits[i] = (char) ('0' + (value % 10));
+            value /= 10;
+        }
+        return new String(digits);
+    }
+
+    private static void putChars(ByteBuffer buffer, int offset, String value, int width) {
+        int length = value.length();
+        for (int i = 0; i < width; i++) {
+            buffer.putChar(offset + i * 2, i < length ? value.charAt(i) : '\0');
+        }
+    }
+
+    private static String getChars(ByteBuffer buffer, int offset, int length) {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = buffer.getChar(offset + i * 2);
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Decoder class reads records through reusable scratch buffers, so decoding a long run
+     * of records allocates nothing beyond the decoded contacts. Not thread-safe.
+     */
+    public static final class Decoder {
+        private final byte[] record = new byte[RECORD_SIZE];
+        private final char[] chars = new char[ContactValidator.MAX_ADDRESS_LENGTH];
+        private final CRC32C crc = new CRC32C();
+
+        /**
+         * Copies the record at an absolute position into the decoder and checks its checksum
+         * @param buffer Source buffer
+         * @param offset Position of the first byte of the record
+         * @return true if the record is intact
+         */
+        public boolean load(ByteBuffer buffer, int offset) {
+            buffer.get(offset, record);
+            crc.reset();
+            crc.update(record, 0, CHECKSUM_OFFSET);
+            return (int) crc.getValue() == readInt(CHECKSUM_OFFSET);
+        }
+
+        /**
+         * Builds a Contact from the most recently loaded record
+         * @return Decoded contact
+         * @throws IllegalArgumentException if the decoded fields break a Contact rule
+         */
+        public Contact decode() {
+            return new Contact(contactId(),
+                    string(FIRST_NAME_OFFSET, record[LENGTHS_OFFSET + 1]),
+                    string(LAST_NAME_OFFSET, record[LENGTHS_OFFSET + 2]),
+                    unpackPhone(readLong(PHONE_OFFSET)),
+                    string(ADDRESS_OFFSET, record[LENGTHS_OFFSET + 3]));
+        }
+
+        /**
+         * @return Contact ID of the most recently loaded record
+         */
+        public String contactId() {
+            return string(ID_OFFSET, record[LENGTHS_OFFSET]);
+        }
+
+        private String string(int offset, int length) {
+            if (length < 0 || length > chars.length) {
+                throw new IllegalArgumentException("Field length " + length + " is out of range");
+            }
+            for (int i = 0; i < length; i++) {
+                int at = offset + i * 2;
+                chars[i] = (char) ((record[at] & 0xFF) << 8 | (record[at + 1] & 0xFF));
+            }
+            return new String(chars, 0, length);
+        }
+
+        private int readInt(int offset) {
+            int value = 0;
+            for (int i = 0; i < 4; i++) {
+                value = value << 8 | (record[offset + i] & 0xFF);
+            }
+            return value;
+        }
+
+        private long readLong(int offset) {
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = value << 8 | (record[offset + i] & 0xFF);
+            }
+            return value;
+        }
+    }
+
+    private static int checksum(ByteBuffer buffer, int offset) {
+        CRC32C crc = new CRC32C();
+        ByteBuffer view = buffer.duplicate();
+        view.limit(offset + CHECKSUM_OFFSET).position(offset);
+        crc.update(view);
+        return (int) crc.getValue();
+    }
+}
\ No newline at end of file
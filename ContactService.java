@@ -1,18 +1,128 @@
-import java.util.HashMap;
-import java.util.Map;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * ContactService class manages a collection of Contact objects
  * Provides functionality to add, delete, and update contacts
+ *
+ * The service is safe to share between threads. Adds, deletes and field updates
+ * are serialized per contact ID through a set of striped locks, so two threads
+ * can never both add the same ID and no update is lost. Reads (getContact,
+ * contactExists, getContactCount) never take a lock.
+ *
+ * Bulk adds (addContacts) validate in parallel on the common fork-join pool and
+ * commit the whole batch under every stripe, so a batch is either fully added or
+ * rejected with a report of every offending record.
+ *
+ * When a ContactJournal is attached, every mutation is encoded into a journal frame
+ * before the store changes, appended to the journal while the contact's stripe is
+ * held, and the caller waits for durability after releasing it. A mutation the journal
+ * cannot record, because its frame is too large or the journal has failed a write, is
+ * refused before it changes the store or notifies any listener.
+ *
+ * Secondary indexes (enablePhoneIndex, enableNameIndex, enableAddressIndex, enableSortIndex) are ContactListeners
+ * notified under the same stripe, so they always agree with the store for changes made
+ * through the service. Lookups fall back to a full scan when the index is not enabled.
+ * query runs a composed ContactQuery through whichever enabled index narrows it most,
+ * scanning every contact in parallel only when no index helps (see plan).
+ * ContactAnalytics computes reports over every contact in parallel; enableStatistics
+ * keeps the common ones up to date instead, so they are O(1) to read.
+ *
+ * enableMetrics turns on per-operation counters, latency histograms and JFR events
+ * (see ContactMetrics); while disabled each operation pays one volatile read.
+ *
+ * patchContact changes several fields with one lookup and one new version of the contact,
+ * so readers never see half of an edit. Given the version the caller last read, it
+ * refuses the patch if anyone changed the contact since, instead of overwriting them.
+ *
+ * Contacts live in a ContactStore, by default a HeapContactStore holding the Contact
+ * objects themselves. With an OffHeapContactStore, getContact and the find methods
+ * return copies decoded from off-heap slots, so contacts must be changed through the
+ * update methods rather than their setters. A VersionedContactStore also returns copies,
+ * and lets snapshot() capture every contact in O(1) for scans that never block writers.
+ * A TieredContactStore keeps the most requested contacts of a file-mapped store in a
+ * bounded on-heap cache, reading through on a miss and writing through on updates and
+ * deletes; the mapped file is scratch space, not a durable copy.
  */
 public class ContactService {
-    private final Map<String, Contact> contacts;
+    private static final int DEFAULT_CONCURRENCY_LEVEL = 64;
+    private static final int BATCH_SPLIT_THRESHOLD = 4096;  // Records per fork-join leaf task
+
+    private final ContactStore store;
+    private final ReentrantLock[] locks;  // Striped locks guarding mutations
+    private final int lockMask;
+    private volatile ContactJournal journal;  // Null unless durability is enabled
+    private volatile ContactListener[] listeners = new ContactListener[0];  // Replaced under every stripe
+    private volatile PhoneIndex phoneIndex;  // Null until enablePhoneIndex
+    private volatile NameIndex nameIndex;  // Null until enableNameIndex(false)
+    private volatile NameIndex foldedNameIndex;  // Null until enableNameIndex(true)
+    private volatile AddressIndex addressIndex;  // Null until enableAddressIndex
+    private volatile ContactSortIndex idSortIndex;  // Null until enableSortIndex(CONTACT_ID)
+    private volatile ContactSortIndex nameSortIndex;  // Null until enableSortIndex(NAME)
+    private volatile ContactMetrics metrics;  // Null unless metrics are enabled
+    private volatile ContactStatistics statistics;  // Null until enableStatistics
 
     /**
      * Constructor initializes the contact storage
      */
     public ContactService() {
-        this.contacts = new HashMap<>();
+        this(DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    /**
+     * Constructor initializes the contact storage with a given number of lock stripes
+     * @param concurrencyLevel Expected number of concurrently updating threads, rounded up to a power of two
+     * @throws IllegalArgumentException if concurrencyLevel is less than 1
+     */
+    public ContactService(int concurrencyLevel) {
+        this(concurrencyLevel, new HeapContactStore());
+    }
+
+    /**
+     * Constructor keeps contacts in the given store, which must be empty and used by no other service
+     * @param store Store for the contacts
+     * @throws IllegalArgumentException if store is null
+     */
+    public ContactService(ContactStore store) {
+        this(DEFAULT_CONCURRENCY_LEVEL, store);
+    }
+
+    /**
+     * Constructor keeps contacts in the given store, with a given number of lock stripes
+     * @param concurrencyLevel Expected number of concurrently updating threads, rounded up to a power of two
+     * @param store Store for the contacts, which must be empty and used by no other service
+     * @throws IllegalArgumentException if concurrencyLevel is less than 1 or store is null
+     */
+    public ContactService(int concurrencyLevel, ContactStore store) {
+        if (concurrencyLevel < 1) {
+            throw new IllegalArgumentException("Concurrency level must be at least 1");
+        }
+        if (store == null) {
+            throw new IllegalArgumentException("Store cannot be null");
+        }
+        int stripes = Integer.highestOneBit(Math.min(concurrencyLevel, 1 << 16) * 2 - 1);
+        this.store = store;
+        this.locks = new ReentrantLock[stripes];
+        for (int i = 0; i < stripes; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        this.lockMask = stripes - 1;
     }
 
     /**
@@ -21,15 +131,40 @@ public class ContactService {
      * @throws IllegalArgumentException if contact is null or contactId already exists
      */
     public void addContact(Contact contact) {
+        ContactMetrics m = metrics;
+        if (m != null) {
+            m.run(ContactOperation.ADD, () -> insert(contact));
+            return;
+        }
+        insert(contact);
+    }
+
+    private void insert(Contact contact) {
         if (contact == null) {
             throw new IllegalArgumentException("Contact cannot be null");
         }
 
-        if (contacts.containsKey(contact.getContactId())) {
-            throw new IllegalArgumentException("Contact with ID " + contact.getContactId() + " already exists");
+        // Single atomic insert so two threads can never both add the same ID
+        ReentrantLock lock = lockFor(contact.getContactId());
+        ContactJournal log;
+        long lsn = 0;
+        lock.lock();
+        try {
+            log = writableJournal();
+            ByteBuffer frame = log == null ? null : log.encodeAdd(contact);
+            if (!store.insert(contact)) {
+                throw new IllegalArgumentException("Contact with ID " + contact.getContactId() + " already exists");
+            }
+            for (ContactListener listener : listeners) {
+                listener.contactAdded(contact);
+            }
+            if (log != null) {
+                lsn = log.append(frame);
+            }
+        } finally {
+            lock.unlock();
         }
-
-        contacts.put(contact.getContactId(), contact);
+        awaitDurable(log, lsn);
     }
 
     /**
@@ -42,8 +177,89 @@ public class ContactService {
      * @throws IllegalArgumentException if contactId already exists or parameters are invalid
      */
     public void addContact(String contactId, String firstName, String lastName, String phone, String address) {
-        Contact contact = new Contact(contactId, firstName, lastName, phone, address);
-        addContact(contact);
+        ContactMetrics m = metrics;
+        if (m != null) {
+            m.run(ContactOperation.ADD, () -> insert(new Contact(contactId, firstName, lastName, phone, address)));
+            return;
+        }
+        insert(new Contact(contactId, firstName, lastName, phone, address));
+    }
+
+    /**
+     * Adds a batch of contacts all-or-nothing
+     * Records are checked in parallel for nulls, duplicate IDs inside the batch and IDs
+     * already in the service; if any record fails, nothing is added.
+     * @param batch Contacts to add
+     * @return Result listing every rejected record, or a committed result
+     * @throws IllegalArgumentException if batch is null or too large for one journal frame
+     */
+    public BatchResult addContacts(Collection<? extends Contact> batch) {
+        ContactMetrics m = metrics;
+        return m == null ? addBatch(batch) : timedBatch(m, () -> addBatch(batch));
+    }
+
+    private BatchResult addBatch(Collection<? extends Contact> batch) {
+        if (batch == null) {
+            throw new IllegalArgumentException("Batch cannot be null");
+        }
+        Contact[] candidates = batch.toArray(new Contact[0]);
+        String[] reasons = new String[candidates.length];
+        parallelFor(candidates.length, i -> {
+            if (candidates[i] == null) {
+                reasons[i] = "Contact cannot be null";
+            }
+        });
+        return commitBatch(candidates, reasons);
+    }
+
+    /**
+     * Adds a stream of contacts all-or-nothing
+     * @param batch Contacts to add
+     * @return Result listing every rejected record, or a committed result
+     * @throws IllegalArgumentException if batch is null or too large for one journal frame
+     * @see #addContacts(Collection)
+     */
+    public BatchResult addContacts(Stream<? extends Contact> batch) {
+        if (batch == null) {
+            throw new IllegalArgumentException("Batch cannot be null");
+        }
+        return addContacts(batch.collect(Collectors.toList()));
+    }
+
+    /**
+     * Adds a batch of raw records all-or-nothing
+     * Each record is validated in parallel with ContactValidator, so invalid input costs
+     * no exceptions, and every failed rule is reported.
+     * @param records Records as {contactId, firstName, lastName, phone, address}
+     * @return Result listing every rejected record, or a committed result
+     * @throws IllegalArgumentException if records is null or too large for one journal frame
+     */
+    public BatchResult addContactRecords(List<? extends CharSequence[]> records) {
+        ContactMetrics m = metrics;
+        return m == null ? addRecords(records) : timedBatch(m, () -> addRecords(records));
+    }
+
+    private BatchResult addRecords(List<? extends CharSequence[]> records) {
+        if (records == null) {
+            throw new IllegalArgumentException("Records cannot be null");
+        }
+        CharSequence[][] raw = records.toArray(new CharSequence[0][]);
+        Contact[] candidates = new Contact[raw.length];
+        String[] reasons = new String[raw.length];
+        parallelFor(raw.length, i -> {
+            CharSequence[] r = raw[i];
+            int result = r == null || r.length < 5
+                    ? ContactValidator.ALL_RULES
+                    : ContactValidator.validate(r[0], r[1], r[2], r[3], r[4]);
+            if (result == ContactValidator.VALID) {
+                candidates[i] = new Contact(r[0].toString(), r[1].toString(), r[2].toString(),
+                        r[3].toString(), r[4].toString());
+            } else {
+                ContactMetrics.recordRejection(result);
+                reasons[i] = ContactValidator.describe(result);
+            }
+        });
+        return commitBatch(candidates, reasons);
     }
 
     /**
@@ -52,15 +268,40 @@ public class ContactService {
      * @throws IllegalArgumentException if contactId is null or contact doesn't exist
      */
     public void deleteContact(String contactId) {
+        ContactMetrics m = metrics;
+        if (m != null) {
+            m.run(ContactOperation.DELETE, () -> remove(contactId));
+            return;
+        }
+        remove(contactId);
+    }
+
+    private void remove(String contactId) {
         if (contactId == null) {
             throw new IllegalArgumentException("Contact ID cannot be null");
         }
 
-        if (!contacts.containsKey(contactId)) {
-            throw new IllegalArgumentException("Contact with ID " + contactId + " does not exist");
+        ReentrantLock lock = lockFor(contactId);
+        ContactJournal log;
+        long lsn = 0;
+        lock.lock();
+        try {
+            log = writableJournal();
+            ByteBuffer frame = log == null ? null : log.encodeDelete(contactId);
+            Contact removed = store.remove(contactId);
+            if (removed == null) {
+                throw new IllegalArgumentException("Contact with ID " + contactId + " does not exist");
+            }
+            for (ContactListener listener : listeners) {
+                listener.contactDeleted(removed);
+            }
+            if (log != null) {
+                lsn = log.append(frame);
+            }
+        } finally {
+            lock.unlock();
         }
-
-        contacts.remove(contactId);
+        awaitDurable(log, lsn);
     }
 
     /**
@@ -70,8 +311,7 @@ public class ContactService {
      * @throws IllegalArgumentException if contactId is null, contact doesn't exist, or firstName is invalid
      */
     public void updateFirstName(String contactId, String firstName) {
-        Contact contact = getContact(contactId);
-        contact.setFirstName(firstName);
+        updateField(contactId, ContactField.FIRST_NAME, firstName);
     }
 
     /**
@@ -81,8 +321,7 @@ public class ContactService {
      * @throws IllegalArgumentException if contactId is null, contact doesn't exist, or lastName is invalid
      */
     public void updateLastName(String contactId, String lastName) {
-        Contact contact = getContact(contactId);
-        contact.setLastName(lastName);
+        updateField(contactId, ContactField.LAST_NAME, lastName);
     }
 
     /**
@@ -92,8 +331,7 @@ public class ContactService {
      * @throws IllegalArgumentException if contactId is null, contact doesn't exist, or phone is invalid
      */
     public void updatePhone(String contactId, String phone) {
-        Contact contact = getContact(contactId);
-        contact.setPhone(phone);
+        updateField(contactId, ContactField.PHONE, phone);
     }
 
     /**
@@ -103,8 +341,127 @@ public class ContactService {
      * @throws IllegalArgumentException if contactId is null, contact doesn't exist, or address is invalid
      */
     public void updateAddress(String contactId, String address) {
-        Contact contact = getContact(contactId);
-        contact.setAddress(address);
+        updateField(contactId, ContactField.ADDRESS, address);
+    }
+
+    /**
+     * Updates one field of a contact
+     * @param contactId ID of the contact to update
+     * @param field Field to update
+     * @param value New value
+     * @throws IllegalArgumentException if contactId is null, contact doesn't exist, or value is invalid
+     */
+    void updateField(String contactId, ContactField field, String value) {
+        ContactMetrics m = metrics;
+        if (m != null) {
+            m.run(ContactOperation.forUpdate(field), () -> update(contactId, field, value));
+            return;
+        }
+        update(contactId, field, value);
+    }
+
+    private void update(String contactId, ContactField field, String value) {
+        ReentrantLock lock = lockFor(contactId);
+        ContactJournal log;
+        long lsn = 0;
+        lock.lock();
+        try {
+            Contact contact = lookup(contactId);
+            ContactListener[] notify = listeners;
+            // Getters decode a fresh String, so only read the old value if someone needs it
+            String oldValue = notify.length == 0 ? null : field.get(contact);
+            log = writableJournal();
+            // An invalid value is left for store.update to reject
+            ByteBuffer frame = log == null || !field.isValid(value) ? null : log.encodeUpdate(contactId, field, value);
+            contact = store.update(contact, field, value);
+            for (ContactListener listener : notify) {
+                listener.contactUpdated(contact, field, oldValue);
+            }
+            if (log != null) {
+                lsn = log.append(frame);
+            }
+        } finally {
+            lock.unlock();
+        }
+        awaitDurable(log, lsn);
+    }
+
+    /**
+     * Changes every field a patch sets in one step: other threads see the contact either
+     * before or after the whole patch, and its version goes up by one
+     * @param contactId ID of the contact to patch
+     * @param patch New values, validated when the patch was built
+     * @return New version of the contact
+     * @throws IllegalArgumentException if contactId or patch is null or contact doesn't exist
+     */
+    public int patchContact(String contactId, ContactPatch patch) {
+        return applyPatch(contactId, patch, -1);
+    }
+
+    /**
+     * Changes every field a patch sets in one step, only if the contact still has the
+     * version the caller read, so concurrent editors cannot overwrite each other unseen
+     * @param contactId ID of the contact to patch
+     * @param patch New values, validated when the patch was built
+     * @param expectedVersion Version the caller last read through Contact.getVersion
+     * @return New version of the contact
+     * @throws IllegalArgumentException if contactId or patch is null, contact doesn't exist, or expectedVersion is negative
+     * @throws ContactVersionConflictException if the contact changed since the expected version
+     */
+    public int patchContact(String contactId, ContactPatch patch, int expectedVersion) {
+        if (expectedVersion < 0) {
+            throw new IllegalArgumentException("Expected version cannot be negative");
+        }
+        return applyPatch(contactId, patch, expectedVersion);
+    }
+
+    private int applyPatch(String contactId, ContactPatch patch, int expectedVersion) {
+        if (patch == null) {
+            throw new IllegalArgumentException("Patch cannot be null");
+        }
+        ContactMetrics m = metrics;
+        if (m != null) {
+            return m.time(ContactOperation.PATCH, () -> patch(contactId, patch, expectedVersion));
+        }
+        return patch(contactId, patch, expectedVersion);
+    }
+
+    private int patch(String contactId, ContactPatch patch, int expectedVersion) {
+        ReentrantLock lock = lockFor(contactId);
+        ContactJournal log;
+        long lsn = 0;
+        int version;
+        lock.lock();
+        try {
+            Contact contact = lookup(contactId);
+            ContactListener[] notify = listeners;
+            String[] oldValues = null;
+            if (notify.length > 0) {
+                oldValues = new String[ContactField.values().length];
+                for (ContactField field : ContactField.values()) {
+                    oldValues[field.ordinal()] = patch.get(field) == null ? null : field.get(contact);
+                }
+            }
+            log = writableJournal();
+            ByteBuffer frame = log == null ? null : log.encodePatch(contactId, patch);
+            contact = store.patch(contact, patch, expectedVersion);
+            version = contact.getVersion();
+            // Listeners see one update per changed field, all holding the whole patch
+            for (ContactListener listener : notify) {
+                for (ContactField field : ContactField.values()) {
+                    if (patch.get(field) != null) {
+                        listener.contactUpdated(contact, field, oldValues[field.ordinal()]);
+                    }
+                }
+            }
+            if (log != null) {
+                lsn = log.append(frame);
+            }
+        } finally {
+            lock.unlock();
+        }
+        awaitDurable(log, lsn);
+        return version;
     }
 
     /**
@@ -114,11 +471,16 @@ public class ContactService {
      * @throws IllegalArgumentException if contactId is null or contact doesn't exist
      */
     public Contact getContact(String contactId) {
+        ContactMetrics m = metrics;
+        return m == null ? lookup(contactId) : m.time(ContactOperation.GET, () -> lookup(contactId));
+    }
+
+    private Contact lookup(String contactId) {
         if (contactId == null) {
             throw new IllegalArgumentException("Contact ID cannot be null");
         }
 
-        Contact contact = contacts.get(contactId);
+        Contact contact = store.get(contactId);
         if (contact == null) {
             throw new IllegalArgumentException("Contact with ID " + contactId + " does not exist");
         }
@@ -126,12 +488,23 @@ public class ContactService {
         return contact;
     }
 
+    /**
+     * Captures every contact at one instant without taking a lock. Later changes do not
+     * show in the view, and scanning it never delays them.
+     * @return Read-only view of the contacts
+     * @throws UnsupportedOperationException unless the service was built on a VersionedContactStore
+     */
+    public ContactView snapshot() {
+        return store.snapshot();
+    }
+
     /**
      * Returns the number of contacts in the service
      * @return Number of contacts
      */
     public int getContactCount() {
-        return contacts.size();
+        ContactMetrics m = metrics;
+        return m == null ? store.size() : m.time(ContactOperation.COUNT, store::size);
     }
 
     /**
@@ -140,6 +513,725 @@ public class ContactService {
      * @return true if contact exists, false otherwise
      */
     public boolean contactExists(String contactId) {
-        return contactId != null && contacts.containsKey(contactId);
+        ContactMetrics m = metrics;
+        if (m == null) {
+            return contactId != null && store.contains(contactId);
+        }
+        long start = m.start();
+        boolean found = contactId != null && store.contains(contactId);
+        m.record(ContactOperation.EXISTS, start, found);
+        return found;
+    }
+
+    /**
+     * Finds every contact with the given phone number
+     * Uses the phone index when enabled and scans every contact otherwise.
+     * @param phone Phone number to look up
+     * @return Matching contacts, empty if none match or phone is not 10 digits
+     * @throws IllegalArgumentException if phone is null
+     */
+    public List<Contact> findByPhone(String phone) {
+        ContactMetrics m = metrics;
+        return m == null ? searchPhone(phone) : m.time(ContactOperation.FIND_BY_PHONE, () -> searchPhone(phone));
+    }
+
+    private List<Contact> searchPhone(String phone) {
+        if (phone == null) {
+            throw new IllegalArgumentException("Phone cannot be null");
+        }
+        PhoneIndex index = phoneIndex;
+        if (index != null) {
+            return current(index.find(phone));
+        }
+        List<Contact> matches = new ArrayList<>();
+        for (Contact contact : store) {
+            if (contact.getPhone().equals(phone)) {
+                matches.add(contact);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Builds the phone index from the current contacts and keeps it up to date from now on
+     * Does nothing if the index is already enabled.
+     */
+    public void enablePhoneIndex() {
+        lockAll();
+        try {
+            if (phoneIndex == null) {
+                PhoneIndex index = new PhoneIndex();
+                addListener(index);
+                phoneIndex = index;
+            }
+        } finally {
+            unlockAll();
+        }
+    }
+
+    /**
+     * Finds contacts whose first or last name starts with a prefix, matching case exactly
+     * @param prefix Name prefix, empty to match every contact
+     * @param limit Maximum number of contacts to return
+     * @return Up to limit contacts, ordered by the matching name and then contact ID
+     * @throws IllegalArgumentException if prefix is null or limit is negative
+     * @see #findByNamePrefix(String, int, boolean)
+     */
+    public List<Contact> findByNamePrefix(String prefix, int limit) {
+        return findByNamePrefix(prefix, limit, false);
+    }
+
+    /**
+     * Finds contacts whose first or last name starts with a prefix, for type-ahead search
+     * Uses the name index for the requested case rule when enabled and scans every
+     * contact otherwise. A contact matching on both names is returned once.
+     * @param prefix Name prefix, empty to match every contact
+     * @param limit Maximum number of contacts to return
+     * @param ignoreCase Whether to match names regardless of case
+     * @return Up to limit contacts, ordered by the matching name and then contact ID
+     * @throws IllegalArgumentException if prefix is null or limit is negative
+     */
+    public List<Contact> findByNamePrefix(String prefix, int limit, boolean ignoreCase) {
+        ContactMetrics m = metrics;
+        return m == null ? searchNames(prefix, limit, ignoreCase)
+                : m.time(ContactOperation.FIND_BY_NAME_PREFIX, () -> searchNames(prefix, limit, ignoreCase));
+    }
+
+    private List<Contact> searchNames(String prefix, int limit, boolean ignoreCase) {
+        if (prefix == null) {
+            throw new IllegalArgumentException("Prefix cannot be null");
+        }
+        if (limit < 0) {
+            throw new IllegalArgumentException("Limit cannot be negative");
+        }
+        NameIndex index = ignoreCase ? foldedNameIndex : nameIndex;
+        if (index == null) {
+            // Index only the matches, so results are ordered exactly as the real index orders them
+            index = new NameIndex(ignoreCase);
+            for (Contact contact : store) {
+                if (index.matches(contact, prefix)) {
+                    index.contactAdded(contact);
+                }
+            }
+            return index.find(prefix, limit);
+        }
+        return current(index.find(prefix, limit));
+    }
+
+    /**
+     * Builds a name prefix index from the current contacts and keeps it up to date from now on
+     * Case-sensitive and case-insensitive indexes are separate; enabling one that already
+     * exists does nothing.
+     * @param ignoreCase Whether the index matches names regardless of case
+     */
+    public void enableNameIndex(boolean ignoreCase) {
+        lockAll();
+        try {
+            if ((ignoreCase ? foldedNameIndex : nameIndex) == null) {
+                NameIndex index = new NameIndex(ignoreCase);
+                addListener(index);
+                if (ignoreCase) {
+                    foldedNameIndex = index;
+                } else {
+                    nameIndex = index;
+                }
+            }
+        } finally {
+            unlockAll();
+        }
+    }
+
+    /**
+     * Finds contacts whose address contains a fragment, ignoring case
+     * Uses the address index when enabled and scans every contact otherwise.
+     * @param fragment Address fragment, empty to match every contact
+     * @param limit Maximum number of contacts to return
+     * @return Up to limit matching contacts, in no particular order
+     * @throws IllegalArgumentException if fragment is null or limit is negative
+     */
+    public List<Contact> findByAddress(String fragment, int limit) {
+        ContactMetrics m = metrics;
+        return m == null ? searchAddresses(fragment, limit)
+                : m.time(ContactOperation.FIND_BY_ADDRESS, () -> searchAddresses(fragment, limit));
+    }
+
+    private List<Contact> searchAddresses(String fragment, int limit) {
+        if (fragment == null) {
+            throw new IllegalArgumentException("Address fragment cannot be null");
+        }
+        if (limit < 0) {
+            throw new IllegalArgumentException("Limit cannot be negative");
+        }
+        AddressIndex index = addressIndex;
+        if (index != null) {
+            return current(index.find(fragment, limit));
+        }
+        List<Contact> matches = new ArrayList<>();
+        for (Contact contact : store) {
+            if (matches.size() >= limit) {
+                break;
+            }
+            if (AddressIndex.contains(contact, fragment)) {
+                matches.add(contact);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Builds the trigram address index from the current contacts and keeps it up to date
+     * from now on. Does nothing if the index is already enabled.
+     */
+    public void enableAddressIndex() {
+        lockAll();
+        try {
+            if (addressIndex == null) {
+                AddressIndex index = new AddressIndex();
+                addListener(index);
+                addressIndex = index;
+            }
+        } finally {
+            unlockAll();
+        }
+    }
+
+    /**
+     * Lists contacts one page at a time in a sort order, for browsing every contact.
+     * Uses the sort index for the order when enabled, so each page costs O(log n + pageSize);
+     * otherwise each page scans every contact, keeping only the smallest pageSize + 1.
+     * @param order Order to list contacts in
+     * @param cursor Cursor returned with the previous page, or null for the first page
+     * @param pageSize Most contacts to return
+     * @return Page of contacts with the cursor of the page after it
+     * @throws IllegalArgumentException if order is null, pageSize is less than 1, or the cursor
+     *         was not returned for the same order
+     */
+    public ContactPage listContacts(ContactSortOrder order, String cursor, int pageSize) {
+        ContactMetrics m = metrics;
+        return m == null ? listPage(order, cursor, pageSize)
+                : m.time(ContactOperation.LIST, () -> listPage(order, cursor, pageSize));
+    }
+
+    private ContactPage listPage(ContactSortOrder order, String cursor, int pageSize) {
+        if (order == null) {
+            throw new IllegalArgumentException("Sort order cannot be null");
+        }
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Page size must be at least 1");
+        }
+        ContactSortIndex.Key after = cursor == null ? null : ContactSortIndex.decode(order, cursor);
+        ContactSortIndex index = order == ContactSortOrder.NAME ? nameSortIndex : idSortIndex;
+        if (index == null) {
+            return ContactSortIndex.scan(order, store, after, pageSize);
+        }
+        ContactPage page = index.page(after, pageSize);
+        return store.returnsCopies() ? new ContactPage(current(page.getContacts()), page.getNextCursor()) : page;
+    }
+
+    /**
+     * Builds a sort index from the current contacts and keeps it up to date from now on
+     * Enabling one that already exists does nothing.
+     * @param order Order the index keeps contacts in
+     * @throws IllegalArgumentException if order is null
+     */
+    public void enableSortIndex(ContactSortOrder order) {
+        if (order == null) {
+            throw new IllegalArgumentException("Sort order cannot be null");
+        }
+        lockAll();
+        try {
+            if ((order == ContactSortOrder.NAME ? nameSortIndex : idSortIndex) == null) {
+                ContactSortIndex index = new ContactSortIndex(order);
+                addListener(index);
+                if (order == ContactSortOrder.NAME) {
+                    nameSortIndex = index;
+                } else {
+                    idSortIndex = index;
+                }
+            }
+        } finally {
+            unlockAll();
+        }
+    }
+
+    /**
+     * Runs a query lazily; same as plan(query).stream()
+     * @param query Query to run
+     * @return Matching contacts, read only as the stream is consumed
+     * @throws IllegalArgumentException if query is null
+     */
+    public Stream<Contact> query(ContactQuery query) {
+        return plan(query).stream();
+    }
+
+    /**
+     * Chooses how to run a query without reading any contact. Each condition ANDed at the
+     * top of the query that an enabled index answers is costed by a bounded index walk or
+     * lookup, and the one promising the fewest candidates supplies them; the rest of the
+     * query filters them. Without such a condition, or when none beats reading every
+     * contact, the plan scans the store in parallel. OR and negated conditions only filter.
+     * Metrics time the planning as ContactOperation.QUERY, not the stream's consumption.
+     * @param query Query to plan
+     * @return Plan reporting its access path, ready to stream
+     * @throws IllegalArgumentException if query is null
+     */
+    public QueryPlan plan(ContactQuery query) {
+        ContactMetrics m = metrics;
+        return m == null ? choosePlan(query) : m.time(ContactOperation.QUERY, () -> choosePlan(query));
+    }
+
+    private QueryPlan choosePlan(ContactQuery query) {
+        if (query == null) {
+            throw new IllegalArgumentException("Query cannot be null");
+        }
+        QueryPlan best = new QueryPlan(query, QueryAccessPath.SCAN, null, store.size(), this::parallelContacts);
+        for (ContactQuery condition : query.conjuncts()) {
+            QueryPlan indexed = indexPlan(query, condition, best.getEstimatedCandidates());
+            if (indexed != null && indexed.getEstimatedCandidates() < best.getEstimatedCandidates()) {
+                best = indexed;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Plans a query through the cheapest enabled index answering one of its conditions
+     * @param bound Estimate to beat; index walks stop counting once they reach it
+     * @return Index plan for the condition, or null if no enabled index answers it
+     */
+    private QueryPlan indexPlan(ContactQuery query, ContactQuery condition, int bound) {
+        ContactQuery.Kind kind = condition.getKind();
+        ContactField field = condition.getField();
+        String value = condition.getValue();
+        if (kind == ContactQuery.Kind.CONTACT_ID_EQUALS) {
+            return new QueryPlan(query, QueryAccessPath.CONTACT_ID, condition, store.contains(value) ? 1 : 0,
+                    () -> Stream.ofNullable(store.get(value)));
+        }
+        PhoneIndex phones = phoneIndex;
+        if (kind == ContactQuery.Kind.EQUALS && field == ContactField.PHONE && phones != null) {
+            return new QueryPlan(query, QueryAccessPath.PHONE_INDEX, condition, phones.find(value).size(),
+                    () -> current(phones.find(value)).stream());
+        }
+        AddressIndex addresses = addressIndex;
+        if (kind == ContactQuery.Kind.CONTAINS_IGNORE_CASE && field == ContactField.ADDRESS && addresses != null) {
+            return new QueryPlan(query, QueryAccessPath.ADDRESS_INDEX, condition, addresses.estimate(value),
+                    () -> current(addresses.find(value, Integer.MAX_VALUE)).stream());
+        }
+        if ((field != ContactField.FIRST_NAME && field != ContactField.LAST_NAME)
+                || kind == ContactQuery.Kind.CONTAINS_IGNORE_CASE) {
+            return null;
+        }
+        boolean exact = kind == ContactQuery.Kind.EQUALS;
+        QueryPlan best = null;
+        NameIndex names = kind == ContactQuery.Kind.STARTS_WITH_IGNORE_CASE ? foldedNameIndex : nameIndex;
+        if (names != null) {
+            int count = names.count(value, exact, bound);
+            best = new QueryPlan(query, QueryAccessPath.NAME_INDEX, condition, count,
+                    () -> currentStream(names.stream(value, exact)));
+            bound = Math.min(bound, count);
+        }
+        ContactSortIndex sorted = nameSortIndex;
+        if (field == ContactField.LAST_NAME && kind != ContactQuery.Kind.STARTS_WITH_IGNORE_CASE && sorted != null) {
+            // The sort index holds one entry per contact, the name index two, so it may count fewer
+            int count = sorted.countLastNames(value, exact, bound);
+            if (best == null || count < best.getEstimatedCandidates()) {
+                best = new QueryPlan(query, QueryAccessPath.NAME_SORT_INDEX, condition, count,
+                        () -> currentStream(sorted.lastNames(value, exact)));
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Starts keeping ContactStatistics, counting every current contact first, if not already
+     * keeping them. Every later mutation then pays a few atomic counter updates.
+     * @return Statistics kept up to date from now on
+     */
+    public ContactStatistics enableStatistics() {
+        lockAll();
+        try {
+            if (statistics == null) {
+                ContactStatistics created = new ContactStatistics();
+                addListener(created.listener);
+                statistics = created;
+            }
+            return statistics;
+        } finally {
+            unlockAll();
+        }
+    }
+
+    /**
+     * @return Statistics being kept, or null if statistics are not enabled
+     */
+    public ContactStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Starts recording metrics that count and time every operation, if not already recording
+     * @return Metrics being recorded
+     */
+    public ContactMetrics enableMetrics() {
+        return enableMetrics(1);
+    }
+
+    /**
+     * Starts recording metrics that count every operation and time one in sampleEvery,
+     * if not already recording
+     * @param sampleEvery Average number of operations per timed operation
+     * @return Metrics being recorded, which keep their original rate if already enabled
+     * @throws IllegalArgumentException if sampleEvery is less than 1
+     */
+    public synchronized ContactMetrics enableMetrics(int sampleEvery) {
+        if (metrics == null) {
+            ContactMetrics created = new ContactMetrics(sampleEvery);
+            created.activate();
+            metrics = created;
+        }
+        return metrics;
+    }
+
+    /**
+     * Stops recording metrics; a ContactMetrics obtained earlier keeps its values
+     */
+    public synchronized void disableMetrics() {
+        if (metrics != null) {
+            metrics.deactivate();
+            metrics = null;
+        }
+    }
+
+    /**
+     * @return Metrics being recorded, or null if metrics are disabled
+     */
+    public ContactMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Registers a listener for every later mutation, first passing it every current contact
+     * as an add. Both happen while every stripe is held, so the listener misses nothing.
+     * @param listener Listener to register
+     * @throws IllegalArgumentException if listener is null
+     */
+    void addListener(ContactListener listener) {
+        addListener(listener, true);
+    }
+
+    /**
+     * Registers a listener for every later mutation, optionally first passing it every
+     * current contact as an add
+     * @param listener Listener to register
+     * @param replay Whether to pass the current contacts first
+     * @throws IllegalArgumentException if listener is null
+     */
+    void addListener(ContactListener listener, boolean replay) {
+        if (listener == null) {
+            throw new IllegalArgumentException("Listener cannot be null");
+        }
+        lockAll();
+        try {
+            if (replay) {
+                for (Contact contact : store) {
+                    listener.contactAdded(contact);
+                }
+            }
+            ContactListener[] current = listeners;
+            ContactListener[] grown = Arrays.copyOf(current, current.length + 1);
+            grown[current.length] = listener;
+            listeners = grown;
+        } finally {
+            unlockAll();
+        }
+    }
+
+    /**
+     * Stops notifying a listener
+     * @param listener Listener to remove
+     * @return true if the listener was registered
+     */
+    boolean removeListener(ContactListener listener) {
+        lockAll();
+        try {
+            ContactListener[] current = listeners;
+            for (int i = 0; i < current.length; i++) {
+                if (current[i] == listener) {
+                    ContactListener[] shrunk = new ContactListener[current.length - 1];
+                    System.arraycopy(current, 0, shrunk, 0, i);
+                    System.arraycopy(current, i + 1, shrunk, i, current.length - i - 1);
+                    listeners = shrunk;
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            unlockAll();
+        }
+    }
+
+    /**
+     * Passes a copy of every contact to the action, each copied under its stripe lock so it
+     * is never seen half-updated. Contacts added or deleted during the walk may be skipped.
+     * Each ID is passed at most once, even if it is deleted and re-added mid-walk and the
+     * store's weakly consistent iterator returns it twice.
+     * @param action Receives each copy
+     */
+    void forEachContactCopy(Consumer<Contact> action) {
+        Set<String> seen = new HashSet<>(store.size() * 4 / 3 + 16);
+        for (Contact contact : store) {
+            if (!seen.add(contact.getContactId())) {
+                continue;
+            }
+            if (store.returnsCopies()) {
+                action.accept(contact);  // Decoded whole under the store's lock
+                continue;
+            }
+            ReentrantLock lock = lockFor(contact.getContactId());
+            Contact copy;
+            lock.lock();
+            try {
+                copy = new Contact(contact);
+            } finally {
+                lock.unlock();
+            }
+            action.accept(copy);
+        }
+    }
+
+    /**
+     * Streams every contact in parallel on the common fork-join pool, as the store's
+     * weakly consistent iteration returns them: live objects for a HeapContactStore, copies
+     * for stores that return copies
+     * @return Unordered parallel stream of the contacts
+     */
+    Stream<Contact> parallelContacts() {
+        return StreamSupport.stream(store.spliterator(), true);
+    }
+
+    /**
+     * Checks a validated batch for duplicate IDs and commits it if nothing was rejected
+     * @param candidates Contacts to add, null where the record failed validation
+     * @param reasons Rejection reason per record, non-null where validation already failed
+     * @return Result of the batch
+     */
+    private BatchResult commitBatch(Contact[] candidates, String[] reasons) {
+        int size = candidates.length;
+
+        // The lowest index wins each ID, so in-batch duplicates are reported deterministically
+        ConcurrentHashMap<String, Integer> firstIndex = new ConcurrentHashMap<>(size);
+        parallelFor(size, i -> {
+            if (reasons[i] == null) {
+                firstIndex.merge(candidates[i].getContactId(), i, Math::min);
+            }
+        });
+        parallelFor(size, i -> {
+            if (reasons[i] == null) {
+                String id = candidates[i].getContactId();
+                if (firstIndex.get(id) != i) {
+                    reasons[i] = "Duplicate contact ID " + id + " in batch";
+                } else if (store.contains(id)) {
+                    reasons[i] = "Contact with ID " + id + " already exists";
+                }
+            }
+        });
+        List<BatchResult.Rejection> rejections = collectRejections(candidates, reasons);
+        if (!rejections.isEmpty()) {
+            return BatchResult.rejected(size, rejections);
+        }
+
+        ContactJournal log;
+        long lsn = 0;
+        lockAll();
+        try {
+            // Re-check under the locks for IDs added since the parallel pass
+            for (int i = 0; i < size; i++) {
+                String id = candidates[i].getContactId();
+                if (store.contains(id)) {
+                    reasons[i] = "Contact with ID " + id + " already exists";
+                }
+            }
+            rejections = collectRejections(candidates, reasons);
+            if (!rejections.isEmpty()) {
+                return BatchResult.rejected(size, rejections);
+            }
+
+            log = writableJournal();
+            // One frame for the whole batch, so replay is all-or-nothing too; encoding it
+            // first means a batch the journal refuses is never added
+            ByteBuffer frame = log == null || size == 0 ? null : log.encodeBatch(candidates);
+            store.insertAll(candidates);
+            for (ContactListener listener : listeners) {
+                for (Contact contact : candidates) {
+                    listener.contactAdded(contact);
+                }
+            }
+            if (frame != null) {
+                lsn = log.append(frame);
+            }
+        } finally {
+            unlockAll();
+        }
+        awaitDurable(log, lsn);
+        return BatchResult.committed(size);
+    }
+
+    /**
+     * Attaches a journal that records every later mutation, replacing any current one
+     * The swap happens while every stripe is held, so each mutation goes to exactly one journal.
+     * @param newJournal Journal to attach, or null to stop journaling
+     * @return Previously attached journal, or null
+     */
+    ContactJournal attachJournal(ContactJournal newJournal) {
+        lockAll();
+        try {
+            ContactJournal previous = journal;
+            journal = newJournal;
+            return previous;
+        } finally {
+            unlockAll();
+        }
+    }
+
+    /**
+     * Replaces index results with the store's current copies when the store returns copies,
+     * since an index holds whichever copy it was given when the contact last changed
+     */
+    private List<Contact> current(List<Contact> found) {
+        if (!store.returnsCopies()) {
+            return found;
+        }
+        List<Contact> resolved = new ArrayList<>(found.size());
+        for (Contact contact : found) {
+            Contact stored = store.get(contact.getContactId());
+            if (stored != null) {
+                resolved.add(stored);
+            }
+        }
+        return resolved;
+    }
+
+    /**
+     * Lazy form of current for index streams
+     */
+    private Stream<Contact> currentStream(Stream<Contact> found) {
+        if (!store.returnsCopies()) {
+            return found;
+        }
+        return found.map(contact -> store.get(contact.getContactId())).filter(Objects::nonNull);
+    }
+
+    /**
+     * Runs and records a batch add, counting a rejected batch as a failure
+     */
+    private static BatchResult timedBatch(ContactMetrics m, Supplier<BatchResult> body) {
+        long start = m.start();
+        boolean committed = false;
+        try {
+            BatchResult result = body.get();
+            committed = result.isCommitted();
+            return result;
+        } finally {
+            m.record(ContactOperation.ADD_BATCH, start, committed);
+        }
+    }
+
+    /**
+     * Reads the attached journal and checks it still accepts mutations; caller holds a stripe
+     * @return Attached journal, or null
+     * @throws java.io.UncheckedIOException if the journal failed, before anything is changed
+     */
+    private ContactJournal writableJournal() {
+        ContactJournal log = journal;
+        if (log != null) {
+            log.ensureWritable();
+        }
+        return log;
+    }
+
+    private static void awaitDurable(ContactJournal log, long lsn) {
+        if (log != null) {
+            log.awaitDurable(lsn);
+        }
+    }
+
+    private static List<BatchResult.Rejection> collectRejections(Contact[] candidates, String[] reasons) {
+        List<BatchResult.Rejection> rejections = new ArrayList<>();
+        for (int i = 0; i < reasons.length; i++) {
+            if (reasons[i] != null) {
+                String id = candidates[i] == null ? null : candidates[i].getContactId();
+                rejections.add(new BatchResult.Rejection(i, id, reasons[i]));
+            }
+        }
+        return rejections;
+    }
+
+    /**
+     * Returns the lock stripe guarding mutations of the given contact ID
+     * @param contactId ID of the contact
+     * @return Lock for the stripe
+     * @throws IllegalArgumentException if contactId is null
+     */
+    private ReentrantLock lockFor(String contactId) {
+        if (contactId == null) {
+            throw new IllegalArgumentException("Contact ID cannot be null");
+        }
+        int h = contactId.hashCode();
+        return locks[(h ^ (h >>> 16)) & lockMask];
+    }
+
+    /**
+     * Acquires every stripe in index order, excluding all other writers
+     */
+    private void lockAll() {
+        for (ReentrantLock lock : locks) {
+            lock.lock();
+        }
+    }
+
+    private void unlockAll() {
+        for (int i = locks.length - 1; i >= 0; i--) {
+            locks[i].unlock();
+        }
+    }
+
+    /**
+     * Runs body for every index in [0, size) on the common fork-join pool
+     * @param size Number of indexes
+     * @param body Action for one index, must be safe to run concurrently for distinct indexes
+     */
+    static void parallelFor(int size, IntConsumer body) {
+        if (size > 0) {
+            ForkJoinPool.commonPool().invoke(new RangeTask(0, size, body));
+        }
+    }
+
+    /**
+     * RangeTask splits an index range in half until it is small enough to run directly
+     */
+    private static final class RangeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final IntConsumer body;
+
+        RangeTask(int from, int to, IntConsumer body) {
+            this.from = from;
+            this.to = to;
+            this.body = body;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= BATCH_SPLIT_THRESHOLD) {
+                for (int i = from; i < to; i++) {
+                    body.accept(i);
+                }
+            } else {
+                int mid = (from + to) >>> 1;
+                invokeAll(new RangeTask(from, mid, body), new RangeTask(mid, to, body));
+            }
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,1286 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * ContactServiceBenchmark class measures ContactService throughput
+ * Suites:
+ *   operations every single-contact operation at several store sizes and thread counts,
+ *              plus reads and updates with ContactMetrics enabled
+ *   bulk       per-record add loop against the bulk addContacts and addContactRecords APIs
+ *   snapshot   saving and loading a fixed-width snapshot file
+ *   exchange   streaming CSV and NDJSON export and import in records/s and MB/s, against
+ *              reading the whole CSV file into memory before addContactRecords
+ *   journal    journaled mutation throughput under each FsyncPolicy and thread count
+ *   footprint  heap bytes per contact, modelled field by field and measured, for the
+ *              packed Contact against the former one-String-per-field layout
+ *   store      heap and off-heap bytes per contact, store-level get hit and miss against
+ *              a plain HashMap, and service read, update and churn throughput for each
+ *              ContactStore backend
+ *   shards     bulk import, reads, multi-threaded updates and counts on a single service
+ *              against ShardedContactService at several shard counts, and online reshard
+ *   async      thousands of concurrent callers updating a group-commit journaled service,
+ *              each on its own platform thread against AsyncContactService futures, and
+ *              hot-key gets with and without coalescing
+ *   list       sorted pages by ID and by name from random cursors, through the sort index
+ *              and by scanning, plus updateLastName with the name index enabled
+ *   feed       updateAddress throughput and bytes allocated per update without a change
+ *              feed and with one feed drained by 1 and 4 subscriber threads
+ *   dedup      duplicate detection over generated contacts with planted duplicates, at
+ *              several window sizes, with the clusters found and planted pairs recalled
+ *   query      composed ContactQuery lookups through each planned index against the
+ *              parallel scan, and a limited scan stopping early
+ *   analytics  area code, address length and last name reports as parallel reductions
+ *              into primitive arrays against a sequential groupingBy into a boxed map,
+ *              reading incrementally kept statistics, and what keeping them costs updates
+ *   tiered     Zipfian gets and get/update mixes on a file-mapped store with and without a
+ *              TieredContactStore cache at two sizes, with hit rates and evictions against
+ *              a plain LRU of the same size, on the Zipfian trace and with a scan mixed in
+ *
+ * Run with: java ContactServiceBenchmark [suite|all] [records|-] [results.csv|results.json]
+ * A records value overrides the suite's default size ("-" keeps the defaults). When a
+ * results file is given, every measurement is also written there as CSV or JSON, chosen
+ * by the file extension, so runs from different builds can be diffed.
+ */
+public class ContactServiceBenchmark {
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int MEASURED_ROUNDS = 5;
+    private static final int[] STORE_SIZES = {1_000, 100_000, 1_000_000};
+    private static final int[] THREAD_COUNTS = {1, 4};
+    private static final int OPERATIONS_PER_RUN = 100_000;
+    private static final int STRING_BYTES = 24;  // Header, value reference, hash, coder and hashIsZero, aligned
+
+    private static final List<Result> results = new ArrayList<>();
+    private static String currentSuite = "";
+
+    public static void main(String[] args) throws IOException {
+        String suite = args.length > 0 ? args[0] : "all";
+        Integer records = args.length > 1 && !args[1].equals("-") ? Integer.valueOf(args[1]) : null;
+        Path output = args.length > 2 ? Path.of(args[2]) : null;
+
+        if (suite.equals("all") || suite.equals("operations")) {
+            currentSuite = "operations";
+            benchmarkOperations(records != null ? new int[] {records} : STORE_SIZES);
+        }
+        if (suite.equals("all") || suite.equals("bulk")) {
+            currentSuite = "bulk";
+            benchmarkBulkImport(records != null ? records : 200_000);
+        }
+        if (suite.equals("all") || suite.equals("snapshot")) {
+            currentSuite = "snapshot";
+            benchmarkSnapshot(records != null ? records : 1_000_000);
+        }
+        if (suite.equals("all") || suite.equals("exchange")) {
+            currentSuite = "exchange";
+            benchmarkExchange(records != null ? records : 1_000_000);
+        }
+        if (suite.equals("all") || suite.equals("journal")) {
+            currentSuite = "journal";
+            benchmarkJournal(records != null ? records : 20_000);
+        }
+        if (suite.equals("all") || suite.equals("footprint")) {
+            currentSuite = "footprint";
+            benchmarkFootprint(records != null ? records : 1_000_000);
+        }
+        if (suite.equals("all") || suite.equals("store")) {
+            currentSuite = "store";
+            benchmarkStores(records != null ? records : 1_000_000);
+        }
+        if (suite.equals("all") || suite.equals("shards")) {
+            currentSuite = "shards";
+            benchmarkSharding(records != null ? records : 1_000_000);
+        }
+        if (suite.equals("all") || suite.equals("async")) {
+            currentSuite = "async";
+            benchmarkAsync(records != null ? records : 2_000);
+        }
+        if (suite.equals("all") || suite.equals("list")) {
+            currentSuite = "list";
+            benchmarkListing(records != null ? records : 100_000);
+        }
+        if (suite.equals("all") || suite.equals("feed")) {
+            currentSuite = "feed";
+            benchmarkChangeFeed(records != null ? records : 100_000);
+        }
+        if (suite.equals("all") || suite.equals("dedup")) {
+            currentSuite = "dedup";
+            benchmarkDeduplication(records != null ? records : 1_000_000);
+        }
+        if (suite.equals("all") || suite.equals("query")) {
+            currentSuite = "query";
+            benchmarkQueries(records != null ? records : 1_000_000);
+        }
+        if (suite.equals("all") || suite.equals("analytics")) {
+            currentSuite = "analytics";
+            benchmarkAnalytics(records != null ? records : 1_000_000);
+        }
+        if (suite.equals("all") || suite.equals("tiered")) {
+            currentSuite = "tiered";
+            benchmarkTiered(records != null ? records : 1_000_000);
+        }
+        if (output != null) {
+            writeResults(output);
+        }
+    }
+
+    /**
+     * Measures each single-contact operation against stores of every given size
+     * Reads and updates pick existing IDs spread over the store; adds use fresh IDs and
+     * deletes remove existing ones, each round starting from a freshly filled store.
+     */
+    static void benchmarkOperations(int[] sizes) {
+        Contact sample = generateContacts(1).get(0);
+        for (int threads : THREAD_COUNTS) {
+            System.out.printf("Contact construction, %d thread(s)%n", threads);
+            measure("new Contact", 0, threads, OPERATIONS_PER_RUN, null, () -> runThreads(threads,
+                    OPERATIONS_PER_RUN / threads, (thread, i) -> new Contact(sample.getContactId(),
+                            sample.getFirstName(), sample.getLastName(), sample.getPhone(), sample.getAddress())));
+            measure("ContactValidator.validate", 0, threads, OPERATIONS_PER_RUN, null, () -> runThreads(threads,
+                    OPERATIONS_PER_RUN / threads, (thread, i) -> ContactValidator.validate(sample)));
+        }
+
+        for (int size : sizes) {
+            List<Contact> base = generateContacts(size);
+            String[] ids = new String[size];
+            for (int i = 0; i < size; i++) {
+                ids[i] = base.get(i).getContactId();
+            }
+            String[] missing = new String[OPERATIONS_PER_RUN];
+            List<Contact> fresh = new ArrayList<>(OPERATIONS_PER_RUN);
+            for (int i = 0; i < OPERATIONS_PER_RUN; i++) {
+                missing[i] = "m" + i;
+                fresh.add(new Contact("n" + i, "First", "Last", "5551234567", "1 Main St"));
+            }
+            String[] values = {"Alice", "Smith", "5559876543", "2 Elm St"};
+            ContactPatch patch = new ContactPatch(values[0], values[1], values[2], values[3]);
+            ContactService shared = new ContactService();
+            shared.addContacts(base);
+            ContactService[] store = new ContactService[1];
+            Runnable refill = () -> {
+                store[0] = new ContactService();
+                store[0].addContacts(base);
+            };
+
+            for (int threads : THREAD_COUNTS) {
+                int perThread = OPERATIONS_PER_RUN / threads;
+                int deletesPerThread = Math.min(OPERATIONS_PER_RUN, size) / threads;
+                System.out.printf("Store of %,d contacts, %d thread(s)%n", size, threads);
+                measure("addContact", size, threads, perThread * threads, refill, () -> runThreads(threads,
+                        perThread, (thread, i) -> store[0].addContact(fresh.get(thread * perThread + i))));
+                measure("getContact hit", size, threads, perThread * threads, null, () -> runThreads(threads,
+                        perThread, (thread, i) -> shared.getContact(ids[spread(thread, i, size)])));
+                measure("getContact miss", size, threads, perThread * threads, null, () -> runThreads(threads,
+                        perThread, (thread, i) -> {
+                            try {
+                                shared.getContact(missing[thread * perThread + i]);
+                            } catch (IllegalArgumentException expected) {
+                                // A miss is reported by exception, which is what this measures
+                            }
+                        }));
+                measure("contactExists", size, threads, perThread * threads, null, () -> runThreads(threads,
+                        perThread, (thread, i) -> shared.contactExists(ids[spread(thread, i, size)])));
+                measure("deleteContact", size, threads, deletesPerThread * threads, refill, () -> runThreads(threads,
+                        deletesPerThread, (thread, i) -> store[0].deleteContact(ids[thread * deletesPerThread + i])));
+                measure("updateFirstName", size, threads, perThread * threads, null, () -> runThreads(threads,
+                        perThread, (thread, i) -> shared.updateFirstName(ids[spread(thread, i, size)], values[0])));
+                measure("updateLastName", size, threads, perThread * threads, null, () -> runThreads(threads,
+                        perThread, (thread, i) -> shared.updateLastName(ids[spread(thread, i, size)], values[1])));
+                measure("updatePhone", size, threads, perThread * threads, null, () -> runThreads(threads,
+                        perThread, (thread, i) -> shared.updatePhone(ids[spread(thread, i, size)], values[2])));
+                measure("updateAddress", size, threads, perThread * threads, null, () -> runThreads(threads,
+                        perThread, (thread, i) -> shared.updateAddress(ids[spread(thread, i, size)], values[3])));
+                measure("4 field updates", size, threads, perThread * threads, null, () -> runThreads(threads,
+                        perThread, (thread, i) -> {
+                            String id = ids[spread(thread, i, size)];
+                            shared.updateFirstName(id, values[0]);
+                            shared.updateLastName(id, values[1]);
+                            shared.updatePhone(id, values[2]);
+                            shared.updateAddress(id, values[3]);
+                        }));
+                measure("patchContact 4 fields", size, threads, perThread * threads, null, () -> runThreads(threads,
+                        perThread, (thread, i) -> shared.patchContact(ids[spread(thread, i, size)], patch)));
+                shared.enableMetrics();
+                measure("getContact hit, metrics on", size, threads, perThread * threads, null, () -> runThreads(threads,
+                        perThread, (thread, i) -> shared.getContact(ids[spread(thread, i, size)])));
+                measure("updateAddress, metrics on", size, threads, perThread * threads, null, () -> runThreads(threads,
+                        perThread, (thread, i) -> shared.updateAddress(ids[spread(thread, i, size)], values[3])));
+                shared.disableMetrics();
+                shared.enableMetrics(16);
+                measure("getContact hit, 1/16 timed", size, threads, perThread * threads, null, () -> runThreads(threads,
+                        perThread, (thread, i) -> shared.getContact(ids[spread(thread, i, size)])));
+                shared.disableMetrics();
+            }
+            store[0] = null;
+        }
+    }
+
+    /**
+     * Maps a thread's iteration to a store position, striding so threads touch different contacts
+     */
+    private static int spread(int thread, int iteration, int size) {
+        return (int) ((thread * 7_919L + iteration * 104_729L) % size);
+    }
+
+    static void benchmarkBulkImport(int records) {
+        List<Contact> contacts = generateContacts(records);
+        List<CharSequence[]> raw = generateRecords(records);
+
+        System.out.printf("Bulk import of %,d contacts%n", records);
+        measure("addContact(Contact) loop", records, 1, records, null, () -> {
+            ContactService service = new ContactService();
+            for (Contact contact : contacts) {
+                service.addContact(contact);
+            }
+        });
+        measure("addContacts(Collection)", records, 1, records, null, () -> new ContactService().addContacts(contacts));
+        measure("addContact(fields) loop", records, 1, records, null, () -> {
+            ContactService service = new ContactService();
+            for (CharSequence[] r : raw) {
+                service.addContact(r[0].toString(), r[1].toString(), r[2].toString(), r[3].toString(), r[4].toString());
+            }
+        });
+        measure("addContactRecords(List)", records, 1, records, null, () -> new ContactService().addContactRecords(raw));
+    }
+
+    /**
+     * Compares a single service with sharded services on bulk import, reads, updates from
+     * each thread count and counting, then times moving the contacts between the shard count and twice it
+     */
+    static void benchmarkSharding(int records) {
+        List<Contact> contacts = generateContacts(records);
+        String[] ids = new String[records];
+        for (int i = 0; i < records; i++) {
+            ids[i] = contacts.get(i).getContactId();
+        }
+        int operations = Math.min(OPERATIONS_PER_RUN, records);
+        System.out.printf("Sharding with %,d contacts%n", records);
+
+        measure("single addContacts", records, 1, records, null, () -> new ContactService().addContacts(contacts));
+        ContactService single = new ContactService();
+        single.addContacts(contacts);
+        measure("single getContact", records, 1, operations, null, () -> {
+            for (int i = 0; i < operations; i++) {
+                single.getContact(ids[spread(0, i, records)]);
+            }
+        });
+        for (int threads : THREAD_COUNTS) {
+            measure("single updateAddress", records, threads, operations, null, () -> runThreads(threads,
+                    operations / threads, (thread, i) -> single.updateAddress(ids[spread(thread, i, records)], "2 Elm St")));
+        }
+
+        for (int shardCount : new int[] {4, 16}) {
+            String name = shardCount + " shards ";
+            measure(name + "addContacts", records, 1, records, null,
+                    () -> new ShardedContactService(shardCount).addContacts(contacts));
+            ShardedContactService sharded = new ShardedContactService(shardCount);
+            sharded.addContacts(contacts);
+            measure(name + "getContact", records, 1, operations, null, () -> {
+                for (int i = 0; i < operations; i++) {
+                    sharded.getContact(ids[spread(0, i, records)]);
+                }
+            });
+            for (int threads : THREAD_COUNTS) {
+                measure(name + "updateAddress", records, threads, operations, null, () -> runThreads(threads,
+                        operations / threads, (thread, i) -> sharded.updateAddress(ids[spread(thread, i, records)], "2 Elm St")));
+            }
+            measure(name + "getContactCount", records, 1, operations, null, () -> {
+                for (int i = 0; i < operations; i++) {
+                    sharded.getContactCount();
+                }
+            });
+            // Alternates between double and the original count, moving every contact each round
+            measure(name + "reshard", records, 1, records, null,
+                    () -> sharded.reshard(sharded.getShardCount() == shardCount ? shardCount * 2 : shardCount));
+        }
+    }
+
+    /**
+     * Runs callers that each make a chain of calls, first as one platform thread per
+     * caller on the synchronous API, then as future chains on AsyncContactService
+     * @param callers Number of concurrent callers
+     */
+    static void benchmarkAsync(int callers) throws IOException {
+        int callsPerCaller = 10;
+        int operations = callers * callsPerCaller;
+        Path directory = Files.createTempDirectory("contacts-async");
+        try (ContactPersistence persistence = ContactPersistence.open(directory, FsyncPolicy.GROUP_COMMIT)) {
+            ContactService service = persistence.getService();
+            service.addContacts(generateContacts(1000));
+            System.out.printf("%,d concurrent callers, %d calls each, group-commit journal%n", callers, callsPerCaller);
+
+            measure("sync updateAddress, thread per caller", 1000, callers, operations, null,
+                    () -> runThreads(callers, callsPerCaller, (caller, i) ->
+                            service.updateAddress("c" + ((caller * 131 + i) % 1000), i + " Elm St")));
+            for (int maxInFlight : new int[] {64, 1024}) {
+                try (AsyncContactService async = new AsyncContactService(service, maxInFlight, false)) {
+                    String name = String.format("async updateAddress, %d in flight", maxInFlight);
+                    measure(name, 1000, callers, operations, null, () -> runChains(callers, callsPerCaller,
+                            (caller, i) -> async.updateAddress("c" + ((caller * 131 + i) % 1000), i + " Elm St")));
+                }
+            }
+
+            // Every caller reads one of ten hot contacts
+            measure("sync getContact hot keys, thread per caller", 1000, callers, operations, null,
+                    () -> runThreads(callers, callsPerCaller, (caller, i) -> service.getContact("c" + (caller + i) % 10)));
+            for (boolean coalesce : new boolean[] {false, true}) {
+                try (AsyncContactService async = new AsyncContactService(service, 1024, coalesce)) {
+                    measure(coalesce ? "async getContact hot keys, coalesced" : "async getContact hot keys",
+                            1000, callers, operations, null, () -> runChains(callers, callsPerCaller,
+                                    (caller, i) -> async.getContact("c" + (caller + i) % 10)));
+                }
+            }
+        } finally {
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path file : files.toArray(Path[]::new)) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(directory);
+        }
+    }
+
+    private interface AsyncOperation {
+        java.util.concurrent.CompletableFuture<?> start(int caller, int iteration);
+    }
+
+    /**
+     * Starts every caller's chain of calls, each call starting when the previous one
+     * completes, and waits for all chains
+     */
+    private static void runChains(int callers, int callsPerCaller, AsyncOperation operation) {
+        java.util.concurrent.CompletableFuture<?>[] chains = new java.util.concurrent.CompletableFuture<?>[callers];
+        for (int c = 0; c < callers; c++) {
+            final int caller = c;
+            java.util.concurrent.CompletableFuture<?> chain = startRetrying(operation, caller, 0);
+            for (int i = 1; i < callsPerCaller; i++) {
+                final int iteration = i;
+                chain = chain.thenCompose(done -> startRetrying(operation, caller, iteration));
+            }
+            chains[c] = chain;
+        }
+        java.util.concurrent.CompletableFuture.allOf(chains).join();
+    }
+
+    /**
+     * Starts a call, starting it again after a short pause whenever the in-flight limit
+     * rejects it
+     */
+    private static java.util.concurrent.CompletableFuture<?> startRetrying(AsyncOperation operation, int caller,
+            int iteration) {
+        return operation.start(caller, iteration).handle((result, failure) -> {
+            if (failure instanceof java.util.concurrent.RejectedExecutionException) {
+                java.util.concurrent.Executor pause = java.util.concurrent.CompletableFuture.delayedExecutor(
+                        100, java.util.concurrent.TimeUnit.MICROSECONDS);
+                return java.util.concurrent.CompletableFuture.runAsync(() -> { }, pause)
+                        .thenCompose(paused -> startRetrying(operation, caller, iteration));
+            }
+            return failure == null ? java.util.concurrent.CompletableFuture.completedFuture(result)
+                    : java.util.concurrent.CompletableFuture.failedFuture(failure);
+        }).thenCompose(next -> next);
+    }
+
+    /**
+     * Measures fetching a page of 50 from random positions in each order, by scanning and
+     * through the sort indexes, and what keeping the name index costs a rename
+     */
+    static void benchmarkListing(int records) {
+        ContactService service = new ContactService();
+        service.addContacts(generateContacts(records));
+        int pageSize = 50;
+        System.out.printf("Sorted pages of %d over %,d contacts%n", pageSize, records);
+        // Cursors of every page, collected once so each measured fetch starts at a random page
+        Map<ContactSortOrder, List<String>> cursors = new EnumMap<>(ContactSortOrder.class);
+        for (ContactSortOrder order : ContactSortOrder.values()) {
+            service.enableSortIndex(order);
+            List<String> pages = new ArrayList<>();
+            for (String cursor = null; (cursor = service.listContacts(order, cursor, pageSize).getNextCursor()) != null; ) {
+                pages.add(cursor);
+            }
+            cursors.put(order, pages);
+        }
+        for (ContactSortOrder order : ContactSortOrder.values()) {
+            List<String> pages = cursors.get(order);
+            measure("listContacts " + order + ", index", records, 1, OPERATIONS_PER_RUN / 10, null, () -> {
+                for (int i = 0; i < OPERATIONS_PER_RUN / 10; i++) {
+                    service.listContacts(order, pages.get(spread(0, i, pages.size())), pageSize);
+                }
+            });
+        }
+
+        ContactService unindexed = new ContactService();
+        unindexed.addContacts(generateContacts(records));
+        for (ContactSortOrder order : ContactSortOrder.values()) {
+            List<String> pages = cursors.get(order);
+            int scans = Math.max(1, 2_000_000 / records);
+            measure("listContacts " + order + ", scan", records, 1, scans, null, () -> {
+                for (int i = 0; i < scans; i++) {
+                    unindexed.listContacts(order, pages.get(spread(0, i, pages.size())), pageSize);
+                }
+            });
+        }
+
+        String[] ids = new String[records];
+        for (int i = 0; i < records; i++) {
+            ids[i] = "c" + i;
+        }
+        String[] names = {"Adams", "Young"};
+        int operations = Math.min(OPERATIONS_PER_RUN, records);
+        measure("updateLastName, no sort index", records, 1, operations, null, () -> {
+            for (int i = 0; i < operations; i++) {
+                unindexed.updateLastName(ids[spread(0, i, records)], names[i & 1]);
+            }
+        });
+        measure("updateLastName, name sort index", records, 1, operations, null, () -> {
+            for (int i = 0; i < operations; i++) {
+                service.updateLastName(ids[spread(0, i, records)], names[i & 1]);
+            }
+        });
+    }
+
+    /**
+     * Measures a full duplicate search over the generated contacts plus a planted variant
+     * of every 20th one, with a different phone, lower-cased first name and spelled-out
+     * street, and reports how many planted pairs each window size finds
+     */
+    static void benchmarkDeduplication(int records) {
+        ContactService service = new ContactService();
+        List<Contact> contacts = generateContacts(records);
+        service.addContacts(contacts);
+        List<Contact> planted = new ArrayList<>();
+        for (int i = 0; i < records; i += 20) {
+            Contact c = contacts.get(i);
+            planted.add(new Contact("d" + i, c.getFirstName().toLowerCase(Locale.ROOT), c.getLastName(),
+                    String.format("%010d", 9_000_000_000L + i), c.getAddress().replace(" St", " Street")));
+        }
+        service.addContacts(planted);
+        int size = service.getContactCount();
+        System.out.printf("Duplicate detection over %,d contacts with %,d planted duplicates%n", size, planted.size());
+        for (int window : new int[] {8, ContactDeduplicator.DEFAULT_WINDOW, 128}) {
+            ContactDeduplicator deduplicator = new ContactDeduplicator(ContactDeduplicator.DEFAULT_THRESHOLD, window);
+            measure("findDuplicates, window " + window, size, Runtime.getRuntime().availableProcessors(), size, null,
+                    () -> deduplicator.findDuplicates(service, cluster -> { }));
+            int[] found = new int[2];  // Clusters, planted pairs recalled
+            deduplicator.findDuplicates(service, cluster -> {
+                found[0]++;
+                for (String id : cluster.getContactIds()) {
+                    if (id.startsWith("d") && cluster.getContactIds().contains("c" + id.substring(1))) {
+                        found[1]++;
+                    }
+                }
+            });
+            System.out.printf("    %,d clusters, %,d of %,d planted pairs found%n", found[0], found[1], planted.size());
+        }
+    }
+
+    /**
+     * Measures each query on a service with every index enabled, printing the plan chosen,
+     * and on one without indexes, where every query is a parallel scan
+     */
+    static void benchmarkQueries(int records) {
+        ContactService indexed = new ContactService();
+        indexed.addContacts(generateContacts(records));
+        indexed.enablePhoneIndex();
+        indexed.enableNameIndex(false);
+        indexed.enableAddressIndex();
+        indexed.enableSortIndex(ContactSortOrder.NAME);
+        ContactService unindexed = new ContactService();
+        unindexed.addContacts(generateContacts(records));
+        Map<String, ContactQuery> queries = new java.util.LinkedHashMap<>();
+        queries.put("lastName = Last42 and phone startsWith 603", ContactQuery.equalTo(ContactField.LAST_NAME, "Last42")
+                .and(ContactQuery.startsWith(ContactField.PHONE, "603")));
+        queries.put("firstName startsWith First99 and address contains 'main'", ContactQuery.startsWith(
+                ContactField.FIRST_NAME, "First99").and(ContactQuery.containsIgnoreCase(ContactField.ADDRESS, "main")));
+        queries.put("address contains '4217 main' and lastName startsWith Last", ContactQuery.containsIgnoreCase(
+                ContactField.ADDRESS, "4217 main").and(ContactQuery.startsWith(ContactField.LAST_NAME, "Last")));
+        queries.put("phone = 6030004217", ContactQuery.equalTo(ContactField.PHONE, "6030004217"));
+        System.out.printf("Queries over %,d contacts%n", records);
+        for (Map.Entry<String, ContactQuery> query : queries.entrySet()) {
+            QueryPlan plan = indexed.plan(query.getValue());
+            long matches = plan.stream().count();
+            System.out.printf("    %s: %d matches, %s%n", query.getKey(), matches, plan);
+            measure("query " + query.getKey() + ", " + plan.getAccessPath(), records, 1, 1_000, null, () -> {
+                for (int i = 0; i < 1_000; i++) {
+                    indexed.query(query.getValue()).count();
+                }
+            });
+            int scans = Math.max(1, 2_000_000 / records);
+            measure("query " + query.getKey() + ", SCAN", records, Runtime.getRuntime().availableProcessors(), scans, null, () -> {
+                for (int i = 0; i < scans; i++) {
+                    unindexed.query(query.getValue()).count();
+                }
+            });
+        }
+        // A scan with a limit stops once enough contacts match instead of reading them all
+        ContactQuery common = ContactQuery.startsWith(ContactField.PHONE, "603");
+        measure("query phone startsWith 603, SCAN, limit 10", records, 1, 1_000, null, () -> {
+            for (int i = 0; i < 1_000; i++) {
+                unindexed.query(common).limit(10).count();
+            }
+        });
+    }
+
+    /**
+     * Measures each ContactAnalytics report against the same report built sequentially into
+     * a HashMap of boxed counts, then reading ContactStatistics and the update cost of keeping them
+     */
+    static void benchmarkAnalytics(int records) {
+        ContactService service = new ContactService();
+        service.addContacts(generateContacts(records));
+        int threads = Runtime.getRuntime().availableProcessors();
+        int passes = Math.max(1, 2_000_000 / records);
+        System.out.printf("Analytics over %,d contacts%n", records);
+        measure("countByAreaCode, parallel int[]", records, threads, passes, null, () -> {
+            for (int i = 0; i < passes; i++) {
+                ContactAnalytics.countByAreaCode(service);
+            }
+        });
+        measure("area codes, sequential groupingBy", records, 1, passes, null, () -> {
+            for (int i = 0; i < passes; i++) {
+                service.parallelContacts().sequential().collect(java.util.stream.Collectors.groupingBy(
+                        c -> c.getPhone().substring(0, 3), java.util.stream.Collectors.counting()));
+            }
+        });
+        measure("countByAddressLength, parallel int[]", records, threads, passes, null, () -> {
+            for (int i = 0; i < passes; i++) {
+                ContactAnalytics.countByAddressLength(service);
+            }
+        });
+        measure("address lengths, sequential groupingBy", records, 1, passes, null, () -> {
+            for (int i = 0; i < passes; i++) {
+                service.parallelContacts().sequential().collect(java.util.stream.Collectors.groupingBy(
+                        c -> c.getAddress().length(), java.util.stream.Collectors.counting()));
+            }
+        });
+        measure("lastNameFrequencies, parallel table", records, threads, passes, null, () -> {
+            for (int i = 0; i < passes; i++) {
+                ContactAnalytics.lastNameFrequencies(service);
+            }
+        });
+        measure("last names, sequential groupingBy", records, 1, passes, null, () -> {
+            for (int i = 0; i < passes; i++) {
+                service.parallelContacts().sequential().collect(java.util.stream.Collectors.groupingBy(
+                        Contact::getLastName, java.util.stream.Collectors.counting()));
+            }
+        });
+
+        String[] ids = new String[records];
+        for (int i = 0; i < records; i++) {
+            ids[i] = "c" + i;
+        }
+        String[] phones = {"2125550000", "6175550000"};
+        int operations = Math.min(OPERATIONS_PER_RUN, records);
+        Runnable updates = () -> {
+            for (int i = 0; i < operations; i++) {
+                service.updatePhone(ids[spread(0, i, records)], phones[i & 1]);
+            }
+        };
+        measure("updatePhone, no statistics", records, 1, operations, null, updates);
+        ContactStatistics statistics = service.enableStatistics();
+        measure("updatePhone, statistics", records, 1, operations, null, updates);
+        measure("ContactStatistics.getAreaCodeCount", records, 1, OPERATIONS_PER_RUN, null, () -> {
+            for (int i = 0; i < OPERATIONS_PER_RUN; i++) {
+                statistics.getAreaCodeCount(i % ContactAnalytics.AREA_CODES);
+            }
+        });
+        measure("ContactStatistics.getAreaCodeCounts", records, 1, OPERATIONS_PER_RUN / 100, null, () -> {
+            for (int i = 0; i < OPERATIONS_PER_RUN / 100; i++) {
+                statistics.getAreaCodeCounts();
+            }
+        });
+    }
+
+    /**
+     * Fills a file-mapped OffHeapContactStore, then for each Zipf exponent measures gets
+     * straight from it against gets through TieredContactStore caches of 1% and 5% of the
+     * contacts, and a 95/5 getContact/updateAddress mix through a service on each. Hit
+     * rates come from a new cache warmed by one trace and read with a second, next to a
+     * LinkedHashMap LRU of the same size fed the same way, then again with every fourth get
+     * replaced by the next contact of a sequential scan. (The measured rounds replay one
+     * trace many times, which would let either policy fit that sample.)
+     */
+    static void benchmarkTiered(int records) throws IOException {
+        List<Contact> base = generateContacts(records);
+        String[] ids = new String[records];
+        for (int i = 0; i < records; i++) {
+            ids[i] = base.get(i).getContactId();
+        }
+        int operations = 1_000_000;  // Long enough that a trace has more distinct IDs than either cache holds
+        Path file = Files.createTempFile("contacts", ".slots");
+        try (OffHeapContactStore cold = OffHeapContactStore.map(file)) {
+            new ContactService(cold).addContacts(base);
+            base = null;
+            System.out.printf("Tiered store over %,d file-mapped contacts%n", records);
+            Contact[] sink = new Contact[1];
+            for (double exponent : new double[] {0.99, 1.2}) {
+                // One draw split in two, so both halves share the same popular contacts
+                String[] draws = zipfTrace(ids, exponent, 2 * operations, new java.util.Random(42));
+                String[] trace = java.util.Arrays.copyOfRange(draws, 0, operations);
+                String[] fresh = java.util.Arrays.copyOfRange(draws, operations, 2 * operations);
+                String[] scanned = withScan(trace, ids, 0);
+                String[] freshScanned = withScan(fresh, ids, operations / 4);
+                String workload = String.format(Locale.ROOT, "zipf %.2f", exponent);
+                measure(workload + " get, mapped only", records, 1, operations, null, () -> {
+                    for (int i = 0; i < operations; i++) {
+                        sink[0] = cold.get(trace[i]);
+                    }
+                });
+                ContactService coldService = new ContactService(cold);
+                measureTieredMix(workload + " 95/5 mix, mapped only", coldService, trace, records);
+
+                for (int percent : new int[] {1, 5}) {
+                    int capacity = records / 100 * percent;
+                    TieredContactStore tiered = new TieredContactStore(cold, capacity);  // Not closed: that would close cold
+                    String name = String.format(Locale.ROOT, "%s get, %d%% cache", workload, percent);
+                    measure(name, records, 1, operations, null, () -> {
+                        for (int i = 0; i < operations; i++) {
+                            sink[0] = tiered.get(trace[i]);
+                        }
+                    });
+                    measure(name + ", 4 threads", records, 4, operations, null, () ->
+                            runThreads(4, operations / 4, (thread, i) -> tiered.get(trace[thread * (operations / 4) + i])));
+                    reportHitRates(name, cold, trace, fresh, capacity, records);
+                    reportHitRates(name + " with scan", cold, scanned, freshScanned, capacity, records);
+                    measureTieredMix(String.format(Locale.ROOT, "%s 95/5 mix, %d%% cache", workload, percent),
+                            new ContactService(tiered), trace, records);
+                }
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Draws a trace of IDs whose popularity follows a Zipf distribution, rank r being
+     * requested in proportion to 1 / r^exponent, with ranks shuffled over the IDs
+     */
+    private static String[] zipfTrace(String[] ids, double exponent, int length, java.util.Random random) {
+        int n = ids.length;
+        double[] cumulative = new double[n];
+        double sum = 0;
+        for (int rank = 0; rank < n; rank++) {
+            sum += 1 / Math.pow(rank + 1, exponent);
+            cumulative[rank] = sum;
+        }
+        int[] permutation = new int[n];
+        for (int i = 0; i < n; i++) {
+            int j = random.nextInt(i + 1);
+            permutation[i] = permutation[j];
+            permutation[j] = i;
+        }
+        String[] trace = new String[length];
+        for (int i = 0; i < length; i++) {
+            int rank = java.util.Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+            trace[i] = ids[permutation[Math.min(n - 1, rank < 0 ? -rank - 1 : rank)]];
+        }
+        return trace;
+    }
+
+    /**
+     * @return Copy of a trace with every fourth ID replaced by the next ID of a sequential scan
+     */
+    private static String[] withScan(String[] trace, String[] ids, int scanStart) {
+        String[] scanned = trace.clone();
+        for (int i = 3; i < scanned.length; i += 4) {
+            scanned[i] = ids[(scanStart + i / 4) % ids.length];
+        }
+        return scanned;
+    }
+
+    /**
+     * Measures a mix of 19 getContact calls to each updateAddress, on the IDs of a trace
+     */
+    private static void measureTieredMix(String name, ContactService service, String[] trace, int size) {
+        measure(name, size, 1, trace.length, null, () -> {
+            for (int i = 0; i < trace.length; i++) {
+                if (i % 20 == 19) {
+                    service.updateAddress(trace[i], i + " Elm St");
+                } else {
+                    service.getContact(trace[i]);
+                }
+            }
+        });
+    }
+
+    /**
+     * Reports the hit rate and evictions of a new TieredContactStore over a trace, after the
+     * warm trace, against an access-ordered LinkedHashMap of the same capacity fed the same traces
+     */
+    private static void reportHitRates(String name, ContactStore cold, String[] warm, String[] trace,
+                                       int capacity, int size) {
+        TieredContactStore tiered = new TieredContactStore(cold, capacity);
+        for (String id : warm) {
+            tiered.get(id);
+        }
+        long hits = tiered.getHitCount();
+        long misses = tiered.getMissCount();
+        long evictions = tiered.getEvictionCount();
+        for (String id : trace) {
+            tiered.get(id);
+        }
+        double hitRate = (tiered.getHitCount() - hits) / (double) (tiered.getHitCount() - hits + tiered.getMissCount() - misses);
+        double evictionsPerGet = (tiered.getEvictionCount() - evictions) / (double) trace.length;
+
+        java.util.LinkedHashMap<String, Boolean> lru = new java.util.LinkedHashMap<String, Boolean>(capacity * 2, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > capacity;
+            }
+        };
+        int lruHits = 0;
+        for (String[] pass : new String[][] {warm, trace}) {
+            lruHits = 0;
+            for (String id : pass) {
+                if (lru.get(id) != null) {
+                    lruHits++;
+                } else {
+                    lru.put(id, Boolean.TRUE);
+                }
+            }
+        }
+        double lruHitRate = lruHits / (double) trace.length;
+        System.out.printf(Locale.ROOT, "  %-32s hit rate %.3f (LRU %.3f), %.3f evictions per get%n",
+                name, hitRate, lruHitRate, evictionsPerGet);
+        results.add(new Result(currentSuite, name + " hit rate", size, 1, trace.length, 0, hitRate));
+        results.add(new Result(currentSuite, name + " LRU hit rate", size, 1, trace.length, 0, lruHitRate));
+        results.add(new Result(currentSuite, name + " evictions per get", size, 1, trace.length, 0, evictionsPerGet));
+    }
+
+    /**
+     * Measures updates with no feed, then with a feed whose subscribers drain it on their
+     * own threads, and the bytes the updating thread allocates per update in each case
+     */
+    static void benchmarkChangeFeed(int records) {
+        ContactService service = new ContactService();
+        service.addContacts(generateContacts(records));
+        String[] ids = new String[records];
+        for (int i = 0; i < records; i++) {
+            ids[i] = "c" + i;
+        }
+        String[] addresses = {"1 Elm St", "2 Elm St"};  // Preallocated, so only the service allocates
+        int operations = Math.min(OPERATIONS_PER_RUN, records);
+        Runnable updates = () -> {
+            for (int i = 0; i < operations; i++) {
+                service.updateAddress(ids[spread(0, i, records)], addresses[i & 1]);
+            }
+        };
+        System.out.printf("Change feed over %,d contacts%n", records);
+
+        measure("updateAddress, no feed", records, 1, operations, null, updates);
+        reportAllocation("no feed", records, operations, updates);
+        for (int subscribers : new int[] {1, 4}) {
+            try (ContactChangeFeed feed = new ContactChangeFeed(service, 1 << 14, SlowConsumerPolicy.BLOCK)) {
+                java.util.concurrent.atomic.AtomicBoolean running = new java.util.concurrent.atomic.AtomicBoolean(true);
+                List<Thread> threads = new ArrayList<>();
+                for (int k = 0; k < subscribers; k++) {
+                    ContactChangeFeed.Subscription subscription = feed.subscribe();
+                    long[] sink = new long[1];
+                    Thread thread = new Thread(() -> {
+                        while (running.get()) {
+                            if (subscription.poll(change -> sink[0] += change.getSequence(), 1024) == 0) {
+                                Thread.onSpinWait();
+                            }
+                        }
+                    });
+                    thread.setDaemon(true);
+                    thread.start();
+                    threads.add(thread);
+                }
+                String name = subscribers + " subscriber(s)";
+                measure("updateAddress, " + name, records, 1, operations, null, updates);
+                reportAllocation(name, records, operations, updates);
+                running.set(false);
+            }
+        }
+    }
+
+    /**
+     * Prints and records the bytes the calling thread allocates per operation of a task
+     */
+    private static void reportAllocation(String name, int size, int operations, Runnable task) {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) java.lang.management.ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(thread);
+        task.run();
+        double perOperation = (threads.getThreadAllocatedBytes(thread) - before) / (double) operations;
+        System.out.printf("    %s: %.1f bytes allocated per update%n", name, perOperation);
+        results.add(new Result(currentSuite, "bytes allocated per update, " + name, size, 1, operations, 0, perOperation));
+    }
+
+    static void benchmarkSnapshot(int records) throws IOException {
+        ContactService service = new ContactService();
+        service.addContacts(generateContacts(records));
+        Path file = Files.createTempFile("contacts", ".snap");
+        try {
+            System.out.printf("Snapshot of %,d contacts%n", records);
+            measure("ContactSnapshot.save", records, 1, records, null, () -> {
+                try {
+                    ContactSnapshot.save(service, file);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            measure("ContactSnapshot.load", records, 1, records, null, () -> {
+                try {
+                    ContactSnapshot.load(file);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Measures exporting and importing every contact in each file format, and importing the
+     * CSV file the way callers did before streaming import: every line read into memory and
+     * split into records for one addContactRecords call
+     */
+    static void benchmarkExchange(int records) throws IOException {
+        ContactService service = new ContactService();
+        service.addContacts(generateContacts(records));
+        System.out.printf("Exchange files of %,d contacts%n", records);
+        ContactService[] target = new ContactService[1];
+        for (ContactFileFormat format : ContactFileFormat.values()) {
+            Path file = Files.createTempFile("contacts", "." + format.name().toLowerCase(Locale.ROOT));
+            try {
+                double exportRate = measure("export " + format, records, 1, records, null, () -> {
+                    try {
+                        ContactExchange.export(service, file, format);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                double bytesPerRecord = Files.size(file) / (double) records;
+                System.out.printf("    %.0f MB/s, %.1f bytes per record%n", exportRate * bytesPerRecord / 1e6, bytesPerRecord);
+                double importRate = measure("import " + format, records, 1, records,
+                        () -> target[0] = new ContactService(), () -> {
+                            try {
+                                ContactExchange.importInto(target[0], file, format, null);
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                        });
+                System.out.printf("    %.0f MB/s%n", importRate * bytesPerRecord / 1e6);
+                if (format == ContactFileFormat.CSV) {
+                    double naiveRate = measure("readAllLines + addContactRecords", records, 1, records,
+                            () -> target[0] = new ContactService(), () -> {
+                                try {
+                                    List<String> lines = Files.readAllLines(file);
+                                    List<CharSequence[]> rows = new ArrayList<>(lines.size());
+                                    for (String line : lines.subList(1, lines.size())) {
+                                        rows.add(line.split(",", -1));
+                                    }
+                                    target[0].addContactRecords(rows);
+                                } catch (IOException e) {
+                                    throw new UncheckedIOException(e);
+                                }
+                            });
+                    System.out.printf("    %.0f MB/s%n", naiveRate * bytesPerRecord / 1e6);
+                }
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    static void benchmarkJournal(int operations) throws IOException {
+        System.out.printf("Journaled updateAddress, %,d operations per run%n", operations);
+        for (int threads : new int[] {1, 8}) {
+            measureJournal("no journal", null, threads, operations);
+            for (FsyncPolicy policy : FsyncPolicy.values()) {
+                measureJournal(policy.name(), policy, threads, operations);
+            }
+        }
+    }
+
+    private static void measureJournal(String name, FsyncPolicy policy, int threads, int operations) throws IOException {
+        Path directory = Files.createTempDirectory("contacts-journal");
+        ContactPersistence persistence = policy == null ? null : ContactPersistence.open(directory, policy);
+        ContactService service = persistence == null ? new ContactService() : persistence.getService();
+        service.addContacts(generateContacts(1000));
+        try {
+            measure(String.format("%s, %d thread(s)", name, threads), 1000, threads, operations, null,
+                    () -> runThreads(threads, operations / threads, (thread, i) ->
+                            service.updateAddress("c" + ((thread * 131 + i) % 1000), i + " Elm St")));
+        } finally {
+            if (persistence != null) {
+                persistence.close();
+            }
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path file : files.toArray(Path[]::new)) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(directory);
+        }
+    }
+
+    /**
+     * Prints a JOL-style layout of one contact before and after packing, assuming a 64-bit
+     * JVM with compressed references (12-byte headers, 4-byte references, 8-byte alignment),
+     * then checks the model by measuring the retained heap of many contacts
+     */
+    static void benchmarkFootprint(int records) {
+        List<Contact> sample = generateContacts(records);
+        String[] names = {"contactId", "firstName", "lastName", "phone", "address"};
+        long[] stringArrays = new long[names.length];  // Bytes of each field's String backing array
+        long idArrays = 0;
+        long packedArrays = 0;
+        for (Contact c : sample) {
+            String[] fields = {c.getContactId(), c.getFirstName(), c.getLastName(), c.getPhone(), c.getAddress()};
+            for (int i = 0; i < fields.length; i++) {
+                stringArrays[i] += arrayBytes(fields[i].length());
+            }
+            idArrays += arrayBytes(fields[0].length());
+            packedArrays += arrayBytes(8 + fields[1].length() + fields[2].length() + fields[4].length());
+        }
+
+        System.out.printf("Footprint per contact, averaged over %,d generated contacts%n", records);
+        System.out.println("  Before: Contact with five String fields");
+        double before = printLayout("Contact (5 refs)", align(12 + 5 * 4));
+        for (int i = 0; i < names.length; i++) {
+            before += printLayout("String " + names[i], STRING_BYTES);
+            before += printLayout("byte[] " + names[i], stringArrays[i] / (double) records);
+        }
+        System.out.printf("    %-28s %7.1f bytes%n", "total", before);
+
+        System.out.println("  After: Contact with contactId and one packed byte[]");
+        double after = printLayout("Contact (2 refs)", align(12 + 2 * 4));
+        after += printLayout("String contactId", STRING_BYTES);
+        after += printLayout("byte[] contactId", idArrays / (double) records);
+        after += printLayout("byte[] packed fields", packedArrays / (double) records);
+        System.out.printf("    %-28s %7.1f bytes (%.1fx smaller)%n", "total", after, before / after);
+
+        // A String[5] stands in for the old object: same five references, 8 more header bytes
+        double measuredBefore = measureRetained(records, i -> {
+            Contact c = sample.get(i);
+            return new String[] {new String(c.getContactId().toCharArray()), c.getFirstName(), c.getLastName(), c.getPhone(),
+                c.getAddress()};
+        }) - arrayBytes(5 * 4) + align(12 + 5 * 4);
+        double measuredAfter = measureRetained(records, i -> {
+            Contact c = sample.get(i);
+            return new Contact(new String(c.getContactId().toCharArray()), c.getFirstName(), c.getLastName(), c.getPhone(),
+                    c.getAddress());
+        });
+        System.out.printf("  Measured retained heap: before %.1f, after %.1f bytes per contact%n",
+                measuredBefore, measuredAfter);
+        results.add(new Result(currentSuite, "bytes per contact, before", records, 1, records, 0, measuredBefore));
+        results.add(new Result(currentSuite, "bytes per contact, after", records, 1, records, 0, measuredAfter));
+    }
+
+    /**
+     * Fills a service on each store backend, reports the heap it retains and the off-heap
+     * memory it allocates per contact, then measures reads, updates and delete-add churn
+     */
+    static void benchmarkStores(int records) throws IOException {
+        List<Contact> base = generateContacts(records);
+        String[] ids = new String[records];
+        for (int i = 0; i < records; i++) {
+            ids[i] = base.get(i).getContactId();
+        }
+        String[] missing = new String[Math.min(OPERATIONS_PER_RUN, records)];
+        for (int i = 0; i < missing.length; i++) {
+            // Scattered numbers, so String hash codes of consecutive misses are not adjacent
+            missing[i] = "m" + (i * 7_919_113L) % 100_000_000L;
+        }
+        Path file = Files.createTempFile("contacts", ".slots");
+        try {
+            System.out.printf("Store backends with %,d contacts%n", records);
+            java.util.HashMap<String, Contact> map = new java.util.HashMap<>();
+            for (Contact contact : generateContacts(records)) {
+                map.put(contact.getContactId(), contact);
+            }
+            measureGets("HashMap", map::get, ids, missing);
+            map = null;
+            measureStore("heap", new HeapContactStore(), base, ids, missing);
+            measureStore("packed", new PackedIdContactStore(), base, ids, missing);
+            measureStore("versioned", new VersionedContactStore(), base, ids, missing);
+            try (OffHeapContactStore store = OffHeapContactStore.allocate()) {
+                measureStore("off-heap", store, base, ids, missing);
+            }
+            try (OffHeapContactStore store = OffHeapContactStore.map(file)) {
+                measureStore("mapped", store, base, ids, missing);
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Measures raw lookups of existing and missing IDs, outside any service
+     */
+    private static void measureGets(String name, java.util.function.Function<String, Contact> get, String[] ids,
+                                    String[] missing) {
+        int size = ids.length;
+        int operations = missing.length;
+        Contact[] sink = new Contact[1];
+        measure(name + " get hit", size, 1, operations, null, () -> {
+            for (int i = 0; i < operations; i++) {
+                sink[0] = get.apply(ids[spread(0, i, size)]);
+            }
+        });
+        measure(name + " get miss", size, 1, operations, null, () -> {
+            for (int i = 0; i < operations; i++) {
+                sink[0] = get.apply(missing[i]);
+            }
+        });
+    }
+
+    private static void measureStore(String name, ContactStore store, List<Contact> base, String[] ids,
+                                     String[] missing) {
+        int size = ids.length;
+        long baseline = usedHeapAfterGc();
+        ContactService service = new ContactService(store);
+        service.addContacts(generateContacts(size));  // Fresh objects, so the heap store retains its own
+        double heapPerContact = (usedHeapAfterGc() - baseline) / (double) size;
+        double offHeapPerContact = store instanceof OffHeapContactStore
+                ? ((OffHeapContactStore) store).allocatedBytes() / (double) size : 0;
+        System.out.printf("  %-8s heap %.1f, off-heap %.1f bytes per contact%n", name, heapPerContact, offHeapPerContact);
+        results.add(new Result(currentSuite, name + " heap bytes per contact", size, 1, size, 0, heapPerContact));
+        results.add(new Result(currentSuite, name + " off-heap bytes per contact", size, 1, size, 0, offHeapPerContact));
+
+        measureGets(name, store::get, ids, missing);
+
+        int operations = Math.min(OPERATIONS_PER_RUN, size);
+        measure(name + " getContact hit", size, 1, operations, null, () -> {
+            for (int i = 0; i < operations; i++) {
+                service.getContact(ids[spread(0, i, size)]);
+            }
+        });
+        measure(name + " updateAddress", size, 1, operations, null, () -> {
+            for (int i = 0; i < operations; i++) {
+                service.updateAddress(ids[spread(0, i, size)], "2 Elm St");
+            }
+        });
+        measure(name + " delete and re-add", size, 1, operations, null, () -> {
+            for (int i = 0; i < operations; i++) {
+                Contact contact = base.get(spread(0, i, size));
+                service.deleteContact(contact.getContactId());
+                service.addContact(contact);
+            }
+        });
+        if (store instanceof VersionedContactStore) {
+            measureSnapshotScans(name, service, ids);
+        }
+    }
+
+    /**
+     * Measures full scans of a snapshot, then updates while another thread scans snapshots
+     * back to back, which they should not wait for
+     */
+    private static void measureSnapshotScans(String name, ContactService service, String[] ids) {
+        int size = ids.length;
+        long[] scanned = new long[1];
+        measure(name + " snapshot scan", size, 1, size, null, () -> {
+            for (Contact contact : service.snapshot()) {
+                scanned[0] += contact.getContactId().length();
+            }
+        });
+        int operations = Math.min(OPERATIONS_PER_RUN, size);
+        java.util.concurrent.atomic.AtomicBoolean running = new java.util.concurrent.atomic.AtomicBoolean(true);
+        Thread scanner = new Thread(() -> {
+            while (running.get()) {
+                for (Contact contact : service.snapshot()) {
+                    scanned[0] += contact.getContactId().length();
+                }
+            }
+        });
+        scanner.setDaemon(true);
+        scanner.start();
+        try {
+            measure(name + " updateAddress during scans", size, 1, operations, null, () -> {
+                for (int i = 0; i < operations; i++) {
+                    service.updateAddress(ids[spread(0, i, size)], "3 Elm St");
+                }
+            });
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private static double printLayout(String part, double bytes) {
+        System.out.printf("    %-28s %7.1f bytes%n", part, bytes);
+        return bytes;
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    /**
+     * Size of a byte array of the given length, including its header and alignment padding
+     */
+    private static long arrayBytes(int length) {
+        return align(16 + length);
+    }
+
+    /**
+     * Measures the heap retained by objects created for indexes 0 to count, per object
+     */
+    private static double measureRetained(int count, java.util.function.IntFunction<Object> factory) {
+        Object[] held = new Object[count];
+        long baseline = usedHeapAfterGc();
+        for (int i = 0; i < count; i++) {
+            held[i] = factory.apply(i);
+        }
+        long used = usedHeapAfterGc();
+        double perObject = (used - baseline) / (double) count;
+        if (held[count - 1] == null) {
+            throw new IllegalStateException("Objects were not retained");
+        }
+        return perObject;
+    }
+
+    private static long usedHeapAfterGc() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private interface ThreadOperation {
+        void run(int thread, int iteration);
+    }
+
+    /**
+     * Runs operationsPerThread iterations of an operation on each of several threads and waits for all
+     */
+    static void runThreads(int threads, int operationsPerThread, ThreadOperation operation) {
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final int thread = t;
+            workers[t] = new Thread(() -> {
+                for (int i = 0; i < operationsPerThread; i++) {
+                    operation.run(thread, i);
+                }
+            });
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted waiting for benchmark threads", e);
+            }
+        }
+    }
+
+    /**
+     * Runs a task through warmup and measured rounds, prints its throughput and records the result
+     * @param name Label for the result line
+     * @param size Number of contacts in the store the task works on
+     * @param threads Number of threads the task runs on
+     * @param operations Number of operations one run of the task performs
+     * @param setup Untimed action run before every round, or null
+     * @param task Task to time
+     * @return Best operations per second
+     */
+    static double measure(String name, int size, int threads, int operations, Runnable setup, Runnable task) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            if (setup != null) {
+                setup.run();
+            }
+            task.run();
+        }
+        long best = Long.MAX_VALUE;
+        long total = 0;
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            if (setup != null) {
+                setup.run();
+            }
+            long start = System.nanoTime();
+            task.run();
+            long elapsed = System.nanoTime() - start;
+            best = Math.min(best, elapsed);
+            total += elapsed;
+        }
+        double avgMillis = total / (double) MEASURED_ROUNDS / 1e6;
+        double bestOpsPerSec = operations / (best / 1e9);
+        System.out.printf("  %-32s avg %9.2f ms   best %,14.0f ops/s%n", name, avgMillis, bestOpsPerSec);
+        results.add(new Result(currentSuite, name, size, threads, operations, avgMillis, bestOpsPerSec));
+        return bestOpsPerSec;
+    }
+
+    /**
+     * Result class is one recorded measurement
+     */
+    private static final class Result {
+        final String suite;
+        final String name;
+        final int size;
+        final int threads;
+        final int operations;
+        final double avgMillis;
+        final double bestOpsPerSec;
+
+        Result(String suite, String name, int size, int threads, int operations, double avgMillis, double bestOpsPerSec) {
+            this.suite = suite;
+            this.name = name;
+            this.size = size;
+            this.threads = threads;
+            this.operations = operations;
+            this.avgMillis = avgMillis;
+            this.bestOpsPerSec = bestOpsPerSec;
+        }
+    }
+
+    /**
+     * Writes every recorded result as JSON if the file name ends in .json, CSV otherwise
+     */
+    private static void writeResults(Path output) throws IOException {
+        boolean json = output.getFileName().toString().endsWith(".json");
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(output, StandardCharsets.UTF_8))) {
+            if (json) {
+                out.println("[");
+            } else {
+                out.println("suite,benchmark,size,threads,operations,avg_ms,best_ops_per_sec");
+            }
+            for (int i = 0; i < results.size(); i++) {
+                Result r = results.get(i);
+                if (json) {
+                    out.printf(Locale.ROOT, "  {\"suite\": \"%s\", \"benchmark\": \"%s\", \"size\": %d, \"threads\": %d, "
+                            + "\"operations\": %d, \"avg_ms\": %.3f, \"best_ops_per_sec\": %.0f}%s%n",
+                            r.suite, r.name, r.size, r.threads, r.operations, r.avgMillis, r.bestOpsPerSec,
+                            i < results.size() - 1 ? "," : "");
+                } else {
+                    out.printf(Locale.ROOT, "%s,\"%s\",%d,%d,%d,%.3f,%.0f%n",
+                            r.suite, r.name, r.size, r.threads, r.operations, r.avgMillis, r.bestOpsPerSec);
+                }
+            }
+            if (json) {
+                out.println("]");
+            }
+        }
+        System.out.printf("Wrote %d results to %s%n", results.size(), output);
+    }
+
+    static List<Contact> generateContacts(int count) {
+        List<Contact> contacts = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            contacts.add(new Contact("c" + i, "First" + (i % 1000), "Last" + (i % 5000),
+                    String.format("%010d", 6_030_000_000L + i), (i % 9000) + " Main St"));
+        }
+        return contacts;
+    }
+
+    static List<CharSequence[]> generateRecords(int count) {
+        List<CharSequence[]> records = new ArrayList<>(count);
+        for (Contact c : generateContacts(count)) {
+            records.add(new CharSequence[] {c.getContactId(), c.getFirstName(), c.getLastName(), c.getPhone(), c.getAddress()});
+        }
+        return records;
+    }
+}
\ No newline at end of file
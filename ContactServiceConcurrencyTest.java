@@ -0,0 +1,482 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Multi-threaded stress tests for ContactService
+ * Verifies that concurrent adds, deletes and updates never lose or duplicate work
+ */
+public class ContactServiceConcurrencyTest {
+    private static final int THREADS = 16;
+    private static final int PER_THREAD = 2_000;
+
+    private ContactService contactService;
+
+    @BeforeEach
+    public void setUp() {
+        contactService = new ContactService();
+    }
+
+    /**
+     * Runs the given task on THREADS threads released at the same moment
+     * @param task Task receiving the thread index
+     */
+    private void runConcurrently(ThreadTask task) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Void>> futures = new ArrayList<>();
+        try {
+            for (int t = 0; t < THREADS; t++) {
+                final int thread = t;
+                Callable<Void> call = () -> {
+                    start.await();
+                    task.run(thread);
+                    return null;
+                };
+                futures.add(pool.submit(call));
+            }
+            start.countDown();
+            for (Future<Void> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private interface ThreadTask {
+        void run(int thread) throws Exception;
+    }
+
+    private static String phoneFor(int n) {
+        return String.format("%010d", n);
+    }
+
+    @Test
+    @DisplayName("Concurrent adds of distinct IDs should all be stored")
+    public void testConcurrentDistinctAdds() throws Exception {
+        runConcurrently(thread -> {
+            for (int i = 0; i < PER_THREAD; i++) {
+                contactService.addContact("t" + thread + "-" + i, "First", "Last", phoneFor(i), "1 Main St");
+            }
+        });
+
+        assertEquals(THREADS * PER_THREAD, contactService.getContactCount());
+        for (int t = 0; t < THREADS; t++) {
+            assertTrue(contactService.contactExists("t" + t + "-" + (PER_THREAD - 1)));
+        }
+    }
+
+    @Test
+    @DisplayName("Compare-and-set patches should neither lose an increment nor show half a patch")
+    public void testConcurrentVersionedPatches() throws Exception {
+        contactService.addContact("hot", "0", "0", "5551234567", "1 Main St");
+        AtomicInteger conflicts = new AtomicInteger();
+        AtomicInteger torn = new AtomicInteger();
+        int increments = PER_THREAD / 10;
+
+        // Every thread increments a counter held in both names, retrying on conflict
+        runConcurrently(thread -> {
+            for (int i = 0; i < increments; i++) {
+                while (true) {
+                    Contact read = new Contact(contactService.getContact("hot"));  // One version of every field
+                    int version = read.getVersion();
+                    String first = read.getFirstName();
+                    if (!first.equals(read.getLastName())) {
+                        torn.incrementAndGet();
+                    }
+                    String next = Integer.toString(Integer.parseInt(first) + 1);
+                    try {
+                        contactService.patchContact("hot", new ContactPatch(next, next, null, null), version);
+                        break;
+                    } catch (ContactVersionConflictException e) {
+                        conflicts.incrementAndGet();
+                    }
+                }
+            }
+        });
+
+        Contact hot = contactService.getContact("hot");
+        assertEquals(Integer.toString(THREADS * increments), hot.getFirstName());
+        assertEquals(hot.getFirstName(), hot.getLastName());
+        assertEquals(THREADS * increments, hot.getVersion());
+        assertEquals(0, torn.get());
+    }
+
+    @Test
+    @DisplayName("Name sort index should match a scan after concurrent renames, patches and deletes")
+    public void testSortIndexUnderConcurrentRenames() throws Exception {
+        contactService.enableSortIndex(ContactSortOrder.NAME);
+        runConcurrently(thread -> {
+            for (int i = 0; i < PER_THREAD; i++) {
+                String id = "t" + thread + "-" + (i % 100);
+                if (i < 100) {
+                    contactService.addContact(id, "F" + i, "L" + i, phoneFor(i), "1 Main St");
+                } else if (i % 7 == 0) {
+                    contactService.deleteContact(id);
+                    contactService.addContact(id, "F" + i, "L" + (i % 13), phoneFor(i), "1 Main St");
+                } else if (i % 2 == 0) {
+                    contactService.updateLastName(id, "L" + (i % 13));
+                } else {
+                    contactService.patchContact(id, new ContactPatch("F" + (i % 5), "L" + (i % 11), null, null));
+                }
+                // Readers page alongside the writers and must never fail
+                contactService.listContacts(ContactSortOrder.NAME, null, 5);
+            }
+        });
+
+        ContactService scanned = new ContactService();
+        List<String> indexed = new ArrayList<>();
+        String cursor = null;
+        do {
+            ContactPage page = contactService.listContacts(ContactSortOrder.NAME, cursor, 64);
+            for (Contact contact : page.getContacts()) {
+                indexed.add(contact.getContactId());
+                scanned.addContact(contact.getContactId(), contact.getFirstName(), contact.getLastName(),
+                        contact.getPhone(), contact.getAddress());
+            }
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        List<String> expected = new ArrayList<>();
+        for (Contact contact : scanned.listContacts(ContactSortOrder.NAME, null, Integer.MAX_VALUE).getContacts()) {
+            expected.add(contact.getContactId());
+        }
+        assertEquals(THREADS * 100, indexed.size());
+        assertEquals(expected, indexed);
+    }
+
+    @Test
+    @DisplayName("Racing adds of the same IDs should have exactly one winner per ID")
+    public void testConcurrentDuplicateAdds() throws Exception {
+        AtomicInteger successes = new AtomicInteger();
+        AtomicInteger rejections = new AtomicInteger();
+
+        runConcurrently(thread -> {
+            for (int i = 0; i < PER_THREAD; i++) {
+                try {
+                    contactService.addContact("id" + i, "T" + thread, "Last", phoneFor(i), "1 Main St");
+                    successes.incrementAndGet();
+                } catch (IllegalArgumentException e) {
+                    rejections.incrementAndGet();
+                }
+            }
+        });
+
+        assertEquals(PER_THREAD, successes.get());
+        assertEquals(PER_THREAD * (THREADS - 1), rejections.get());
+        assertEquals(PER_THREAD, contactService.getContactCount());
+    }
+
+    @Test
+    @DisplayName("Concurrent add and delete churn should leave a consistent count")
+    public void testConcurrentAddDeleteChurn() throws Exception {
+        runConcurrently(thread -> {
+            for (int i = 0; i < PER_THREAD; i++) {
+                String id = "t" + thread + "-" + (i % 50);
+                contactService.addContact(id, "First", "Last", phoneFor(i), "1 Main St");
+                contactService.deleteContact(id);
+            }
+        });
+
+        assertEquals(0, contactService.getContactCount());
+    }
+
+    @Test
+    @DisplayName("Concurrent updates to different fields of the same contacts should not be lost")
+    public void testConcurrentFieldUpdatesNotLost() throws Exception {
+        int contacts = THREADS / 4;
+        for (int c = 0; c < contacts; c++) {
+            contactService.addContact("shared" + c, "First", "Last", "0000000000", "1 Main St");
+        }
+
+        // Four threads share each contact, one per field, so each field has a single writer
+        runConcurrently(thread -> {
+            String id = "shared" + (thread / 4);
+            for (int i = 0; i <= PER_THREAD; i++) {
+                switch (thread % 4) {
+                    case 0: contactService.updateFirstName(id, "F" + i); break;
+                    case 1: contactService.updateLastName(id, "L" + i); break;
+                    case 2: contactService.updatePhone(id, phoneFor(i)); break;
+                    default: contactService.updateAddress(id, "A" + i); break;
+                }
+            }
+        });
+
+        for (int c = 0; c < contacts; c++) {
+            Contact contact = contactService.getContact("shared" + c);
+            assertEquals("F" + PER_THREAD, contact.getFirstName());
+            assertEquals("L" + PER_THREAD, contact.getLastName());
+            assertEquals(phoneFor(PER_THREAD), contact.getPhone());
+            assertEquals("A" + PER_THREAD, contact.getAddress());
+        }
+    }
+
+    @Test
+    @DisplayName("Lock-free readers should always see existing contacts while writers update them")
+    public void testReadersDuringUpdates() throws Exception {
+        for (int i = 0; i < 100; i++) {
+            contactService.addContact("c" + i, "First", "Last", phoneFor(i), "1 Main St");
+        }
+        AtomicInteger misses = new AtomicInteger();
+
+        runConcurrently(thread -> {
+            for (int i = 0; i < PER_THREAD; i++) {
+                String id = "c" + (i % 100);
+                if (thread % 2 == 0) {
+                    contactService.updatePhone(id, phoneFor(thread * PER_THREAD + i));
+                } else if (!contactService.contactExists(id) || contactService.getContact(id).getPhone() == null) {
+                    misses.incrementAndGet();
+                }
+            }
+        });
+
+        assertEquals(0, misses.get());
+        assertEquals(100, contactService.getContactCount());
+    }
+
+    @Test
+    @DisplayName("Phone lookups should always find contacts whose phone never changes while others churn")
+    public void testPhoneIndexDuringChurn() throws Exception {
+        contactService.enablePhoneIndex();
+        for (int i = 0; i < 100; i++) {
+            contactService.addContact("stable" + i, "First", "Last", phoneFor(i), "1 Main St");
+        }
+        AtomicInteger misses = new AtomicInteger();
+
+        runConcurrently(thread -> {
+            for (int i = 0; i < PER_THREAD; i++) {
+                if (thread % 2 == 0) {
+                    // Churn forces probe-run shifts and table growth under the readers
+                    String id = "churn" + thread + "-" + (i % 50);
+                    if (contactService.contactExists(id)) {
+                        contactService.updatePhone(id, phoneFor(1_000_000 + thread * PER_THREAD + i));
+                        contactService.deleteContact(id);
+                    } else {
+                        contactService.addContact(id, "First", "Last", phoneFor(1_000_000 + i), "1 Main St");
+                    }
+                } else if (contactService.findByPhone(phoneFor(i % 100)).isEmpty()) {
+                    misses.incrementAndGet();
+                }
+            }
+        });
+
+        assertEquals(0, misses.get());
+    }
+    @Test
+    @DisplayName("Packed-ID store readers should always find stable contacts while others churn")
+    public void testPackedIdStoreReadsDuringChurn() throws Exception {
+        ContactService service = new ContactService(new PackedIdContactStore());
+        for (int i = 0; i < 100; i++) {
+            service.addContact("stable" + i, "First", "Last", phoneFor(i), "1 Main St");
+        }
+        AtomicInteger misses = new AtomicInteger();
+
+        runConcurrently(thread -> {
+            for (int i = 0; i < PER_THREAD; i++) {
+                if (thread % 2 == 0) {
+                    // Churn forces probe-run shifts and table growth under the optimistic readers
+                    String id = "t" + thread + "-" + (i % 500);
+                    if (service.contactExists(id)) {
+                        service.deleteContact(id);
+                    } else {
+                        service.addContact(id, "First", "Last", phoneFor(i), "1 Main St");
+                    }
+                } else if (!service.contactExists("stable" + (i % 100))) {
+                    misses.incrementAndGet();
+                }
+            }
+        });
+
+        assertEquals(0, misses.get());
+    }
+
+    @Test
+    @DisplayName("Off-heap store should lose no field update while other contacts churn through its slots")
+    public void testOffHeapStoreUnderChurn() throws Exception {
+        try (OffHeapContactStore store = OffHeapContactStore.allocate()) {
+            ContactService service = new ContactService(store);
+            int contacts = THREADS / 8;
+            for (int c = 0; c < contacts; c++) {
+                service.addContact("shared" + c, "First", "Last", "0000000000", "1 Main St");
+            }
+
+            // Half the threads own one field of a shared contact each; the rest churn, so
+            // slots are freed and reused and the hash index shifts and grows under the updates
+            runConcurrently(thread -> {
+                String id = "shared" + (thread / 8);
+                for (int i = 0; i <= PER_THREAD; i++) {
+                    switch (thread % 8) {
+                        case 0: service.updateFirstName(id, "F" + i); break;
+                        case 1: service.updateLastName(id, "L" + i); break;
+                        case 2: service.updatePhone(id, phoneFor(i)); break;
+                        case 3: service.updateAddress(id, "A" + i); break;
+                        default:
+                            String churn = "t" + thread + "-" + (i % 200);
+                            if (service.contactExists(churn)) {
+                                service.deleteContact(churn);
+                            } else {
+                                service.addContact(churn, "First", "Last", phoneFor(i), "1 Main St");
+                            }
+                            break;
+                    }
+                }
+            });
+
+            for (int c = 0; c < contacts; c++) {
+                Contact contact = service.getContact("shared" + c);
+                assertEquals("F" + PER_THREAD, contact.getFirstName());
+                assertEquals("L" + PER_THREAD, contact.getLastName());
+                assertEquals(phoneFor(PER_THREAD), contact.getPhone());
+                assertEquals("A" + PER_THREAD, contact.getAddress());
+            }
+            int live = 0;
+            for (Contact contact : store) {
+                live++;
+            }
+            assertEquals(service.getContactCount(), live);
+        }
+    }
+
+    @Test
+    @DisplayName("Snapshots of a versioned store should stay consistent while writers race")
+    public void testVersionedStoreSnapshotsDuringWrites() throws Exception {
+        ContactService service = new ContactService(new VersionedContactStore());
+        service.addContact("shared", "First", "Last", "0000000000", "1 Main St");
+        AtomicInteger inconsistent = new AtomicInteger();
+
+        // Four threads each own one field of a shared contact, four add batches of ten
+        // (each published as one root), and the rest scan snapshots under the writes
+        runConcurrently(thread -> {
+            for (int i = 0; i <= PER_THREAD; i++) {
+                switch (Math.min(thread, 8)) {
+                    case 0: service.updateFirstName("shared", "F" + i); break;
+                    case 1: service.updateLastName("shared", "L" + i); break;
+                    case 2: service.updatePhone("shared", phoneFor(i)); break;
+                    case 3: service.updateAddress("shared", "A" + i); break;
+                    case 4: case 5: case 6: case 7:
+                        if (i % 10 == 0) {
+                            List<Contact> batch = new ArrayList<>();
+                            for (int k = 0; k < 10; k++) {
+                                batch.add(new Contact("t" + thread + "-" + i + "-" + k, "First", "Last", phoneFor(k), "1 Main St"));
+                            }
+                            service.addContacts(batch);
+                        }
+                        break;
+                    default:
+                        if (i % 200 == 0) {
+                            ContactView view = service.snapshot();
+                            int count = 0;
+                            for (Contact contact : view) {
+                                count++;
+                            }
+                            if (count != view.getContactCount() || (count - 1) % 10 != 0
+                                    || view.stream().count() != count) {
+                                inconsistent.incrementAndGet();
+                            }
+                        }
+                        break;
+                }
+            }
+        });
+
+        assertEquals(0, inconsistent.get());
+        Contact contact = service.getContact("shared");
+        assertEquals("F" + PER_THREAD, contact.getFirstName());
+        assertEquals("L" + PER_THREAD, contact.getLastName());
+        assertEquals(phoneFor(PER_THREAD), contact.getPhone());
+        assertEquals("A" + PER_THREAD, contact.getAddress());
+        assertEquals(1 + 4 * (PER_THREAD / 10 + 1) * 10, service.getContactCount());
+    }
+
+    @Test
+    @DisplayName("Reshard should lose no contact or update while threads keep writing")
+    public void testReshardDuringChurn() throws Exception {
+        ShardedContactService service = new ShardedContactService(4);
+        for (int i = 0; i < 1000; i++) {
+            service.addContact("stable" + i, "First", "Last", phoneFor(i), "1 Main St");
+        }
+        AtomicInteger misses = new AtomicInteger();
+
+        // Thread 0 reshards back and forth; the others each add then update their own contacts
+        runConcurrently(thread -> {
+            if (thread == 0) {
+                for (int round = 0; round < 10; round++) {
+                    service.reshard(round % 2 == 0 ? 7 : 3);
+                }
+                return;
+            }
+            for (int i = 0; i < PER_THREAD; i++) {
+                String id = "t" + thread + "-" + i;
+                service.addContact(id, "First", "Last", phoneFor(i), "1 Main St");
+                service.updateAddress(id, "A" + i);
+                if (!service.contactExists("stable" + (i % 1000))) {
+                    misses.incrementAndGet();
+                }
+            }
+        });
+
+        assertEquals(0, misses.get());
+        assertEquals(3, service.getShardCount());
+        assertEquals(1000 + (THREADS - 1) * PER_THREAD, service.getContactCount());
+        for (int t = 1; t < THREADS; t++) {
+            assertEquals("A" + (PER_THREAD - 1), service.getContact("t" + t + "-" + (PER_THREAD - 1)).getAddress());
+        }
+    }
+
+    @Test
+    @DisplayName("Change feed subscribers should see every event once and each contact's in order")
+    public void testChangeFeedUnderConcurrentWriters() throws Exception {
+        int contacts = 4 * THREADS;
+        for (int c = 0; c < contacts; c++) {
+            contactService.addContact("c" + c, "First", "Last", "0000000000", "0");
+        }
+        try (ContactChangeFeed feed = new ContactChangeFeed(contactService, 256, SlowConsumerPolicy.BLOCK)) {
+            int total = THREADS * PER_THREAD;
+            List<Thread> consumers = new ArrayList<>();
+            AtomicInteger broken = new AtomicInteger();
+            for (int k = 0; k < 2; k++) {
+                ContactChangeFeed.Subscription subscription = feed.subscribe();
+                Thread consumer = new Thread(() -> {
+                    int[] lastAddress = new int[contacts];
+                    long[] expected = {0};
+                    while (expected[0] < total) {
+                        subscription.poll(change -> {
+                            int c = Integer.parseInt(change.getContactId().substring(1));
+                            int address = Integer.parseInt(change.getContact().getAddress());
+                            // Sequences run without gaps, and each contact's addresses only grow
+                            if (change.getSequence() != expected[0]++ || address <= lastAddress[c]) {
+                                broken.incrementAndGet();
+                            }
+                            lastAddress[c] = address;
+                        }, 64);
+                    }
+                });
+                consumer.start();
+                consumers.add(consumer);
+            }
+
+            // Each thread owns four contacts and gives them increasing addresses
+            runConcurrently(thread -> {
+                for (int i = 1; i <= PER_THREAD; i++) {
+                    contactService.updateAddress("c" + (thread * 4 + i % 4), String.valueOf(i));
+                }
+            });
+            for (Thread consumer : consumers) {
+                consumer.join(30_000);
+                assertFalse(consumer.isAlive());
+            }
+            assertEquals(0, broken.get());
+        }
+    }
+}
\ No newline at end of file
@@ -3,6 +3,11 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.DisplayName;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
 /**
  * Unit tests for ContactService class
  * Tests all service functionality including add, delete, and update operations
@@ -250,6 +255,439 @@ public class ContactServiceTest {
         assertThrows(IllegalArgumentException.class, () -> contactService.updateAddress("123", null));
     }
 
+    // Patch tests
+    @Test
+    @DisplayName("Patching should change every field it sets as one new version")
+    public void testPatchContact() {
+        contactService.addContact("123", "John", "Doe", "5551234567", "123 Main St");
+        contactService.updateFirstName("123", "Jack");
+
+        int version = contactService.patchContact("123", new ContactPatch("Jane", null, "0001112222", "9 Elm St"));
+
+        Contact contact = contactService.getContact("123");
+        assertEquals(2, version);
+        assertEquals(2, contact.getVersion());
+        assertEquals("Jane", contact.getFirstName());
+        assertEquals("Doe", contact.getLastName());
+        assertEquals("0001112222", contact.getPhone());
+        assertEquals("9 Elm St", contact.getAddress());
+    }
+
+    @Test
+    @DisplayName("Patching with a stale version should throw a conflict and change nothing")
+    public void testPatchContactVersionConflict() {
+        contactService.addContact("123", "John", "Doe", "5551234567", "123 Main St");
+        int read = contactService.getContact("123").getVersion();
+        contactService.updateAddress("123", "1 Other Rd");  // Another editor wins
+
+        ContactVersionConflictException conflict = assertThrows(ContactVersionConflictException.class,
+                () -> contactService.patchContact("123", new ContactPatch("Jane", null, null, null), read));
+        assertEquals("123", conflict.getContactId());
+        assertEquals(0, conflict.getExpectedVersion());
+        assertEquals(1, conflict.getActualVersion());
+        assertEquals("John", contactService.getContact("123").getFirstName());
+
+        assertEquals(2, contactService.patchContact("123", new ContactPatch("Jane", null, null, null), 1));
+        assertEquals("Jane", contactService.getContact("123").getFirstName());
+    }
+
+    @Test
+    @DisplayName("Patching should keep every index and every store in step")
+    public void testPatchContactIndexesAndStores() throws Exception {
+        contactService.enablePhoneIndex();
+        contactService.enableNameIndex(false);
+        contactService.addContact("123", "John", "Doe", "5551234567", "123 Main St");
+        contactService.patchContact("123", new ContactPatch("Jane", "Roe", "0001112222", null));
+
+        assertTrue(contactService.findByPhone("5551234567").isEmpty());
+        assertEquals(Arrays.asList("123"), ids(contactService.findByPhone("0001112222")));
+        assertTrue(contactService.findByNamePrefix("John", 10).isEmpty());
+        assertTrue(contactService.findByNamePrefix("Doe", 10).isEmpty());
+        assertEquals(Arrays.asList("123"), ids(contactService.findByNamePrefix("Ro", 10)));
+
+        try (OffHeapContactStore offHeap = OffHeapContactStore.allocate()) {
+            for (ContactStore store : new ContactStore[] {offHeap, new PackedIdContactStore(), new VersionedContactStore()}) {
+                ContactService service = new ContactService(store);
+                service.addContact("123", "John", "Doe", "5551234567", "123 Main St");
+                assertEquals(1, service.patchContact("123", new ContactPatch(null, "Roe", null, "9 Elm St"), 0));
+                assertThrows(ContactVersionConflictException.class,
+                        () -> service.patchContact("123", new ContactPatch("Jane", null, null, null), 0));
+                Contact contact = service.getContact("123");
+                assertEquals(1, contact.getVersion(), store.getClass().getSimpleName());
+                assertEquals("John Roe 9 Elm St", contact.getFirstName() + " " + contact.getLastName()
+                        + " " + contact.getAddress());
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Patching with invalid arguments should throw exception")
+    public void testPatchContactInvalid() {
+        contactService.addContact("123", "John", "Doe", "5551234567", "123 Main St");
+        ContactPatch patch = new ContactPatch("Jane", null, null, null);
+
+        assertThrows(IllegalArgumentException.class, () -> new ContactPatch(null, null, "123", null));
+        assertThrows(IllegalArgumentException.class, () -> new ContactPatch("Jane", null, null, "x".repeat(31)));
+        assertThrows(IllegalArgumentException.class, () -> new ContactPatch(null, null, null, null));
+        assertThrows(IllegalArgumentException.class, () -> contactService.patchContact("123", null));
+        assertThrows(IllegalArgumentException.class, () -> contactService.patchContact(null, patch));
+        assertThrows(IllegalArgumentException.class, () -> contactService.patchContact("999", patch));
+        assertThrows(IllegalArgumentException.class, () -> contactService.patchContact("123", patch, -1));
+        assertEquals(0, contactService.getContact("123").getVersion());
+    }
+
+    // Listing tests
+    @Test
+    @DisplayName("Listing should page through every contact once in ID order, with or without the index")
+    public void testListContactsById() {
+        ContactService indexed = new ContactService(new VersionedContactStore());
+        indexed.enableSortIndex(ContactSortOrder.CONTACT_ID);
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 250; i++) {
+            String id = String.format("c%03d", (i * 37) % 250);
+            contactService.addContact(id, "First", "Last", "5551234567", "1 Main St");
+            indexed.addContact(id, "First", "Last", "5551234567", "1 Main St");
+            expected.add(id);
+        }
+        expected.sort(null);
+
+        for (ContactService service : new ContactService[] {contactService, indexed}) {
+            assertEquals(expected, listIds(service, ContactSortOrder.CONTACT_ID, 40));
+            // A delete and an add before the cursor should not shift the next page
+            ContactPage first = service.listContacts(ContactSortOrder.CONTACT_ID, null, 10);
+            service.deleteContact("c000");
+            service.addContact("a", "First", "Last", "5551234567", "1 Main St");
+            ContactPage second = service.listContacts(ContactSortOrder.CONTACT_ID, first.getNextCursor(), 10);
+            assertEquals(expected.subList(10, 20), ids(second.getContacts()));
+            ContactPage last = service.listContacts(ContactSortOrder.CONTACT_ID, "Ic240", 10);
+            assertEquals(expected.subList(241, 250), ids(last.getContacts()));
+            assertFalse(last.hasMore());
+            assertNull(last.getNextCursor());
+        }
+    }
+
+    @Test
+    @DisplayName("Name order should follow renames, patches and deletes")
+    public void testListContactsByName() {
+        contactService.enableSortIndex(ContactSortOrder.NAME);
+        contactService.addContact("1", "John", "Smith", "5551234567", "1 Main St");
+        contactService.addContact("2", "Anne", "Smith", "5551234567", "1 Main St");
+        contactService.addContact("3", "Zoe", "Adams", "5551234567", "1 Main St");
+        contactService.addContact("4", "Bob", "Jones", "5551234567", "1 Main St");
+        assertEquals(Arrays.asList("3", "4", "2", "1"), listIds(contactService, ContactSortOrder.NAME, 3));
+
+        contactService.updateLastName("3", "Young");
+        contactService.patchContact("1", new ContactPatch("Al", "Baker", null, null));
+        contactService.deleteContact("4");
+        contactService.updatePhone("2", "0001112222");
+        List<String> expected = Arrays.asList("1", "2", "3");
+        assertEquals(expected, listIds(contactService, ContactSortOrder.NAME, 1));
+
+        ContactService unindexed = new ContactService();
+        for (String id : expected) {
+            unindexed.addContact(contactService.getContact(id));
+        }
+        assertEquals(expected, listIds(unindexed, ContactSortOrder.NAME, 2));
+        ContactPage page = contactService.listContacts(ContactSortOrder.NAME, null, 1);
+        assertEquals(page.getNextCursor(), unindexed.listContacts(ContactSortOrder.NAME, null, 1).getNextCursor());
+        assertEquals(Arrays.asList("2"), ids(contactService.listContacts(ContactSortOrder.NAME, page.getNextCursor(), 1)
+                .getContacts()));
+    }
+
+    @Test
+    @DisplayName("Listing with invalid arguments should throw exception")
+    public void testListContactsInvalid() {
+        contactService.addContact("123", "John", "Doe", "5551234567", "123 Main St");
+        String idCursor = contactService.listContacts(ContactSortOrder.CONTACT_ID, null, 1).getNextCursor();
+        assertNull(idCursor);
+
+        assertThrows(IllegalArgumentException.class, () -> contactService.listContacts(null, null, 10));
+        assertThrows(IllegalArgumentException.class, () -> contactService.listContacts(ContactSortOrder.NAME, null, 0));
+        assertThrows(IllegalArgumentException.class, () -> contactService.listContacts(ContactSortOrder.NAME, "I123", 10));
+        assertThrows(IllegalArgumentException.class, () -> contactService.listContacts(ContactSortOrder.NAME, "N9:Doe", 10));
+        assertThrows(IllegalArgumentException.class, () -> contactService.listContacts(ContactSortOrder.CONTACT_ID, "", 10));
+        assertThrows(IllegalArgumentException.class, () -> contactService.enableSortIndex(null));
+    }
+
+    private static List<String> listIds(ContactService service, ContactSortOrder order, int pageSize) {
+        List<String> ids = new ArrayList<>();
+        String cursor = null;
+        do {
+            ContactPage page = service.listContacts(order, cursor, pageSize);
+            assertTrue(page.getContacts().size() <= pageSize);
+            ids.addAll(ids(page.getContacts()));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        return ids;
+    }
+
+    // Bulk add tests
+    @Test
+    @DisplayName("Adding a valid batch should add every contact")
+    public void testAddContactsBatch() {
+        List<Contact> batch = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            batch.add(new Contact("id" + i, "John", "Doe", "5551234567", "123 Main St"));
+        }
+
+        BatchResult result = contactService.addContacts(batch);
+
+        assertTrue(result.isCommitted());
+        assertEquals(10_000, result.getAddedCount());
+        assertEquals(10_000, contactService.getContactCount());
+        assertEquals("Doe", contactService.getContact("id9999").getLastName());
+    }
+
+    @Test
+    @DisplayName("Adding a batch as a stream should add every contact")
+    public void testAddContactsStream() {
+        contactService.addContact("123", "John", "Doe", "5551234567", "123 Main St");
+
+        BatchResult result = contactService.addContacts(Stream.of(
+                new Contact("456", "Jane", "Smith", "9876543210", "456 Oak Ave"),
+                new Contact("789", "Bob", "Johnson", "5559876543", "789 Pine Rd")));
+
+        assertTrue(result.isCommitted());
+        assertEquals(3, contactService.getContactCount());
+    }
+
+    @Test
+    @DisplayName("Batch with duplicates should add nothing and report every rejected record")
+    public void testAddContactsBatchRejected() {
+        contactService.addContact("123", "John", "Doe", "5551234567", "123 Main St");
+        List<Contact> batch = Arrays.asList(
+                new Contact("456", "Jane", "Smith", "9876543210", "456 Oak Ave"),
+                new Contact("123", "Jim", "Doe", "5551234567", "123 Main St"),
+                null,
+                new Contact("456", "Janet", "Smith", "9876543210", "456 Oak Ave"));
+
+        BatchResult result = contactService.addContacts(batch);
+
+        assertFalse(result.isCommitted());
+        assertEquals(0, result.getAddedCount());
+        assertEquals(3, result.getRejections().size());
+        assertEquals(1, result.getRejections().get(0).getIndex());
+        assertEquals("123", result.getRejections().get(0).getContactId());
+        assertEquals(2, result.getRejections().get(1).getIndex());
+        assertNull(result.getRejections().get(1).getContactId());
+        assertEquals(3, result.getRejections().get(2).getIndex());
+        assertEquals(1, contactService.getContactCount());
+        assertFalse(contactService.contactExists("456"));
+    }
+
+    @Test
+    @DisplayName("Batch of raw records should report every failed validation rule")
+    public void testAddContactRecords() {
+        List<CharSequence[]> records = new ArrayList<>();
+        records.add(new CharSequence[] {"123", "John", "Doe", "5551234567", "123 Main St"});
+        records.add(new CharSequence[] {"456", "Christopher", "Doe", "555", "123 Main St"});
+
+        BatchResult rejected = contactService.addContactRecords(records);
+
+        assertFalse(rejected.isCommitted());
+        assertEquals(1, rejected.getRejections().size());
+        assertEquals(ContactValidator.describe(ContactValidator.INVALID_FIRST_NAME | ContactValidator.INVALID_PHONE),
+                rejected.getRejections().get(0).getReason());
+        assertEquals(0, contactService.getContactCount());
+
+        records.remove(1);
+        assertTrue(contactService.addContactRecords(records).isCommitted());
+        assertEquals("John", contactService.getContact("123").getFirstName());
+    }
+
+    @Test
+    @DisplayName("Adding a null batch should throw exception")
+    public void testAddContactsNullBatch() {
+        assertThrows(IllegalArgumentException.class, () -> contactService.addContacts((List<Contact>) null));
+        assertThrows(IllegalArgumentException.class, () -> contactService.addContactRecords(null));
+    }
+
+    // Find by phone tests
+    @Test
+    @DisplayName("Find by phone should follow adds, deletes and phone updates")
+    public void testFindByPhoneIndexed() {
+        contactService.enablePhoneIndex();
+        contactService.addContact("123", "John", "Doe", "5551234567", "123 Main St");
+        contactService.addContact("456", "Jane", "Doe", "5551234567", "123 Main St");
+        contactService.addContact("789", "Bob", "Smith", "9876543210", "789 Pine Rd");
+
+        assertEquals(2, contactService.findByPhone("5551234567").size());
+        assertEquals("789", contactService.findByPhone("9876543210").get(0).getContactId());
+
+        contactService.updatePhone("123", "9876543210");
+        contactService.deleteContact("456");
+        contactService.updateFirstName("789", "Robert");
+
+        assertTrue(contactService.findByPhone("5551234567").isEmpty());
+        List<Contact> matches = contactService.findByPhone("9876543210");
+        assertEquals(2, matches.size());
+        assertTrue(matches.contains(contactService.getContact("123")));
+        assertTrue(matches.contains(contactService.getContact("789")));
+    }
+
+    @Test
+    @DisplayName("Enabling the phone index should include existing and bulk added contacts")
+    public void testFindByPhoneEnabledLate() {
+        contactService.addContact("123", "John", "Doe", "5551234567", "123 Main St");
+        assertEquals(1, contactService.findByPhone("5551234567").size());
+
+        contactService.enablePhoneIndex();
+        contactService.addContacts(Arrays.asList(
+                new Contact("456", "Jane", "Doe", "5551234567", "1 Main St"),
+                new Contact("789", "Bob", "Smith", "1112223333", "2 Main St")));
+
+        assertEquals(2, contactService.findByPhone("5551234567").size());
+        assertEquals(1, contactService.findByPhone("1112223333").size());
+    }
+
+    @Test
+    @DisplayName("Find by phone should return nothing for malformed phones and reject null")
+    public void testFindByPhoneInvalid() {
+        contactService.addContact("123", "John", "Doe", "5551234567", "123 Main St");
+        contactService.enablePhoneIndex();
+
+        assertTrue(contactService.findByPhone("555-123-4567").isEmpty());
+        assertTrue(contactService.findByPhone("").isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> contactService.findByPhone(null));
+    }
+
+    // Name prefix tests
+    @Test
+    @DisplayName("Name prefix search should match first or last names in name order")
+    public void testFindByNamePrefix() {
+        contactService.enableNameIndex(false);
+        contactService.addContact("1", "Jane", "Smith", "5551234567", "1 Main St");
+        contactService.addContact("2", "John", "Jones", "5551234567", "2 Main St");
+        contactService.addContact("3", "Bob", "Jackson", "5551234567", "3 Main St");
+        contactService.addContact("4", "Alice", "Brown", "5551234567", "4 Main St");
+
+        List<Contact> matches = contactService.findByNamePrefix("J", 10);
+
+        // Jackson, Jane, John (Jones is John's second match and not repeated)
+        assertEquals(Arrays.asList("3", "1", "2"), ids(matches));
+        assertEquals(Arrays.asList("3", "1"), ids(contactService.findByNamePrefix("J", 2)));
+        assertTrue(contactService.findByNamePrefix("j", 10).isEmpty());
+        assertEquals(4, contactService.findByNamePrefix("", 10).size());
+    }
+
+    @Test
+    @DisplayName("Name prefix index should follow name updates and deletes")
+    public void testFindByNamePrefixAfterUpdates() {
+        contactService.addContact("1", "Jane", "Smith", "5551234567", "1 Main St");
+        contactService.addContact("2", "Sam", "Sam", "5551234567", "2 Main St");
+        contactService.enableNameIndex(false);
+
+        contactService.updateFirstName("1", "Mary");
+        contactService.updateLastName("2", "Jones");
+
+        assertTrue(contactService.findByNamePrefix("Ja", 10).isEmpty());
+        assertEquals(Arrays.asList("1"), ids(contactService.findByNamePrefix("Ma", 10)));
+        // Sam is still the first name, so the shared entry must survive the last name change
+        assertEquals(Arrays.asList("2"), ids(contactService.findByNamePrefix("Sa", 10)));
+        assertEquals(Arrays.asList("2"), ids(contactService.findByNamePrefix("Jo", 10)));
+
+        contactService.deleteContact("2");
+        assertTrue(contactService.findByNamePrefix("Sa", 10).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Case-insensitive name prefix search should give the same results with or without an index")
+    public void testFindByNamePrefixIgnoreCase() {
+        contactService.addContact("1", "Jane", "Smith", "5551234567", "1 Main St");
+        contactService.addContact("2", "jack", "Doe", "5551234567", "2 Main St");
+        contactService.addContact("3", "Bob", "JACOBS", "5551234567", "3 Main St");
+
+        List<String> scanned = ids(contactService.findByNamePrefix("ja", 10, true));
+        contactService.enableNameIndex(true);
+
+        assertEquals(Arrays.asList("2", "3", "1"), scanned);
+        assertEquals(scanned, ids(contactService.findByNamePrefix("JA", 10, true)));
+        assertEquals(Arrays.asList("2"), ids(contactService.findByNamePrefix("ja", 10)));
+    }
+
+    @Test
+    @DisplayName("Name prefix search with invalid arguments should throw exception")
+    public void testFindByNamePrefixInvalid() {
+        assertThrows(IllegalArgumentException.class, () -> contactService.findByNamePrefix(null, 10));
+        assertThrows(IllegalArgumentException.class, () -> contactService.findByNamePrefix("J", -1));
+    }
+
+    // Address search tests
+    @Test
+    @DisplayName("Address search should match any fragment regardless of case")
+    public void testFindByAddress() {
+        contactService.enableAddressIndex();
+        contactService.addContact("1", "Jane", "Smith", "5551234567", "12 Main St Apt 4");
+        contactService.addContact("2", "John", "Jones", "5551234567", "7 Mainline Rd");
+        contactService.addContact("3", "Bob", "Jackson", "5551234567", "3 Oak Ave");
+
+        assertEquals(Arrays.asList("1"), ids(contactService.findByAddress("main st", 10)));
+        assertEquals(Arrays.asList("1", "2"), ids(contactService.findByAddress("MAIN", 10)));
+        assertEquals(Arrays.asList("1"), ids(contactService.findByAddress("Apt 4", 10)));
+        assertEquals(Arrays.asList("3"), ids(contactService.findByAddress("k", 10)));
+        assertEquals(1, contactService.findByAddress("", 1).size());
+        // Every trigram of "St Oak" is indexed, but no address contains it
+        assertTrue(contactService.findByAddress("St Oak", 10).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Address index should follow address updates and deletes")
+    public void testFindByAddressAfterUpdates() {
+        contactService.addContact("1", "Jane", "Smith", "5551234567", "12 Main St");
+        contactService.addContact("2", "John", "Jones", "5551234567", "7 Main St");
+        contactService.enableAddressIndex();
+
+        contactService.updateAddress("1", "4 Elm Rd");
+        contactService.deleteContact("2");
+        contactService.addContact("3", "Bob", "Jackson", "5551234567", "9 Main St");
+
+        assertEquals(Arrays.asList("3"), ids(contactService.findByAddress("Main St", 10)));
+        assertEquals(Arrays.asList("1"), ids(contactService.findByAddress("elm", 10)));
+    }
+
+    @Test
+    @DisplayName("Address search should agree with a full scan after heavy churn")
+    public void testFindByAddressMatchesScan() {
+        ContactService unindexed = new ContactService();
+        contactService.enableAddressIndex();
+        for (int i = 0; i < 3000; i++) {
+            contactService.addContact("c" + i, "First", "Last", "5551234567", i + " Main St");
+            unindexed.addContact("c" + i, "First", "Last", "5551234567", i + " Main St");
+        }
+        // Enough retired documents to force the postings to be rebuilt
+        for (int i = 0; i < 3000; i += 2) {
+            contactService.updateAddress("c" + i, i + " Oak Ave");
+            unindexed.updateAddress("c" + i, i + " Oak Ave");
+            if (i % 3 == 0) {
+                contactService.deleteContact("c" + (i + 1));
+                unindexed.deleteContact("c" + (i + 1));
+            }
+        }
+
+        for (String fragment : new String[] {"Main St", "Oak", "12", "99 O", "1 Main"}) {
+            List<String> expected = ids(unindexed.findByAddress(fragment, Integer.MAX_VALUE));
+            List<String> actual = ids(contactService.findByAddress(fragment, Integer.MAX_VALUE));
+            expected.sort(null);
+            actual.sort(null);
+            assertEquals(expected, actual, fragment);
+        }
+    }
+
+    @Test
+    @DisplayName("Address search with invalid arguments should throw exception")
+    public void testFindByAddressInvalid() {
+        assertThrows(IllegalArgumentException.class, () -> contactService.findByAddress(null, 10));
+        assertThrows(IllegalArgumentException.class, () -> contactService.findByAddress("Main", -1));
+    }
+
+    private static List<String> ids(List<Contact> contacts) {
+        List<String> ids = new ArrayList<>();
+        for (Contact contact : contacts) {
+            ids.add(contact.getContactId());
+        }
+        return ids;
+    }
+
     // Get contact tests
     @Test
     @DisplayName("Getting existing contact should return correct contact")
@@ -0,0 +1,197 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ContactSnapshot class saves and loads the contents of a ContactService as a file
+ * of fixed-width records (see ContactRecordFormat).
+ *
+ * Saving writes through a FileChannel to a temporary file that is moved into place,
+ * so a crash mid-save never leaves a partial snapshot behind. Loading memory-maps
+ * the file and verifies the checksum of every record before adding any contact.
+ */
+public final class ContactSnapshot {
+    private static final int MAGIC = 0x43534E50;  // "CSNP"
+    private static final int VERSION = 1;
+    static final int HEADER_SIZE = 24;  // magic, version, record size, reserved, record count (long)
+    private static final int RECORDS_PER_WRITE = 1024;
+    // Largest whole number of records that fits in one mapping
+    private static final long RECORDS_PER_MAPPING = Integer.MAX_VALUE / ContactRecordFormat.RECORD_SIZE;
+
+    private ContactSnapshot() {
+        // Static utility class
+    }
+
+    /**
+     * Writes every contact in the service to a snapshot file, replacing any existing file
+     * Writers may keep running; each contact is captured in a consistent state.
+     * @param service Service to save
+     * @param file Destination file
+     * @return Number of contacts written
+     * @throws IOException if the file cannot be written
+     */
+    public static long save(ContactService service, Path file) throws IOException {
+        if (service == null || file == null) {
+            throw new IllegalArgumentException("Service and file cannot be null");
+        }
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            long count;
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                RecordWriter writer = new RecordWriter(channel);
+                try {
+                    service.forEachContactCopy(writer::append);
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+                writer.flush();
+                writeHeader(channel, writer.count);
+                channel.force(true);
+                count = writer.count;
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return count;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Creates a new ContactService holding the contents of a snapshot file
+     * @param file Snapshot file
+     * @return Loaded service
+     * @throws IOException if the file cannot be read, is not a snapshot, or a record fails its checksum
+     */
+    public static ContactService load(Path file) throws IOException {
+        ContactService service = new ContactService();
+        loadInto(service, file);
+        return service;
+    }
+
+    /**
+     * Adds the contents of a snapshot file to a service all-or-nothing
+     * @param service Service to add to
+     * @param file Snapshot file
+     * @return Number of contacts loaded
+     * @throws IOException if the file cannot be read, is not a snapshot, or a record fails its checksum
+     * @throws IllegalArgumentException if a snapshot contact ID already exists in the service
+     */
+    public static long loadInto(ContactService service, Path file) throws IOException {
+        if (service == null || file == null) {
+            throw new IllegalArgumentException("Service and file cannot be null");
+        }
+        List<Contact> contacts = read(file);
+        BatchResult result = service.addContacts(contacts);
+        if (!result.isCommitted()) {
+            throw new IllegalArgumentException("Snapshot conflicts with existing contacts: "
+                    + result.getRejections().get(0).getReason());
+        }
+        return contacts.size();
+    }
+
+    /**
+     * Reads and verifies every record in a snapshot file
+     * @param file Snapshot file
+     * @return Contacts in file order
+     * @throws IOException if the file cannot be read, is not a snapshot, or a record fails its checksum
+     */
+    static List<Contact> read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long count = readHeader(channel, file);
+            List<Contact> contacts = new ArrayList<>((int) Math.min(count, Integer.MAX_VALUE - 8));
+            ContactRecordFormat.Decoder decoder = new ContactRecordFormat.Decoder();
+            long index = 0;
+            while (index < count) {
+                long chunk = Math.min(RECORDS_PER_MAPPING, count - index);
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY,
+                        HEADER_SIZE + index * ContactRecordFormat.RECORD_SIZE, chunk * ContactRecordFormat.RECORD_SIZE);
+                for (int i = 0; i < chunk; i++) {
+                    int offset = i * ContactRecordFormat.RECORD_SIZE;
+                    if (!decoder.load(mapped, offset)) {
+                        throw new IOException("Snapshot " + file + " record " + (index + i) + " failed its checksum");
+                    }
+                    try {
+                        contacts.add(decoder.decode());
+                    } catch (IllegalArgumentException e) {
+                        throw new IOException("Snapshot " + file + " record " + (index + i) + " is invalid", e);
+                    }
+                }
+                index += chunk;
+            }
+            return contacts;
+        }
+    }
+
+    private static void writeHeader(FileChannel channel, long count) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).putInt(ContactRecordFormat.RECORD_SIZE).putInt(0).putLong(count);
+        header.flip();
+        while (header.hasRemaining()) {
+            channel.write(header, header.position());
+        }
+    }
+
+    private static long readHeader(FileChannel channel, Path file) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        while (header.hasRemaining()) {
+            if (channel.read(header, header.position()) < 0) {
+                throw new IOException("Snapshot " + file + " is truncated");
+            }
+        }
+        header.flip();
+        if (header.getInt() != MAGIC || header.getInt() != VERSION
+                || header.getInt() != ContactRecordFormat.RECORD_SIZE) {
+            throw new IOException(file + " is not a version " + VERSION + " contact snapshot");
+        }
+        header.getInt();
+        long count = header.getLong();
+        if (count < 0 || channel.size() != HEADER_SIZE + count * ContactRecordFormat.RECORD_SIZE) {
+            throw new IOException("Snapshot " + file + " size does not match its record count");
+        }
+        return count;
+    }
+
+    /**
+     * RecordWriter class batches encoded records into a direct buffer and writes them after the header
+     */
+    private static final class RecordWriter {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(RECORDS_PER_WRITE * ContactRecordFormat.RECORD_SIZE);
+        private long position = HEADER_SIZE;
+        private long count;
+
+        RecordWriter(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void append(Contact contact) {
+            ContactRecordFormat.encode(buffer, buffer.position(), contact);
+            buffer.position(buffer.position() + ContactRecordFormat.RECORD_SIZE);
+            count++;
+            if (!buffer.hasRemaining()) {
+                try {
+                    flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            buffer.clear();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,128 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Unit tests for ContactSnapshot and ContactRecordFormat classes
+ * Tests round trips, checksum verification and malformed files
+ */
+public class ContactSnapshotTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    @DisplayName("Saving and loading should round trip every field")
+    public void testRoundTrip() throws IOException {
+        ContactService original = new ContactService();
+        original.addContact("1234567890", "1234567890", "1234567890", "0012345678", "123456789012345678901234567890");
+        original.addContact("1", "A", "B", "9999999999", "C");
+        original.addContact("uni", "Zo\u00eb", "\u00d1\u00fa\u00f1ez", "5551234567", "");
+        Path file = tempDir.resolve("contacts.snap");
+
+        assertEquals(3, ContactSnapshot.save(original, file));
+        ContactService loaded = ContactSnapshot.load(file);
+
+        assertEquals(3, loaded.getContactCount());
+        Contact max = loaded.getContact("1234567890");
+        assertEquals("1234567890", max.getFirstName());
+        assertEquals("1234567890", max.getLastName());
+        assertEquals("0012345678", max.getPhone());
+        assertEquals("123456789012345678901234567890", max.getAddress());
+        assertEquals("Zo\u00eb", loaded.getContact("uni").getFirstName());
+        assertEquals("\u00d1\u00fa\u00f1ez", loaded.getContact("uni").getLastName());
+        assertEquals("", loaded.getContact("uni").getAddress());
+    }
+
+    @Test
+    @DisplayName("Saving an empty service should load as an empty service")
+    public void testEmptySnapshot() throws IOException {
+        Path file = tempDir.resolve("empty.snap");
+
+        assertEquals(0, ContactSnapshot.save(new ContactService(), file));
+        assertEquals(0, ContactSnapshot.load(file).getContactCount());
+        assertEquals(ContactSnapshot.HEADER_SIZE, Files.size(file));
+    }
+
+    @Test
+    @DisplayName("Snapshot should hold fixed-width records spanning several write buffers")
+    public void testLargeSnapshot() throws IOException {
+        ContactService original = new ContactService();
+        for (int i = 0; i < 5000; i++) {
+            original.addContact("id" + i, "First", "Last", String.format("%010d", i), i + " Main St");
+        }
+        Path file = tempDir.resolve("large.snap");
+
+        ContactSnapshot.save(original, file);
+
+        assertEquals(ContactSnapshot.HEADER_SIZE + 5000L * ContactRecordFormat.RECORD_SIZE, Files.size(file));
+        ContactService loaded = ContactSnapshot.load(file);
+        assertEquals(5000, loaded.getContactCount());
+        assertEquals("0000004999", loaded.getContact("id4999").getPhone());
+        assertEquals("4999 Main St", loaded.getContact("id4999").getAddress());
+    }
+
+    @Test
+    @DisplayName("Loading a record with a bad checksum should throw exception")
+    public void testCorruptRecord() throws IOException {
+        ContactService original = new ContactService();
+        original.addContact("123", "John", "Doe", "5551234567", "123 Main St");
+        Path file = tempDir.resolve("corrupt.snap");
+        ContactSnapshot.save(original, file);
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] {'X'}), ContactSnapshot.HEADER_SIZE + 40);
+        }
+
+        IOException e = assertThrows(IOException.class, () -> ContactSnapshot.load(file));
+        assertTrue(e.getMessage().contains("checksum"));
+    }
+
+    @Test
+    @DisplayName("Loading a truncated or foreign file should throw exception")
+    public void testMalformedFiles() throws IOException {
+        ContactService original = new ContactService();
+        original.addContact("123", "John", "Doe", "5551234567", "123 Main St");
+        Path file = tempDir.resolve("truncated.snap");
+        ContactSnapshot.save(original, file);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(Files.size(file) - 1);
+        }
+        Path foreign = Files.write(tempDir.resolve("foreign.snap"), new byte[64]);
+
+        assertThrows(IOException.class, () -> ContactSnapshot.load(file));
+        assertThrows(IOException.class, () -> ContactSnapshot.load(foreign));
+        assertThrows(IOException.class, () -> ContactSnapshot.load(tempDir.resolve("missing.snap")));
+    }
+
+    @Test
+    @DisplayName("Loading into a service with the same IDs should add nothing")
+    public void testLoadIntoConflict() throws IOException {
+        ContactService original = new ContactService();
+        original.addContact("123", "John", "Doe", "5551234567", "123 Main St");
+        original.addContact("456", "Jane", "Smith", "9876543210", "456 Oak Ave");
+        Path file = tempDir.resolve("conflict.snap");
+        ContactSnapshot.save(original, file);
+        ContactService target = new ContactService();
+        target.addContact("456", "Other", "Person", "5550000000", "1 Elm St");
+
+        assertThrows(IllegalArgumentException.class, () -> ContactSnapshot.loadInto(target, file));
+        assertEquals(1, target.getContactCount());
+    }
+
+    @Test
+    @DisplayName("Packed phone numbers should keep leading zeros")
+    public void testPhonePacking() {
+        assertEquals(12345678L, ContactRecordFormat.packPhone("0012345678"));
+        assertEquals("0012345678", ContactRecordFormat.unpackPhone(12345678L));
+        assertEquals("0000000000", ContactRecordFormat.unpackPhone(0L));
+        assertEquals("9999999999", ContactRecordFormat.unpackPhone(ContactRecordFormat.packPhone("9999999999")));
+    }
+}
\ No newline at end of file
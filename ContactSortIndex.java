@@ -0,0 +1,231 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Stream;
+
+/**
+ * ContactSortIndex class keeps every contact in one ContactSortOrder for ContactService.listContacts.
+ *
+ * Entries live in a ConcurrentSkipListMap keyed by position in the order, so a page seeks
+ * to its cursor and walks forward, costing O(log n + page size) however deep the page is,
+ * and readers never block. Ordered by name, the index also maps each ID to its current
+ * key: a patch reports each changed name with every new value already applied, so the old
+ * key cannot be rebuilt from the old value of one field.
+ *
+ * Cursors are the last key of a page, encoded as a string the caller treats as opaque.
+ */
+final class ContactSortIndex implements ContactListener {
+    /**
+     * Key class is a position in a sort order; both names are empty when ordering by ID
+     */
+    static final class Key implements Comparable<Key> {
+        final String lastName;
+        final String firstName;
+        final String contactId;
+
+        Key(String lastName, String firstName, String contactId) {
+            this.lastName = lastName;
+            this.firstName = firstName;
+            this.contactId = contactId;
+        }
+
+        @Override
+        public int compareTo(Key other) {
+            int c = lastName.compareTo(other.lastName);
+            if (c == 0) {
+                c = firstName.compareTo(other.firstName);
+            }
+            return c != 0 ? c : contactId.compareTo(other.contactId);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Key && compareTo((Key) obj) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return (lastName.hashCode() * 31 + firstName.hashCode()) * 31 + contactId.hashCode();
+        }
+    }
+
+    private final ContactSortOrder order;
+    private final ConcurrentSkipListMap<Key, Contact> entries = new ConcurrentSkipListMap<>();
+    private final ConcurrentHashMap<String, Key> keys;  // Null when ordering by ID, whose keys never change
+
+    /**
+     * Constructor creates an empty index
+     * @param order Order to keep contacts in
+     */
+    ContactSortIndex(ContactSortOrder order) {
+        this.order = order;
+        this.keys = order == ContactSortOrder.NAME ? new ConcurrentHashMap<>() : null;
+    }
+
+    /**
+     * Returns the contacts that follow a position, in order
+     * @param after Position to start after, or null to start at the first contact
+     * @param pageSize Most contacts to return, at least 1
+     * @return Page whose cursor is its last key if any contact follows it
+     */
+    ContactPage page(Key after, int pageSize) {
+        Map<Key, Contact> tail = after == null ? entries : entries.tailMap(after, false);
+        Iterator<Map.Entry<Key, Contact>> walk = tail.entrySet().iterator();
+        List<Contact> contacts = new ArrayList<>(Math.min(pageSize, 64));
+        Key last = null;
+        while (contacts.size() < pageSize && walk.hasNext()) {
+            Map.Entry<Key, Contact> entry = walk.next();
+            contacts.add(entry.getValue());
+            last = entry.getKey();
+        }
+        return new ContactPage(contacts, walk.hasNext() ? encode(order, last) : null);
+    }
+
+    /**
+     * Streams contacts whose last name equals or starts with a value, lazily in order, for
+     * ContactService.plan; only meaningful for the NAME order
+     * @param value Last name or last name prefix
+     * @param exact Whether the last name must equal value rather than start with it
+     * @return Matching contacts, read from the index as the stream is consumed
+     */
+    Stream<Contact> lastNames(String value, boolean exact) {
+        return entries.tailMap(new Key(value, "", ""), true).entrySet().stream()
+                .takeWhile(e -> exact ? e.getKey().lastName.equals(value) : e.getKey().lastName.startsWith(value))
+                .map(Map.Entry::getValue);
+    }
+
+    /**
+     * Counts the contacts lastNames would return, stopping early
+     * @param value Last name or last name prefix
+     * @param exact Whether the last name must equal value rather than start with it
+     * @param bound Count to stop at
+     * @return Matching contacts, at most bound
+     */
+    int countLastNames(String value, boolean exact, int bound) {
+        return (int) lastNames(value, exact).limit(bound).count();
+    }
+
+    /**
+     * Builds the page an index would return by scanning contacts, keeping only the
+     * pageSize + 1 smallest keys after the position in a bounded heap
+     * @param order Order to page in
+     * @param contacts Every contact
+     * @param after Position to start after, or null to start at the first contact
+     * @param pageSize Most contacts to return, at least 1
+     * @return Same page as page on an index of the contacts
+     */
+    static ContactPage scan(ContactSortOrder order, Iterable<Contact> contacts, Key after, int pageSize) {
+        int keep = pageSize == Integer.MAX_VALUE ? pageSize : pageSize + 1;
+        // Largest kept key on top, so it is the one dropped when a smaller key arrives
+        PriorityQueue<Map.Entry<Key, Contact>> smallest = new PriorityQueue<>(Math.min(keep, 64),
+                Collections.reverseOrder(Map.Entry.comparingByKey()));
+        for (Contact contact : contacts) {
+            Key key = keyOf(order, contact);
+            if (after != null && key.compareTo(after) <= 0) {
+                continue;
+            }
+            if (smallest.size() < keep) {
+                smallest.add(Map.entry(key, contact));
+            } else if (key.compareTo(smallest.peek().getKey()) < 0) {
+                smallest.poll();
+                smallest.add(Map.entry(key, contact));
+            }
+        }
+        boolean more = smallest.size() > pageSize;
+        if (more) {
+            smallest.poll();
+        }
+        List<Map.Entry<Key, Contact>> sorted = new ArrayList<>(smallest);
+        sorted.sort(Map.Entry.comparingByKey());
+        List<Contact> page = new ArrayList<>(sorted.size());
+        for (Map.Entry<Key, Contact> entry : sorted) {
+            page.add(entry.getValue());
+        }
+        return new ContactPage(page, more ? encode(order, sorted.get(sorted.size() - 1).getKey()) : null);
+    }
+
+    /**
+     * @param order Sort order
+     * @param contact Contact to place
+     * @return Position of the contact's current values in the order
+     */
+    static Key keyOf(ContactSortOrder order, Contact contact) {
+        if (order == ContactSortOrder.CONTACT_ID) {
+            return new Key("", "", contact.getContactId());
+        }
+        return new Key(contact.getLastName(), contact.getFirstName(), contact.getContactId());
+    }
+
+    /**
+     * Encodes a key as a cursor: a letter for the order, then for NAME each name as its
+     * length, a colon and its characters, then the contact ID
+     */
+    static String encode(ContactSortOrder order, Key key) {
+        if (order == ContactSortOrder.CONTACT_ID) {
+            return "I" + key.contactId;
+        }
+        return "N" + key.lastName.length() + ":" + key.lastName + key.firstName.length() + ":" + key.firstName
+                + key.contactId;
+    }
+
+    /**
+     * Decodes a cursor made by encode for the same order
+     * @throws IllegalArgumentException if the cursor was not made by encode for this order
+     */
+    static Key decode(ContactSortOrder order, String cursor) {
+        char tag = order == ContactSortOrder.CONTACT_ID ? 'I' : 'N';
+        if (cursor.isEmpty() || cursor.charAt(0) != tag) {
+            throw new IllegalArgumentException("Cursor is not a " + order + " cursor: " + cursor);
+        }
+        if (order == ContactSortOrder.CONTACT_ID) {
+            return new Key("", "", cursor.substring(1));
+        }
+        try {
+            int colon = cursor.indexOf(':', 1);
+            int end = colon + 1 + Integer.parseInt(cursor.substring(1, colon));
+            String lastName = cursor.substring(colon + 1, end);
+            colon = cursor.indexOf(':', end);
+            int firstEnd = colon + 1 + Integer.parseInt(cursor.substring(end, colon));
+            String firstName = cursor.substring(colon + 1, firstEnd);
+            return new Key(lastName, firstName, cursor.substring(firstEnd));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Malformed cursor: " + cursor, e);
+        }
+    }
+
+    @Override
+    public void contactAdded(Contact contact) {
+        Key key = keyOf(order, contact);
+        entries.put(key, contact);
+        if (keys != null) {
+            keys.put(contact.getContactId(), key);
+        }
+    }
+
+    @Override
+    public void contactDeleted(Contact contact) {
+        Key key = keys != null ? keys.remove(contact.getContactId()) : keyOf(order, contact);
+        if (key != null) {
+            entries.remove(key);
+        }
+    }
+
+    @Override
+    public void contactUpdated(Contact contact, ContactField field, String oldValue) {
+        if (keys == null || (field != ContactField.FIRST_NAME && field != ContactField.LAST_NAME)) {
+            return;
+        }
+        Key key = keyOf(order, contact);
+        Key old = keys.put(contact.getContactId(), key);
+        // Add before removing, so a concurrent page may see the contact twice but never miss it
+        entries.put(key, contact);
+        if (old != null && !old.equals(key)) {
+            entries.remove(old);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,15 @@
+/**
+ * ContactSortOrder enum selects the order ContactService.listContacts pages through contacts.
+ * Names and IDs are compared with String.compareTo, so upper case sorts before lower case.
+ */
+public enum ContactSortOrder {
+    /**
+     * By contact ID
+     */
+    CONTACT_ID,
+
+    /**
+     * By last name, then first name, then contact ID so equal names keep a fixed order
+     */
+    NAME
+}
\ No newline at end of file
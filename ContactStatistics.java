@@ -0,0 +1,140 @@
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * ContactStatistics class keeps the common ContactAnalytics reports up to date as contacts
+ * change, so reading one count costs O(1) instead of a pass over every contact.
+ *
+ * ContactService.enableStatistics counts every current contact once and from then on a
+ * listener adjusts the counters on each add, delete and field update, while the
+ * contact's stripe is held. Area code and address length counters are atomic int
+ * arrays; name counts live in ConcurrentHashMaps, a name being removed when its count
+ * drops to zero. Each counter is exact once mutations finish, but while they run two
+ * counters read one after the other may reflect different mutations.
+ */
+public final class ContactStatistics {
+    private final AtomicInteger contacts = new AtomicInteger();
+    private final AtomicIntegerArray areaCodes = new AtomicIntegerArray(ContactAnalytics.AREA_CODES);
+    private final AtomicIntegerArray addressLengths = new AtomicIntegerArray(ContactValidator.MAX_ADDRESS_LENGTH + 1);
+    private final ConcurrentHashMap<String, Integer> firstNames = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Integer> lastNames = new ConcurrentHashMap<>();
+
+    final ContactListener listener = new ContactListener() {
+        @Override
+        public void contactAdded(Contact contact) {
+            count(contact.packedFields(), contact, 1);
+        }
+
+        @Override
+        public void contactDeleted(Contact contact) {
+            count(contact.packedFields(), contact, -1);
+        }
+
+        @Override
+        public void contactUpdated(Contact contact, ContactField field, String oldValue) {
+            switch (field) {
+                case FIRST_NAME:
+                    adjust(firstNames, oldValue, -1);
+                    adjust(firstNames, contact.getFirstName(), 1);
+                    break;
+                case LAST_NAME:
+                    adjust(lastNames, oldValue, -1);
+                    adjust(lastNames, contact.getLastName(), 1);
+                    break;
+                case PHONE:
+                    areaCodes.decrementAndGet(ContactAnalytics.areaCodeOf(ContactRecordFormat.packPhone(oldValue)));
+                    areaCodes.incrementAndGet(ContactAnalytics.areaCodeOf(contact.getPackedPhone()));
+                    break;
+                default:
+                    addressLengths.decrementAndGet(oldValue.length());
+                    addressLengths.incrementAndGet(Contact.addressLength(contact.packedFields()));
+            }
+        }
+    };
+
+    ContactStatistics() {
+    }
+
+    /**
+     * @return Number of contacts
+     */
+    public int getContactCount() {
+        return contacts.get();
+    }
+
+    /**
+     * @param areaCode Area code, the first 3 digits of a phone as a number from 0 to 999
+     * @return Number of contacts whose phone has the area code
+     * @throws IllegalArgumentException if areaCode is out of range
+     */
+    public int getAreaCodeCount(int areaCode) {
+        if (areaCode < 0 || areaCode >= ContactAnalytics.AREA_CODES) {
+            throw new IllegalArgumentException("Area code must be from 0 to " + (ContactAnalytics.AREA_CODES - 1));
+        }
+        return areaCodes.get(areaCode);
+    }
+
+    /**
+     * @return Count of contacts indexed by area code, as ContactAnalytics.countByAreaCode returns
+     */
+    public int[] getAreaCodeCounts() {
+        return toArray(areaCodes);
+    }
+
+    /**
+     * @return Count of contacts indexed by address length, as ContactAnalytics.countByAddressLength returns
+     */
+    public int[] getAddressLengthCounts() {
+        return toArray(addressLengths);
+    }
+
+    /**
+     * @param firstName First name, matching case exactly
+     * @return Number of contacts with the first name
+     * @throws IllegalArgumentException if firstName is null
+     */
+    public int getFirstNameCount(String firstName) {
+        return countOf(firstNames, firstName);
+    }
+
+    /**
+     * @param lastName Last name, matching case exactly
+     * @return Number of contacts with the last name
+     * @throws IllegalArgumentException if lastName is null
+     */
+    public int getLastNameCount(String lastName) {
+        return countOf(lastNames, lastName);
+    }
+
+    private void count(byte[] d, Contact contact, int delta) {
+        contacts.addAndGet(delta);
+        areaCodes.addAndGet(ContactAnalytics.areaCodeOf(Contact.phoneOf(d)), delta);
+        addressLengths.addAndGet(Contact.addressLength(d), delta);
+        adjust(firstNames, contact.getFirstName(), delta);
+        adjust(lastNames, contact.getLastName(), delta);
+    }
+
+    private static void adjust(ConcurrentHashMap<String, Integer> counts, String name, int delta) {
+        counts.compute(name, (key, count) -> {
+            int updated = (count == null ? 0 : count) + delta;
+            return updated == 0 ? null : updated;
+        });
+    }
+
+    private static int countOf(ConcurrentHashMap<String, Integer> counts, String name) {
+        if (name == null) {
+            throw new IllegalArgumentException("Name cannot be null");
+        }
+        Integer count = counts.get(name);
+        return count == null ? 0 : count;
+    }
+
+    private static int[] toArray(AtomicIntegerArray counters) {
+        int[] counts = new int[counters.length()];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = counters.get(i);
+        }
+        return counts;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,92 @@
+/**
+ * ContactStore interface holds the contacts of a ContactService, keyed by contact ID.
+ *
+ * The service serializes every mutation of one ID through its stripe locks and runs
+ * batch inserts while holding every stripe, so a store only has to allow concurrent
+ * mutations of distinct IDs alongside lock-free reads. A store must never call back
+ * into the service. Iteration is weakly consistent: it never fails on concurrent
+ * changes, but may miss contacts added or removed during the walk, and may return an
+ * ID twice if it is removed and re-added meanwhile.
+ *
+ * HeapContactStore keeps the Contact objects themselves, so getContact returns the
+ * stored contact. OffHeapContactStore keeps encoded records outside the heap and
+ * decodes a detached copy on every read (returnsCopies is true); changing such a copy
+ * does not change the store. VersionedContactStore keeps immutable versions in a
+ * persistent trie, so its iteration is a consistent snapshot and snapshot() is O(1).
+ */
+public interface ContactStore extends Iterable<Contact> {
+    /**
+     * @param contactId ID of the contact, never null
+     * @return Stored contact, or null if none has the ID
+     */
+    Contact get(String contactId);
+
+    /**
+     * @param contactId ID of the contact, never null
+     * @return true if a contact has the ID
+     */
+    boolean contains(String contactId);
+
+    /**
+     * @return Number of stored contacts
+     */
+    int size();
+
+    /**
+     * Stores a contact unless its ID is already taken
+     * @param contact Contact to store
+     * @return true if stored, false if the ID already exists
+     */
+    boolean insert(Contact contact);
+
+    /**
+     * Stores a batch of contacts whose IDs the caller has checked are all new and distinct
+     * @param batch Contacts to store
+     */
+    void insertAll(Contact[] batch);
+
+    /**
+     * Removes a contact
+     * @param contactId ID of the contact, never null
+     * @return Removed contact holding its last values, or null if none has the ID
+     */
+    Contact remove(String contactId);
+
+    /**
+     * Changes one field of a stored contact
+     * @param contact Contact returned by get for the same ID while the caller held its stripe
+     * @param field Field to change
+     * @param value New value
+     * @return Contact holding the new value
+     * @throws IllegalArgumentException if value is invalid, leaving the store unchanged
+     */
+    Contact update(Contact contact, ContactField field, String value);
+
+    /**
+     * Changes every field a patch sets as one version of the contact. The default applies
+     * the patch to the contact in place, which suits stores that keep the Contact objects.
+     * @param contact Contact returned by get for the same ID while the caller held its stripe
+     * @param patch Validated new values
+     * @param expectedVersion Version the contact must have, or a negative number to skip the check
+     * @return Contact holding the new values
+     * @throws ContactVersionConflictException if the contact has another version, leaving the store unchanged
+     */
+    default Contact patch(Contact contact, ContactPatch patch, int expectedVersion) {
+        contact.applyPatch(patch, expectedVersion);
+        return contact;
+    }
+
+    /**
+     * @return true if get and iteration return copies rather than the stored contacts
+     */
+    boolean returnsCopies();
+
+    /**
+     * Captures every contact at one instant, for stores that keep immutable versions
+     * @return Read-only view unaffected by later changes
+     * @throws UnsupportedOperationException if the store cannot take consistent snapshots
+     */
+    default ContactView snapshot() {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support snapshots");
+    }
+}
\ No newline at end of file
@@ -202,4 +202,97 @@ public class ContactTest {
         assertTrue(result.contains("5551234567"));
         assertTrue(result.contains("123 Main St"));
     }
+
+    // Compact representation tests
+    @Test
+    @DisplayName("Fields should round trip, including leading zero phones and empty names")
+    public void testPackedFieldsRoundTrip() {
+        Contact contact = new Contact("1", "", "O'Neil", "0000000001", "");
+
+        assertEquals("", contact.getFirstName());
+        assertEquals("O'Neil", contact.getLastName());
+        assertEquals("0000000001", contact.getPhone());
+        assertEquals("", contact.getAddress());
+    }
+
+    @Test
+    @DisplayName("Characters outside Latin-1 should round trip and survive updates to other fields")
+    public void testWideCharacters() {
+        // "Zhang Wei" in Han characters, and a Polish name
+        Contact contact = new Contact("1", "\u5f20\u4f1f", "\u0141ukasz", "5551234567", "1 R\u00fce St");
+
+        contact.setPhone("9876543210");
+        assertEquals("\u5f20\u4f1f", contact.getFirstName());
+        assertEquals("\u0141ukasz", contact.getLastName());
+        assertEquals("1 R\u00fce St", contact.getAddress());
+
+        contact.setFirstName("Anna");
+        contact.setLastName("Nowak");
+        assertEquals("Anna", contact.getFirstName());
+        assertEquals("Nowak", contact.getLastName());
+        assertEquals("1 R\u00fce St", contact.getAddress());
+        assertEquals("9876543210", contact.getPhone());
+
+        Contact narrow = new Contact("2", "John", "Doe", "5551234567", "123 Main St");
+        narrow.setLastName("\u0141ukasz");
+        narrow.setAddress("9 Elm St");
+        assertEquals("John", narrow.getFirstName());
+        assertEquals("\u0141ukasz", narrow.getLastName());
+        assertEquals("9 Elm St", narrow.getAddress());
+    }
+
+    @Test
+    @DisplayName("A copy should keep its values when the original is updated")
+    public void testCopyIsIndependent() {
+        Contact original = new Contact("123", "John", "Doe", "5551234567", "123 Main St");
+        Contact copy = new Contact(original);
+
+        original.setAddress("9 Elm St");
+
+        assertEquals("123 Main St", copy.getAddress());
+        assertEquals(original, copy);
+    }
+
+    @Test
+    @DisplayName("Version should go up by one per setter call and be shared by copies")
+    public void testVersion() {
+        Contact contact = new Contact("123", "John", "Doe", "5551234567", "123 Main St");
+        assertEquals(0, contact.getVersion());
+
+        contact.setFirstName("Jane");
+        contact.setPhone("0001112222");
+        contact.setAddress("\u0141\u00f3d\u017a");  // Widens the packed fields to UTF16
+        Contact copy = new Contact(contact);
+        contact.setLastName("Smith");
+        assertThrows(IllegalArgumentException.class, () -> contact.setLastName(null));
+
+        assertEquals(4, contact.getVersion());
+        assertEquals(3, copy.getVersion());
+        assertEquals("\u0141\u00f3d\u017a", contact.getAddress());
+        assertEquals("Jane", contact.getFirstName());
+    }
+
+    @Test
+    @DisplayName("Concurrent setters of different fields should not lose updates")
+    public void testConcurrentSettersOfDifferentFields() throws InterruptedException {
+        Contact contact = new Contact("123", "John", "Doe", "5551234567", "123 Main St");
+        Thread names = new Thread(() -> {
+            for (int i = 0; i < 20_000; i++) {
+                contact.setFirstName("F" + i);
+            }
+        });
+        Thread phones = new Thread(() -> {
+            for (int i = 0; i < 20_000; i++) {
+                contact.setPhone(String.format("%010d", i));
+            }
+        });
+        names.start();
+        phones.start();
+        names.join();
+        phones.join();
+
+        assertEquals("F19999", contact.getFirstName());
+        assertEquals("0000019999", contact.getPhone());
+        assertEquals("Doe", contact.getLastName());
+    }
 }
\ No newline at end of file
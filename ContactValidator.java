@@ -0,0 +1,166 @@
+/**
+ * ContactValidator class checks Contact field values against the contact rules
+ * without throwing exceptions, compiling regular expressions or allocating.
+ *
+ * Each rule has its own bit, and validate returns the bitwise OR of every rule that
+ * failed, so VALID (zero) means the whole record is acceptable. The throwing setters
+ * in Contact are thin wrappers over the single-field checks in this class.
+ */
+public final class ContactValidator {
+    // Field limits
+    public static final int MAX_CONTACT_ID_LENGTH = 10;
+    public static final int MAX_NAME_LENGTH = 10;
+    public static final int PHONE_LENGTH = 10;
+    public static final int MAX_ADDRESS_LENGTH = 30;
+
+    // Result bits, one per rule
+    public static final int VALID = 0;
+    public static final int INVALID_CONTACT_ID = 1;
+    public static final int INVALID_FIRST_NAME = 1 << 1;
+    public static final int INVALID_LAST_NAME = 1 << 2;
+    public static final int INVALID_PHONE = 1 << 3;
+    public static final int INVALID_ADDRESS = 1 << 4;
+    public static final int ALL_RULES = INVALID_CONTACT_ID | INVALID_FIRST_NAME | INVALID_LAST_NAME
+            | INVALID_PHONE | INVALID_ADDRESS;
+
+    // Messages used by the throwing wrappers, shared so no message is built per failure
+    public static final String CONTACT_ID_MESSAGE = "Contact ID cannot be null and must be 10 characters or less";
+    public static final String FIRST_NAME_MESSAGE = "First name cannot be null and must be 10 characters or less";
+    public static final String LAST_NAME_MESSAGE = "Last name cannot be null and must be 10 characters or less";
+    public static final String PHONE_MESSAGE = "Phone number cannot be null and must be exactly 10 digits";
+    public static final String ADDRESS_MESSAGE = "Address cannot be null and must be 30 characters or less";
+
+    private ContactValidator() {
+        // Static utility class
+    }
+
+    /**
+     * Validates all five contact fields
+     * @param contactId Contact ID to check
+     * @param firstName First name to check
+     * @param lastName Last name to check
+     * @param phone Phone number to check
+     * @param address Address to check
+     * @return VALID, or the bitwise OR of the INVALID_* bits for every failed rule
+     */
+    public static int validate(CharSequence contactId, CharSequence firstName, CharSequence lastName,
+                               CharSequence phone, CharSequence address) {
+        int result = VALID;
+        if (!isValidContactId(contactId)) {
+            result |= INVALID_CONTACT_ID;
+        }
+        if (!isValidFirstName(firstName)) {
+            result |= INVALID_FIRST_NAME;
+        }
+        if (!isValidLastName(lastName)) {
+            result |= INVALID_LAST_NAME;
+        }
+        if (!isValidPhone(phone)) {
+            result |= INVALID_PHONE;
+        }
+        if (!isValidAddress(address)) {
+            result |= INVALID_ADDRESS;
+        }
+        return result;
+    }
+
+    /**
+     * Validates every field of an existing contact
+     * @param contact Contact to check
+     * @return VALID, or the bitwise OR of the INVALID_* bits for every failed rule; ALL_RULES if contact is null
+     */
+    public static int validate(Contact contact) {
+        if (contact == null) {
+            return ALL_RULES;
+        }
+        return validate(contact.getContactId(), contact.getFirstName(), contact.getLastName(),
+                contact.getPhone(), contact.getAddress());
+    }
+
+    /**
+     * Validates a batch of records, writing one result per record
+     * @param records Records as {contactId, firstName, lastName, phone, address}; a null or short record fails every rule
+     * @param results Receives the validate result for each record, must be at least as long as records
+     * @return Number of records that failed at least one rule
+     * @throws IllegalArgumentException if either array is null or results is too short
+     */
+    public static int validateAll(CharSequence[][] records, int[] results) {
+        if (records == null || results == null || results.length < records.length) {
+            throw new IllegalArgumentException("Records and a results array of at least the same length are required");
+        }
+        int invalid = 0;
+        for (int i = 0; i < records.length; i++) {
+            CharSequence[] record = records[i];
+            int result = record == null || record.length < 5
+                    ? ALL_RULES
+                    : validate(record[0], record[1], record[2], record[3], record[4]);
+            results[i] = result;
+            if (result != VALID) {
+                invalid++;
+            }
+        }
+        return invalid;
+    }
+
+    // Single-field checks
+    public static boolean isValidContactId(CharSequence contactId) {
+        return contactId != null && contactId.length() <= MAX_CONTACT_ID_LENGTH;
+    }
+
+    public static boolean isValidFirstName(CharSequence firstName) {
+        return firstName != null && firstName.length() <= MAX_NAME_LENGTH;
+    }
+
+    public static boolean isValidLastName(CharSequence lastName) {
+        return lastName != null && lastName.length() <= MAX_NAME_LENGTH;
+    }
+
+    public static boolean isValidPhone(CharSequence phone) {
+        if (phone == null || phone.length() != PHONE_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < PHONE_LENGTH; i++) {
+            char c = phone.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static boolean isValidAddress(CharSequence address) {
+        return address != null && address.length() <= MAX_ADDRESS_LENGTH;
+    }
+
+    /**
+     * Returns the message for the lowest failed rule in a result
+     * @param result Value returned by validate
+     * @return Message for the first failed rule, or null if the result is VALID
+     */
+    public static String messageFor(int result) {
+        if ((result & INVALID_CONTACT_ID) != 0) return CONTACT_ID_MESSAGE;
+        if ((result & INVALID_FIRST_NAME) != 0) return FIRST_NAME_MESSAGE;
+        if ((result & INVALID_LAST_NAME) != 0) return LAST_NAME_MESSAGE;
+        if ((result & INVALID_PHONE) != 0) return PHONE_MESSAGE;
+        if ((result & INVALID_ADDRESS) != 0) return ADDRESS_MESSAGE;
+        return null;
+    }
+
+    /**
+     * Builds a readable description of every failed rule, for error reports
+     * @param result Value returned by validate
+     * @return Messages for all failed rules joined with "; ", or an empty string if the result is VALID
+     */
+    public static String describe(int result) {
+        StringBuilder sb = new StringBuilder();
+        for (int bit = INVALID_CONTACT_ID; bit <= INVALID_ADDRESS; bit <<= 1) {
+            if ((result & bit) != 0) {
+                if (sb.length() > 0) {
+                    sb.append("; ");
+                }
+                sb.append(messageFor(bit));
+            }
+        }
+        return sb.toString();
+    }
+}
\ No newline at end of file
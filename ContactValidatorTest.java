@@ -0,0 +1,116 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+
+/**
+ * Unit tests for ContactValidator class
+ * Tests every rule bit, batch validation and error descriptions
+ */
+public class ContactValidatorTest {
+
+    @Test
+    @DisplayName("Valid record should return VALID")
+    public void testValidRecord() {
+        assertEquals(ContactValidator.VALID,
+                ContactValidator.validate("1234567890", "John", "Doe", "5551234567", "123 Main St"));
+    }
+
+    @Test
+    @DisplayName("Maximum length values should be valid")
+    public void testMaximumLengths() {
+        assertEquals(ContactValidator.VALID, ContactValidator.validate("1234567890", "1234567890",
+                "1234567890", "1234567890", "123456789012345678901234567890"));
+    }
+
+    @Test
+    @DisplayName("Each invalid field should set only its own bit")
+    public void testSingleRuleBits() {
+        assertEquals(ContactValidator.INVALID_CONTACT_ID,
+                ContactValidator.validate("12345678901", "John", "Doe", "5551234567", "123 Main St"));
+        assertEquals(ContactValidator.INVALID_FIRST_NAME,
+                ContactValidator.validate("123", "Christopher", "Doe", "5551234567", "123 Main St"));
+        assertEquals(ContactValidator.INVALID_LAST_NAME,
+                ContactValidator.validate("123", "John", null, "5551234567", "123 Main St"));
+        assertEquals(ContactValidator.INVALID_PHONE,
+                ContactValidator.validate("123", "John", "Doe", "555-123-456", "123 Main St"));
+        assertEquals(ContactValidator.INVALID_ADDRESS,
+                ContactValidator.validate("123", "John", "Doe", "5551234567", "123 Very Very Very Long Street Name"));
+    }
+
+    @Test
+    @DisplayName("Multiple invalid fields should combine their bits")
+    public void testCombinedRuleBits() {
+        int result = ContactValidator.validate(null, "John", "Doe", "12345", null);
+
+        assertEquals(ContactValidator.INVALID_CONTACT_ID | ContactValidator.INVALID_PHONE
+                | ContactValidator.INVALID_ADDRESS, result);
+        assertEquals(ContactValidator.ALL_RULES, ContactValidator.validate(null, null, null, null, null));
+    }
+
+    @Test
+    @DisplayName("Phone check should reject wrong lengths and non-digits")
+    public void testPhoneRule() {
+        assertTrue(ContactValidator.isValidPhone("0123456789"));
+        assertFalse(ContactValidator.isValidPhone("012345678"));
+        assertFalse(ContactValidator.isValidPhone("01234567890"));
+        assertFalse(ContactValidator.isValidPhone("01234a6789"));
+        assertFalse(ContactValidator.isValidPhone("012345678/"));
+        assertFalse(ContactValidator.isValidPhone("012345678:"));
+        assertFalse(ContactValidator.isValidPhone(null));
+    }
+
+    @Test
+    @DisplayName("Validating a contact should check its current fields")
+    public void testValidateContact() {
+        Contact contact = new Contact("123", "John", "Doe", "5551234567", "123 Main St");
+
+        assertEquals(ContactValidator.VALID, ContactValidator.validate(contact));
+        assertEquals(ContactValidator.ALL_RULES, ContactValidator.validate((Contact) null));
+    }
+
+    @Test
+    @DisplayName("Batch validation should report a result per record")
+    public void testValidateAll() {
+        CharSequence[][] records = {
+                {"1", "John", "Doe", "5551234567", "123 Main St"},
+                {"2", "John", "Doe", "555", "123 Main St"},
+                null,
+                {"3", "John"}
+        };
+        int[] results = new int[records.length];
+
+        int invalid = ContactValidator.validateAll(records, results);
+
+        assertEquals(3, invalid);
+        assertEquals(ContactValidator.VALID, results[0]);
+        assertEquals(ContactValidator.INVALID_PHONE, results[1]);
+        assertEquals(ContactValidator.ALL_RULES, results[2]);
+        assertEquals(ContactValidator.ALL_RULES, results[3]);
+    }
+
+    @Test
+    @DisplayName("Batch validation with a short results array should throw exception")
+    public void testValidateAllShortResults() {
+        CharSequence[][] records = {{"1", "John", "Doe", "5551234567", "123 Main St"}};
+        assertThrows(IllegalArgumentException.class, () -> ContactValidator.validateAll(records, new int[0]));
+    }
+
+    @Test
+    @DisplayName("Messages should describe the failed rules")
+    public void testMessages() {
+        assertNull(ContactValidator.messageFor(ContactValidator.VALID));
+        assertEquals(ContactValidator.PHONE_MESSAGE, ContactValidator.messageFor(ContactValidator.INVALID_PHONE));
+        assertEquals(ContactValidator.FIRST_NAME_MESSAGE + "; " + ContactValidator.ADDRESS_MESSAGE,
+                ContactValidator.describe(ContactValidator.INVALID_FIRST_NAME | ContactValidator.INVALID_ADDRESS));
+        assertEquals("", ContactValidator.describe(ContactValidator.VALID));
+    }
+
+    @Test
+    @DisplayName("Contact setters should throw with the validator message")
+    public void testSetterUsesValidatorMessage() {
+        Contact contact = new Contact("123", "John", "Doe", "5551234567", "123 Main St");
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> contact.setPhone("555"));
+
+        assertEquals(ContactValidator.PHONE_MESSAGE, e.getMessage());
+    }
+}
\ No newline at end of file
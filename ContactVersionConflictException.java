@@ -0,0 +1,46 @@
+/**
+ * ContactVersionConflictException class reports that a contact changed since the caller
+ * read it: ContactService.patchContact was given a version the contact no longer has.
+ * The caller should read the contact again, reconcile, and retry with its new version.
+ */
+public class ContactVersionConflictException extends IllegalStateException {
+    private static final long serialVersionUID = 1L;
+
+    private final String contactId;
+    private final int expectedVersion;
+    private final int actualVersion;
+
+    /**
+     * Constructor for ContactVersionConflictException object
+     * @param contactId ID of the contact
+     * @param expectedVersion Version the caller expected
+     * @param actualVersion Version the contact had
+     */
+    public ContactVersionConflictException(String contactId, int expectedVersion, int actualVersion) {
+        super("Contact with ID " + contactId + " is at version " + actualVersion + ", not " + expectedVersion);
+        this.contactId = contactId;
+        this.expectedVersion = expectedVersion;
+        this.actualVersion = actualVersion;
+    }
+
+    /**
+     * @return ID of the contact
+     */
+    public String getContactId() {
+        return contactId;
+    }
+
+    /**
+     * @return Version the caller expected
+     */
+    public int getExpectedVersion() {
+        return expectedVersion;
+    }
+
+    /**
+     * @return Version the contact had when the patch was refused
+     */
+    public int getActualVersion() {
+        return actualVersion;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,72 @@
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * ContactView class is a read-only view of every contact at the instant it was taken,
+ * returned by ContactService.snapshot over a VersionedContactStore.
+ *
+ * Taking a view costs O(1) and holds no lock: it keeps the root of the store's persistent
+ * trie, which later writes never modify. Reads and iteration therefore never block
+ * writers, see none of their changes and can run for as long as needed, at the price of
+ * keeping replaced contact versions reachable until the view is dropped. Every contact it
+ * returns is a copy, so changing one does not change the view or the store.
+ */
+public final class ContactView implements Iterable<Contact> {
+    private final VersionedContactStore.Root root;
+
+    ContactView(VersionedContactStore.Root root) {
+        this.root = root;
+    }
+
+    /**
+     * Retrieves a contact by ID as of the view
+     * @param contactId ID of the contact to retrieve
+     * @return Copy of the contact
+     * @throws IllegalArgumentException if contactId is null or the contact didn't exist
+     */
+    public Contact getContact(String contactId) {
+        if (contactId == null) {
+            throw new IllegalArgumentException("Contact ID cannot be null");
+        }
+        Contact version = VersionedContactStore.find(root, contactId);
+        if (version == null) {
+            throw new IllegalArgumentException("Contact with ID " + contactId + " does not exist");
+        }
+        return new Contact(version);
+    }
+
+    /**
+     * @param contactId ID to check
+     * @return true if a contact had the ID when the view was taken
+     */
+    public boolean contactExists(String contactId) {
+        return contactId != null && VersionedContactStore.find(root, contactId) != null;
+    }
+
+    /**
+     * @return Number of contacts when the view was taken
+     */
+    public int getContactCount() {
+        return root.size;
+    }
+
+    /**
+     * @return Iterator over a copy of every contact in the view, in no particular order
+     */
+    @Override
+    public Iterator<Contact> iterator() {
+        return VersionedContactStore.iterator(root);
+    }
+
+    /**
+     * @return Sequential stream over a copy of every contact in the view
+     */
+    public Stream<Contact> stream() {
+        Spliterator<Contact> spliterator = Spliterators.spliterator(iterator(), root.size,
+                Spliterator.DISTINCT | Spliterator.NONNULL | Spliterator.IMMUTABLE);
+        return StreamSupport.stream(spliterator, false);
+    }
+}
\ No newline at end of file
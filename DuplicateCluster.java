@@ -0,0 +1,34 @@
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * DuplicateCluster class is one group of contacts that ContactDeduplicator judged to be
+ * the same person. Every contact in the group is linked to another one by a pair score
+ * at or above the threshold, so two members can differ more than any linked pair.
+ */
+public final class DuplicateCluster {
+    private final List<String> contactIds;
+
+    DuplicateCluster(List<String> contactIds) {
+        this.contactIds = Collections.unmodifiableList(contactIds);
+    }
+
+    /**
+     * @return IDs of the contacts in the group, at least two, in the order they were read
+     */
+    public List<String> getContactIds() {
+        return contactIds;
+    }
+
+    /**
+     * @return Number of contacts in the group
+     */
+    public int size() {
+        return contactIds.size();
+    }
+
+    @Override
+    public String toString() {
+        return "DuplicateCluster" + contactIds;
+    }
+}
\ No newline at end of file
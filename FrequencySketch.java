@@ -0,0 +1,83 @@
+/**
+ * FrequencySketch class estimates how often each key was seen recently, for the
+ * admission policy of TieredContactStore.
+ *
+ * It is a count-min sketch of 4-bit counters, sixteen to a long: a key increments one
+ * counter in each of four longs chosen by differently seeded hashes, and its estimate
+ * is the smallest of the four, which collisions can only inflate. Once the number of
+ * increments reaches ten times the number of keys the cache holds, every counter is
+ * halved, so the sketch follows changes in popularity instead of remembering forever.
+ * Not thread-safe; the caller serializes access.
+ */
+final class FrequencySketch {
+    private static final long RESET_MASK = 0x7777777777777777L;  // Clears each counter's top bit after a shift
+    private static final long[] SEEDS = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+    private static final int MAX_COUNT = 15;
+
+    private final long[] table;
+    private final int tableMask;
+    private final int sampleSize;
+    private int additions;
+
+    /**
+     * Constructor sizes the sketch for a cache
+     * @param maximumSize Most keys the cache holds, at least 1
+     */
+    FrequencySketch(int maximumSize) {
+        // About one long, so sixteen counters, per key the cache holds
+        table = new long[(int) Math.min(1L << 30, Long.highestOneBit(Math.max(maximumSize, 16) - 1L) << 1)];
+        tableMask = table.length - 1;
+        sampleSize = (int) Math.min(10L * maximumSize, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param hash Well-spread hash of the key
+     * @return Estimated recent occurrences of the key, from 0 to 15
+     */
+    int frequency(int hash) {
+        int frequency = MAX_COUNT;
+        for (int i = 0; i < SEEDS.length; i++) {
+            frequency = Math.min(frequency, (int) (table[index(hash, i)] >>> shift(hash, i)) & MAX_COUNT);
+        }
+        return frequency;
+    }
+
+    /**
+     * Records one occurrence of a key, halving every counter once enough have been recorded
+     * @param hash Well-spread hash of the key
+     */
+    void increment(int hash) {
+        boolean added = false;
+        for (int i = 0; i < SEEDS.length; i++) {
+            int index = index(hash, i);
+            int shift = shift(hash, i);
+            if (((table[index] >>> shift) & MAX_COUNT) < MAX_COUNT) {
+                table[index] += 1L << shift;
+                added = true;
+            }
+        }
+        if (added && ++additions >= sampleSize) {
+            reset();
+        }
+    }
+
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        additions >>>= 1;
+    }
+
+    private int index(int hash, int row) {
+        long h = (hash + SEEDS[row]) * SEEDS[row];
+        h += h >>> 32;
+        return (int) h & tableMask;
+    }
+
+    /**
+     * Picks which of the long's sixteen counters the row uses, from a different byte of the hash per row
+     */
+    private static int shift(int hash, int row) {
+        return ((hash >>> (row << 3)) & MAX_COUNT) << 2;
+    }
+}
\ No newline at end of file
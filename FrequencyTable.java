@@ -0,0 +1,103 @@
+import java.util.Arrays;
+
+/**
+ * FrequencyTable class is how often each distinct value occurs, as computed by
+ * ContactAnalytics. Values are ranked from most to least frequent, ties in String
+ * order, and any value's count is found by binary search; nothing is boxed.
+ */
+public final class FrequencyTable {
+    private static final int SHOWN_IN_TO_STRING = 5;
+
+    private final String[] sortedValues;  // String order, for countOf
+    private final int[] sortedCounts;
+    private final String[] rankedValues;  // Most frequent first
+    private final int[] rankedCounts;
+    private final long total;
+
+    /**
+     * Constructor ranks distinct values
+     * @param sortedValues Distinct values in String order; kept, not copied
+     * @param sortedCounts Occurrences of each value, at least 1, matching values by position; kept, not copied
+     */
+    FrequencyTable(String[] sortedValues, int[] sortedCounts) {
+        this.sortedValues = sortedValues;
+        this.sortedCounts = sortedCounts;
+        // Descending count in the high half, String position in the low half breaks ties
+        long[] keys = new long[sortedValues.length];
+        long sum = 0;
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = ((long) (Integer.MAX_VALUE - sortedCounts[i]) << 32) | i;
+            sum += sortedCounts[i];
+        }
+        total = sum;
+        Arrays.sort(keys);
+        rankedValues = new String[keys.length];
+        rankedCounts = new int[keys.length];
+        for (int rank = 0; rank < keys.length; rank++) {
+            int at = (int) keys[rank];
+            rankedValues[rank] = sortedValues[at];
+            rankedCounts[rank] = sortedCounts[at];
+        }
+    }
+
+    /**
+     * @return Number of distinct values
+     */
+    public int size() {
+        return rankedValues.length;
+    }
+
+    /**
+     * @return Occurrences of every value together
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * @param rank Position from the most frequent value, starting at 0
+     * @return Value at that rank
+     * @throws IllegalArgumentException if rank is negative or not less than size()
+     */
+    public String getValue(int rank) {
+        return rankedValues[checkRank(rank)];
+    }
+
+    /**
+     * @param rank Position from the most frequent value, starting at 0
+     * @return Occurrences of the value at that rank
+     * @throws IllegalArgumentException if rank is negative or not less than size()
+     */
+    public int getCount(int rank) {
+        return rankedCounts[checkRank(rank)];
+    }
+
+    /**
+     * @param value Value to look up
+     * @return Occurrences of the value, 0 if it never occurs
+     * @throws IllegalArgumentException if value is null
+     */
+    public int countOf(String value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Value cannot be null");
+        }
+        int at = Arrays.binarySearch(sortedValues, value);
+        return at >= 0 ? sortedCounts[at] : 0;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder("FrequencyTable{").append(size()).append(" values");
+        for (int i = 0; i < Math.min(size(), SHOWN_IN_TO_STRING); i++) {
+            text.append(", ").append(rankedValues[i]).append('=').append(rankedCounts[i]);
+        }
+        return text.append(size() > SHOWN_IN_TO_STRING ? ", ...}" : "}").toString();
+    }
+
+    private int checkRank(int rank) {
+        if (rank < 0 || rank >= rankedValues.length) {
+            throw new IllegalArgumentException("Rank must be from 0 to " + (rankedValues.length - 1));
+        }
+        return rank;
+    }
+}
\ No newline at end of file
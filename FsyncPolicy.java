@@ -0,0 +1,21 @@
+/**
+ * FsyncPolicy enum selects when a ContactJournal forces appended mutations to disk
+ */
+public enum FsyncPolicy {
+    /**
+     * Every mutation performs its own fsync before returning. Safest and slowest.
+     */
+    PER_OPERATION,
+
+    /**
+     * Mutations wait until they are durable, but concurrent writers share fsyncs:
+     * one writer flushes everything appended so far while the others queue behind it.
+     */
+    GROUP_COMMIT,
+
+    /**
+     * Mutations return immediately and a background thread fsyncs on a fixed interval,
+     * so a crash can lose at most one interval of acknowledged mutations.
+     */
+    INTERVAL
+}
\ No newline at end of file
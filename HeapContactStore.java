@@ -0,0 +1,77 @@
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * HeapContactStore class keeps contacts as ordinary objects in a ConcurrentHashMap.
+ * This is the default ContactService store: reads return the stored Contact itself.
+ */
+public final class HeapContactStore implements ContactStore {
+    // Replaced only from insertAll, which the service calls while every stripe is held
+    private volatile ConcurrentHashMap<String, Contact> contacts = new ConcurrentHashMap<>();
+
+    @Override
+    public Contact get(String contactId) {
+        return contacts.get(contactId);
+    }
+
+    @Override
+    public boolean contains(String contactId) {
+        return contacts.containsKey(contactId);
+    }
+
+    @Override
+    public int size() {
+        return contacts.size();
+    }
+
+    @Override
+    public boolean insert(Contact contact) {
+        return contacts.putIfAbsent(contact.getContactId(), contact) == null;
+    }
+
+    @Override
+    public void insertAll(Contact[] batch) {
+        ConcurrentHashMap<String, Contact> current = contacts;
+        if (batch.length > current.size()) {
+            // Large batch: build a map sized for the final count and publish it in one step
+            ConcurrentHashMap<String, Contact> grown = new ConcurrentHashMap<>(current.size() + batch.length);
+            grown.putAll(current);
+            for (Contact contact : batch) {
+                grown.put(contact.getContactId(), contact);
+            }
+            contacts = grown;
+        } else {
+            for (Contact contact : batch) {
+                current.put(contact.getContactId(), contact);
+            }
+        }
+    }
+
+    @Override
+    public Contact remove(String contactId) {
+        return contacts.remove(contactId);
+    }
+
+    @Override
+    public Contact update(Contact contact, ContactField field, String value) {
+        field.set(contact, value);
+        return contact;
+    }
+
+    @Override
+    public boolean returnsCopies() {
+        return false;
+    }
+
+    @Override
+    public Iterator<Contact> iterator() {
+        return contacts.values().iterator();
+    }
+
+    @Override
+    public Spliterator<Contact> spliterator() {
+        // Splits by hash table range, so parallel query scans divide the work evenly
+        return contacts.values().spliterator();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,32 @@
+/**
+ * ImportResult class reports how many records ContactExchange.importInto added and how
+ * many it wrote to the rejects file
+ */
+public final class ImportResult {
+    private final long importedCount;
+    private final long rejectedCount;
+
+    ImportResult(long importedCount, long rejectedCount) {
+        this.importedCount = importedCount;
+        this.rejectedCount = rejectedCount;
+    }
+
+    /**
+     * @return Number of contacts added to the service
+     */
+    public long getImportedCount() {
+        return importedCount;
+    }
+
+    /**
+     * @return Number of records rejected as malformed, invalid or duplicate
+     */
+    public long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    @Override
+    public String toString() {
+        return "ImportResult{imported=" + importedCount + ", rejected=" + rejectedCount + '}';
+    }
+}
\ No newline at end of file
@@ -0,0 +1,150 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LatencyHistogram class records nanosecond latencies into log-linear buckets.
+ *
+ * Like an HDR histogram, each power of two is split into 32 equal sub-buckets, so any
+ * recorded value is reported within about 3% of its true value across the full range
+ * of a long, using a fixed 15 KB of counters. Recording is lock-free and allocation-free.
+ * snapshotAndReset drains the counters one bucket at a time, so a value recorded
+ * concurrently lands in exactly one snapshot, although its bucket and the sum may be
+ * split across two consecutive snapshots.
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // Values below SUB_BUCKETS are exact; above that, one group per power of two up to 2^62
+    static final int BUCKETS = SUB_BUCKETS + (63 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Records one value, treating negative values as zero
+     * @param nanos Latency in nanoseconds
+     */
+    public void record(long nanos) {
+        long value = Math.max(nanos, 0);
+        counts.incrementAndGet(bucketFor(value));
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    /**
+     * @return Copy of everything recorded since the last reset
+     */
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+        }
+        return new Snapshot(copy, sum.sum(), max.get());
+    }
+
+    /**
+     * @return Everything recorded since the last reset, which starts a new interval
+     */
+    public Snapshot snapshotAndReset() {
+        long[] copy = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.getAndSet(i, 0);
+        }
+        return new Snapshot(copy, sum.sumThenReset(), max.getThenReset());
+    }
+
+    static int bucketFor(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int group = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        int sub = (int) (value >>> group) & (SUB_BUCKETS - 1);
+        return SUB_BUCKETS + group * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * @return Largest value that falls into a bucket
+     */
+    static long highestValueIn(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int group = (bucket - SUB_BUCKETS) / SUB_BUCKETS;
+        long lowest = (long) (SUB_BUCKETS + (bucket - SUB_BUCKETS) % SUB_BUCKETS) << group;
+        return lowest + (1L << group) - 1;
+    }
+
+    /**
+     * Snapshot class is an immutable view of a histogram's counts
+     */
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        Snapshot(long[] counts, long sum, long max) {
+            long total = 0;
+            for (long c : counts) {
+                total += c;
+            }
+            this.counts = counts;
+            this.count = total;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        /**
+         * @return Number of recorded values
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @return Mean of the recorded values in nanoseconds, 0 if none
+         */
+        public double getMean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        /**
+         * @return Largest recorded value in nanoseconds, 0 if none
+         */
+        public long getMax() {
+            return max;
+        }
+
+        /**
+         * Returns the value below which a given percentage of recorded values fall
+         * @param percentile Percentage between 0 and 100
+         * @return Value in nanoseconds, within about 3%, or 0 if nothing was recorded
+         * @throws IllegalArgumentException if percentile is outside 0 to 100
+         */
+        public long getValueAtPercentile(double percentile) {
+            if (!(percentile >= 0 && percentile <= 100)) {
+                throw new IllegalArgumentException("Percentile must be between 0 and 100");
+            }
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(highestValueIn(i), max);
+                }
+            }
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("count=%d mean=%.0fns p50=%dns p99=%dns p999=%dns max=%dns", count, getMean(),
+                    getValueAtPercentile(50), getValueAtPercentile(99), getValueAtPercentile(99.9), max);
+        }
+    }
+}
\ No newline at end of file
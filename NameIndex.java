@@ -0,0 +1,150 @@
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Stream;
+
+/**
+ * NameIndex class answers first and last name prefix queries for ContactService.findByNamePrefix.
+ *
+ * Every contact has two entries, one per name, in a ConcurrentSkipListMap ordered by
+ * name and then contact ID. A prefix query seeks to the prefix and walks forward until
+ * a name stops matching, so it costs O(log n + limit) however many contacts exist,
+ * and readers never block. With ignoreCase, names and prefixes are compared in lower
+ * case (Locale.ROOT).
+ */
+final class NameIndex implements ContactListener {
+    /**
+     * Key class orders index entries by name, then contact ID so equal names stay distinct
+     */
+    private static final class Key implements Comparable<Key> {
+        final String name;
+        final String contactId;
+
+        Key(String name, String contactId) {
+            this.name = name;
+            this.contactId = contactId;
+        }
+
+        @Override
+        public int compareTo(Key other) {
+            int c = name.compareTo(other.name);
+            return c != 0 ? c : contactId.compareTo(other.contactId);
+        }
+    }
+
+    private final boolean ignoreCase;
+    private final ConcurrentSkipListMap<Key, Contact> entries = new ConcurrentSkipListMap<>();
+
+    /**
+     * Constructor creates an empty index
+     * @param ignoreCase Whether prefixes match names regardless of case
+     */
+    NameIndex(boolean ignoreCase) {
+        this.ignoreCase = ignoreCase;
+    }
+
+    /**
+     * @return Whether prefixes match names regardless of case
+     */
+    boolean isIgnoreCase() {
+        return ignoreCase;
+    }
+
+    /**
+     * Returns contacts whose first or last name starts with a prefix, ordered by the
+     * matching name and then contact ID. A contact matching on both names appears once.
+     * @param prefix Name prefix, empty to match every contact
+     * @param limit Maximum number of contacts to return
+     * @return Up to limit matching contacts
+     */
+    List<Contact> find(String prefix, int limit) {
+        String normalized = normalize(prefix);
+        List<Contact> matches = new ArrayList<>(Math.min(limit, 64));
+        Set<Contact> seen = new HashSet<>();
+        for (Map.Entry<Key, Contact> entry : entries.tailMap(new Key(normalized, ""), true).entrySet()) {
+            if (matches.size() >= limit || !entry.getKey().name.startsWith(normalized)) {
+                break;
+            }
+            if (seen.add(entry.getValue())) {
+                matches.add(entry.getValue());
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Streams contacts with a first or last name equal to or starting with a value, lazily
+     * in index order, for ContactService.plan. A contact matching on both names appears once.
+     * @param value Name or name prefix
+     * @param exact Whether the name must equal value rather than start with it
+     * @return Matching contacts, read from the index as the stream is consumed
+     */
+    Stream<Contact> stream(String value, boolean exact) {
+        return range(normalize(value), exact).map(Map.Entry::getValue).distinct();
+    }
+
+    /**
+     * Counts the entries stream would walk, stopping early
+     * @param value Name or name prefix
+     * @param exact Whether the name must equal value rather than start with it
+     * @param bound Count to stop at
+     * @return Matching entries, at most bound; a contact matching on both names counts twice
+     */
+    int count(String value, boolean exact, int bound) {
+        return (int) range(normalize(value), exact).limit(bound).count();
+    }
+
+    /**
+     * Checks whether a contact's first or last name starts with a prefix under this index's case rule
+     * @param contact Contact to check
+     * @param prefix Name prefix
+     * @return true if either name matches
+     */
+    boolean matches(Contact contact, String prefix) {
+        String normalized = normalize(prefix);
+        return normalize(contact.getFirstName()).startsWith(normalized)
+                || normalize(contact.getLastName()).startsWith(normalized);
+    }
+
+    @Override
+    public void contactAdded(Contact contact) {
+        entries.put(key(contact.getFirstName(), contact), contact);
+        entries.put(key(contact.getLastName(), contact), contact);
+    }
+
+    @Override
+    public void contactDeleted(Contact contact) {
+        entries.remove(key(contact.getFirstName(), contact));
+        entries.remove(key(contact.getLastName(), contact));
+    }
+
+    @Override
+    public void contactUpdated(Contact contact, ContactField field, String oldValue) {
+        if (field == ContactField.FIRST_NAME || field == ContactField.LAST_NAME) {
+            String newValue = field.get(contact);
+            String other = field == ContactField.FIRST_NAME ? contact.getLastName() : contact.getFirstName();
+            // Keep the entry if the contact's other name still produces the same key
+            if (!normalize(oldValue).equals(normalize(other))) {
+                entries.remove(key(oldValue, contact));
+            }
+            entries.put(key(newValue, contact), contact);
+        }
+    }
+
+    private Stream<Map.Entry<Key, Contact>> range(String normalized, boolean exact) {
+        return entries.tailMap(new Key(normalized, ""), true).entrySet().stream()
+                .takeWhile(e -> exact ? e.getKey().name.equals(normalized) : e.getKey().name.startsWith(normalized));
+    }
+
+    private Key key(String name, Contact contact) {
+        return new Key(normalize(name), contact.getContactId());
+    }
+
+    private String normalize(String name) {
+        return ignoreCase ? name.toLowerCase(Locale.ROOT) : name;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,452 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * OffHeapContactStore class keeps contacts outside the Java heap, so a ContactService can
+ * hold more contacts than fit comfortably in the heap and garbage collection does not
+ * slow down as the store grows.
+ *
+ * Every Contact field has a fixed maximum width, so each contact occupies one fixed-size
+ * slot: a 4-byte state word followed by a ContactRecordFormat record. The state word of
+ * an occupied slot holds the complement of the contact's version, which is never
+ * negative, so occupied slots are told from free ones by the sign. Slots live in
+ * segments of SEGMENT_SLOTS, either direct buffers (allocate) or regions of a
+ * memory-mapped file (map), added as the store grows; a slot never moves. A deleted
+ * slot is pushed on a free list threaded through the state words and reused by the
+ * next insert.
+ *
+ * Contact IDs map to slots through an open-addressing hash table, also in direct
+ * memory. Each 8-byte entry holds the ID's hash and slot number, and a matching hash is
+ * confirmed against the ID stored in the slot, so nothing on the heap grows with the
+ * number of contacts.
+ *
+ * get decodes the slot into a new Contact on every call. Reads share the read lock of a
+ * StampedLock and mutations take its write lock.
+ */
+public final class OffHeapContactStore implements ContactStore, Closeable {
+    static final int SLOT_SIZE = 4 + ContactRecordFormat.RECORD_SIZE;
+    private static final int SEGMENT_SHIFT = 14;
+    static final int SEGMENT_SLOTS = 1 << SEGMENT_SHIFT;
+    private static final int SEGMENT_BYTES = SEGMENT_SLOTS * SLOT_SIZE;
+    private static final int END_OF_LIST = Integer.MAX_VALUE;  // State word of the last free slot
+    private static final int MIN_TABLE_CAPACITY = 1024;
+    static final int MAX_TABLE_CAPACITY = 1 << 27;  // 8-byte entries in one 1 GiB buffer; 1 << 28 would overflow its int size
+    static final int MAX_CONTACTS = MAX_TABLE_CAPACITY / 4 * 3;  // The table is kept at most 3/4 full
+    private static final int ITERATOR_BATCH = 256;
+
+    private final StampedLock lock = new StampedLock();
+    private final FileChannel channel;  // Null unless memory-mapped
+    private ByteBuffer[] segments = new ByteBuffer[16];
+    private int slotsUsed;  // Slots ever handed out, all inside allocated segments
+    private int freeHead = END_OF_LIST;
+    private ByteBuffer table = ByteBuffer.allocateDirect(MIN_TABLE_CAPACITY * 8);  // Entry 0 means empty
+    private int tableMask = MIN_TABLE_CAPACITY - 1;
+    private volatile int size;  // Written under the write lock
+    private boolean closed;
+
+    private OffHeapContactStore(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Creates an empty store in direct memory, freed once the store is garbage collected
+     * @return New store
+     */
+    public static OffHeapContactStore allocate() {
+        return new OffHeapContactStore(null);
+    }
+
+    /**
+     * Creates an empty store whose slots are memory-mapped from a file, so the operating
+     * system can page cold contacts out of memory. The file is working space, not a
+     * durable copy: it is truncated when opened (use ContactPersistence for durability).
+     * The hash index stays in direct memory.
+     * @param file File to map, created if needed
+     * @return New store
+     * @throws IOException if the file cannot be opened
+     */
+    public static OffHeapContactStore map(Path file) throws IOException {
+        if (file == null) {
+            throw new IllegalArgumentException("File cannot be null");
+        }
+        return new OffHeapContactStore(FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING));
+    }
+
+    @Override
+    public Contact get(String contactId) {
+        long stamp = lock.readLock();
+        try {
+            ensureOpen();
+            int at = findEntry(contactId);
+            return at < 0 ? null : decode(slotAt(at));
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public boolean contains(String contactId) {
+        long stamp = lock.readLock();
+        try {
+            ensureOpen();
+            return findEntry(contactId) >= 0;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean insert(Contact contact) {
+        long stamp = lock.writeLock();
+        try {
+            ensureOpen();
+            if (findEntry(contact.getContactId()) >= 0) {
+                return false;
+            }
+            put(contact);
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void insertAll(Contact[] batch) {
+        long stamp = lock.writeLock();
+        try {
+            ensureOpen();
+            int capacity = tableCapacityFor(size + (long) batch.length);  // Refuses an oversized batch before storing any of it
+            if (capacity > tableMask + 1) {
+                resizeTable(capacity);
+            }
+            for (Contact contact : batch) {
+                put(contact);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public Contact remove(String contactId) {
+        long stamp = lock.writeLock();
+        try {
+            ensureOpen();
+            int at = findEntry(contactId);
+            if (at < 0) {
+                return null;
+            }
+            int slot = slotAt(at);
+            Contact removed = decode(slot);
+            deleteEntry(at);
+            segment(slot).putInt(offset(slot), freeHead);
+            freeHead = slot;
+            size--;
+            return removed;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public Contact update(Contact contact, ContactField field, String value) {
+        field.set(contact, value);  // Validates on the copy before the slot is touched
+        return rewrite(contact);
+    }
+
+    @Override
+    public Contact patch(Contact contact, ContactPatch patch, int expectedVersion) {
+        contact.applyPatch(patch, expectedVersion);  // Checks the version on the copy first
+        return rewrite(contact);
+    }
+
+    /**
+     * Writes a changed copy of a stored contact back over its slot
+     * @return The changed copy
+     */
+    private Contact rewrite(Contact contact) {
+        long stamp = lock.writeLock();
+        try {
+            ensureOpen();
+            int at = findEntry(contact.getContactId());
+            if (at < 0) {
+                throw new IllegalArgumentException("Contact with ID " + contact.getContactId() + " does not exist");
+            }
+            int slot = slotAt(at);
+            ContactRecordFormat.encode(segment(slot), offset(slot) + 4, contact);
+            segment(slot).putInt(offset(slot), ~contact.getVersion());
+            return contact;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public boolean returnsCopies() {
+        return true;
+    }
+
+    /**
+     * Walks the slots in order, decoding a batch of contacts per read lock, so writers are
+     * never held off for a whole walk and a contact present throughout is returned once
+     */
+    @Override
+    public Iterator<Contact> iterator() {
+        return new SlotIterator();
+    }
+
+    /**
+     * @return Bytes of off-heap memory held by slot segments and the hash index
+     */
+    public long allocatedBytes() {
+        long stamp = lock.readLock();
+        try {
+            if (closed) {
+                return 0;
+            }
+            long segmentCount = (slotsUsed + SEGMENT_SLOTS - 1) >>> SEGMENT_SHIFT;
+            return segmentCount * SEGMENT_BYTES + table.capacity();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * @return Number of slots ever handed out, live or on the free list
+     */
+    int slotsUsed() {
+        long stamp = lock.readLock();
+        try {
+            return slotsUsed;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Releases the store; its memory is returned once the buffers are garbage collected
+     * and a mapped file is left in place for the caller to delete
+     * @throws IOException if the mapped file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        long stamp = lock.writeLock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            segments = null;
+            table = null;
+            size = 0;
+            if (channel != null) {
+                channel.close();
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("Contact store is closed");
+        }
+    }
+
+    /**
+     * Writes a contact whose ID is not stored yet into a free slot and indexes it
+     */
+    private void put(Contact contact) {
+        if ((size + 1) * 4L > (tableMask + 1) * 3L) {
+            resizeTable(tableCapacityFor(size + 1L));
+        }
+        int slot = allocateSlot();
+        ByteBuffer segment = segment(slot);
+        ContactRecordFormat.encode(segment, offset(slot) + 4, contact);
+        segment.putInt(offset(slot), ~contact.getVersion());
+        int hash = hash(contact.getContactId());
+        int at = hash & tableMask;
+        while (table.getLong(at << 3) != 0) {
+            at = (at + 1) & tableMask;
+        }
+        table.putLong(at << 3, (long) hash << 32 | (slot + 1));
+        size++;
+    }
+
+    private int allocateSlot() {
+        if (freeHead != END_OF_LIST) {
+            int slot = freeHead;
+            freeHead = segment(slot).getInt(offset(slot));
+            return slot;
+        }
+        int slot = slotsUsed;
+        int index = slot >>> SEGMENT_SHIFT;
+        if ((slot & (SEGMENT_SLOTS - 1)) == 0) {
+            if (index == segments.length) {
+                segments = Arrays.copyOf(segments, index * 2);
+            }
+            segments[index] = newSegment(index);
+        }
+        slotsUsed++;
+        return slot;
+    }
+
+    private ByteBuffer newSegment(int index) {
+        if (channel == null) {
+            return ByteBuffer.allocateDirect(SEGMENT_BYTES);
+        }
+        try {
+            return channel.map(FileChannel.MapMode.READ_WRITE, (long) index * SEGMENT_BYTES, SEGMENT_BYTES);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot grow contact store file", e);
+        }
+    }
+
+    /**
+     * @return Table position of the ID's entry, or -1 if the ID is not stored
+     */
+    private int findEntry(String contactId) {
+        int hash = hash(contactId);
+        for (int at = hash & tableMask; ; at = (at + 1) & tableMask) {
+            long entry = table.getLong(at << 3);
+            if (entry == 0) {
+                return -1;
+            }
+            if ((int) (entry >>> 32) == hash) {
+                int slot = (int) entry - 1;
+                if (ContactRecordFormat.hasContactId(segment(slot), offset(slot) + 4, contactId)) {
+                    return at;
+                }
+            }
+        }
+    }
+
+    /**
+     * Empties a table position and shifts later entries of the probe run back, so no tombstones are needed
+     */
+    private void deleteEntry(int at) {
+        int hole = at;
+        for (int next = (hole + 1) & tableMask; ; next = (next + 1) & tableMask) {
+            long entry = table.getLong(next << 3);
+            if (entry == 0) {
+                break;
+            }
+            int home = (int) (entry >>> 32) & tableMask;
+            // Move the entry back if its home is not cyclically within (hole, next]
+            if (((next - home) & tableMask) >= ((next - hole) & tableMask)) {
+                table.putLong(hole << 3, entry);
+                hole = next;
+            }
+        }
+        table.putLong(hole << 3, 0);
+    }
+
+    /**
+     * @param contacts Contacts the index table must hold
+     * @return Smallest power-of-two capacity keeping the table at most 3/4 full, at least MIN_TABLE_CAPACITY
+     * @throws IllegalStateException if contacts exceeds MAX_CONTACTS
+     */
+    static int tableCapacityFor(long contacts) {
+        if (contacts > MAX_CONTACTS) {
+            throw new IllegalStateException("Contact store cannot index more than " + MAX_CONTACTS + " contacts");
+        }
+        long needed = Math.max(MIN_TABLE_CAPACITY, (contacts * 4 + 2) / 3);  // Entries for contacts at 3/4 full, rounded up
+        return (int) Math.min(Long.highestOneBit(needed - 1) * 2, MAX_TABLE_CAPACITY);
+    }
+
+    private void resizeTable(int capacity) {
+        ByteBuffer grown = ByteBuffer.allocateDirect(capacity * 8);
+        int mask = capacity - 1;
+        for (int i = 0; i <= tableMask; i++) {
+            long entry = table.getLong(i << 3);
+            if (entry != 0) {
+                int at = (int) (entry >>> 32) & mask;
+                while (grown.getLong(at << 3) != 0) {
+                    at = (at + 1) & mask;
+                }
+                grown.putLong(at << 3, entry);
+            }
+        }
+        table = grown;
+        tableMask = mask;
+    }
+
+    private int slotAt(int at) {
+        return (int) table.getLong(at << 3) - 1;
+    }
+
+    private Contact decode(int slot) {
+        Contact contact = ContactRecordFormat.decode(segment(slot), offset(slot) + 4);
+        contact.restoreVersion(~segment(slot).getInt(offset(slot)));
+        return contact;
+    }
+
+    private ByteBuffer segment(int slot) {
+        return segments[slot >>> SEGMENT_SHIFT];
+    }
+
+    private static int offset(int slot) {
+        return (slot & (SEGMENT_SLOTS - 1)) * SLOT_SIZE;
+    }
+
+    private static int hash(String contactId) {
+        int h = contactId.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * SlotIterator class decodes live slots a batch at a time
+     */
+    private final class SlotIterator implements Iterator<Contact> {
+        private final Contact[] batch = new Contact[ITERATOR_BATCH];
+        private int count;
+        private int next;
+        private int slot;  // Next slot to read
+
+        @Override
+        public boolean hasNext() {
+            if (next < count) {
+                return true;
+            }
+            next = 0;
+            count = 0;
+            long stamp = lock.readLock();
+            try {
+                ensureOpen();
+                for (; slot < slotsUsed && count < batch.length; slot++) {
+                    if (segment(slot).getInt(offset(slot)) < 0) {
+                        batch[count++] = decode(slot);
+                    }
+                }
+            } finally {
+                lock.unlockRead(stamp);
+            }
+            return count > 0;
+        }
+
+        @Override
+        public Contact next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Contact contact = batch[next];
+            batch[next++] = null;
+            return contact;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,283 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Unit tests for OffHeapContactStore class
+ * Tests the slot store and hash index against a reference map, slot reuse, copies and
+ * the memory-mapped variant, both directly and behind a ContactService
+ */
+public class OffHeapContactStoreTest {
+    @TempDir
+    Path tempDir;
+
+    // Store tests
+
+    @Test
+    @DisplayName("Store should match a reference map through random inserts, removes and updates")
+    public void testMatchesReferenceMap() throws IOException {
+        try (OffHeapContactStore store = OffHeapContactStore.allocate()) {
+            Map<String, String> expected = new HashMap<>();  // ID to address
+            List<String> live = new ArrayList<>();
+            Random random = new Random(42);
+
+            // Enough live contacts to span several segments and table resizes
+            for (int step = 0; step < 60_000; step++) {
+                int action = random.nextInt(5);
+                if (action < 3 || live.isEmpty()) {
+                    String id = "c" + step;
+                    assertTrue(store.insert(new Contact(id, "First", "Last", "5551234567", step + " Main St")));
+                    expected.put(id, step + " Main St");
+                    live.add(id);
+                } else if (action == 3) {
+                    String id = live.remove(random.nextInt(live.size()));
+                    assertEquals(expected.remove(id), store.remove(id).getAddress());
+                } else {
+                    String id = live.get(random.nextInt(live.size()));
+                    store.update(store.get(id), ContactField.ADDRESS, step + " Elm St");
+                    expected.put(id, step + " Elm St");
+                }
+            }
+
+            assertEquals(expected.size(), store.size());
+            for (Map.Entry<String, String> entry : expected.entrySet()) {
+                assertTrue(store.contains(entry.getKey()));
+                assertEquals(entry.getValue(), store.get(entry.getKey()).getAddress());
+            }
+            Set<String> iterated = new HashSet<>();
+            for (Contact contact : store) {
+                assertTrue(iterated.add(contact.getContactId()));
+            }
+            assertEquals(expected.keySet(), iterated);
+            assertNull(store.get("missing"));
+            assertNull(store.remove("missing"));
+        }
+    }
+
+    @Test
+    @DisplayName("IDs with equal hash codes should be told apart by the ID stored in the slot")
+    public void testHashCollisions() throws IOException {
+        try (OffHeapContactStore store = OffHeapContactStore.allocate()) {
+            // "Aa" and "BB" share a String hash code, and so does every concatenation of them
+            String[] ids = {"AaAa", "AaBB", "BBAa", "BBBB"};
+            for (String id : ids) {
+                assertTrue(store.insert(new Contact(id, id, "Last", "5551234567", "1 Main St")));
+            }
+            assertFalse(store.insert(new Contact("BBAa", "Other", "Last", "5551234567", "1 Main St")));
+
+            assertEquals("AaBB", store.remove("AaBB").getFirstName());
+            assertFalse(store.contains("AaBB"));
+            for (String id : new String[] {"AaAa", "BBAa", "BBBB"}) {
+                assertEquals(id, store.get(id).getFirstName());
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Deleted slots should be reused before the store grows")
+    public void testFreeListReusesSlots() throws IOException {
+        try (OffHeapContactStore store = OffHeapContactStore.allocate()) {
+            for (int round = 0; round < 5; round++) {
+                for (int i = 0; i < 1000; i++) {
+                    store.insert(new Contact("r" + round + "-" + i, "First", "Last", "5551234567", "1 Main St"));
+                }
+                for (int i = 0; i < 1000; i++) {
+                    store.remove("r" + round + "-" + i);
+                }
+            }
+
+            assertEquals(0, store.size());
+            assertEquals(1000, store.slotsUsed());
+            assertFalse(store.iterator().hasNext());
+        }
+    }
+
+    @Test
+    @DisplayName("Every read should return a new copy that does not write through to the store")
+    public void testReadsReturnCopies() throws IOException {
+        try (OffHeapContactStore store = OffHeapContactStore.allocate()) {
+            Contact original = new Contact("1", "John", "Doe", "5551234567", "1 Main St");
+            store.insert(original);
+            original.setFirstName("Changed");
+
+            Contact first = store.get("1");
+            assertEquals("John", first.getFirstName());
+            first.setFirstName("Jane");
+            assertEquals("John", store.get("1").getFirstName());
+            assertNotSame(store.get("1"), store.get("1"));
+            assertTrue(store.returnsCopies());
+        }
+    }
+
+    @Test
+    @DisplayName("Versions should be kept in the slot through updates, patches, iteration and slot reuse")
+    public void testVersionsKeptInSlot() throws IOException {
+        try (OffHeapContactStore store = OffHeapContactStore.allocate()) {
+            Contact contact = new Contact("1", "John", "Doe", "5551234567", "1 Main St");
+            for (int i = 0; i < 5; i++) {
+                contact.setAddress(i + " Main St");
+            }
+            store.insert(contact);
+            store.insert(new Contact("2", "Jane", "Doe", "5551234567", "2 Main St"));
+
+            assertEquals(5, store.get("1").getVersion());
+            assertEquals(6, store.update(store.get("1"), ContactField.PHONE, "0001112222").getVersion());
+            assertEquals(7, store.patch(store.get("1"), new ContactPatch("Jack", null, null, null), 6).getVersion());
+            assertThrows(ContactVersionConflictException.class,
+                    () -> store.patch(store.get("1"), new ContactPatch("Jim", null, null, null), 6));
+            assertEquals("Jack", store.get("1").getFirstName());
+            int seen = 0;
+            for (Contact stored : store) {
+                assertEquals(stored.getContactId().equals("1") ? 7 : 0, stored.getVersion());
+                seen++;
+            }
+            assertEquals(2, seen);
+
+            store.remove("1");
+            store.insert(new Contact("3", "Bob", "Doe", "5551234567", "3 Main St"));
+            assertEquals(0, store.get("3").getVersion());
+            assertEquals(2, store.slotsUsed());
+        }
+    }
+
+    @Test
+    @DisplayName("Invalid update should leave the stored record unchanged")
+    public void testInvalidUpdateLeavesSlot() throws IOException {
+        try (OffHeapContactStore store = OffHeapContactStore.allocate()) {
+            store.insert(new Contact("1", "John", "Doe", "5551234567", "1 Main St"));
+
+            assertThrows(IllegalArgumentException.class,
+                    () -> store.update(store.get("1"), ContactField.PHONE, "123"));
+            assertEquals("5551234567", store.get("1").getPhone());
+        }
+    }
+
+    @Test
+    @DisplayName("Index table should grow by powers of two up to one int-sized buffer, then refuse more contacts")
+    public void testTableCapacityBound() {
+        assertEquals(1024, OffHeapContactStore.tableCapacityFor(0));
+        assertEquals(1024, OffHeapContactStore.tableCapacityFor(768));
+        assertEquals(2048, OffHeapContactStore.tableCapacityFor(769));
+        assertEquals(OffHeapContactStore.MAX_TABLE_CAPACITY, OffHeapContactStore.tableCapacityFor(OffHeapContactStore.MAX_CONTACTS));
+        assertTrue(OffHeapContactStore.MAX_TABLE_CAPACITY * 8L <= Integer.MAX_VALUE);
+        assertThrows(IllegalStateException.class, () -> OffHeapContactStore.tableCapacityFor(OffHeapContactStore.MAX_CONTACTS + 1L));
+        assertThrows(IllegalStateException.class, () -> OffHeapContactStore.tableCapacityFor(Integer.MAX_VALUE + 1L));
+    }
+
+    @Test
+    @DisplayName("Mapped store should grow its file by whole segments and refuse use after close")
+    public void testMappedStore() throws IOException {
+        Path file = tempDir.resolve("contacts.slots");
+        OffHeapContactStore store = OffHeapContactStore.map(file);
+        int count = OffHeapContactStore.SEGMENT_SLOTS + 1;
+        for (int i = 0; i < count; i++) {
+            store.insert(new Contact("m" + i, "Zo\u00eb", "Last", "0012345678", i + " Main St"));
+        }
+
+        assertEquals(2L * OffHeapContactStore.SEGMENT_SLOTS * OffHeapContactStore.SLOT_SIZE, Files.size(file));
+        assertEquals("Zo\u00eb", store.get("m" + (count - 1)).getFirstName());
+        assertEquals("0012345678", store.get("m0").getPhone());
+        assertTrue(store.allocatedBytes() >= Files.size(file));
+
+        store.close();
+        assertThrows(IllegalStateException.class, () -> store.get("m0"));
+        assertEquals(0, store.allocatedBytes());
+    }
+
+    // Service tests
+
+    @Test
+    @DisplayName("Service backed by an off-heap store should support every operation")
+    public void testServiceOperations() throws IOException {
+        try (OffHeapContactStore store = OffHeapContactStore.allocate()) {
+            ContactService service = new ContactService(store);
+            service.addContact("1", "John", "Doe", "5551234567", "1 Main St");
+            List<Contact> batch = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                batch.add(new Contact("b" + i, "First", "Last", "5559876543", i + " Elm St"));
+            }
+            assertTrue(service.addContacts(batch).isCommitted());
+            assertFalse(service.addContacts(List.of(new Contact("b5", "A", "B", "5551234567", "C"))).isCommitted());
+
+            service.updateFirstName("1", "Jane");
+            service.updatePhone("1", "5550000000");
+            assertThrows(IllegalArgumentException.class, () -> service.updateLastName("1", "ThisNameIsTooLong"));
+            Contact contact = service.getContact("1");
+            assertEquals("Jane", contact.getFirstName());
+            assertEquals("Doe", contact.getLastName());
+            assertEquals("5550000000", contact.getPhone());
+
+            service.deleteContact("b0");
+            assertFalse(service.contactExists("b0"));
+            assertThrows(IllegalArgumentException.class, () -> service.getContact("b0"));
+            assertThrows(IllegalArgumentException.class, () -> service.addContact(new Contact("1", "A", "B", "5551234567", "C")));
+            assertEquals(100, service.getContactCount());
+        }
+    }
+
+    @Test
+    @DisplayName("Indexes over an off-heap store should return current copies and forget deleted contacts")
+    public void testServiceIndexes() throws IOException {
+        try (OffHeapContactStore store = OffHeapContactStore.allocate()) {
+            ContactService service = new ContactService(store);
+            service.addContact("1", "John", "Doe", "5551234567", "12 Main St");
+            service.addContact("2", "Jack", "Smith", "5551234567", "34 Oak Ave");
+            service.enablePhoneIndex();
+            service.enableNameIndex(false);
+            service.enableAddressIndex();
+
+            service.updateAddress("1", "56 Main St");
+            List<Contact> byPhone = service.findByPhone("5551234567");
+            assertEquals(2, byPhone.size());
+            for (Contact contact : byPhone) {
+                if (contact.getContactId().equals("1")) {
+                    assertEquals("56 Main St", contact.getAddress());
+                }
+            }
+            assertEquals("56 Main St", service.findByNamePrefix("Jo", 10).get(0).getAddress());
+            assertEquals(1, service.findByAddress("56 main", 10).size());
+            assertTrue(service.findByAddress("12 Main", 10).isEmpty());
+
+            service.deleteContact("2");
+            assertEquals(1, service.findByPhone("5551234567").size());
+            assertTrue(service.findByNamePrefix("Ja", 10).isEmpty());
+            assertTrue(service.findByAddress("Oak", 10).isEmpty());
+        }
+    }
+
+    @Test
+    @DisplayName("Snapshot of an off-heap service should load back every contact")
+    public void testServiceSnapshot() throws IOException {
+        try (OffHeapContactStore store = OffHeapContactStore.map(tempDir.resolve("contacts.slots"))) {
+            ContactService service = new ContactService(store);
+            for (int i = 0; i < 500; i++) {
+                service.addContact("s" + i, "First", "Last", String.format("%010d", i), i + " Main St");
+            }
+            Path file = tempDir.resolve("contacts.snap");
+
+            assertEquals(500, ContactSnapshot.save(service, file));
+            ContactService loaded = ContactSnapshot.load(file);
+            assertEquals(500, loaded.getContactCount());
+            assertEquals("499 Main St", loaded.getContact("s499").getAddress());
+        }
+    }
+
+    @Test
+    @DisplayName("Service constructor should reject a null store")
+    public void testNullStore() {
+        assertThrows(IllegalArgumentException.class, () -> new ContactService(null));
+        assertThrows(IllegalArgumentException.class, () -> new ContactService(4, null));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,343 @@
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * PackedIdContactStore class keeps contacts on the heap in open-addressing tables keyed
+ * by the contact ID packed into a long, so a lookup costs no String hashing, no equals
+ * and no walk through map nodes.
+ *
+ * An ID of digits, ASCII letters, '-' and '_' packs into 6 bits per character with its
+ * length in the top 4 bits, which fits every valid ID (at most 10 characters) in one
+ * long. IDs using any other character go to a ConcurrentHashMap fallback.
+ *
+ * Keys are spread over SEGMENTS tables, each with parallel long[] keys and Contact[]
+ * values, linear probing and backward-shift deletion. Slots are chosen from the ID's
+ * String.hashCode, which the String caches, rather than from the packed key, so the
+ * table read can start while the ID is still being packed for the comparison. Writers
+ * take the segment's StampedLock, so mutations of different segments run in parallel;
+ * readers probe optimistically and only fall back to the read lock if a writer raced
+ * them.
+ */
+public final class PackedIdContactStore implements ContactStore {
+    static final int SEGMENTS = 64;
+    private static final int SEGMENT_SHIFT = 26;  // Top 6 hash bits pick the segment
+    private static final long NO_KEY = -1L;  // Empty slot, and what pack returns for an unpackable ID
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int MAX_PACKED_LENGTH = 10;
+    private static final String ALPHABET = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz-_";
+    private static final byte[] CODES = new byte[128];  // 6-bit code per ASCII character, -1 if not packable
+
+    static {
+        Arrays.fill(CODES, (byte) -1);
+        for (int i = 0; i < ALPHABET.length(); i++) {
+            CODES[ALPHABET.charAt(i)] = (byte) i;
+        }
+    }
+
+    /**
+     * Table class pairs the key and value arrays so readers always see a matching pair
+     */
+    private static final class Table {
+        final long[] keys;
+        final Contact[] values;
+        final int mask;
+
+        Table(int capacity) {
+            keys = new long[capacity];
+            Arrays.fill(keys, NO_KEY);
+            values = new Contact[capacity];
+            mask = capacity - 1;
+        }
+    }
+
+    /**
+     * Segment class is one independently locked table
+     */
+    private static final class Segment {
+        final StampedLock lock = new StampedLock();
+        volatile Table table = new Table(INITIAL_CAPACITY);
+        volatile int size;  // Written under the write lock
+    }
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final ConcurrentHashMap<String, Contact> unpacked = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor creates an empty store
+     */
+    public PackedIdContactStore() {
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    @Override
+    public Contact get(String contactId) {
+        int hash = spread(contactId.hashCode());
+        Segment segment = segments[hash >>> SEGMENT_SHIFT];
+        long stamp = segment.lock.tryOptimisticRead();
+        Table table = segment.table;
+        if (table.keys[hash & table.mask] == NO_KEY && segment.lock.validate(stamp) && unpacked.isEmpty()) {
+            return null;  // An empty home slot proves a miss without packing the ID
+        }
+        long key = pack(contactId);
+        if (key == NO_KEY) {
+            return unpacked.get(contactId);
+        }
+        Contact found = lookup(table, key, hash);
+        if (!segment.lock.validate(stamp)) {
+            stamp = segment.lock.readLock();
+            try {
+                found = lookup(segment.table, key, hash);
+            } finally {
+                segment.lock.unlockRead(stamp);
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public boolean contains(String contactId) {
+        return get(contactId) != null;
+    }
+
+    @Override
+    public int size() {
+        int size = unpacked.size();
+        for (Segment segment : segments) {
+            size += segment.size;
+        }
+        return size;
+    }
+
+    @Override
+    public boolean insert(Contact contact) {
+        String id = contact.getContactId();
+        long key = pack(id);
+        if (key == NO_KEY) {
+            return unpacked.putIfAbsent(id, contact) == null;
+        }
+        int hash = spread(id.hashCode());
+        Segment segment = segments[hash >>> SEGMENT_SHIFT];
+        long stamp = segment.lock.writeLock();
+        try {
+            return putLocked(segment, key, hash, contact);
+        } finally {
+            segment.lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void insertAll(Contact[] batch) {
+        for (Contact contact : batch) {
+            insert(contact);
+        }
+    }
+
+    @Override
+    public Contact remove(String contactId) {
+        long key = pack(contactId);
+        if (key == NO_KEY) {
+            return unpacked.remove(contactId);
+        }
+        int hash = spread(contactId.hashCode());
+        Segment segment = segments[hash >>> SEGMENT_SHIFT];
+        long stamp = segment.lock.writeLock();
+        try {
+            Table t = segment.table;
+            for (int slot = hash & t.mask; t.keys[slot] != NO_KEY; slot = (slot + 1) & t.mask) {
+                if (t.keys[slot] == key) {
+                    Contact removed = t.values[slot];
+                    deleteSlot(t, slot);
+                    segment.size--;
+                    return removed;
+                }
+            }
+            return null;
+        } finally {
+            segment.lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public Contact update(Contact contact, ContactField field, String value) {
+        field.set(contact, value);
+        return contact;
+    }
+
+    @Override
+    public boolean returnsCopies() {
+        return false;
+    }
+
+    /**
+     * Walks one segment at a time, copying its values under the read lock so entries
+     * shifted back by a concurrent delete are neither missed nor repeated
+     */
+    @Override
+    public Iterator<Contact> iterator() {
+        return new SegmentIterator();
+    }
+
+    /**
+     * Packs an ID of at most 10 digits, ASCII letters, '-' or '_' into a long, which is
+     * never -1 since the top 4 bits hold a length of at most 10
+     * @param contactId ID to pack
+     * @return Packed ID, or -1 if the ID has another character or is too long
+     */
+    static long pack(String contactId) {
+        int length = contactId.length();
+        if (length > MAX_PACKED_LENGTH) {
+            return NO_KEY;
+        }
+        long key = length;
+        for (int i = 0; i < length; i++) {
+            char c = contactId.charAt(i);
+            int code = c < CODES.length ? CODES[c] : -1;
+            if (code < 0) {
+                return NO_KEY;
+            }
+            key = key << 6 | code;
+        }
+        // Left-align the characters so the length always lands in the top 4 bits
+        return key << (6 * (MAX_PACKED_LENGTH - length));
+    }
+
+    private static Contact lookup(Table t, long key, int hash) {
+        for (int slot = hash & t.mask; ; slot = (slot + 1) & t.mask) {
+            long k = t.keys[slot];
+            if (k == key) {
+                return t.values[slot];
+            }
+            if (k == NO_KEY) {
+                return null;
+            }
+        }
+    }
+
+    private static boolean putLocked(Segment segment, long key, int hash, Contact contact) {
+        if ((segment.size + 1) * 4L > segment.table.keys.length * 3L) {
+            resize(segment);
+        }
+        Table t = segment.table;
+        int slot = hash & t.mask;
+        for (; t.keys[slot] != NO_KEY; slot = (slot + 1) & t.mask) {
+            if (t.keys[slot] == key) {
+                return false;
+            }
+        }
+        t.values[slot] = contact;
+        t.keys[slot] = key;
+        segment.size++;
+        return true;
+    }
+
+    /**
+     * Empties a slot and shifts later entries of the probe run back, so no tombstones are needed
+     */
+    private static void deleteSlot(Table t, int slot) {
+        int hole = slot;
+        for (int next = (hole + 1) & t.mask; t.keys[next] != NO_KEY; next = (next + 1) & t.mask) {
+            int home = hashOfKey(t.keys[next]) & t.mask;
+            // Move the entry back if its home is not cyclically within (hole, next]
+            if (((next - home) & t.mask) >= ((next - hole) & t.mask)) {
+                t.keys[hole] = t.keys[next];
+                t.values[hole] = t.values[next];
+                hole = next;
+            }
+        }
+        t.keys[hole] = NO_KEY;
+        t.values[hole] = null;
+    }
+
+    private static void resize(Segment segment) {
+        Table old = segment.table;
+        Table grown = new Table(old.keys.length * 2);
+        for (int i = 0; i < old.keys.length; i++) {
+            long key = old.keys[i];
+            if (key != NO_KEY) {
+                int slot = hashOfKey(key) & grown.mask;
+                while (grown.keys[slot] != NO_KEY) {
+                    slot = (slot + 1) & grown.mask;
+                }
+                grown.keys[slot] = key;
+                grown.values[slot] = old.values[i];
+            }
+        }
+        segment.table = grown;
+    }
+
+    /**
+     * Spreads a String hash code so both its top bits (the segment) and low bits (the slot) vary
+     */
+    private static int spread(int hashCode) {
+        int h = hashCode * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Recomputes the spread String.hashCode of a packed ID without building the String,
+     * for entries that move while resizing or deleting
+     */
+    private static int hashOfKey(long key) {
+        int length = (int) (key >>> 60);
+        int h = 0;
+        for (int i = 0; i < length; i++) {
+            h = 31 * h + ALPHABET.charAt((int) (key >>> (54 - 6 * i)) & 63);
+        }
+        return spread(h);
+    }
+
+    /**
+     * SegmentIterator class copies one segment's contacts at a time, then the fallback map's
+     */
+    private final class SegmentIterator implements Iterator<Contact> {
+        private Contact[] batch = new Contact[0];
+        private int next;
+        private int segment;
+        private Iterator<Contact> fallback;
+
+        @Override
+        public boolean hasNext() {
+            while (next == batch.length) {
+                if (segment == SEGMENTS) {
+                    if (fallback == null) {
+                        fallback = unpacked.values().iterator();
+                    }
+                    return fallback.hasNext();
+                }
+                batch = copy(segments[segment++]);
+                next = 0;
+            }
+            return true;
+        }
+
+        @Override
+        public Contact next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return next < batch.length ? batch[next++] : fallback.next();
+        }
+
+        private Contact[] copy(Segment s) {
+            long stamp = s.lock.readLock();
+            try {
+                Contact[] values = s.table.values;
+                Contact[] live = new Contact[s.size];
+                int count = 0;
+                for (Contact contact : values) {
+                    if (contact != null) {
+                        live[count++] = contact;
+                    }
+                }
+                return live;
+            } finally {
+                s.lock.unlockRead(stamp);
+            }
+        }
+    }
+}
\ No newline at end of file
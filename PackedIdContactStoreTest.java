@@ -0,0 +1,110 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Unit tests for PackedIdContactStore class
+ * Tests ID packing, the segmented tables against a reference map and the fallback for
+ * IDs that cannot be packed
+ */
+public class PackedIdContactStoreTest {
+    // Packing tests
+
+    @Test
+    @DisplayName("Distinct packable IDs should pack to distinct keys other than -1")
+    public void testPackIsInjective() {
+        String[] ids = {"", "0", "00", "a", "a0", "0a", "A", "-", "_", "zzzzzzzzzz", "__________", "1234567890", "Z9-_aB"};
+        Set<Long> keys = new HashSet<>();
+        for (String id : ids) {
+            long key = PackedIdContactStore.pack(id);
+            assertNotEquals(-1, key, id);
+            assertTrue(keys.add(key), id);
+        }
+    }
+
+    @Test
+    @DisplayName("IDs with other characters or over 10 characters should not pack")
+    public void testUnpackableIds() {
+        assertEquals(-1, PackedIdContactStore.pack("id.1"));
+        assertEquals(-1, PackedIdContactStore.pack("j\u00f6rg"));
+        assertEquals(-1, PackedIdContactStore.pack("a b"));
+        assertEquals(-1, PackedIdContactStore.pack("12345678901"));
+    }
+
+    // Store tests
+
+    @Test
+    @DisplayName("Store should match a reference map through random inserts, removes and updates")
+    public void testMatchesReferenceMap() {
+        PackedIdContactStore store = new PackedIdContactStore();
+        Map<String, Contact> expected = new HashMap<>();
+        List<String> live = new ArrayList<>();
+        Random random = new Random(42);
+
+        for (int step = 0; step < 50_000; step++) {
+            int action = random.nextInt(5);
+            if (action < 3 || live.isEmpty()) {
+                // One ID in ten goes to the fallback map
+                String id = (step % 10 == 0 ? "u." : "c") + step;
+                Contact contact = new Contact(id, "First", "Last", "5551234567", "1 Main St");
+                assertTrue(store.insert(contact));
+                assertFalse(store.insert(new Contact(id, "Other", "Last", "5551234567", "1 Main St")));
+                expected.put(id, contact);
+                live.add(id);
+            } else if (action == 3) {
+                String id = live.remove(random.nextInt(live.size()));
+                assertSame(expected.remove(id), store.remove(id));
+            } else {
+                String id = live.get(random.nextInt(live.size()));
+                assertSame(expected.get(id), store.update(store.get(id), ContactField.ADDRESS, step + " Elm St"));
+            }
+        }
+
+        assertEquals(expected.size(), store.size());
+        for (Map.Entry<String, Contact> entry : expected.entrySet()) {
+            assertSame(entry.getValue(), store.get(entry.getKey()));
+        }
+        Set<String> iterated = new HashSet<>();
+        for (Contact contact : store) {
+            assertTrue(iterated.add(contact.getContactId()));
+        }
+        assertEquals(expected.keySet(), iterated);
+        assertNull(store.get("missing"));
+        assertNull(store.get("not.packed"));
+        assertNull(store.remove("missing"));
+        assertFalse(store.contains("missing"));
+    }
+
+    @Test
+    @DisplayName("Service backed by a packed-ID store should return the stored contacts themselves")
+    public void testServiceOperations() {
+        PackedIdContactStore store = new PackedIdContactStore();
+        ContactService service = new ContactService(store);
+        service.addContact("1", "John", "Doe", "5551234567", "1 Main St");
+        service.addContact("x.y", "Jack", "Smith", "5559876543", "2 Oak Ave");
+        List<Contact> batch = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            batch.add(new Contact("b" + i, "First", "Last", "5550000000", i + " Elm St"));
+        }
+        assertTrue(service.addContacts(batch).isCommitted());
+
+        service.updateFirstName("1", "Jane");
+        service.updateLastName("x.y", "Jones");
+        assertEquals("Jane", service.getContact("1").getFirstName());
+        assertEquals("Jones", service.getContact("x.y").getLastName());
+        assertSame(batch.get(7), service.getContact("b7"));
+        service.deleteContact("b7");
+        assertFalse(service.contactExists("b7"));
+        assertThrows(IllegalArgumentException.class, () -> service.addContact(new Contact("1", "A", "B", "5551234567", "C")));
+        assertEquals(1001, service.getContactCount());
+        assertFalse(store.returnsCopies());
+    }
+}
\ No newline at end of file
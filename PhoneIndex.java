@@ -0,0 +1,239 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * PhoneIndex class maps phone numbers to contacts for ContactService.findByPhone.
+ *
+ * Phones are exactly 10 digits, so each one is packed into a long and used directly
+ * as the key of an open-addressing table with linear probing; nothing is boxed. A slot
+ * holds either a single Contact or an immutable Contact[] when several contacts share
+ * a phone. Writers take a StampedLock; readers probe optimistically and only fall back
+ * to the read lock if a writer raced them.
+ */
+final class PhoneIndex implements ContactListener {
+    private static final long EMPTY = -1L;  // Packed phones are never negative
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /**
+     * Table class pairs the key and value arrays so readers always see a matching pair
+     */
+    private static final class Table {
+        final long[] keys;
+        final Object[] values;  // Contact or Contact[]
+        final int mask;
+
+        Table(int capacity) {
+            keys = new long[capacity];
+            Arrays.fill(keys, EMPTY);
+            values = new Object[capacity];
+            mask = capacity - 1;
+        }
+    }
+
+    private final StampedLock lock = new StampedLock();
+    private volatile Table table = new Table(INITIAL_CAPACITY);
+    private int size;  // Distinct phones, guarded by the write lock
+
+    /**
+     * Returns every indexed contact with the given phone
+     * @param phone Phone number to look up
+     * @return Matching contacts, empty if none or the phone is not 10 digits
+     */
+    List<Contact> find(CharSequence phone) {
+        if (!ContactValidator.isValidPhone(phone)) {
+            return Collections.emptyList();
+        }
+        long key = ContactRecordFormat.packPhone(phone);
+        long stamp = lock.tryOptimisticRead();
+        Object found = lookup(table, key);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                found = lookup(table, key);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        if (found == null) {
+            return Collections.emptyList();
+        }
+        if (found instanceof Contact) {
+            return Collections.singletonList((Contact) found);
+        }
+        List<Contact> matches = new ArrayList<>();
+        Collections.addAll(matches, (Contact[]) found);
+        return matches;
+    }
+
+    /**
+     * @return Number of distinct phone numbers indexed
+     */
+    int distinctPhones() {
+        long stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public void contactAdded(Contact contact) {
+        add(contact.getPackedPhone(), contact);
+    }
+
+    @Override
+    public void contactDeleted(Contact contact) {
+        remove(contact.getPackedPhone(), contact);
+    }
+
+    @Override
+    public void contactUpdated(Contact contact, ContactField field, String oldValue) {
+        long oldKey = field == ContactField.PHONE ? ContactRecordFormat.packPhone(oldValue) : EMPTY;
+        if (oldKey != EMPTY && oldKey != contact.getPackedPhone()) {
+            long stamp = lock.writeLock();
+            try {
+                removeLocked(oldKey, contact);
+                addLocked(contact.getPackedPhone(), contact);
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+    }
+
+    private static Object lookup(Table t, long key) {
+        for (int slot = slotFor(key, t.mask); ; slot = (slot + 1) & t.mask) {
+            long k = t.keys[slot];
+            if (k == key) {
+                return t.values[slot];
+            }
+            if (k == EMPTY) {
+                return null;
+            }
+        }
+    }
+
+    private void add(long key, Contact contact) {
+        long stamp = lock.writeLock();
+        try {
+            addLocked(key, contact);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private void remove(long key, Contact contact) {
+        long stamp = lock.writeLock();
+        try {
+            removeLocked(key, contact);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private void addLocked(long key, Contact contact) {
+        if ((size + 1) * 4L > table.keys.length * 3L) {
+            resize(table.keys.length * 2);
+        }
+        Table t = table;
+        int slot = slotFor(key, t.mask);
+        while (t.keys[slot] != EMPTY && t.keys[slot] != key) {
+            slot = (slot + 1) & t.mask;
+        }
+        Object existing = t.values[slot];
+        if (existing == null) {
+            t.values[slot] = contact;
+            t.keys[slot] = key;
+            size++;
+        } else if (existing instanceof Contact) {
+            t.values[slot] = new Contact[] {(Contact) existing, contact};
+        } else {
+            Contact[] old = (Contact[]) existing;
+            Contact[] grown = Arrays.copyOf(old, old.length + 1);
+            grown[old.length] = contact;
+            t.values[slot] = grown;
+        }
+    }
+
+    private void removeLocked(long key, Contact contact) {
+        Table t = table;
+        int slot = slotFor(key, t.mask);
+        while (t.keys[slot] != key) {
+            if (t.keys[slot] == EMPTY) {
+                return;
+            }
+            slot = (slot + 1) & t.mask;
+        }
+        Object existing = t.values[slot];
+        // Match by ID, since a store that returns copies reports deletes with a fresh copy
+        if (existing instanceof Contact) {
+            if (existing.equals(contact)) {
+                deleteSlot(t, slot);
+            }
+            return;
+        }
+        Contact[] old = (Contact[]) existing;
+        int at = -1;
+        for (int i = 0; i < old.length; i++) {
+            if (old[i].equals(contact)) {
+                at = i;
+                break;
+            }
+        }
+        if (at < 0) {
+            return;
+        }
+        if (old.length == 2) {
+            t.values[slot] = old[1 - at];
+        } else {
+            Contact[] shrunk = new Contact[old.length - 1];
+            System.arraycopy(old, 0, shrunk, 0, at);
+            System.arraycopy(old, at + 1, shrunk, at, old.length - at - 1);
+            t.values[slot] = shrunk;
+        }
+    }
+
+    /**
+     * Empties a slot and shifts later entries of the probe run back, so no tombstones are needed
+     */
+    private void deleteSlot(Table t, int slot) {
+        int hole = slot;
+        for (int next = (hole + 1) & t.mask; t.keys[next] != EMPTY; next = (next + 1) & t.mask) {
+            int home = slotFor(t.keys[next], t.mask);
+            // Move the entry back if its home is not cyclically within (hole, next]
+            if (((next - home) & t.mask) >= ((next - hole) & t.mask)) {
+                t.keys[hole] = t.keys[next];
+                t.values[hole] = t.values[next];
+                hole = next;
+            }
+        }
+        t.keys[hole] = EMPTY;
+        t.values[hole] = null;
+        size--;
+    }
+
+    private void resize(int capacity) {
+        Table old = table;
+        Table grown = new Table(capacity);
+        for (int i = 0; i < old.keys.length; i++) {
+            long key = old.keys[i];
+            if (key != EMPTY) {
+                int slot = slotFor(key, grown.mask);
+                while (grown.keys[slot] != EMPTY) {
+                    slot = (slot + 1) & grown.mask;
+                }
+                grown.keys[slot] = key;
+                grown.values[slot] = old.values[i];
+            }
+        }
+        table = grown;
+    }
+
+    private static int slotFor(long key, int mask) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}
\ No newline at end of file
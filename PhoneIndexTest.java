@@ -0,0 +1,71 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Unit tests for PhoneIndex class
+ * Tests the open-addressing table against a reference map through growth and removals
+ */
+public class PhoneIndexTest {
+    @Test
+    @DisplayName("Index should match a reference map through random adds, removes and phone changes")
+    public void testMatchesReferenceMap() {
+        PhoneIndex index = new PhoneIndex();
+        Map<String, List<Contact>> expected = new HashMap<>();
+        List<Contact> live = new ArrayList<>();
+        Random random = new Random(42);
+
+        for (int step = 0; step < 20_000; step++) {
+            int action = random.nextInt(4);
+            if (action < 2 || live.isEmpty()) {
+                // Few distinct phones, so many contacts share one
+                String phone = String.format("%010d", random.nextInt(3000) * 7919L);
+                Contact contact = new Contact("c" + step, "First", "Last", phone, "1 Main St");
+                live.add(contact);
+                expected.computeIfAbsent(phone, p -> new ArrayList<>()).add(contact);
+                index.contactAdded(contact);
+            } else if (action == 2) {
+                Contact contact = live.remove(random.nextInt(live.size()));
+                expected.get(contact.getPhone()).remove(contact);
+                index.contactDeleted(contact);
+            } else {
+                Contact contact = live.get(random.nextInt(live.size()));
+                String oldPhone = contact.getPhone();
+                contact.setPhone(String.format("%010d", random.nextInt(3000) * 7919L));
+                expected.get(oldPhone).remove(contact);
+                expected.computeIfAbsent(contact.getPhone(), p -> new ArrayList<>()).add(contact);
+                index.contactUpdated(contact, ContactField.PHONE, oldPhone);
+            }
+        }
+
+        int distinct = 0;
+        for (Map.Entry<String, List<Contact>> entry : expected.entrySet()) {
+            List<Contact> found = index.find(entry.getKey());
+            assertEquals(entry.getValue().size(), found.size(), entry.getKey());
+            assertTrue(found.containsAll(entry.getValue()));
+            if (!entry.getValue().isEmpty()) {
+                distinct++;
+            }
+        }
+        assertEquals(distinct, index.distinctPhones());
+    }
+
+    @Test
+    @DisplayName("Changing a phone to the same value should leave a single entry")
+    public void testUpdateToSamePhone() {
+        PhoneIndex index = new PhoneIndex();
+        Contact contact = new Contact("123", "John", "Doe", "5551234567", "123 Main St");
+        index.contactAdded(contact);
+
+        index.contactUpdated(contact, ContactField.PHONE, "5551234567");
+        index.contactUpdated(contact, ContactField.ADDRESS, "1 Old Rd");
+
+        assertEquals(List.of(contact), index.find("5551234567"));
+    }
+}
\ No newline at end of file
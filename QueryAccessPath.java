@@ -0,0 +1,34 @@
+/**
+ * QueryAccessPath enum names where a QueryPlan reads its candidate contacts from
+ */
+public enum QueryAccessPath {
+    /**
+     * The one contact with the ID a contactIdEquals condition names
+     */
+    CONTACT_ID,
+
+    /**
+     * The phone index, for a phone equalTo condition
+     */
+    PHONE_INDEX,
+
+    /**
+     * A name prefix index, for a first or last name equalTo, startsWith or startsWithIgnoreCase condition
+     */
+    NAME_INDEX,
+
+    /**
+     * The NAME sort index, for a last name equalTo or startsWith condition
+     */
+    NAME_SORT_INDEX,
+
+    /**
+     * The trigram address index, for an address containsIgnoreCase condition
+     */
+    ADDRESS_INDEX,
+
+    /**
+     * Every contact, tested in parallel on the common fork-join pool
+     */
+    SCAN
+}
\ No newline at end of file
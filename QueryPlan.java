@@ -0,0 +1,71 @@
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * QueryPlan class is how ContactService.plan chose to run a ContactQuery: the access path
+ * supplying candidate contacts, the condition it answers, and how many candidates it
+ * expected. Every candidate is tested against the whole query, so the plan changes how
+ * much work a query does but never which contacts it returns.
+ */
+public final class QueryPlan {
+    private final ContactQuery query;
+    private final QueryAccessPath accessPath;
+    private final ContactQuery indexedCondition;  // Null for SCAN
+    private final int estimatedCandidates;
+    private final Supplier<Stream<Contact>> candidates;
+
+    QueryPlan(ContactQuery query, QueryAccessPath accessPath, ContactQuery indexedCondition,
+              int estimatedCandidates, Supplier<Stream<Contact>> candidates) {
+        this.query = query;
+        this.accessPath = accessPath;
+        this.indexedCondition = indexedCondition;
+        this.estimatedCandidates = estimatedCandidates;
+        this.candidates = candidates;
+    }
+
+    /**
+     * @return Query this plan runs
+     */
+    public ContactQuery getQuery() {
+        return query;
+    }
+
+    /**
+     * @return Where candidate contacts come from
+     */
+    public QueryAccessPath getAccessPath() {
+        return accessPath;
+    }
+
+    /**
+     * @return Condition of the query the access path answers, or null for SCAN
+     */
+    public ContactQuery getIndexedCondition() {
+        return indexedCondition;
+    }
+
+    /**
+     * @return Candidates the access path was expected to supply when planned; an index
+     *         walk stops counting once it exceeds a cheaper alternative
+     */
+    public int getEstimatedCandidates() {
+        return estimatedCandidates;
+    }
+
+    /**
+     * Runs the plan against the service's current contacts. Candidates are read and tested
+     * only as the stream is consumed, so a limit or a short-circuiting terminal operation
+     * stops the work early. A SCAN stream is parallel and unordered; index streams are
+     * sequential, in index order. Each call runs the plan again.
+     * @return Matching contacts
+     */
+    public Stream<Contact> stream() {
+        return candidates.get().filter(query::test);
+    }
+
+    @Override
+    public String toString() {
+        String source = indexedCondition == null ? accessPath.toString() : accessPath + " on " + indexedCondition;
+        return "QueryPlan[" + source + " (~" + estimatedCandidates + " candidates), filter " + query + ']';
+    }
+}
\ No newline at end of file
@@ -0,0 +1,780 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * ShardedContactService class hash-partitions contacts across independent ContactService
+ * shards, each with its own store, lock stripes and indexes, so very large collections
+ * spread their contention and their maps over several smaller structures.
+ *
+ * Point operations go to the one shard that owns the contact ID. getContactCount, bulk
+ * adds and the find methods fan out over every shard in parallel on the common fork-join
+ * pool and merge the results; the find methods return what a single ContactService
+ * holding the same contacts would.
+ *
+ * reshard changes the number of shards online. Old shards are migrated one at a time:
+ * while a shard's contacts are copied to the new shards, only operations on that shard
+ * wait, and once it has moved they are routed to the new shards. Every shard has a
+ * read-write gate for this; mutations and fan-outs hold it for reading, migration for
+ * writing. getContact and contactExists take no gate: they read the shard and then check
+ * it has not been migrated meanwhile, retrying on the new shards if it has.
+ * Contacts are copied when they move, so Contact objects obtained before a reshard no
+ * longer belong to the service afterwards.
+ */
+public class ShardedContactService {
+    private static final int DEFAULT_SHARD_COUNT = 16;
+
+    /**
+     * Shard class is one ContactService and the gate that lets it be migrated
+     */
+    private static final class Shard {
+        final ContactService service;
+        final StampedLock gate = new StampedLock();
+        volatile Shard[] movedTo;  // Set under the write gate once the contacts live in a new layout
+
+        Shard(ContactService service) {
+            this.service = service;
+        }
+    }
+
+    /**
+     * Routing class maps IDs to shards while the caller holds every read gate of a layout
+     */
+    private static final class Routing {
+        final Shard[] layout;
+        final ContactService[] live;  // Every shard that currently owns contacts
+
+        Routing(Shard[] layout) {
+            this.layout = layout;
+            Shard[] target = null;
+            List<ContactService> services = new ArrayList<>();
+            for (Shard shard : layout) {
+                if (shard.movedTo == null) {
+                    services.add(shard.service);
+                } else {
+                    target = shard.movedTo;
+                }
+            }
+            if (target != null) {
+                for (Shard shard : target) {
+                    services.add(shard.service);
+                }
+            }
+            live = services.toArray(new ContactService[0]);
+        }
+
+        ContactService serviceFor(String contactId) {
+            Shard shard = layout[indexFor(contactId, layout.length)];
+            Shard[] moved = shard.movedTo;
+            return moved == null ? shard.service : moved[indexFor(contactId, moved.length)].service;
+        }
+    }
+
+    private final Supplier<ContactStore> stores;
+    private volatile Shard[] shards;
+    private boolean phoneIndex;  // Index flags are guarded by this, like reshard
+    private boolean nameIndex;
+    private boolean foldedNameIndex;
+    private boolean addressIndex;
+    private final boolean[] sortIndexes = new boolean[ContactSortOrder.values().length];
+
+    /**
+     * Constructor creates a service with the default number of heap-backed shards
+     */
+    public ShardedContactService() {
+        this(DEFAULT_SHARD_COUNT);
+    }
+
+    /**
+     * Constructor creates a service with the given number of heap-backed shards
+     * @param shardCount Number of shards
+     * @throws IllegalArgumentException if shardCount is less than 1
+     */
+    public ShardedContactService(int shardCount) {
+        this(shardCount, HeapContactStore::new);
+    }
+
+    /**
+     * Constructor creates a service whose shards keep contacts in stores from a factory
+     * @param shardCount Number of shards
+     * @param stores Supplies a new empty store for every shard, including those created by reshard
+     * @throws IllegalArgumentException if shardCount is less than 1 or stores is null
+     */
+    public ShardedContactService(int shardCount, Supplier<ContactStore> stores) {
+        if (stores == null) {
+            throw new IllegalArgumentException("Store factory cannot be null");
+        }
+        this.stores = stores;
+        this.shards = newLayout(shardCount);
+    }
+
+    /**
+     * @return Number of shards contacts are spread over once any reshard in progress ends
+     */
+    public int getShardCount() {
+        Shard[] layout = shards;
+        Shard[] moved = layout[0].movedTo;
+        return moved == null ? layout.length : moved.length;
+    }
+
+    // Point operations
+
+    /**
+     * Adds a new contact with unique ID
+     * @param contact Contact object to add
+     * @throws IllegalArgumentException if contact is null or contactId already exists
+     */
+    public void addContact(Contact contact) {
+        if (contact == null) {
+            throw new IllegalArgumentException("Contact cannot be null");
+        }
+        route(contact.getContactId(), service -> {
+            service.addContact(contact);
+            return null;
+        });
+    }
+
+    /**
+     * Adds a new contact by creating Contact object with provided parameters
+     * @param contactId Unique identifier for the contact
+     * @param firstName First name of the contact
+     * @param lastName Last name of the contact
+     * @param phone Phone number of the contact
+     * @param address Address of the contact
+     * @throws IllegalArgumentException if contactId already exists or parameters are invalid
+     */
+    public void addContact(String contactId, String firstName, String lastName, String phone, String address) {
+        addContact(new Contact(contactId, firstName, lastName, phone, address));
+    }
+
+    /**
+     * Deletes a contact by contact ID
+     * @param contactId ID of the contact to delete
+     * @throws IllegalArgumentException if contactId is null or contact doesn't exist
+     */
+    public void deleteContact(String contactId) {
+        route(contactId, service -> {
+            service.deleteContact(contactId);
+            return null;
+        });
+    }
+
+    /**
+     * Updates the first name of a contact
+     * @param contactId ID of the contact to update
+     * @param firstName New first name
+     * @throws IllegalArgumentException if contactId is null, contact doesn't exist, or firstName is invalid
+     */
+    public void updateFirstName(String contactId, String firstName) {
+        route(contactId, service -> {
+            service.updateFirstName(contactId, firstName);
+            return null;
+        });
+    }
+
+    /**
+     * Updates the last name of a contact
+     * @param contactId ID of the contact to update
+     * @param lastName New last name
+     * @throws IllegalArgumentException if contactId is null, contact doesn't exist, or lastName is invalid
+     */
+    public void updateLastName(String contactId, String lastName) {
+        route(contactId, service -> {
+            service.updateLastName(contactId, lastName);
+            return null;
+        });
+    }
+
+    /**
+     * Updates the phone number of a contact
+     * @param contactId ID of the contact to update
+     * @param phone New phone number
+     * @throws IllegalArgumentException if contactId is null, contact doesn't exist, or phone is invalid
+     */
+    public void updatePhone(String contactId, String phone) {
+        route(contactId, service -> {
+            service.updatePhone(contactId, phone);
+            return null;
+        });
+    }
+
+    /**
+     * Updates the address of a contact
+     * @param contactId ID of the contact to update
+     * @param address New address
+     * @throws IllegalArgumentException if contactId is null, contact doesn't exist, or address is invalid
+     */
+    public void updateAddress(String contactId, String address) {
+        route(contactId, service -> {
+            service.updateAddress(contactId, address);
+            return null;
+        });
+    }
+
+    /**
+     * Changes every field a patch sets in one step
+     * @param contactId ID of the contact to patch
+     * @param patch New values, validated when the patch was built
+     * @return New version of the contact
+     * @throws IllegalArgumentException if contactId or patch is null or contact doesn't exist
+     */
+    public int patchContact(String contactId, ContactPatch patch) {
+        return route(contactId, service -> service.patchContact(contactId, patch));
+    }
+
+    /**
+     * Changes every field a patch sets in one step, only if the contact still has the
+     * version the caller read
+     * @param contactId ID of the contact to patch
+     * @param patch New values, validated when the patch was built
+     * @param expectedVersion Version the caller last read through Contact.getVersion
+     * @return New version of the contact
+     * @throws IllegalArgumentException if contactId or patch is null, contact doesn't exist, or expectedVersion is negative
+     * @throws ContactVersionConflictException if the contact changed since the expected version
+     */
+    public int patchContact(String contactId, ContactPatch patch, int expectedVersion) {
+        return route(contactId, service -> service.patchContact(contactId, patch, expectedVersion));
+    }
+
+    /**
+     * Retrieves a contact by ID
+     * @param contactId ID of the contact to retrieve
+     * @return Contact object
+     * @throws IllegalArgumentException if contactId is null or contact doesn't exist
+     */
+    public Contact getContact(String contactId) {
+        return read(contactId, service -> service.getContact(contactId));
+    }
+
+    /**
+     * Checks if a contact exists with the given ID
+     * @param contactId ID to check
+     * @return true if contact exists, false otherwise
+     */
+    public boolean contactExists(String contactId) {
+        return contactId != null && read(contactId, service -> service.contactExists(contactId));
+    }
+
+    // Fan-out operations
+
+    /**
+     * Returns the number of contacts across every shard
+     * The per-shard counts are summed in place, since each is a single field read.
+     * @return Number of contacts
+     */
+    public int getContactCount() {
+        return withRouting(routing -> {
+            int count = 0;
+            for (ContactService service : routing.live) {
+                count += service.getContactCount();
+            }
+            return count;
+        });
+    }
+
+    /**
+     * Adds a batch of contacts all-or-nothing, committing each shard's part in parallel
+     * Nulls, duplicate IDs inside the batch and IDs already present are rejected before
+     * any shard is touched. If a concurrent add takes an ID after that check, the parts
+     * already committed are deleted again, so they may be seen briefly.
+     * @param batch Contacts to add
+     * @return Result listing every rejected record, or a committed result
+     * @throws IllegalArgumentException if batch is null
+     */
+    public BatchResult addContacts(Collection<? extends Contact> batch) {
+        if (batch == null) {
+            throw new IllegalArgumentException("Batch cannot be null");
+        }
+        Contact[] candidates = batch.toArray(new Contact[0]);
+        String[] reasons = new String[candidates.length];
+        for (int i = 0; i < candidates.length; i++) {
+            if (candidates[i] == null) {
+                reasons[i] = "Contact cannot be null";
+            }
+        }
+        return commitBatch(candidates, reasons);
+    }
+
+    /**
+     * Adds a stream of contacts all-or-nothing
+     * @param batch Contacts to add
+     * @return Result listing every rejected record, or a committed result
+     * @throws IllegalArgumentException if batch is null
+     * @see #addContacts(Collection)
+     */
+    public BatchResult addContacts(Stream<? extends Contact> batch) {
+        if (batch == null) {
+            throw new IllegalArgumentException("Batch cannot be null");
+        }
+        return addContacts(batch.collect(Collectors.toList()));
+    }
+
+    /**
+     * Adds a batch of raw records all-or-nothing, validating each with ContactValidator
+     * @param records Records as {contactId, firstName, lastName, phone, address}
+     * @return Result listing every rejected record, or a committed result
+     * @throws IllegalArgumentException if records is null
+     * @see #addContacts(Collection)
+     */
+    public BatchResult addContactRecords(List<? extends CharSequence[]> records) {
+        if (records == null) {
+            throw new IllegalArgumentException("Records cannot be null");
+        }
+        CharSequence[][] raw = records.toArray(new CharSequence[0][]);
+        Contact[] candidates = new Contact[raw.length];
+        String[] reasons = new String[raw.length];
+        int[] results = new int[raw.length];
+        ContactValidator.validateAll(raw, results);
+        for (int i = 0; i < raw.length; i++) {
+            if (results[i] == ContactValidator.VALID) {
+                CharSequence[] r = raw[i];
+                candidates[i] = new Contact(r[0].toString(), r[1].toString(), r[2].toString(),
+                        r[3].toString(), r[4].toString());
+            } else {
+                reasons[i] = ContactValidator.describe(results[i]);
+            }
+        }
+        return commitBatch(candidates, reasons);
+    }
+
+    /**
+     * Finds every contact with the given phone number on every shard
+     * @param phone Phone number to look up
+     * @return Matching contacts, empty if none match or phone is not 10 digits
+     * @throws IllegalArgumentException if phone is null
+     */
+    public List<Contact> findByPhone(String phone) {
+        if (phone == null) {
+            throw new IllegalArgumentException("Phone cannot be null");
+        }
+        return withRouting(routing -> concat(fanOut(routing.live, service -> service.findByPhone(phone)), Integer.MAX_VALUE));
+    }
+
+    /**
+     * Finds contacts whose first or last name starts with a prefix, matching case exactly
+     * @param prefix Name prefix, empty to match every contact
+     * @param limit Maximum number of contacts to return
+     * @return Up to limit contacts, ordered by the matching name and then contact ID
+     * @throws IllegalArgumentException if prefix is null or limit is negative
+     */
+    public List<Contact> findByNamePrefix(String prefix, int limit) {
+        return findByNamePrefix(prefix, limit, false);
+    }
+
+    /**
+     * Finds contacts whose first or last name starts with a prefix on every shard
+     * Each shard returns its first limit matches; they are merged into one order with a
+     * NameIndex over just those matches.
+     * @param prefix Name prefix, empty to match every contact
+     * @param limit Maximum number of contacts to return
+     * @param ignoreCase Whether to match names regardless of case
+     * @return Up to limit contacts, ordered by the matching name and then contact ID
+     * @throws IllegalArgumentException if prefix is null or limit is negative
+     */
+    public List<Contact> findByNamePrefix(String prefix, int limit, boolean ignoreCase) {
+        if (prefix == null) {
+            throw new IllegalArgumentException("Prefix cannot be null");
+        }
+        if (limit < 0) {
+            throw new IllegalArgumentException("Limit cannot be negative");
+        }
+        return withRouting(routing -> {
+            NameIndex merged = new NameIndex(ignoreCase);
+            for (List<Contact> found : fanOut(routing.live, service -> service.findByNamePrefix(prefix, limit, ignoreCase))) {
+                for (Contact contact : found) {
+                    merged.contactAdded(contact);
+                }
+            }
+            return merged.find(prefix, limit);
+        });
+    }
+
+    /**
+     * Finds contacts whose address contains a fragment, ignoring case, on every shard
+     * @param fragment Address fragment, empty to match every contact
+     * @param limit Maximum number of contacts to return
+     * @return Up to limit matching contacts, in no particular order
+     * @throws IllegalArgumentException if fragment is null or limit is negative
+     */
+    public List<Contact> findByAddress(String fragment, int limit) {
+        if (fragment == null) {
+            throw new IllegalArgumentException("Address fragment cannot be null");
+        }
+        if (limit < 0) {
+            throw new IllegalArgumentException("Limit cannot be negative");
+        }
+        return withRouting(routing -> concat(fanOut(routing.live, service -> service.findByAddress(fragment, limit)), limit));
+    }
+
+    /**
+     * Lists contacts one page at a time in a sort order across every shard, merging each
+     * shard's page for the same cursor
+     * @param order Order to list contacts in
+     * @param cursor Cursor returned with the previous page, or null for the first page
+     * @param pageSize Most contacts to return
+     * @return Page of contacts with the cursor of the page after it
+     * @throws IllegalArgumentException if order is null, pageSize is less than 1, or the cursor
+     *         was not returned for the same order
+     */
+    public ContactPage listContacts(ContactSortOrder order, String cursor, int pageSize) {
+        if (order == null) {
+            throw new IllegalArgumentException("Sort order cannot be null");
+        }
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Page size must be at least 1");
+        }
+        if (cursor != null) {
+            ContactSortIndex.decode(order, cursor);  // Reject a bad cursor before fanning out
+        }
+        return withRouting(routing -> {
+            List<ContactPage> pages = fanOut(routing.live, service -> service.listContacts(order, cursor, pageSize));
+            List<Contact> merged = new ArrayList<>();
+            boolean more = false;
+            for (ContactPage page : pages) {
+                merged.addAll(page.getContacts());
+                more |= page.hasMore();
+            }
+            merged.sort((a, b) -> ContactSortIndex.keyOf(order, a).compareTo(ContactSortIndex.keyOf(order, b)));
+            if (merged.size() > pageSize) {
+                merged.subList(pageSize, merged.size()).clear();
+                more = true;
+            }
+            String next = more && !merged.isEmpty()
+                    ? ContactSortIndex.encode(order, ContactSortIndex.keyOf(order, merged.get(merged.size() - 1))) : null;
+            return new ContactPage(merged, next);
+        });
+    }
+
+    // Indexes
+
+    /**
+     * Enables the phone index on every shard, building them in parallel
+     */
+    public synchronized void enablePhoneIndex() {
+        phoneIndex = true;
+        fanOut(services(), service -> {
+            service.enablePhoneIndex();
+            return null;
+        });
+    }
+
+    /**
+     * Enables a name prefix index on every shard, building them in parallel
+     * @param ignoreCase Whether the index matches names regardless of case
+     */
+    public synchronized void enableNameIndex(boolean ignoreCase) {
+        if (ignoreCase) {
+            foldedNameIndex = true;
+        } else {
+            nameIndex = true;
+        }
+        fanOut(services(), service -> {
+            service.enableNameIndex(ignoreCase);
+            return null;
+        });
+    }
+
+    /**
+     * Enables the sort index for an order on every shard, building them in parallel
+     * @param order Order the indexes keep contacts in
+     * @throws IllegalArgumentException if order is null
+     */
+    public synchronized void enableSortIndex(ContactSortOrder order) {
+        if (order == null) {
+            throw new IllegalArgumentException("Sort order cannot be null");
+        }
+        sortIndexes[order.ordinal()] = true;
+        fanOut(services(), service -> {
+            service.enableSortIndex(order);
+            return null;
+        });
+    }
+
+    /**
+     * Enables the address index on every shard, building them in parallel
+     */
+    public synchronized void enableAddressIndex() {
+        addressIndex = true;
+        fanOut(services(), service -> {
+            service.enableAddressIndex();
+            return null;
+        });
+    }
+
+    // Resharding
+
+    /**
+     * Moves every contact onto a new number of shards without stopping the service
+     * Old shards are migrated one at a time; only operations on the shard being moved
+     * wait for it. Indexes enabled on the old shards are enabled on the new ones.
+     * @param shardCount New number of shards
+     * @throws IllegalArgumentException if shardCount is less than 1
+     */
+    public synchronized void reshard(int shardCount) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("Shard count must be at least 1");
+        }
+        Shard[] old = shards;
+        if (shardCount == old.length) {
+            return;
+        }
+        Shard[] next = newLayout(shardCount);
+        for (Shard shard : old) {
+            long stamp = shard.gate.writeLock();
+            try {
+                // No operation can reach this shard now, so its contacts hold still while copied
+                List<List<Contact>> parts = new ArrayList<>(shardCount);
+                for (int i = 0; i < shardCount; i++) {
+                    parts.add(new ArrayList<>());
+                }
+                shard.service.forEachContactCopy(contact ->
+                        parts.get(indexFor(contact.getContactId(), shardCount)).add(contact));
+                List<BatchResult> results = IntStream.range(0, shardCount).parallel()
+                        .mapToObj(i -> next[i].service.addContacts(parts.get(i)))
+                        .collect(Collectors.toList());
+                for (BatchResult result : results) {
+                    if (!result.isCommitted()) {
+                        throw new IllegalStateException("Reshard found a contact ID on two shards: " + result.getRejections());
+                    }
+                }
+                shard.movedTo = next;
+            } finally {
+                shard.gate.unlockWrite(stamp);
+            }
+        }
+        shards = next;
+    }
+
+    // Internals
+
+    /**
+     * Runs a mutation on the shard that owns an ID, holding that shard's read gate
+     * and following it to the new layout if the shard has already been migrated
+     */
+    private <T> T route(String contactId, Function<ContactService, T> operation) {
+        if (contactId == null) {
+            throw new IllegalArgumentException("Contact ID cannot be null");
+        }
+        Shard[] layout = shards;
+        while (true) {
+            Shard shard = layout[indexFor(contactId, layout.length)];
+            long stamp = shard.gate.readLock();
+            try {
+                Shard[] moved = shard.movedTo;
+                if (moved == null) {
+                    return operation.apply(shard.service);
+                }
+                layout = moved;
+            } finally {
+                shard.gate.unlockRead(stamp);
+            }
+        }
+    }
+
+    /**
+     * Runs a read on the shard that owns an ID without its gate. The shard keeps its
+     * contacts after migrating, and no write reaches the new shards until it is marked
+     * moved, so a read that finds it still unmoved afterwards saw current data.
+     */
+    private <T> T read(String contactId, Function<ContactService, T> operation) {
+        if (contactId == null) {
+            throw new IllegalArgumentException("Contact ID cannot be null");
+        }
+        Shard[] layout = shards;
+        while (true) {
+            Shard shard = layout[indexFor(contactId, layout.length)];
+            Shard[] moved = shard.movedTo;
+            if (moved == null) {
+                T result = operation.apply(shard.service);
+                moved = shard.movedTo;
+                if (moved == null) {
+                    return result;
+                }
+            }
+            layout = moved;
+        }
+    }
+
+    /**
+     * Runs body with every read gate of the current layout held, so no shard is mid-migration
+     * and every contact is on exactly one of routing.live
+     */
+    private <T> T withRouting(Function<Routing, T> body) {
+        Shard[] layout = shards;
+        while (true) {
+            long[] stamps = new long[layout.length];
+            for (int i = 0; i < layout.length; i++) {
+                stamps[i] = layout[i].gate.readLock();
+            }
+            Shard[] moved = layout[layout.length - 1].movedTo;
+            try {
+                // Shards migrate in order, so the last one moves only after all others have
+                if (moved == null) {
+                    return body.apply(new Routing(layout));
+                }
+            } finally {
+                for (int i = layout.length - 1; i >= 0; i--) {
+                    layout[i].gate.unlockRead(stamps[i]);
+                }
+            }
+            layout = moved;  // A later reshard may be migrating the new layout, so gate that one
+        }
+    }
+
+    /**
+     * Checks a batch for duplicate and existing IDs, then commits each shard's part in
+     * parallel, deleting committed parts again if another part lost a race
+     */
+    private BatchResult commitBatch(Contact[] candidates, String[] reasons) {
+        int size = candidates.length;
+
+        // The lowest index wins each ID, so in-batch duplicates are reported deterministically
+        ConcurrentHashMap<String, Integer> firstIndex = new ConcurrentHashMap<>(size);
+        IntStream.range(0, size).parallel().filter(i -> reasons[i] == null)
+                .forEach(i -> firstIndex.merge(candidates[i].getContactId(), i, Math::min));
+        IntStream.range(0, size).parallel().filter(i -> reasons[i] == null).forEach(i -> {
+            String id = candidates[i].getContactId();
+            if (firstIndex.get(id) != i) {
+                reasons[i] = "Duplicate contact ID " + id + " in batch";
+            } else if (contactExists(id)) {
+                reasons[i] = "Contact with ID " + id + " already exists";
+            }
+        });
+        List<BatchResult.Rejection> rejections = collectRejections(candidates, reasons);
+        if (!rejections.isEmpty()) {
+            return BatchResult.rejected(size, rejections);
+        }
+
+        return withRouting(routing -> {
+            Map<ContactService, List<Integer>> parts = new HashMap<>();
+            for (int i = 0; i < size; i++) {
+                parts.computeIfAbsent(routing.serviceFor(candidates[i].getContactId()), s -> new ArrayList<>()).add(i);
+            }
+            ContactService[] involved = parts.keySet().toArray(new ContactService[0]);
+            List<BatchResult> results = fanOut(involved, service -> {
+                List<Contact> part = new ArrayList<>();
+                for (int i : parts.get(service)) {
+                    part.add(candidates[i]);
+                }
+                return service.addContacts(part);
+            });
+
+            List<BatchResult.Rejection> lost = new ArrayList<>();
+            for (int s = 0; s < involved.length; s++) {
+                List<Integer> indexes = parts.get(involved[s]);
+                for (BatchResult.Rejection rejection : results.get(s).getRejections()) {
+                    int i = indexes.get(rejection.getIndex());
+                    lost.add(new BatchResult.Rejection(i, candidates[i].getContactId(), rejection.getReason()));
+                }
+            }
+            if (lost.isEmpty()) {
+                return BatchResult.committed(size);
+            }
+            for (int s = 0; s < involved.length; s++) {
+                if (results.get(s).isCommitted()) {
+                    for (int i : parts.get(involved[s])) {
+                        try {
+                            involved[s].deleteContact(candidates[i].getContactId());
+                        } catch (IllegalArgumentException alreadyDeleted) {
+                            // Deleted concurrently, which is all the rollback needed
+                        }
+                    }
+                }
+            }
+            lost.sort((a, b) -> Integer.compare(a.getIndex(), b.getIndex()));
+            return BatchResult.rejected(size, lost);
+        });
+    }
+
+    /**
+     * @return Services of the current layout; only called while reshard is excluded
+     */
+    private ContactService[] services() {
+        Shard[] layout = shards;
+        ContactService[] services = new ContactService[layout.length];
+        for (int i = 0; i < layout.length; i++) {
+            services[i] = layout[i].service;
+        }
+        return services;
+    }
+
+    private Shard[] newLayout(int shardCount) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("Shard count must be at least 1");
+        }
+        Shard[] layout = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            ContactService service = new ContactService(stores.get());
+            if (phoneIndex) {
+                service.enablePhoneIndex();
+            }
+            if (nameIndex) {
+                service.enableNameIndex(false);
+            }
+            if (foldedNameIndex) {
+                service.enableNameIndex(true);
+            }
+            if (addressIndex) {
+                service.enableAddressIndex();
+            }
+            for (ContactSortOrder order : ContactSortOrder.values()) {
+                if (sortIndexes[order.ordinal()]) {
+                    service.enableSortIndex(order);
+                }
+            }
+            layout[i] = new Shard(service);
+        }
+        return layout;
+    }
+
+    /**
+     * Picks a shard from the high bits of a multiplied hash, leaving the low bits that
+     * select lock stripes inside the shard evenly spread
+     */
+    private static int indexFor(String contactId, int shardCount) {
+        long h = (contactId.hashCode() * 0x9E3779B9) & 0xFFFFFFFFL;
+        return (int) ((h * shardCount) >>> 32);
+    }
+
+    /**
+     * Applies an operation to every service in parallel on the common fork-join pool
+     * @return Results in the order of services
+     */
+    private static <T> List<T> fanOut(ContactService[] services, Function<ContactService, T> operation) {
+        return Arrays.stream(services).parallel().map(operation).collect(Collectors.toList());
+    }
+
+    private static List<Contact> concat(List<List<Contact>> parts, int limit) {
+        List<Contact> merged = new ArrayList<>();
+        for (List<Contact> part : parts) {
+            for (Contact contact : part) {
+                if (merged.size() >= limit) {
+                    return merged;
+                }
+                merged.add(contact);
+            }
+        }
+        return merged;
+    }
+
+    private static List<BatchResult.Rejection> collectRejections(Contact[] candidates, String[] reasons) {
+        List<BatchResult.Rejection> rejections = new ArrayList<>();
+        for (int i = 0; i < reasons.length; i++) {
+            if (reasons[i] != null) {
+                String id = candidates[i] == null ? null : candidates[i].getContactId();
+                rejections.add(new BatchResult.Rejection(i, id, reasons[i]));
+            }
+        }
+        return rejections;
+    }
+}
\ No newline at end of file
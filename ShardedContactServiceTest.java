@@ -0,0 +1,178 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Unit tests for ShardedContactService class
+ * Tests routing of point operations, fan-out queries and batches against a single
+ * ContactService holding the same contacts, and online resharding
+ */
+public class ShardedContactServiceTest {
+    private ShardedContactService sharded;
+    private ContactService single;
+
+    @BeforeEach
+    public void setUp() {
+        sharded = new ShardedContactService(8);
+        single = new ContactService();
+        String[] names = {"Ann", "Anna", "Bob", "annie", "Carl", "Bobby"};
+        for (int i = 0; i < 600; i++) {
+            String phone = String.format("%010d", i % 50);
+            sharded.addContact("c" + i, names[i % names.length], "L" + (i % 7), phone, i + " Main St");
+            single.addContact("c" + i, names[i % names.length], "L" + (i % 7), phone, i + " Main St");
+        }
+    }
+
+    // Point operation tests
+
+    @Test
+    @DisplayName("Point operations should reach the contact's shard")
+    public void testPointOperations() {
+        sharded.updateFirstName("c1", "Jane");
+        sharded.updateLastName("c1", "Doe");
+        sharded.updatePhone("c1", "5551234567");
+        sharded.updateAddress("c1", "1 Elm St");
+        Contact contact = sharded.getContact("c1");
+        assertEquals("Jane", contact.getFirstName());
+        assertEquals("Doe", contact.getLastName());
+        assertEquals("5551234567", contact.getPhone());
+        assertEquals("1 Elm St", contact.getAddress());
+
+        sharded.deleteContact("c2");
+        assertFalse(sharded.contactExists("c2"));
+        assertFalse(sharded.contactExists(null));
+        assertEquals(599, sharded.getContactCount());
+        assertThrows(IllegalArgumentException.class, () -> sharded.addContact("c1", "A", "B", "5551234567", "C"));
+        assertThrows(IllegalArgumentException.class, () -> sharded.getContact("c2"));
+        assertThrows(IllegalArgumentException.class, () -> sharded.getContact(null));
+        assertThrows(IllegalArgumentException.class, () -> sharded.addContact(null));
+        assertThrows(IllegalArgumentException.class, () -> sharded.updateLastName("c1", "ThisNameIsTooLong"));
+    }
+
+    @Test
+    @DisplayName("Constructor and reshard should reject fewer than one shard")
+    public void testInvalidShardCount() {
+        assertThrows(IllegalArgumentException.class, () -> new ShardedContactService(0));
+        assertThrows(IllegalArgumentException.class, () -> new ShardedContactService(4, null));
+        assertThrows(IllegalArgumentException.class, () -> sharded.reshard(0));
+        assertEquals(8, sharded.getShardCount());
+    }
+
+    // Fan-out tests
+
+    @Test
+    @DisplayName("Find methods should return what a single service returns")
+    public void testFindMatchesSingleService() {
+        for (int pass = 0; pass < 2; pass++) {
+            // First by scanning each shard, then through each shard's indexes
+            assertEquals(sortedIds(single.findByPhone("0000000007")), sortedIds(sharded.findByPhone("0000000007")));
+            assertEquals(ids(single.findByNamePrefix("Ann", 25)), ids(sharded.findByNamePrefix("Ann", 25)));
+            assertEquals(ids(single.findByNamePrefix("ann", 40, true)), ids(sharded.findByNamePrefix("ann", 40, true)));
+            assertEquals(ids(single.findByNamePrefix("L3", 1000)), ids(sharded.findByNamePrefix("L3", 1000)));
+            assertEquals(10, sharded.findByAddress("main", 10).size());
+            assertEquals(sortedIds(single.findByAddress("12", 1000)), sortedIds(sharded.findByAddress("12", 1000)));
+            sharded.enablePhoneIndex();
+            sharded.enableNameIndex(false);
+            sharded.enableNameIndex(true);
+            sharded.enableAddressIndex();
+        }
+        assertThrows(IllegalArgumentException.class, () -> sharded.findByNamePrefix("A", -1));
+        assertThrows(IllegalArgumentException.class, () -> sharded.findByAddress(null, 1));
+    }
+
+    @Test
+    @DisplayName("Listing should return the same pages and cursors as a single service")
+    public void testListMatchesSingleService() {
+        for (int pass = 0; pass < 2; pass++) {
+            // First by scanning each shard, then through each shard's sort indexes
+            for (ContactSortOrder order : ContactSortOrder.values()) {
+                String cursor = null;
+                do {
+                    ContactPage expected = single.listContacts(order, cursor, 37);
+                    ContactPage actual = sharded.listContacts(order, cursor, 37);
+                    assertEquals(ids(expected.getContacts()), ids(actual.getContacts()));
+                    assertEquals(expected.getNextCursor(), actual.getNextCursor());
+                    cursor = actual.getNextCursor();
+                } while (cursor != null);
+            }
+            sharded.enableSortIndex(ContactSortOrder.CONTACT_ID);
+            sharded.enableSortIndex(ContactSortOrder.NAME);
+        }
+        sharded.reshard(3);
+        sharded.updateLastName("c5", "A");
+        assertEquals("c5", sharded.listContacts(ContactSortOrder.NAME, null, 1).getContacts().get(0).getContactId());
+        assertThrows(IllegalArgumentException.class, () -> sharded.listContacts(ContactSortOrder.NAME, "Ic5", 1));
+    }
+
+    @Test
+    @DisplayName("Batch should be added whole, or rejected with every offending record and nothing added")
+    public void testBatches() {
+        List<Contact> batch = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            batch.add(new Contact("b" + i, "First", "Last", "5551234567", "1 Main St"));
+        }
+        BatchResult committed = sharded.addContacts(batch);
+        assertTrue(committed.isCommitted());
+        assertEquals(1600, sharded.getContactCount());
+
+        List<Contact> bad = new ArrayList<>(Arrays.asList(
+                new Contact("n1", "First", "Last", "5551234567", "1 Main St"),
+                new Contact("c5", "First", "Last", "5551234567", "1 Main St"),
+                null,
+                new Contact("n1", "First", "Last", "5551234567", "1 Main St")));
+        BatchResult rejected = sharded.addContacts(bad);
+        assertFalse(rejected.isCommitted());
+        assertEquals(3, rejected.getRejections().size());
+        assertEquals(1, rejected.getRejections().get(0).getIndex());
+        assertEquals(3, rejected.getRejections().get(2).getIndex());
+        assertFalse(sharded.contactExists("n1"));
+
+        List<CharSequence[]> records = new ArrayList<>();
+        records.add(new CharSequence[] {"r1", "First", "Last", "5551234567", "1 Main St"});
+        records.add(new CharSequence[] {"r2", "First", "Last", "123", "1 Main St"});
+        assertFalse(sharded.addContactRecords(records).isCommitted());
+        assertFalse(sharded.contactExists("r1"));
+        records.remove(1);
+        assertTrue(sharded.addContactRecords(records).isCommitted());
+        assertEquals(1601, sharded.getContactCount());
+    }
+
+    // Resharding tests
+
+    @Test
+    @DisplayName("Reshard should keep every contact and enabled index, growing and shrinking")
+    public void testReshard() {
+        sharded.enablePhoneIndex();
+        sharded.enableNameIndex(false);
+        for (int shardCount : new int[] {13, 2, 1, 32}) {
+            sharded.reshard(shardCount);
+            assertEquals(shardCount, sharded.getShardCount());
+            assertEquals(600, sharded.getContactCount());
+            assertEquals("599 Main St", sharded.getContact("c599").getAddress());
+            assertEquals(sortedIds(single.findByPhone("0000000003")), sortedIds(sharded.findByPhone("0000000003")));
+            assertEquals(ids(single.findByNamePrefix("Bob", 50)), ids(sharded.findByNamePrefix("Bob", 50)));
+        }
+        sharded.updateFirstName("c0", "Zed");
+        assertEquals("c0", sharded.findByNamePrefix("Zed", 5).get(0).getContactId());
+    }
+
+    private static List<String> ids(List<Contact> contacts) {
+        List<String> ids = new ArrayList<>();
+        for (Contact contact : contacts) {
+            ids.add(contact.getContactId());
+        }
+        return ids;
+    }
+
+    private static List<String> sortedIds(List<Contact> contacts) {
+        List<String> ids = ids(contacts);
+        Collections.sort(ids);
+        return ids;
+    }
+}
\ No newline at end of file
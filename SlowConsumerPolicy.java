@@ -0,0 +1,19 @@
+/**
+ * SlowConsumerPolicy enum selects what a ContactChangeFeed does when publishing an event
+ * would overwrite one a subscription has not consumed yet
+ */
+public enum SlowConsumerPolicy {
+    /**
+     * The mutation waits until the slowest subscription frees the slot, so no subscriber
+     * misses an event but a stalled subscriber stalls writers of the affected contacts.
+     * Handlers must then never change the service they follow.
+     */
+    BLOCK,
+
+    /**
+     * The lagging subscription is disconnected and the mutation proceeds. Writers never
+     * wait; the disconnected subscriber's next poll throws IllegalStateException, and it
+     * must resynchronize from the service and subscribe again.
+     */
+    DISCONNECT
+}
\ No newline at end of file
@@ -0,0 +1,387 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.UnaryOperator;
+
+/**
+ * TieredContactStore class keeps a bounded on-heap cache of hot contacts in front of a cold
+ * ContactStore that holds every contact, typically an OffHeapContactStore mapped from a
+ * file. getContact traffic that favours a small hot set is served from the heap while the
+ * rest of the contacts are left for the operating system to page out to that file.
+ *
+ * The tier is not persistent. OffHeapContactStore.map truncates its file when opened,
+ * so the cold store starts empty on every run and must be refilled, for example from
+ * the snapshot and journal ContactPersistence keeps. Durability still comes from those
+ * alone.
+ *
+ * Reads go through the cache: a miss loads the contact from the cold store and offers it
+ * to the cache. Updates, patches and deletes write through to the cold store and change
+ * or drop the cached copy in the same step; adds go only to the cold store, so bulk
+ * imports do not flush the hot set. Each load and each write runs inside a
+ * ConcurrentHashMap compute for its ID, so a load can never cache a value a concurrent
+ * write has already replaced. The cold store stays the source of truth and iteration
+ * reads it.
+ *
+ * Eviction follows W-TinyLFU. New entries enter a window LRU holding 1% of the capacity.
+ * Entries leaving the window compete for the main area, a segmented LRU split into
+ * probation (20%) and protected (80%) queues. A candidate is admitted only if a
+ * FrequencySketch estimates it was requested more often than the probation entry it
+ * would evict. Popular contacts therefore survive one-off scans that would flush a
+ * plain LRU, and a hit on probation promotes the entry to protected.
+ *
+ * Policy queues are guarded by one lock. A hit only reorders them if that lock is free
+ * and is otherwise dropped, so under contention hits are sampled rather than queued.
+ * Hit, miss and eviction counts are kept in LongAdders.
+ */
+public final class TieredContactStore implements ContactStore, Closeable {
+    private static final int WINDOW_PERCENT = 1;
+    private static final int PROTECTED_PERCENT = 80;  // Of the main area
+
+    /**
+     * Node class is one cached contact and its links in a policy queue
+     */
+    private static final class Node {
+        final String key;
+        final int hash;
+        volatile Contact value;  // Never handed out; readers get copies
+        Node prev;  // Links and queue are guarded by the policy lock
+        Node next;
+        AccessQueue queue;
+
+        Node(String key, int hash, Contact value) {
+            this.key = key;
+            this.hash = hash;
+            this.value = value;
+        }
+    }
+
+    /**
+     * AccessQueue class is an intrusive doubly linked list of nodes, least recently used first
+     */
+    private static final class AccessQueue {
+        private final Node head = new Node(null, 0, null);  // Sentinel; head.next is the oldest
+        int size;
+
+        AccessQueue() {
+            head.prev = head;
+            head.next = head;
+        }
+
+        Node first() {
+            return head.next == head ? null : head.next;
+        }
+
+        void addLast(Node node) {
+            node.prev = head.prev;
+            node.next = head;
+            head.prev.next = node;
+            head.prev = node;
+            node.queue = this;
+            size++;
+        }
+
+        void remove(Node node) {
+            node.prev.next = node.next;
+            node.next.prev = node.prev;
+            node.prev = null;
+            node.next = null;
+            node.queue = null;
+            size--;
+        }
+
+        void moveToLast(Node node) {
+            remove(node);
+            addLast(node);
+        }
+    }
+
+    private final ContactStore cold;
+    private final int capacity;
+    private final int windowCapacity;
+    private final int protectedCapacity;
+    private final ConcurrentHashMap<String, Node> cache;
+    private final ReentrantLock policyLock = new ReentrantLock();
+    private final AccessQueue window = new AccessQueue();
+    private final AccessQueue probation = new AccessQueue();
+    private final AccessQueue protectedQueue = new AccessQueue();
+    private final FrequencySketch sketch;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Constructor creates a cache of at most capacity contacts in front of a cold store
+     * @param cold Store holding every contact; it must not be changed except through this store
+     * @param capacity Most contacts to keep on the heap
+     * @throws IllegalArgumentException if cold is null or capacity is less than 1
+     */
+    public TieredContactStore(ContactStore cold, int capacity) {
+        if (cold == null) {
+            throw new IllegalArgumentException("Cold store cannot be null");
+        }
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Cache capacity must be at least 1");
+        }
+        this.cold = cold;
+        this.capacity = capacity;
+        this.windowCapacity = Math.max(1, (int) ((long) capacity * WINDOW_PERCENT / 100));
+        this.protectedCapacity = (int) ((long) (capacity - windowCapacity) * PROTECTED_PERCENT / 100);
+        this.cache = new ConcurrentHashMap<>(Math.min(capacity, 1 << 16));
+        this.sketch = new FrequencySketch(capacity);
+    }
+
+    @Override
+    public Contact get(String contactId) {
+        Node node = cache.get(contactId);
+        if (node != null) {
+            hits.increment();
+            onHit(node);
+            return new Contact(node.value);
+        }
+        misses.increment();
+        Node[] loaded = new Node[1];
+        node = cache.computeIfAbsent(contactId, id -> {
+            Contact stored = cold.get(id);
+            return stored == null ? null : (loaded[0] = new Node(id, spread(id.hashCode()), new Contact(stored)));
+        });
+        if (node == null) {
+            return null;
+        }
+        if (loaded[0] != null) {
+            onLoad(loaded[0]);
+        }
+        return new Contact(node.value);
+    }
+
+    @Override
+    public boolean contains(String contactId) {
+        return cache.containsKey(contactId) || cold.contains(contactId);
+    }
+
+    @Override
+    public int size() {
+        return cold.size();
+    }
+
+    @Override
+    public boolean insert(Contact contact) {
+        return cold.insert(contact);
+    }
+
+    @Override
+    public void insertAll(Contact[] batch) {
+        cold.insertAll(batch);
+    }
+
+    @Override
+    public Contact remove(String contactId) {
+        Contact[] removed = new Contact[1];
+        Node[] dropped = new Node[1];
+        cache.compute(contactId, (id, node) -> {
+            removed[0] = cold.remove(id);
+            dropped[0] = node;
+            return null;
+        });
+        if (dropped[0] != null) {
+            policyLock.lock();
+            try {
+                unlink(dropped[0]);
+            } finally {
+                policyLock.unlock();
+            }
+        }
+        return removed[0];
+    }
+
+    @Override
+    public Contact update(Contact contact, ContactField field, String value) {
+        return writeThrough(contact.getContactId(), stored -> cold.update(stored, field, value));
+    }
+
+    @Override
+    public Contact patch(Contact contact, ContactPatch patch, int expectedVersion) {
+        return writeThrough(contact.getContactId(), stored -> cold.patch(stored, patch, expectedVersion));
+    }
+
+    @Override
+    public boolean returnsCopies() {
+        return true;
+    }
+
+    @Override
+    public Iterator<Contact> iterator() {
+        return cold.iterator();  // Write-through keeps the cold store current
+    }
+
+    @Override
+    public Spliterator<Contact> spliterator() {
+        return cold.spliterator();
+    }
+
+    /**
+     * @return Most contacts kept on the heap
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return Contacts currently cached
+     */
+    public int getCachedCount() {
+        return cache.size();
+    }
+
+    /**
+     * @return Reads answered from the cache
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * @return Reads that went to the cold store, including reads of IDs that do not exist
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * @return Share of reads answered from the cache, 0 before the first read
+     */
+    public double getHitRate() {
+        long hit = hits.sum();
+        long total = hit + misses.sum();
+        return total == 0 ? 0 : (double) hit / total;
+    }
+
+    /**
+     * @return Contacts dropped from the cache to stay within capacity, including
+     *         candidates refused admission
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * Empties the cache and closes the cold store if it is Closeable
+     * @throws IOException if the cold store cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        policyLock.lock();
+        try {
+            cache.clear();
+            for (AccessQueue queue : new AccessQueue[] {window, probation, protectedQueue}) {
+                for (Node node = queue.first(); node != null; node = queue.first()) {
+                    queue.remove(node);
+                }
+            }
+        } finally {
+            policyLock.unlock();
+        }
+        if (cold instanceof Closeable) {
+            ((Closeable) cold).close();
+        }
+    }
+
+    /**
+     * Writes to the cold store while holding the ID's cache entry, so no concurrent load
+     * can read the old value and cache it after the write. The write is given the cold
+     * store's own contact, since changing a copy would not change a store that keeps the
+     * Contact objects.
+     */
+    private Contact writeThrough(String contactId, UnaryOperator<Contact> write) {
+        Contact[] written = new Contact[1];
+        cache.compute(contactId, (id, node) -> {
+            written[0] = write.apply(cold.get(id));
+            if (node != null) {
+                node.value = new Contact(written[0]);  // The caller may keep and change its copy
+            }
+            return node;
+        });
+        return written[0];
+    }
+
+    private void onHit(Node node) {
+        if (!policyLock.tryLock()) {
+            return;  // Sampled out under contention
+        }
+        try {
+            sketch.increment(node.hash);
+            if (node.queue == window) {
+                window.moveToLast(node);
+            } else if (node.queue == probation) {
+                probation.remove(node);
+                protectedQueue.addLast(node);
+                if (protectedQueue.size > protectedCapacity) {
+                    Node demoted = protectedQueue.first();
+                    protectedQueue.remove(demoted);
+                    probation.addLast(demoted);
+                }
+            } else if (node.queue == protectedQueue) {
+                protectedQueue.moveToLast(node);
+            }
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    /**
+     * Adds a freshly loaded node to the window, then moves whatever overflows the window
+     * into the main area, admitting it only if it is more popular than the main area's victim
+     */
+    private void onLoad(Node node) {
+        policyLock.lock();
+        try {
+            sketch.increment(node.hash);
+            if (cache.get(node.key) != node) {
+                return;  // Deleted before it was queued
+            }
+            window.addLast(node);
+            while (window.size > windowCapacity) {
+                Node candidate = window.first();
+                window.remove(candidate);
+                admit(candidate);
+            }
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    private void admit(Node candidate) {
+        if (window.size + probation.size + protectedQueue.size < capacity) {
+            probation.addLast(candidate);
+            return;
+        }
+        Node victim = probation.first() != null ? probation.first() : protectedQueue.first();
+        if (victim != null && sketch.frequency(candidate.hash) > sketch.frequency(victim.hash)) {
+            evict(victim);
+            probation.addLast(candidate);
+        } else {
+            evict(candidate);
+        }
+    }
+
+    private void evict(Node node) {
+        unlink(node);
+        if (cache.remove(node.key, node)) {
+            evictions.increment();
+        }
+    }
+
+    private void unlink(Node node) {
+        if (node.queue != null) {
+            node.queue.remove(node);
+        }
+    }
+
+    private static int spread(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,172 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Unit tests for TieredContactStore class
+ * Tests read-through and write-through behind a ContactService, the capacity bound and
+ * metrics, scan resistance of the admission policy and agreement with the cold store
+ * under concurrent reads and writes
+ */
+public class TieredContactStoreTest {
+    @TempDir
+    Path tempDir;
+
+    // Read and write tests
+
+    @Test
+    @DisplayName("Tiered store should read through on a miss and write through on updates and deletes")
+    public void testReadAndWriteThrough() throws IOException {
+        try (OffHeapContactStore cold = OffHeapContactStore.map(tempDir.resolve("contacts.dat"));
+                TieredContactStore tiered = new TieredContactStore(cold, 100)) {
+            ContactService service = new ContactService(tiered);
+            service.addContact("1", "John", "Smith", "6035551234", "1 Elm St");
+            assertEquals(0, tiered.getCachedCount(), "adds should not fill the cache");
+            assertEquals(0, tiered.getHitRate());
+
+            assertEquals("John", service.getContact("1").getFirstName());
+            assertEquals(1, tiered.getMissCount());
+            assertEquals(1, tiered.getCachedCount());
+            service.getContact("1").setFirstName("Changed");  // Copies do not change the cache
+            assertEquals("John", service.getContact("1").getFirstName());
+            assertEquals(2, tiered.getHitCount());
+            assertEquals(2.0 / 3, tiered.getHitRate(), 1e-9);
+
+            service.updateFirstName("1", "Jane");
+            service.patchContact("1", new ContactPatch(null, "Doe", null, "2 Oak Ave"));
+            assertEquals("Jane", cold.get("1").getFirstName());
+            assertEquals("Doe", cold.get("1").getLastName());
+            Contact cached = service.getContact("1");
+            assertEquals("Jane", cached.getFirstName());
+            assertEquals("2 Oak Ave", cached.getAddress());
+            assertEquals(cold.get("1").getVersion(), cached.getVersion());
+            assertThrows(IllegalArgumentException.class, () -> service.updatePhone("1", "123"));
+            assertEquals("6035551234", service.getContact("1").getPhone());
+
+            service.deleteContact("1");
+            assertEquals(0, tiered.getCachedCount());
+            assertFalse(cold.contains("1"));
+            assertThrows(IllegalArgumentException.class, () -> service.getContact("1"));
+            assertEquals(2, tiered.getMissCount());
+            assertEquals(0, tiered.getCachedCount(), "missing IDs should not be cached");
+        }
+    }
+
+    // Eviction tests
+
+    @Test
+    @DisplayName("Cache should stay within capacity and keep a hot set through a one-time scan")
+    public void testBoundedAndScanResistant() {
+        ContactStore cold = new HeapContactStore();
+        for (int i = 0; i < 10_000; i++) {
+            cold.insert(new Contact("c" + i, "First", "Last", "5551234567", i + " Main St"));
+        }
+        TieredContactStore tiered = new TieredContactStore(cold, 100);
+        for (int round = 0; round < 20; round++) {
+            for (int i = 0; i < 50; i++) {
+                tiered.get("c" + i);
+            }
+        }
+        long hotHits = tiered.getHitCount();
+
+        for (int i = 50; i < 10_000; i++) {
+            tiered.get("c" + i);
+            assertTrue(tiered.getCachedCount() <= tiered.getCapacity());
+        }
+        assertTrue(tiered.getEvictionCount() >= 10_000 - 50 - 100);
+        for (int i = 0; i < 50; i++) {
+            tiered.get("c" + i);
+        }
+        assertTrue(tiered.getHitCount() - hotHits >= 45, "hot contacts should survive the scan");
+        assertEquals(100, tiered.getCachedCount());
+        assertEquals(10_000, tiered.size());
+    }
+
+    @Test
+    @DisplayName("Frequency sketch should count keys and age them once enough are recorded")
+    public void testFrequencySketch() {
+        FrequencySketch sketch = new FrequencySketch(16);
+        for (int i = 0; i < 20; i++) {
+            sketch.increment(42);
+        }
+        assertEquals(15, sketch.frequency(42), "counters should saturate at 15");
+        assertEquals(0, sketch.frequency(7));
+        for (int i = 0; i < 200; i++) {
+            sketch.increment(i * 0x9E3779B9);
+        }
+        assertTrue(sketch.frequency(42) < 15, "counters should halve as the sample fills");
+    }
+
+    // Concurrency tests
+
+    @Test
+    @DisplayName("Cache should agree with the cold store after concurrent reads, updates and deletes")
+    public void testConcurrentReadsAndWrites() throws InterruptedException {
+        ContactStore cold = new HeapContactStore();
+        TieredContactStore tiered = new TieredContactStore(cold, 64);
+        ContactService service = new ContactService(tiered);
+        for (int i = 0; i < 500; i++) {
+            service.addContact("c" + i, "First", "Last", "5551234567", "0 Main St");
+        }
+        int threads = 4;
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int seed = t;
+            Thread worker = new Thread(() -> {
+                Random random = new Random(seed);
+                try {
+                    start.await();
+                    for (int step = 0; step < 20_000; step++) {
+                        String id = "c" + (int) Math.abs(random.nextGaussian() * 40) % 500;
+                        int action = random.nextInt(10);
+                        try {
+                            if (action == 0) {
+                                service.updateAddress(id, step + " Elm St");
+                            } else if (action == 1) {
+                                service.deleteContact(id);
+                            } else if (action == 2) {
+                                service.addContact(id, "First", "Last", "5551234567", "0 Main St");
+                            } else {
+                                service.getContact(id);
+                            }
+                        } catch (IllegalArgumentException expected) {
+                            // Another thread added or deleted the ID first
+                        }
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        assertNull(failure.get());
+
+        assertTrue(tiered.getCachedCount() <= 64);
+        for (int i = 0; i < 500; i++) {
+            Contact expected = cold.get("c" + i);
+            Contact actual = tiered.get("c" + i);
+            assertEquals(expected == null, actual == null, "c" + i);
+            if (expected != null) {
+                assertEquals(expected.getAddress(), actual.getAddress(), "c" + i);
+            }
+        }
+        assertThrows(IllegalArgumentException.class, () -> new TieredContactStore(null, 10));
+        assertThrows(IllegalArgumentException.class, () -> new TieredContactStore(cold, 0));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,425 @@
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * VersionedContactStore class keeps contacts in a persistent hash array mapped trie
+ * (HAMT), so snapshot() captures every contact at one instant in O(1) and readers can
+ * walk that snapshot without locks while writers carry on.
+ *
+ * Each level of the trie consumes 5 bits of the spread ID hash; a BitmapNode stores only
+ * its occupied slots, each either a contact or a child node, and IDs whose whole hash
+ * collides share a CollisionNode. Nodes and stored contacts are never modified: a write
+ * copies the nodes on the path to its contact (about log32 n of them) and publishes the
+ * new root with a compare-and-set, retrying if another writer got there first. Writers
+ * therefore never wait on readers or on each other, and a snapshot is just the root it
+ * started from.
+ *
+ * Stored contacts are immutable versions, so get, iteration and snapshots hand out
+ * copies. Contact copies share their packed field array, which setters replace rather
+ * than modify, so a copy costs one small object.
+ */
+public final class VersionedContactStore implements ContactStore {
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+    private static final int MAX_SHIFT = 30;  // Last level that still has hash bits left
+
+    /**
+     * Root class pairs a trie with its size, so both change in one atomic step
+     */
+    static final class Root {
+        static final Root EMPTY = new Root(BitmapNode.EMPTY, 0);
+
+        final BitmapNode node;
+        final int size;
+
+        Root(BitmapNode node, int size) {
+            this.node = node;
+            this.size = size;
+        }
+    }
+
+    /**
+     * BitmapNode class holds the occupied slots of one trie level, in slot order
+     */
+    private static final class BitmapNode {
+        static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+        final int bitmap;
+        final Object[] entries;  // Contact or node per set bit
+
+        BitmapNode(int bitmap, Object[] entries) {
+            this.bitmap = bitmap;
+            this.entries = entries;
+        }
+
+        int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+    }
+
+    /**
+     * CollisionNode class holds contacts whose spread ID hashes are identical
+     */
+    private static final class CollisionNode {
+        final int hash;
+        final Contact[] contacts;
+
+        CollisionNode(int hash, Contact[] contacts) {
+            this.hash = hash;
+            this.contacts = contacts;
+        }
+    }
+
+    private final AtomicReference<Root> root = new AtomicReference<>(Root.EMPTY);
+
+    @Override
+    public Contact get(String contactId) {
+        Contact version = find(root.get(), contactId);
+        return version == null ? null : new Contact(version);
+    }
+
+    @Override
+    public boolean contains(String contactId) {
+        return find(root.get(), contactId) != null;
+    }
+
+    @Override
+    public int size() {
+        return root.get().size;
+    }
+
+    @Override
+    public boolean insert(Contact contact) {
+        Contact version = new Contact(contact);  // Detached from the caller's object
+        String id = version.getContactId();
+        int hash = hash(id);
+        while (true) {
+            Root current = root.get();
+            if (find(current, id) != null) {
+                return false;
+            }
+            Root next = new Root((BitmapNode) put(current.node, version, hash, 0), current.size + 1);
+            if (root.compareAndSet(current, next)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Publishes the whole batch as one new root, so no snapshot sees part of it
+     */
+    @Override
+    public void insertAll(Contact[] batch) {
+        while (true) {
+            Root current = root.get();
+            BitmapNode node = current.node;
+            for (Contact contact : batch) {
+                Contact version = new Contact(contact);
+                node = (BitmapNode) put(node, version, hash(version.getContactId()), 0);
+            }
+            if (root.compareAndSet(current, new Root(node, current.size + batch.length))) {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public Contact remove(String contactId) {
+        int hash = hash(contactId);
+        while (true) {
+            Root current = root.get();
+            Contact version = find(current, contactId);
+            if (version == null) {
+                return null;
+            }
+            Object remaining = remove(current.node, contactId, hash, 0);
+            BitmapNode node = remaining instanceof BitmapNode ? (BitmapNode) remaining
+                    : remaining == null ? BitmapNode.EMPTY : single((Contact) remaining, 0);
+            if (root.compareAndSet(current, new Root(node, current.size - 1))) {
+                return new Contact(version);
+            }
+        }
+    }
+
+    /**
+     * Sets the field on the caller's copy, then publishes a fresh version of it
+     */
+    @Override
+    public Contact update(Contact contact, ContactField field, String value) {
+        field.set(contact, value);
+        return replace(contact);
+    }
+
+    @Override
+    public Contact patch(Contact contact, ContactPatch patch, int expectedVersion) {
+        contact.applyPatch(patch, expectedVersion);
+        return replace(contact);
+    }
+
+    /**
+     * Publishes a changed copy of a stored contact as its new version
+     * @return The changed copy
+     */
+    private Contact replace(Contact contact) {
+        Contact version = new Contact(contact);
+        int hash = hash(version.getContactId());
+        while (true) {
+            Root current = root.get();
+            if (find(current, version.getContactId()) == null) {
+                throw new IllegalArgumentException("Contact with ID " + version.getContactId() + " does not exist");
+            }
+            Root next = new Root((BitmapNode) put(current.node, version, hash, 0), current.size);
+            if (root.compareAndSet(current, next)) {
+                return contact;
+            }
+        }
+    }
+
+    @Override
+    public boolean returnsCopies() {
+        return true;
+    }
+
+    /**
+     * @return Every contact at one instant; unlike other stores, iteration is a snapshot
+     */
+    @Override
+    public Iterator<Contact> iterator() {
+        return iterator(root.get());
+    }
+
+    @Override
+    public ContactView snapshot() {
+        return new ContactView(root.get());
+    }
+
+    /**
+     * @return Contacts in the largest collision node, 0 if there is none
+     */
+    int largestCollision() {
+        int largest = 0;
+        Deque<Object> pending = new ArrayDeque<>();
+        pending.push(root.get().node);
+        while (!pending.isEmpty()) {
+            Object node = pending.pop();
+            if (node instanceof CollisionNode) {
+                largest = Math.max(largest, ((CollisionNode) node).contacts.length);
+            } else if (node instanceof BitmapNode) {
+                for (Object entry : ((BitmapNode) node).entries) {
+                    pending.push(entry);
+                }
+            }
+        }
+        return largest;
+    }
+
+    /**
+     * @return Stored version with the ID under root, or null
+     */
+    static Contact find(Root root, String contactId) {
+        int hash = hash(contactId);
+        Object node = root.node;
+        for (int shift = 0; ; shift += BITS) {
+            if (node instanceof CollisionNode) {
+                for (Contact contact : ((CollisionNode) node).contacts) {
+                    if (contact.getContactId().equals(contactId)) {
+                        return contact;
+                    }
+                }
+                return null;
+            }
+            BitmapNode bitmapNode = (BitmapNode) node;
+            int bit = 1 << ((hash >>> shift) & MASK);
+            if ((bitmapNode.bitmap & bit) == 0) {
+                return null;
+            }
+            Object entry = bitmapNode.entries[bitmapNode.index(bit)];
+            if (entry instanceof Contact) {
+                Contact contact = (Contact) entry;
+                return contact.getContactId().equals(contactId) ? contact : null;
+            }
+            node = entry;
+        }
+    }
+
+    /**
+     * @return Iterator over copies of every version under root, depth first
+     */
+    static Iterator<Contact> iterator(Root root) {
+        return new TrieIterator(root.node);
+    }
+
+    /**
+     * Returns a copy of node with version stored, replacing any contact with the same ID
+     */
+    private static Object put(Object node, Contact version, int hash, int shift) {
+        if (node instanceof CollisionNode) {
+            CollisionNode collision = (CollisionNode) node;
+            if (collision.hash != hash) {
+                return pair(collision, collision.hash, version, hash, shift);  // Only a shared prefix
+            }
+            Contact[] contacts = collision.contacts;
+            for (int i = 0; i < contacts.length; i++) {
+                if (contacts[i].getContactId().equals(version.getContactId())) {
+                    Contact[] replaced = contacts.clone();
+                    replaced[i] = version;
+                    return new CollisionNode(hash, replaced);
+                }
+            }
+            Contact[] grown = Arrays.copyOf(contacts, contacts.length + 1);
+            grown[contacts.length] = version;
+            return new CollisionNode(hash, grown);
+        }
+        BitmapNode bitmapNode = (BitmapNode) node;
+        int bit = 1 << ((hash >>> shift) & MASK);
+        int index = bitmapNode.index(bit);
+        if ((bitmapNode.bitmap & bit) == 0) {
+            Object[] entries = new Object[bitmapNode.entries.length + 1];
+            System.arraycopy(bitmapNode.entries, 0, entries, 0, index);
+            entries[index] = version;
+            System.arraycopy(bitmapNode.entries, index, entries, index + 1, bitmapNode.entries.length - index);
+            return new BitmapNode(bitmapNode.bitmap | bit, entries);
+        }
+        Object entry = bitmapNode.entries[index];
+        Object replacement;
+        if (entry instanceof Contact) {
+            Contact existing = (Contact) entry;
+            if (existing.getContactId().equals(version.getContactId())) {
+                replacement = version;
+            } else {
+                replacement = pair(existing, hash(existing.getContactId()), version, hash, shift + BITS);
+            }
+        } else {
+            replacement = put(entry, version, hash, shift + BITS);
+        }
+        Object[] entries = bitmapNode.entries.clone();
+        entries[index] = replacement;
+        return new BitmapNode(bitmapNode.bitmap, entries);
+    }
+
+    /**
+     * Builds the smallest subtree holding two contacts with different IDs, or a collision
+     * node and a contact whose hash differs from it
+     */
+    private static Object pair(Object a, int hashA, Contact b, int hashB, int shift) {
+        if (shift > MAX_SHIFT || hashA == hashB) {
+            return new CollisionNode(hashA, new Contact[] {(Contact) a, b});
+        }
+        int slotA = (hashA >>> shift) & MASK;
+        int slotB = (hashB >>> shift) & MASK;
+        if (slotA == slotB) {
+            return new BitmapNode(1 << slotA, new Object[] {pair(a, hashA, b, hashB, shift + BITS)});
+        }
+        return new BitmapNode((1 << slotA) | (1 << slotB), slotA < slotB ? new Object[] {a, b} : new Object[] {b, a});
+    }
+
+    /**
+     * Returns node without the ID's contact: null if nothing is left, a lone Contact for
+     * the parent to inline, or a node
+     */
+    private static Object remove(Object node, String contactId, int hash, int shift) {
+        if (node instanceof CollisionNode) {
+            Contact[] contacts = ((CollisionNode) node).contacts;
+            int at = 0;
+            while (!contacts[at].getContactId().equals(contactId)) {
+                at++;
+            }
+            if (contacts.length == 2) {
+                return contacts[1 - at];
+            }
+            Contact[] shrunk = new Contact[contacts.length - 1];
+            System.arraycopy(contacts, 0, shrunk, 0, at);
+            System.arraycopy(contacts, at + 1, shrunk, at, contacts.length - at - 1);
+            return new CollisionNode(hash, shrunk);
+        }
+        BitmapNode bitmapNode = (BitmapNode) node;
+        int bit = 1 << ((hash >>> shift) & MASK);
+        int index = bitmapNode.index(bit);
+        Object entry = bitmapNode.entries[index];
+        Object remaining = entry instanceof Contact ? null : remove(entry, contactId, hash, shift + BITS);
+        if (remaining == null) {
+            if (bitmapNode.entries.length == 1) {
+                return null;
+            }
+            if (bitmapNode.entries.length == 2 && bitmapNode.entries[1 - index] instanceof Contact) {
+                return bitmapNode.entries[1 - index];
+            }
+            Object[] entries = new Object[bitmapNode.entries.length - 1];
+            System.arraycopy(bitmapNode.entries, 0, entries, 0, index);
+            System.arraycopy(bitmapNode.entries, index + 1, entries, index, entries.length - index);
+            return new BitmapNode(bitmapNode.bitmap & ~bit, entries);
+        }
+        if (remaining instanceof Contact && bitmapNode.entries.length == 1) {
+            return remaining;  // Keep collapsing towards the root
+        }
+        Object[] entries = bitmapNode.entries.clone();
+        entries[index] = remaining;
+        return new BitmapNode(bitmapNode.bitmap, entries);
+    }
+
+    /**
+     * Wraps a lone contact in a node for the given level
+     */
+    private static BitmapNode single(Contact contact, int shift) {
+        return new BitmapNode(1 << ((hash(contact.getContactId()) >>> shift) & MASK), new Object[] {contact});
+    }
+
+    private static int hash(String contactId) {
+        int h = contactId.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * TrieIterator class walks a trie depth first with an explicit stack of node cursors
+     */
+    private static final class TrieIterator implements Iterator<Contact> {
+        private final Deque<Object[]> nodes = new ArrayDeque<>();
+        private final Deque<Integer> positions = new ArrayDeque<>();
+        private Contact next;
+
+        TrieIterator(BitmapNode root) {
+            nodes.push(root.entries);
+            positions.push(0);
+            advance();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Contact next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Contact result = new Contact(next);
+            advance();
+            return result;
+        }
+
+        private void advance() {
+            next = null;
+            while (!nodes.isEmpty()) {
+                Object[] entries = nodes.peek();
+                int position = positions.pop();
+                if (position == entries.length) {
+                    nodes.pop();
+                    continue;
+                }
+                positions.push(position + 1);
+                Object entry = entries[position];
+                if (entry instanceof Contact) {
+                    next = (Contact) entry;
+                    return;
+                }
+                nodes.push(entry instanceof BitmapNode ? ((BitmapNode) entry).entries : ((CollisionNode) entry).contacts);
+                positions.push(0);
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,193 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Unit tests for VersionedContactStore and ContactView classes
+ * Tests the persistent trie against a reference map, hash collisions, copies and the
+ * isolation of snapshots from later writes
+ */
+public class VersionedContactStoreTest {
+    // Store tests
+
+    @Test
+    @DisplayName("Store should match a reference map through random inserts, removes and updates")
+    public void testMatchesReferenceMap() {
+        VersionedContactStore store = new VersionedContactStore();
+        Map<String, String> expected = new HashMap<>();  // ID to address
+        List<String> live = new ArrayList<>();
+        Random random = new Random(42);
+
+        for (int step = 0; step < 50_000; step++) {
+            int action = random.nextInt(5);
+            if (action < 3 || live.isEmpty()) {
+                String id = "c" + step;
+                assertTrue(store.insert(new Contact(id, "First", "Last", "5551234567", step + " Main St")));
+                assertFalse(store.insert(new Contact(id, "Other", "Last", "5551234567", "1 Main St")));
+                expected.put(id, step + " Main St");
+                live.add(id);
+            } else if (action == 3) {
+                String id = live.remove(random.nextInt(live.size()));
+                assertEquals(expected.remove(id), store.remove(id).getAddress());
+            } else {
+                String id = live.get(random.nextInt(live.size()));
+                store.update(store.get(id), ContactField.ADDRESS, step + " Elm St");
+                expected.put(id, step + " Elm St");
+            }
+        }
+
+        assertEquals(expected.size(), store.size());
+        for (Map.Entry<String, String> entry : expected.entrySet()) {
+            assertTrue(store.contains(entry.getKey()));
+            assertEquals(entry.getValue(), store.get(entry.getKey()).getAddress());
+        }
+        Set<String> iterated = new HashSet<>();
+        for (Contact contact : store) {
+            assertTrue(iterated.add(contact.getContactId()));
+        }
+        assertEquals(expected.keySet(), iterated);
+        assertNull(store.get("missing"));
+        assertNull(store.remove("missing"));
+    }
+
+    @Test
+    @DisplayName("IDs with equal hash codes should share a collision node and be told apart")
+    public void testHashCollisions() {
+        VersionedContactStore store = new VersionedContactStore();
+        // "Aa" and "BB" share a String hash code, and so does every concatenation of them
+        String[] ids = {"AaAa", "AaBB", "BBAa", "BBBB"};
+        for (String id : ids) {
+            assertTrue(store.insert(new Contact(id, id, "Last", "5551234567", "1 Main St")));
+        }
+        assertFalse(store.insert(new Contact("BBAa", "Other", "Last", "5551234567", "1 Main St")));
+        store.update(store.get("BBBB"), ContactField.LAST_NAME, "Changed");
+
+        assertEquals("AaBB", store.remove("AaBB").getFirstName());
+        assertEquals("AaAa", store.remove("AaAa").getFirstName());
+        assertEquals("BBAa", store.remove("BBAa").getFirstName());
+        assertEquals(1, store.size());
+        assertEquals("Changed", store.get("BBBB").getLastName());
+        assertEquals("BBBB", store.remove("BBBB").getFirstName());
+        assertFalse(store.iterator().hasNext());
+    }
+
+    @Test
+    @DisplayName("Collision node should split when an ID with a different hash reaches it")
+    public void testCollisionNodeSplits() {
+        VersionedContactStore store = new VersionedContactStore();
+        store.insert(new Contact("Aa", "First", "Last", "5551234567", "1 Main St"));
+        store.insert(new Contact("BB", "First", "Last", "5551234567", "1 Main St"));
+        assertEquals(2, store.largestCollision());
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(store.insert(new Contact("c" + i, "First", "Last", "5551234567", i + " Main St")));
+        }
+        assertEquals(2, store.largestCollision(), "only IDs with equal hashes should share a collision node");
+
+        assertEquals(10_002, store.size());
+        assertEquals("1 Main St", store.get("Aa").getAddress());
+        for (int i = 0; i < 10_000; i++) {
+            assertEquals(i + " Main St", store.get("c" + i).getAddress());
+        }
+        assertNotNull(store.remove("Aa"));
+        assertEquals(0, store.largestCollision());
+        assertEquals("1 Main St", store.get("BB").getAddress());
+        for (int i = 0; i < 10_000; i++) {
+            assertNotNull(store.remove("c" + i));
+        }
+        assertEquals(1, store.size());
+        assertTrue(store.contains("BB"));
+    }
+
+    @Test
+    @DisplayName("Reads should return copies, and an invalid update should change nothing")
+    public void testReadsReturnCopies() {
+        VersionedContactStore store = new VersionedContactStore();
+        Contact original = new Contact("1", "John", "Doe", "5551234567", "1 Main St");
+        store.insert(original);
+        original.setFirstName("Changed");
+
+        Contact first = store.get("1");
+        assertEquals("John", first.getFirstName());
+        first.setFirstName("Jane");
+        assertEquals("John", store.get("1").getFirstName());
+        assertThrows(IllegalArgumentException.class, () -> store.update(store.get("1"), ContactField.PHONE, "123"));
+        assertEquals("5551234567", store.get("1").getPhone());
+        assertTrue(store.returnsCopies());
+    }
+
+    // Snapshot tests
+
+    @Test
+    @DisplayName("Snapshot should keep the contacts as they were when it was taken")
+    public void testSnapshotIsolation() {
+        ContactService service = new ContactService(new VersionedContactStore());
+        for (int i = 0; i < 1000; i++) {
+            service.addContact("s" + i, "First", "Last", "5551234567", i + " Main St");
+        }
+        ContactView view = service.snapshot();
+
+        service.updateAddress("s1", "99 Elm St");
+        service.deleteContact("s2");
+        service.addContact("new", "First", "Last", "5551234567", "1 Main St");
+        view.getContact("s3").setAddress("Changed");
+
+        assertEquals(1000, view.getContactCount());
+        assertEquals("1 Main St", view.getContact("s1").getAddress());
+        assertEquals("3 Main St", view.getContact("s3").getAddress());
+        assertTrue(view.contactExists("s2"));
+        assertFalse(view.contactExists("new"));
+        assertFalse(view.contactExists(null));
+        assertThrows(IllegalArgumentException.class, () -> view.getContact("new"));
+        assertThrows(IllegalArgumentException.class, () -> view.getContact(null));
+        assertEquals(1000, view.stream().count());
+
+        assertEquals("99 Elm St", service.getContact("s1").getAddress());
+        assertEquals(1000, service.snapshot().getContactCount());
+    }
+
+    @Test
+    @DisplayName("Snapshot should need a store that keeps versions")
+    public void testSnapshotUnsupported() {
+        assertThrows(UnsupportedOperationException.class, () -> new ContactService().snapshot());
+        assertThrows(UnsupportedOperationException.class, () -> new ContactService(new PackedIdContactStore()).snapshot());
+    }
+
+    // Service tests
+
+    @Test
+    @DisplayName("Service backed by a versioned store should support every operation and index")
+    public void testServiceOperations() {
+        ContactService service = new ContactService(new VersionedContactStore());
+        service.addContact("1", "John", "Doe", "5551234567", "12 Main St");
+        List<Contact> batch = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            batch.add(new Contact("b" + i, "First", "Last", "5559876543", i + " Elm St"));
+        }
+        assertTrue(service.addContacts(batch).isCommitted());
+        assertFalse(service.addContacts(List.of(new Contact("b5", "A", "B", "5551234567", "C"))).isCommitted());
+        service.enablePhoneIndex();
+        service.enableNameIndex(false);
+        service.enableAddressIndex();
+
+        service.updateFirstName("1", "Jane");
+        service.updateAddress("1", "56 Main St");
+        assertThrows(IllegalArgumentException.class, () -> service.updateLastName("1", "ThisNameIsTooLong"));
+        assertEquals("Jane", service.getContact("1").getFirstName());
+        assertEquals("56 Main St", service.findByPhone("5551234567").get(0).getAddress());
+        assertEquals("56 Main St", service.findByNamePrefix("Ja", 10).get(0).getAddress());
+        assertTrue(service.findByAddress("12 Main", 10).isEmpty());
+
+        service.deleteContact("b0");
+        assertFalse(service.contactExists("b0"));
+        assertEquals(99, service.findByPhone("5559876543").size());
+        assertEquals(100, service.getContactCount());
+    }
+}
\ No newline at end of file